@@ -0,0 +1,37 @@
+package com.barsifedron.candid.cqrs.command;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A command bus that does not make you wait.
+ * <p>
+ * The returned future completes with the response of the handler, or exceptionally with whatever it threw.
+ * See ExecutorCommandBus and BlockingCommandBus to go from a CommandBus to an AsyncCommandBus and back.
+ */
+public interface AsyncCommandBus {
+
+    <T> CompletableFuture<CommandResponse<T>> dispatch(Command<T> command);
+
+    /**
+     * Dispatches many commands at once. One response per command, in the same order, as CommandBus.dispatchAll does.
+     * A failing command does not fail the future: its exception is kept in its response.
+     * <p>
+     * By default commands are simply dispatched one by one, without waiting for each other.
+     */
+    default CompletableFuture<List<BatchedCommandResponse<?>>> dispatchAll(List<? extends Command<?>> commands) {
+        List<CompletableFuture<? extends BatchedCommandResponse<?>>> responses = new ArrayList<>(commands.size());
+        for (Command<?> command : commands) {
+            responses.add(BatchedCommandResponse.dispatch(command, this));
+        }
+        return CompletableFuture
+                .allOf(responses.toArray(new CompletableFuture[0]))
+                .thenApply(done -> {
+                    List<BatchedCommandResponse<?>> all = new ArrayList<>(responses.size());
+                    responses.forEach(response -> all.add(response.join()));
+                    return all;
+                });
+    }
+
+}
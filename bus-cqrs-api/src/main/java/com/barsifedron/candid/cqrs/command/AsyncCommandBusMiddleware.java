@@ -0,0 +1,80 @@
+package com.barsifedron.candid.cqrs.command;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+/**
+ * The asynchronous twin of the CommandBusMiddleware. Same idea, same wiring.
+ * <p>
+ * The one thing to keep in mind: when dispatch returns, the command has usually not been handled yet.
+ * What you want to do "after" goes in a callback on the future (thenApply, whenComplete...),
+ * and it will run on whatever thread completes it.
+ */
+public interface AsyncCommandBusMiddleware {
+
+    <T> CompletableFuture<CommandResponse<T>> dispatch(Command<T> command, AsyncCommandBus next);
+
+    /**
+     * Passes to the next in line without doing anything.
+     * Logically useless but helpful for some wiring operations.
+     */
+    static AsyncCommandBusMiddleware neutral() {
+        return new AsyncCommandBusMiddleware() {
+            @Override
+            public <T> CompletableFuture<CommandResponse<T>> dispatch(Command<T> command, AsyncCommandBus next) {
+                return next.dispatch(command);
+            }
+        };
+    }
+
+    /**
+     * Decorates a bus with this middleware.
+     */
+    default AsyncCommandBus decorate(AsyncCommandBus bus) {
+        AsyncCommandBusMiddleware thisMiddleware = this;
+        AsyncCommandBus decoratedCommandBus = new AsyncCommandBus() {
+            @Override
+            public <T> CompletableFuture<CommandResponse<T>> dispatch(Command<T> command) {
+                return thisMiddleware.dispatch(command, bus);
+            }
+        };
+        return decoratedCommandBus;
+    }
+
+    /**
+     * Decorates an existing middleware with this middleware.
+     * We can always make a composite middleware from two middleware....
+     */
+    default AsyncCommandBusMiddleware compose(AsyncCommandBusMiddleware middleware) {
+        AsyncCommandBusMiddleware thisMiddleware = this;
+        AsyncCommandBusMiddleware decoratedCommandBusMiddleware = new AsyncCommandBusMiddleware() {
+            @Override
+            public <T> CompletableFuture<CommandResponse<T>> dispatch(Command<T> command, AsyncCommandBus next) {
+                return thisMiddleware.dispatch(command, middleware.decorate(next));
+            }
+        };
+        return decoratedCommandBusMiddleware;
+    }
+
+    /**
+     * ... And when you can compose two you can compose many. Functionally...
+     */
+    static AsyncCommandBusMiddleware compositeOf(AsyncCommandBusMiddleware... middlewares) {
+        return Stream.of(middlewares).reduce(AsyncCommandBusMiddleware.neutral(), (m1, m2) -> m1.compose(m2));
+    }
+
+    /**
+     * ... or recursively. Whatever you like most.
+     */
+    static AsyncCommandBusMiddleware compositeOf(List<AsyncCommandBusMiddleware> middlewares) {
+        if (middlewares.isEmpty()) {
+            return AsyncCommandBusMiddleware.neutral();
+        }
+        if (middlewares.size() == 1) {
+            return middlewares.get(0);
+        }
+        return middlewares.get(0).compose(compositeOf(middlewares.subList(1, middlewares.size())));
+    }
+
+}
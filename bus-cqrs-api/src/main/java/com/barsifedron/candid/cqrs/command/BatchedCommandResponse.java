@@ -0,0 +1,83 @@
+package com.barsifedron.candid.cqrs.command;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * What happened to one command of a batch: either it went through and we have its response, or it failed.
+ * <p>
+ * In a batch, a failing command does not throw. Its exception is kept here and the other commands go on.
+ */
+public class BatchedCommandResponse<T> {
+
+    public final Command<T> command;
+
+    /**
+     * Null when the command failed.
+     */
+    public final CommandResponse<T> response;
+
+    /**
+     * Null when the command succeeded.
+     */
+    public final RuntimeException failure;
+
+    private BatchedCommandResponse(Command<T> command, CommandResponse<T> response, RuntimeException failure) {
+        this.command = command;
+        this.response = response;
+        this.failure = failure;
+    }
+
+    public static <T> BatchedCommandResponse<T> success(Command<T> command, CommandResponse<T> response) {
+        return new BatchedCommandResponse<>(command, response, null);
+    }
+
+    public static <T> BatchedCommandResponse<T> failure(Command<T> command, RuntimeException failure) {
+        return new BatchedCommandResponse<>(command, null, failure);
+    }
+
+    /**
+     * Dispatches a single command to the bus, and records the outcome instead of throwing.
+     */
+    public static <T> BatchedCommandResponse<T> dispatch(Command<T> command, CommandBus bus) {
+        try {
+            return success(command, bus.dispatch(command));
+        } catch (RuntimeException exception) {
+            return failure(command, exception);
+        }
+    }
+
+    /**
+     * The same, to an async bus. The future never completes exceptionally: the failure is in the response.
+     */
+    public static <T> CompletableFuture<BatchedCommandResponse<T>> dispatch(Command<T> command, AsyncCommandBus bus) {
+        CompletableFuture<CommandResponse<T>> response;
+        try {
+            response = bus.dispatch(command);
+        } catch (RuntimeException exception) {
+            return CompletableFuture.completedFuture(failure(command, exception));
+        }
+        return response.handle((success, throwable) -> throwable == null
+                ? success(command, success)
+                : failure(command, asRuntimeException(throwable)));
+    }
+
+    /**
+     * What a future failed with, unwrapped. Checked exceptions and errors stay wrapped in a CompletionException.
+     */
+    static RuntimeException asRuntimeException(Throwable throwable) {
+        Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+        return cause instanceof RuntimeException ? (RuntimeException) cause : new CompletionException(cause);
+    }
+
+    public boolean succeeded() {
+        return failure == null;
+    }
+
+    /**
+     * The same command, now failed. Used when something went wrong later on for the whole batch (a rollback for example).
+     */
+    public BatchedCommandResponse<T> failedWith(RuntimeException failure) {
+        return failure(command, failure);
+    }
+}
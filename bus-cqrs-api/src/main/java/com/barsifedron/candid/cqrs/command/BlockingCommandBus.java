@@ -0,0 +1,47 @@
+package com.barsifedron.candid.cqrs.command;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Turns an AsyncCommandBus back into a CommandBus, by waiting for the response.
+ * <p>
+ * Failures come out as they would from a synchronous bus: the exception thrown by the handler, not a CompletionException.
+ * <p>
+ * Batches (dispatchAll) go to the dispatchAll of the async bus. A PartitionedCommandBus runs them on its lanes,
+ * in order with the other commands of the same aggregates.
+ */
+public class BlockingCommandBus implements CommandBus {
+
+    private final AsyncCommandBus bus;
+
+    public BlockingCommandBus(AsyncCommandBus bus) {
+        this.bus = bus;
+    }
+
+    @Override
+    public <T> CommandResponse<T> dispatch(Command<T> command) {
+        return join(bus.dispatch(command));
+    }
+
+    @Override
+    public List<BatchedCommandResponse<?>> dispatchAll(List<? extends Command<?>> commands) {
+        return join(bus.dispatchAll(commands));
+    }
+
+    private static <R> R join(CompletableFuture<R> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.barsifedron.candid.cqrs.command;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toMap;
+import static java.util.stream.Collectors.toSet;
+
+/**
+ * Dispatches the command to the right Command Handler, like the MapCommandBus, with two differences:
+ * <p>
+ * 1. The handler of a command class is looked up once, then remembered (in a ClassValue, so right next to the class).
+ * Dispatching after that is a plain read, without locks and without allocating anything.
+ * <p>
+ * 2. A command that has no handler of its own goes to the handler of its closest parent:
+ * its superclasses first, nearest first, then the interfaces it implements, nearest first.
+ * <p>
+ * The handlers are copied when the bus is built. Registering a handler in your map afterwards will not change this bus.
+ */
+public class ClassValueCommandBus implements CommandBus {
+
+    private static final Supplier<CommandHandler> NOT_FOUND = () -> null;
+
+    private final Map<Class<Command>, Supplier<CommandHandler>> handlers;
+
+    private final ClassValue<Supplier<CommandHandler>> dispatchTable = new ClassValue<Supplier<CommandHandler>>() {
+        @Override
+        protected Supplier<CommandHandler> computeValue(Class<?> commandClass) {
+            return resolve(commandClass);
+        }
+    };
+
+    public ClassValueCommandBus(CommandHandler... commandHandlers) {
+        this(Stream.of(commandHandlers).collect(toSet()));
+    }
+
+    public ClassValueCommandBus(Set<? extends CommandHandler> handlers) {
+        this(handlers.stream().collect(toMap(
+                handler -> handler.listenTo(),
+                handler -> () -> handler))
+        );
+    }
+
+    public ClassValueCommandBus(Map<Class<Command>, Supplier<CommandHandler>> handlers) {
+        this.handlers = Collections.unmodifiableMap(new HashMap<>(handlers));
+    }
+
+    @Override
+    public <T> CommandResponse<T> dispatch(Command<T> command) {
+        Supplier<CommandHandler> handlerSupplier = dispatchTable.get(command.getClass());
+        if (handlerSupplier == NOT_FOUND) {
+            throw new MapCommandBus.CommandHandlerNotFoundException(command.getClass());
+        }
+        return handlerSupplier.get().handle(command);
+    }
+
+    private Supplier<CommandHandler> resolve(Class<?> commandClass) {
+        for (Class<?> aClass = commandClass; aClass != null; aClass = aClass.getSuperclass()) {
+            Supplier<CommandHandler> handlerSupplier = handlers.get(aClass);
+            if (handlerSupplier != null) {
+                return handlerSupplier;
+            }
+        }
+        Deque<Class<?>> toVisit = new ArrayDeque<>();
+        Set<Class<?>> visited = new HashSet<>();
+        for (Class<?> aClass = commandClass; aClass != null; aClass = aClass.getSuperclass()) {
+            Collections.addAll(toVisit, aClass.getInterfaces());
+        }
+        while (!toVisit.isEmpty()) {
+            Class<?> anInterface = toVisit.poll();
+            if (!visited.add(anInterface)) {
+                continue;
+            }
+            Supplier<CommandHandler> handlerSupplier = handlers.get(anInterface);
+            if (handlerSupplier != null) {
+                return handlerSupplier;
+            }
+            Collections.addAll(toVisit, anInterface.getInterfaces());
+        }
+        return NOT_FOUND;
+    }
+}
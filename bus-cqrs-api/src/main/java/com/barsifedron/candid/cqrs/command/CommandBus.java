@@ -1,6 +1,9 @@
 package com.barsifedron.candid.cqrs.command;
 
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * A really simple command bus interface.
  */
@@ -9,4 +12,20 @@ public interface CommandBus {
 
     <T> CommandResponse<T> dispatch(Command<T> command);
 
-}
\ No newline at end of file
+    /**
+     * Dispatches many commands at once. One response per command, in the same order.
+     * A failing command does not stop the others: its exception is kept in its response.
+     * <p>
+     * By default commands are simply dispatched one after the other.
+     * A bus built from batch aware middleware (see CommandBusMiddleware.dispatchAll) can do better,
+     * for example run the whole batch in one transaction.
+     */
+    default List<BatchedCommandResponse<?>> dispatchAll(List<? extends Command<?>> commands) {
+        List<BatchedCommandResponse<?>> responses = new ArrayList<>(commands.size());
+        for (Command<?> command : commands) {
+            responses.add(BatchedCommandResponse.dispatch(command, this));
+        }
+        return responses;
+    }
+
+}
@@ -33,6 +33,24 @@ public interface CommandBusMiddleware {
 
     <T> CommandResponse<T> dispatch(Command<T> command, CommandBus next);
 
+    /**
+     * Handles a whole batch of commands. One response per command, in the same order.
+     * <p>
+     * By default, each command goes through this middleware on its own, and the middleware further down the chain
+     * only ever see single commands. Override this when your middleware can deal with the batch as a whole
+     * (open one transaction for all of them, validate them all upfront...) and pass the batch along to next.dispatchAll.
+     */
+    default List<BatchedCommandResponse<?>> dispatchAll(List<? extends Command<?>> commands, CommandBus next) {
+        CommandBusMiddleware thisMiddleware = this;
+        CommandBus oneByOne = new CommandBus() {
+            @Override
+            public <T> CommandResponse<T> dispatch(Command<T> command) {
+                return thisMiddleware.dispatch(command, next);
+            }
+        };
+        return oneByOne.dispatchAll(commands);
+    }
+
     /**
      * Passes to the next in line without doing anything.
      * Logically useless but helpful for some wiring operations.
@@ -43,6 +61,11 @@ public interface CommandBusMiddleware {
             public <T> CommandResponse<T> dispatch(Command<T> command, CommandBus next) {
                 return next.dispatch(command);
             }
+
+            @Override
+            public List<BatchedCommandResponse<?>> dispatchAll(List<? extends Command<?>> commands, CommandBus next) {
+                return next.dispatchAll(commands);
+            }
         };
     }
 
@@ -57,6 +80,11 @@ public interface CommandBusMiddleware {
             public <T> CommandResponse<T> dispatch(Command<T> command) {
                 return thisMiddleware.dispatch(command, bus);
             }
+
+            @Override
+            public List<BatchedCommandResponse<?>> dispatchAll(List<? extends Command<?>> commands) {
+                return thisMiddleware.dispatchAll(commands, bus);
+            }
         };
         return decoratedCommandBus;
     }
@@ -75,6 +103,11 @@ public interface CommandBusMiddleware {
             public <T> CommandResponse<T> dispatch(Command<T> command, CommandBus next) {
                 return thisMiddleware.dispatch(command, middleware.decorate(next));
             }
+
+            @Override
+            public List<BatchedCommandResponse<?>> dispatchAll(List<? extends Command<?>> commands, CommandBus next) {
+                return thisMiddleware.dispatchAll(commands, middleware.decorate(next));
+            }
         };
         return decoratedCommandBusMiddleware;
     }
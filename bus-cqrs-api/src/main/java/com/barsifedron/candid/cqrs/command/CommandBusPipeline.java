@@ -0,0 +1,248 @@
+package com.barsifedron.candid.cqrs.command;
+
+import com.barsifedron.candid.cqrs.metrics.PipelineProfile;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A chain of middleware, put together once and for all in front of a bus.
+ * <p>
+ * compositeOf(...).decorate(bus) gives you the same ordering, but a composed middleware decorates the next one
+ * on every single dispatch. That is a new little bus per hop, per command. Here every hop is created upfront,
+ * when the pipeline is compiled, and a dispatch only walks the array of stages.
+ * <p>
+ * The first middleware of the list is the outermost one: it sees the command first and the response last.
+ * Whatever the overload, the terminal bus comes first, then the middlewares.
+ * <p>
+ * Do it once, when you build your bus, not on every request:
+ * <pre>
+ * CommandBus bus = CommandBusPipeline.compile(
+ *         new MapCommandBus(handlers),
+ *         new LoggingMiddleware(),
+ *         new DomainEventsDispatcher(eventBus));
+ * </pre>
+ * <p>
+ * Compiled with compileProfiled(...), the pipeline also times each of its stages, the terminal bus included,
+ * in its profile(). Two clock reads and a small object per stage and command: for finding out where the time goes, under load.
+ */
+public final class CommandBusPipeline implements CommandBus {
+
+    private final CommandBusMiddleware[] middlewares;
+
+    /**
+     * stages[i] goes through middlewares[i] and onwards. The last one is the terminal bus.
+     */
+    private final CommandBus[] stages;
+
+    /**
+     * Null unless compiled with profiling.
+     */
+    private final PipelineProfile profile;
+
+    private CommandBusPipeline(CommandBusMiddleware[] middlewares, CommandBus terminalBus, boolean profiled) {
+        this.middlewares = middlewares;
+        this.stages = new CommandBus[middlewares.length + 1];
+        if (!profiled) {
+            this.profile = null;
+            for (int i = 0; i < middlewares.length; i++) {
+                stages[i] = new Stage(i);
+            }
+            stages[middlewares.length] = terminalBus;
+            return;
+        }
+        List<String> stageNames = new ArrayList<>();
+        for (CommandBusMiddleware middleware : middlewares) {
+            stageNames.add(PipelineProfile.stageName(middleware));
+        }
+        stageNames.add(PipelineProfile.stageName(terminalBus));
+        this.profile = new PipelineProfile(stageNames);
+        for (int i = 0; i < middlewares.length; i++) {
+            stages[i] = new ProfiledStage(i);
+        }
+        stages[middlewares.length] = new ProfiledTerminalStage(terminalBus);
+    }
+
+    public static CommandBusPipeline compile(CommandBus terminalBus, CommandBusMiddleware... middlewares) {
+        return compile(terminalBus, Arrays.asList(middlewares));
+    }
+
+    public static CommandBusPipeline compile(CommandBus terminalBus, List<CommandBusMiddleware> middlewares) {
+        return compile(terminalBus, middlewares, false);
+    }
+
+    /**
+     * The same pipeline, timing the exclusive time of each stage, by type of command. See profile().
+     */
+    public static CommandBusPipeline compileProfiled(CommandBus terminalBus, CommandBusMiddleware... middlewares) {
+        return compileProfiled(terminalBus, Arrays.asList(middlewares));
+    }
+
+    public static CommandBusPipeline compileProfiled(CommandBus terminalBus, List<CommandBusMiddleware> middlewares) {
+        return compile(terminalBus, middlewares, true);
+    }
+
+    private static CommandBusPipeline compile(CommandBus terminalBus, List<CommandBusMiddleware> middlewares, boolean profiled) {
+        if (terminalBus == null) {
+            throw new IllegalArgumentException("A pipeline needs a bus to end with");
+        }
+        if (middlewares.contains(null)) {
+            throw new IllegalArgumentException("Can not compile a pipeline with a null middleware");
+        }
+        return new CommandBusPipeline(middlewares.toArray(new CommandBusMiddleware[0]), terminalBus, profiled);
+    }
+
+    @Override
+    public <T> CommandResponse<T> dispatch(Command<T> command) {
+        return stages[0].dispatch(command);
+    }
+
+    @Override
+    public List<BatchedCommandResponse<?>> dispatchAll(List<? extends Command<?>> commands) {
+        return stages[0].dispatchAll(commands);
+    }
+
+    /**
+     * How many middleware a command goes through before reaching the terminal bus.
+     */
+    public int depth() {
+        return middlewares.length;
+    }
+
+    /**
+     * The time spent in each stage, without the stages further down. Null when the pipeline was not compiled with profiling.
+     */
+    public PipelineProfile profile() {
+        return profile;
+    }
+
+    private final class Stage implements CommandBus {
+
+        private final int index;
+
+        private Stage(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public <T> CommandResponse<T> dispatch(Command<T> command) {
+            return middlewares[index].dispatch(command, stages[index + 1]);
+        }
+
+        @Override
+        public List<BatchedCommandResponse<?>> dispatchAll(List<? extends Command<?>> commands) {
+            return middlewares[index].dispatchAll(commands, stages[index + 1]);
+        }
+    }
+
+    /**
+     * A stage timing its middleware, minus the time spent further down the pipeline.
+     */
+    private final class ProfiledStage implements CommandBus {
+
+        private final int index;
+
+        private ProfiledStage(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public <T> CommandResponse<T> dispatch(Command<T> command) {
+            TimedNext next = new TimedNext(stages[index + 1]);
+            long start = System.nanoTime();
+            try {
+                return middlewares[index].dispatch(command, next);
+            } finally {
+                profile.record(command.getClass(), index, System.nanoTime() - start - next.nanos);
+            }
+        }
+
+        @Override
+        public List<BatchedCommandResponse<?>> dispatchAll(List<? extends Command<?>> commands) {
+            TimedNext next = new TimedNext(stages[index + 1]);
+            long start = System.nanoTime();
+            try {
+                return middlewares[index].dispatchAll(commands, next);
+            } finally {
+                recordShares(commands, index, System.nanoTime() - start - next.nanos);
+            }
+        }
+    }
+
+    private final class ProfiledTerminalStage implements CommandBus {
+
+        private final CommandBus terminalBus;
+
+        private ProfiledTerminalStage(CommandBus terminalBus) {
+            this.terminalBus = terminalBus;
+        }
+
+        @Override
+        public <T> CommandResponse<T> dispatch(Command<T> command) {
+            long start = System.nanoTime();
+            try {
+                return terminalBus.dispatch(command);
+            } finally {
+                profile.record(command.getClass(), middlewares.length, System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public List<BatchedCommandResponse<?>> dispatchAll(List<? extends Command<?>> commands) {
+            long start = System.nanoTime();
+            try {
+                return terminalBus.dispatchAll(commands);
+            } finally {
+                recordShares(commands, middlewares.length, System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * A batch is timed as a whole: each of its commands gets an even share.
+     */
+    private void recordShares(List<? extends Command<?>> commands, int stage, long exclusiveNanos) {
+        if (commands.isEmpty()) {
+            return;
+        }
+        long share = exclusiveNanos / commands.size();
+        for (Command<?> command : commands) {
+            profile.record(command.getClass(), stage, share);
+        }
+    }
+
+    /**
+     * The rest of the pipeline, as seen by one middleware for one dispatch. Adds up the time spent down there,
+     * however many times the middleware calls it (retries, a batch command by command...).
+     */
+    private static final class TimedNext implements CommandBus {
+
+        private final CommandBus next;
+        private long nanos;
+
+        private TimedNext(CommandBus next) {
+            this.next = next;
+        }
+
+        @Override
+        public <T> CommandResponse<T> dispatch(Command<T> command) {
+            long start = System.nanoTime();
+            try {
+                return next.dispatch(command);
+            } finally {
+                nanos += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public List<BatchedCommandResponse<?>> dispatchAll(List<? extends Command<?>> commands) {
+            long start = System.nanoTime();
+            try {
+                return next.dispatchAll(commands);
+            } finally {
+                nanos += System.nanoTime() - start;
+            }
+        }
+    }
+}
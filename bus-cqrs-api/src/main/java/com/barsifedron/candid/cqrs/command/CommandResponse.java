@@ -2,12 +2,11 @@ package com.barsifedron.candid.cqrs.command;
 
 import com.barsifedron.candid.cqrs.domainevent.DomainEvent;
 
-import java.util.ArrayList;
+import java.util.AbstractList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.stream.Stream;
-
-import static java.util.stream.Collectors.toList;
+import java.util.RandomAccess;
 
 /**
  * Commands should not really return data. At the most, the result field should
@@ -19,20 +18,29 @@ import static java.util.stream.Collectors.toList;
  * Event listeners will react to those to update the READ model or handle side effects
  * that do not really have to do with the core of your domain (which was only to update the user address),
  * for example send an email, add a log somewhere or inform the sales team....
+ * <p>
+ * The lists of events built here can not be modified, and the empty response is shared.
+ * A handler with one result and a few events builds its response with a builder: the response and its list of events
+ * are then all it allocates (the empty list is shared, a single event goes in a singleton list).
  */
 public class CommandResponse<K> {
 
+    private static final CommandResponse<NoResult> EMPTY = new CommandResponse<>(NoResult.NO_RESULT);
+
     public final K result;
     public final List<DomainEvent> domainEvents;
 
     public CommandResponse(K result) {
-        this(result, new ArrayList<>());
+        this(result, Collections.emptyList());
     }
 
     public CommandResponse(K result, DomainEvent... domainEvents) {
-        this(result, Stream.of(domainEvents).collect(toList()));
+        this(result, listOf(domainEvents.length < 2 ? domainEvents : domainEvents.clone(), domainEvents.length));
     }
 
+    /**
+     * The list is kept as it is, not copied.
+     */
     public CommandResponse(K result, List<DomainEvent> domainEvents) {
         this.result = result;
         this.domainEvents = domainEvents;
@@ -50,17 +58,142 @@ public class CommandResponse<K> {
     }
 
     public CommandResponse<K> withAddedDomainEvents(List<DomainEvent> events) {
-        List<DomainEvent> newDomainEvents = domainEvents.stream().collect(toList());
-        events.forEach(newDomainEvents::add);
-        return new CommandResponse(result, newDomainEvents);
+        if (events.isEmpty()) {
+            return this;
+        }
+        if (domainEvents.isEmpty() && events.size() == 1) {
+            return new CommandResponse<>(result, Collections.singletonList(events.get(0)));
+        }
+        DomainEvent[] all = domainEvents.toArray(new DomainEvent[domainEvents.size() + events.size()]);
+        int size = domainEvents.size();
+        for (DomainEvent event : events) {
+            all[size++] = event;
+        }
+        return new CommandResponse<>(result, listOf(all, size));
     }
 
     public static CommandResponse<NoResult> withoutResults(DomainEvent... events) {
-        return new CommandResponse(new NoResult(), events);
+        return new CommandResponse<>(NoResult.NO_RESULT, events);
     }
 
     public static CommandResponse<NoResult> empty() {
-        return new CommandResponse(new NoResult(), new ArrayList<>());
+        return EMPTY;
+    }
+
+    /**
+     * Without a result, NoResult. Without events, an empty list.
+     * <pre>
+     * return CommandResponse
+     *         .builder()
+     *         .result(newLoan.id())
+     *         .domainEvent(itemBorrowed)
+     *         .build();
+     * </pre>
+     */
+    public static Builder<NoResult> builder() {
+        return new Builder<>(NoResult.NO_RESULT);
+    }
+
+    private static List<DomainEvent> listOf(DomainEvent[] events, int size) {
+        switch (size) {
+            case 0:
+                return Collections.emptyList();
+            case 1:
+                return Collections.singletonList(events[0]);
+            default:
+                return new Events(events, size);
+        }
+    }
+
+    /**
+     * Accumulates the events of a handler, then builds its response. Can go on after a build:
+     * the responses already built are not changed.
+     */
+    public static class Builder<K> {
+
+        private Object result;
+        private DomainEvent first;
+        private DomainEvent[] events;
+        private int size;
+        private boolean built;
+
+        private Builder(Object result) {
+            this.result = result;
+        }
+
+        public <T> Builder<T> result(T result) {
+            this.result = result;
+            return (Builder<T>) this;
+        }
+
+        public Builder<K> domainEvent(DomainEvent event) {
+            if (size == 0) {
+                first = event;
+            } else {
+                if (events == null) {
+                    events = new DomainEvent[4];
+                    events[0] = first;
+                } else if (size == events.length || built) {
+                    events = Arrays.copyOf(events, Math.max(size * 2, 4));
+                }
+                events[size] = event;
+            }
+            size++;
+            built = false;
+            return this;
+        }
+
+        public Builder<K> domainEvents(DomainEvent... events) {
+            for (DomainEvent event : events) {
+                domainEvent(event);
+            }
+            return this;
+        }
+
+        public Builder<K> domainEvents(List<? extends DomainEvent> events) {
+            for (DomainEvent event : events) {
+                domainEvent(event);
+            }
+            return this;
+        }
+
+        public CommandResponse<K> build() {
+            built = true;
+            if (size == 0) {
+                return new CommandResponse<>((K) result);
+            }
+            if (size == 1) {
+                return new CommandResponse<>((K) result, Collections.singletonList(first));
+            }
+            return new CommandResponse<>((K) result, new Events(events, size));
+        }
+    }
+
+    /**
+     * Two events and more. Its array is never written again once it is handed here.
+     */
+    private static final class Events extends AbstractList<DomainEvent> implements RandomAccess {
+
+        private final DomainEvent[] events;
+        private final int size;
+
+        private Events(DomainEvent[] events, int size) {
+            this.events = events;
+            this.size = size;
+        }
+
+        @Override
+        public DomainEvent get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+            }
+            return events[index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,64 @@
+package com.barsifedron.candid.cqrs.command;
+
+import com.barsifedron.candid.cqrs.limit.AdaptiveConcurrencyLimit;
+
+import java.util.function.Supplier;
+
+/**
+ * Sheds load: over the limit of their type of command (or the shared one), commands wait a little, then are rejected
+ * with an AdaptiveConcurrencyLimit.LimitExceededException. Nothing was done: the command can be sent again later.
+ * <p>
+ * Put it in front of the transaction, so a rejected command never holds a connection.
+ * Batches go through command by command.
+ */
+public class ConcurrencyLimitingCommandBusMiddleware implements CommandBusMiddleware {
+
+    private final ClassValue<AdaptiveConcurrencyLimit> limits;
+
+    private ConcurrencyLimitingCommandBusMiddleware(ClassValue<AdaptiveConcurrencyLimit> limits) {
+        this.limits = limits;
+    }
+
+    /**
+     * One limit for all commands.
+     */
+    public static ConcurrencyLimitingCommandBusMiddleware shared(AdaptiveConcurrencyLimit limit) {
+        return new ConcurrencyLimitingCommandBusMiddleware(new ClassValue<AdaptiveConcurrencyLimit>() {
+            @Override
+            protected AdaptiveConcurrencyLimit computeValue(Class<?> commandType) {
+                return limit;
+            }
+        });
+    }
+
+    /**
+     * A limit of its own for every type of command, created on its first command.
+     */
+    public static ConcurrencyLimitingCommandBusMiddleware perType(Supplier<AdaptiveConcurrencyLimit> newLimit) {
+        return new ConcurrencyLimitingCommandBusMiddleware(new ClassValue<AdaptiveConcurrencyLimit>() {
+            @Override
+            protected AdaptiveConcurrencyLimit computeValue(Class<?> commandType) {
+                return newLimit.get();
+            }
+        });
+    }
+
+    /**
+     * The limit commands of this type go through.
+     */
+    public AdaptiveConcurrencyLimit limitOf(Class<?> commandType) {
+        return limits.get(commandType);
+    }
+
+    @Override
+    public <T> CommandResponse<T> dispatch(Command<T> command, CommandBus next) {
+        AdaptiveConcurrencyLimit limit = limits.get(command.getClass());
+        limit.acquire(command.getClass());
+        long start = System.nanoTime();
+        try {
+            return next.dispatch(command);
+        } finally {
+            limit.release(System.nanoTime() - start);
+        }
+    }
+}
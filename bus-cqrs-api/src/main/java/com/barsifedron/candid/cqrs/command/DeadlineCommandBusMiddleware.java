@@ -0,0 +1,64 @@
+package com.barsifedron.candid.cqrs.command;
+
+import com.barsifedron.candid.cqrs.deadline.Deadline;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fails fast, with a Deadline.DeadlineExceededException, a command that has too little time left to be worth starting.
+ * Put it in front of the transaction: a command turned down never opened one.
+ * <p>
+ * The deadline is the one of the caller (see Deadline.open), else one given to every command from now on, when a default
+ * timeout is set. A batch gets one deadline for all its commands.
+ */
+public class DeadlineCommandBusMiddleware implements CommandBusMiddleware {
+
+    private final long defaultTimeoutNanos;
+    private final long minimumBudgetNanos;
+
+    /**
+     * @param defaultTimeout for the commands sent without a deadline. 0 to leave them without one.
+     * @param minimumBudget  the least time left for a command to be worth starting
+     */
+    public DeadlineCommandBusMiddleware(long defaultTimeout, long minimumBudget, TimeUnit unit) {
+        this.defaultTimeoutNanos = unit.toNanos(defaultTimeout);
+        this.minimumBudgetNanos = unit.toNanos(minimumBudget);
+    }
+
+    @Override
+    public <T> CommandResponse<T> dispatch(Command<T> command, CommandBus next) {
+        Deadline deadline = deadline();
+        if (deadline == null) {
+            return next.dispatch(command);
+        }
+        checkBudget(deadline, command.getClass().getSimpleName());
+        return Deadline.runWithin(deadline, () -> next.dispatch(command));
+    }
+
+    @Override
+    public List<BatchedCommandResponse<?>> dispatchAll(List<? extends Command<?>> commands, CommandBus next) {
+        Deadline deadline = deadline();
+        if (deadline == null) {
+            return next.dispatchAll(commands);
+        }
+        checkBudget(deadline, "Batch of " + commands.size() + " commands");
+        return Deadline.runWithin(deadline, () -> next.dispatchAll(commands));
+    }
+
+    private Deadline deadline() {
+        Deadline deadline = Deadline.current();
+        if (deadline == null && defaultTimeoutNanos > 0) {
+            return Deadline.after(defaultTimeoutNanos, TimeUnit.NANOSECONDS);
+        }
+        return deadline;
+    }
+
+    private void checkBudget(Deadline deadline, String what) {
+        long remainingNanos = deadline.remaining(TimeUnit.NANOSECONDS);
+        if (remainingNanos < minimumBudgetNanos) {
+            throw new Deadline.DeadlineExceededException(what
+                    + " not run: " + TimeUnit.NANOSECONDS.toMillis(remainingNanos) + " ms left to its deadline");
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.barsifedron.candid.cqrs.command;
+
+import com.barsifedron.candid.cqrs.deadline.Deadline;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Turns a CommandBus into an AsyncCommandBus: each command is dispatched to the decorated bus on the given executor.
+ * <p>
+ * The whole dispatch runs on the executor thread, middleware included. Anything bound to the calling thread
+ * (a transaction, a security context, logging MDC...) is NOT there. Start those from middleware of the decorated bus.
+ * The deadline of the dispatch is, though: the executor thread runs the command within it.
+ * <p>
+ * A batch runs on one executor thread, as a batch of the decorated bus.
+ * <p>
+ * Any Executor will do: a thread pool, a ForkJoinPool, or one virtual thread per task on a JDK that has them.
+ */
+public class ExecutorCommandBus implements AsyncCommandBus {
+
+    private final CommandBus bus;
+    private final Executor executor;
+
+    public ExecutorCommandBus(CommandBus bus, Executor executor) {
+        this.bus = bus;
+        this.executor = executor;
+    }
+
+    @Override
+    public <T> CompletableFuture<CommandResponse<T>> dispatch(Command<T> command) {
+        Deadline deadline = Deadline.current();
+        return CompletableFuture.supplyAsync(() -> Deadline.runWithin(deadline, () -> bus.dispatch(command)), executor);
+    }
+
+    @Override
+    public CompletableFuture<List<BatchedCommandResponse<?>>> dispatchAll(List<? extends Command<?>> commands) {
+        Deadline deadline = Deadline.current();
+        return CompletableFuture.supplyAsync(() -> Deadline.runWithin(deadline, () -> bus.dispatchAll(commands)), executor);
+    }
+}
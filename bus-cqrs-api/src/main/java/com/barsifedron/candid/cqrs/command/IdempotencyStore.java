@@ -0,0 +1,36 @@
+package com.barsifedron.candid.cqrs.command;
+
+/**
+ * Where the results of completed commands are kept, by idempotency key, for longer than the memory of one process.
+ * A database table for instance: a client retrying after a restart of the server still gets the result of its first try.
+ * <p>
+ * save is called within the transaction of the command (see IdempotentCommandBusMiddleware.recordingCommandBusMiddleware):
+ * the result is stored if and only if the command commits.
+ */
+public interface IdempotencyStore {
+
+    /**
+     * @return null when no command completed with this key (or so long ago it was forgotten)
+     */
+    CompletedCommand find(String key);
+
+    /**
+     * @param fingerprint of the command, to tell a retry from another command reusing its key
+     */
+    void save(String key, int fingerprint, Object result);
+
+    class CompletedCommand {
+
+        public final int fingerprint;
+
+        /**
+         * May be null, when the command returned null.
+         */
+        public final Object result;
+
+        public CompletedCommand(int fingerprint, Object result) {
+            this.fingerprint = fingerprint;
+            this.result = result;
+        }
+    }
+}
@@ -0,0 +1,473 @@
+package com.barsifedron.candid.cqrs.command;
+
+import com.barsifedron.candid.cqrs.deadline.Deadline;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Runs a command only once per idempotency key. A retry of a command that went through gets the result of the first run,
+ * without going through validation, the database and the handler again.
+ * <p>
+ * The key of a command comes from the Keys: the ids the clients generate themselves (a loan id, a member id...).
+ * Commands of types without a key go straight through.
+ * <p>
+ * Results are remembered for a while (the time to live), a bounded number of them, oldest forgotten first.
+ * With an IdempotencyStore, also for longer and across restarts: put its recordingCommandBusMiddleware within the
+ * transaction of the commands, so a result is stored if and only if the command committed.
+ * Failures are not remembered: a failed command runs again when retried.
+ * <p>
+ * A retry arriving while the first run is still going waits for it, then gets its result. Or its exception.
+ * It waits until the deadline of its dispatch at most, if it has one (see Deadline).
+ * The commands of a batch do not wait for each other, but a key showing twice in a batch only runs once.
+ * A key of a batch already running elsewhere is waited for once the rest of the batch ran.
+ * <p>
+ * A retry must be the same command as the first run, not only have the same key: a command of the same key and a
+ * different payload (a client reusing its ids by mistake) is rejected, rather than answered with the result of another.
+ * Commands are told apart by their fingerprint, their hashCode unless told otherwise (see Keys).
+ * <p>
+ * A replayed response has the result of the first run, and no domain events: those were handled the first time.
+ * Results are handed to every caller as they are: they should not be modified.
+ */
+public class IdempotentCommandBusMiddleware implements CommandBusMiddleware {
+
+    private final Keys keys;
+    private final IdempotencyStore store;
+    private final int maximumSize;
+    private final long timeToLiveNanos;
+    private final LinkedHashMap<String, Remembered> remembered = new LinkedHashMap<>();
+    private final ConcurrentHashMap<String, Flight> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+
+    public IdempotentCommandBusMiddleware(Keys keys, int maximumSize, long timeToLive, TimeUnit unit) {
+        this(keys, null, maximumSize, timeToLive, unit);
+    }
+
+    /**
+     * @param store null to remember results in memory only
+     */
+    public IdempotentCommandBusMiddleware(Keys keys, IdempotencyStore store, int maximumSize, long timeToLive, TimeUnit unit) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("Maximum size must be at least one, not " + maximumSize);
+        }
+        this.keys = keys.copy();
+        this.store = store;
+        this.maximumSize = maximumSize;
+        this.timeToLiveNanos = unit.toNanos(timeToLive);
+    }
+
+    @Override
+    public <T> CommandResponse<T> dispatch(Command<T> command, CommandBus next) {
+        String key = keys.keyOf(command);
+        if (key == null) {
+            return next.dispatch(command);
+        }
+        int fingerprint = keys.fingerprintOf(command);
+        IdempotencyStore.CompletedCommand completed = remembered(key);
+        if (completed != null) {
+            checkSameCommand(key, fingerprint, completed.fingerprint);
+            replayed.increment();
+            return new CommandResponse<>((T) completed.result);
+        }
+        Flight flight = new Flight(fingerprint);
+        Flight running = inFlight.putIfAbsent(key, flight);
+        if (running != null) {
+            checkSameCommand(key, fingerprint, running.fingerprint);
+            replayed.increment();
+            return new CommandResponse<>((T) await(key, running));
+        }
+        CommandResponse<T> response;
+        try {
+            // The first run may have ended between the two lookups. Or before a restart
+            completed = remembered(key);
+            if (completed == null) {
+                completed = stored(key);
+            }
+            if (completed != null) {
+                checkSameCommand(key, fingerprint, completed.fingerprint);
+                replayed.increment();
+                response = new CommandResponse<>((T) completed.result);
+            } else {
+                executed.increment();
+                response = next.dispatch(command);
+                remember(key, fingerprint, response.result);
+            }
+        } catch (RuntimeException | Error exception) {
+            inFlight.remove(key, flight);
+            flight.result.completeExceptionally(exception);
+            throw exception;
+        }
+        inFlight.remove(key, flight);
+        flight.result.complete(response.result);
+        return response;
+    }
+
+    @Override
+    public List<BatchedCommandResponse<?>> dispatchAll(List<? extends Command<?>> commands, CommandBus next) {
+        BatchedCommandResponse<?>[] responses = new BatchedCommandResponse<?>[commands.size()];
+        Map<String, Integer> firstWithKey = new HashMap<>();
+        Map<Integer, Integer> sameKeyAs = new HashMap<>();
+        // Running elsewhere (a dispatch, another batch): waited for once the batch ran, never before. Two batches
+        // waiting on each other's keys would wait forever
+        Map<Integer, Flight> runningElsewhere = new HashMap<>();
+        List<Command<?>> toRun = new ArrayList<>();
+        List<Integer> toRunPositions = new ArrayList<>();
+        // Of the commands to run, by position in toRun
+        Map<Integer, Flight> flights = new HashMap<>();
+
+        try {
+            for (int i = 0; i < commands.size(); i++) {
+                Command<?> command = commands.get(i);
+                String key = keys.keyOf(command);
+                if (key != null) {
+                    int fingerprint = keys.fingerprintOf(command);
+                    Integer first = firstWithKey.putIfAbsent(key, i);
+                    if (first != null) {
+                        if (fingerprint != keys.fingerprintOf(commands.get(first))) {
+                            responses[i] = BatchedCommandResponse.failure(command, new IdempotencyKeyReusedException(key));
+                        } else {
+                            sameKeyAs.put(i, first);
+                        }
+                        continue;
+                    }
+                    IdempotencyStore.CompletedCommand completed = remembered(key);
+                    if (completed != null) {
+                        responses[i] = replayed(key, command, fingerprint, completed);
+                        continue;
+                    }
+                    Flight flight = new Flight(fingerprint);
+                    Flight running = inFlight.putIfAbsent(key, flight);
+                    if (running != null) {
+                        if (fingerprint != running.fingerprint) {
+                            responses[i] = BatchedCommandResponse.failure(command, new IdempotencyKeyReusedException(key));
+                        } else {
+                            runningElsewhere.put(i, running);
+                        }
+                        continue;
+                    }
+                    // The first run may have ended between the two lookups. Or before a restart
+                    completed = remembered(key);
+                    if (completed == null) {
+                        completed = stored(key);
+                    }
+                    if (completed != null) {
+                        responses[i] = replayed(key, command, fingerprint, completed);
+                        inFlight.remove(key, flight);
+                        if (responses[i].succeeded()) {
+                            flight.result.complete(completed.result);
+                        } else {
+                            flight.result.completeExceptionally(responses[i].failure);
+                        }
+                        continue;
+                    }
+                    executed.increment();
+                    flights.put(toRun.size(), flight);
+                }
+                toRun.add(command);
+                toRunPositions.add(i);
+            }
+
+            if (!toRun.isEmpty()) {
+                List<BatchedCommandResponse<?>> ran = next.dispatchAll(toRun);
+                for (int j = 0; j < ran.size(); j++) {
+                    BatchedCommandResponse<?> response = ran.get(j);
+                    responses[toRunPositions.get(j)] = response;
+                    Flight flight = flights.remove(j);
+                    if (flight == null) {
+                        continue;
+                    }
+                    String key = keys.keyOf(response.command);
+                    if (response.succeeded()) {
+                        remember(key, flight.fingerprint, response.response.result);
+                    }
+                    inFlight.remove(key, flight);
+                    if (response.succeeded()) {
+                        flight.result.complete(response.response.result);
+                    } else {
+                        flight.result.completeExceptionally(response.failure);
+                    }
+                }
+            }
+        } catch (RuntimeException | Error exception) {
+            flights.forEach((j, flight) -> {
+                inFlight.remove(keys.keyOf(toRun.get(j)), flight);
+                flight.result.completeExceptionally(exception);
+            });
+            throw exception;
+        }
+
+        runningElsewhere.forEach((position, running) -> {
+            replayed.increment();
+            Command<?> command = commands.get(position);
+            try {
+                responses[position] = replayed(command, await(keys.keyOf(command), running));
+            } catch (RuntimeException failure) {
+                responses[position] = BatchedCommandResponse.failure(command, failure);
+            }
+        });
+        sameKeyAs.forEach((position, first) -> {
+            replayed.increment();
+            responses[position] = sameOutcomeAs(commands.get(position), responses[first]);
+        });
+        List<BatchedCommandResponse<?>> result = new ArrayList<>(responses.length);
+        Collections.addAll(result, responses);
+        return result;
+    }
+
+    /**
+     * Stores the result of every command with a key that went through. Of every command of a batch that went through, too.
+     * Does nothing without a store.
+     * <p>
+     * Put it within the transaction of the commands. Two runs of the same key racing on two servers then both try to
+     * store their result: the second fails on the unique key of the store, and its transaction is rolled back.
+     */
+    public CommandBusMiddleware recordingCommandBusMiddleware() {
+        if (store == null) {
+            return CommandBusMiddleware.neutral();
+        }
+        return new CommandBusMiddleware() {
+            @Override
+            public <T> CommandResponse<T> dispatch(Command<T> command, CommandBus next) {
+                CommandResponse<T> response = next.dispatch(command);
+                String key = keys.keyOf(command);
+                if (key != null) {
+                    store.save(key, keys.fingerprintOf(command), response.result);
+                }
+                return response;
+            }
+
+            @Override
+            public List<BatchedCommandResponse<?>> dispatchAll(List<? extends Command<?>> commands, CommandBus next) {
+                List<BatchedCommandResponse<?>> responses = next.dispatchAll(commands);
+                for (BatchedCommandResponse<?> response : responses) {
+                    String key = keys.keyOf(response.command);
+                    if (key != null && response.succeeded()) {
+                        store.save(key, keys.fingerprintOf(response.command), response.response.result);
+                    }
+                }
+                return responses;
+            }
+        };
+    }
+
+    /**
+     * Commands that actually ran.
+     */
+    public long executed() {
+        return executed.sum();
+    }
+
+    /**
+     * Retries answered with the result of the first run, instead of running again.
+     */
+    public long replayed() {
+        return replayed.sum();
+    }
+
+    public int inFlight() {
+        return inFlight.size();
+    }
+
+    /**
+     * How many results are remembered in memory.
+     */
+    public synchronized int size() {
+        return remembered.size();
+    }
+
+    private synchronized IdempotencyStore.CompletedCommand remembered(String key) {
+        Remembered entry = remembered.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (System.nanoTime() - entry.expiresAt >= 0) {
+            remembered.remove(key);
+            return null;
+        }
+        return entry.completed;
+    }
+
+    private synchronized void remember(String key, int fingerprint, Object result) {
+        long now = System.nanoTime();
+        remembered.remove(key);
+        remembered.put(key, new Remembered(new IdempotencyStore.CompletedCommand(fingerprint, result), now + timeToLiveNanos));
+        // In order of insertion, which is also the order of expiration
+        Iterator<Remembered> eldest = remembered.values().iterator();
+        while (eldest.hasNext()) {
+            Remembered entry = eldest.next();
+            if (remembered.size() <= maximumSize && now - entry.expiresAt < 0) {
+                break;
+            }
+            eldest.remove();
+        }
+    }
+
+    private IdempotencyStore.CompletedCommand stored(String key) {
+        if (store == null) {
+            return null;
+        }
+        IdempotencyStore.CompletedCommand completed = store.find(key);
+        if (completed != null) {
+            remember(key, completed.fingerprint, completed.result);
+        }
+        return completed;
+    }
+
+    private void checkSameCommand(String key, int fingerprint, int firstFingerprint) {
+        if (fingerprint != firstFingerprint) {
+            throw new IdempotencyKeyReusedException(key);
+        }
+    }
+
+    private <T> BatchedCommandResponse<T> replayed(String key, Command<T> command, int fingerprint, IdempotencyStore.CompletedCommand completed) {
+        try {
+            checkSameCommand(key, fingerprint, completed.fingerprint);
+        } catch (IdempotencyKeyReusedException exception) {
+            return BatchedCommandResponse.failure(command, exception);
+        }
+        replayed.increment();
+        return replayed(command, completed.result);
+    }
+
+    private static <T> BatchedCommandResponse<T> replayed(Command<T> command, Object result) {
+        return BatchedCommandResponse.success(command, new CommandResponse<>((T) result));
+    }
+
+    private static <T> BatchedCommandResponse<T> sameOutcomeAs(Command<T> command, BatchedCommandResponse<?> first) {
+        return first.succeeded()
+                ? replayed(command, first.response.result)
+                : BatchedCommandResponse.failure(command, first.failure);
+    }
+
+    /**
+     * Until the deadline of the dispatch, if it has one. Waiting longer would be for a caller who gave up.
+     */
+    private static Object await(String key, Flight running) {
+        Deadline deadline = Deadline.current();
+        try {
+            return deadline == null
+                    ? running.result.get()
+                    : running.result.get(deadline.remaining(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException exception) {
+            throw new Deadline.DeadlineExceededException("Waited for the first run of " + key + " past the deadline");
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException("Interrupted while waiting for the first run of " + key, exception);
+        } catch (ExecutionException exception) {
+            Throwable cause = exception.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new CompletionException(cause);
+        }
+    }
+
+    /**
+     * A first run going on, and the fingerprint of its command.
+     */
+    private static final class Flight {
+
+        private final int fingerprint;
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+
+        private Flight(int fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    private static final class Remembered {
+
+        private final IdempotencyStore.CompletedCommand completed;
+        private final long expiresAt;
+
+        private Remembered(IdempotencyStore.CompletedCommand completed, long expiresAt) {
+            this.completed = completed;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * The idempotency key of each type of command, and its fingerprint. The type of the command is part of the key:
+     * two commands of different types may use the same id.
+     */
+    public static class Keys {
+
+        private final Map<Class<?>, Function<Command<?>, ?>> extractors;
+        private final Map<Class<?>, ToIntFunction<Command<?>>> fingerprints;
+
+        public Keys() {
+            this(new HashMap<>(), new HashMap<>());
+        }
+
+        private Keys(Map<Class<?>, Function<Command<?>, ?>> extractors, Map<Class<?>, ToIntFunction<Command<?>>> fingerprints) {
+            this.extractors = extractors;
+            this.fingerprints = fingerprints;
+        }
+
+        /**
+         * The fingerprint of these commands is their hashCode: they need equals and hashCode on their payload,
+         * or no retry would ever be the same command. With an IdempotencyStore, a hashCode that holds across restarts
+         * too (no enum fields, for one: theirs changes with every start).
+         *
+         * @param keyExtractor a command for which it returns null has no key: it always runs
+         */
+        public <C extends Command<?>> Keys add(Class<C> commandClass, Function<? super C, ?> keyExtractor) {
+            return add(commandClass, keyExtractor, Object::hashCode);
+        }
+
+        /**
+         * @param fingerprint the same for two commands with the same payload, different otherwise (as often as possible)
+         */
+        public <C extends Command<?>> Keys add(Class<C> commandClass, Function<? super C, ?> keyExtractor, ToIntFunction<? super C> fingerprint) {
+            extractors.put(commandClass, command -> keyExtractor.apply(commandClass.cast(command)));
+            fingerprints.put(commandClass, command -> fingerprint.applyAsInt(commandClass.cast(command)));
+            return this;
+        }
+
+        private String keyOf(Command<?> command) {
+            Function<Command<?>, ?> extractor = extractors.get(command.getClass());
+            if (extractor == null) {
+                return null;
+            }
+            Object key = extractor.apply(command);
+            return key == null ? null : command.getClass().getName() + ":" + key;
+        }
+
+        private int fingerprintOf(Command<?> command) {
+            return fingerprints.get(command.getClass()).applyAsInt(command);
+        }
+
+        private Keys copy() {
+            return new Keys(
+                    Collections.unmodifiableMap(new HashMap<>(extractors)),
+                    Collections.unmodifiableMap(new HashMap<>(fingerprints)));
+        }
+    }
+
+    /**
+     * A command with the key of another one, with a different payload.
+     */
+    public static class IdempotencyKeyReusedException extends RuntimeException {
+        public IdempotencyKeyReusedException(String key) {
+            super("Key " + key + " was used already, by a different command. Use a new key, or retry the same command");
+        }
+    }
+}
@@ -2,9 +2,13 @@ package com.barsifedron.candid.cqrs.command;
 
 /**
  * For when a command returns "nothing"
+ * <p>
+ * There is nothing to tell two of them apart: use the shared NO_RESULT rather than a new one.
  */
 public class NoResult {
 
+    public static final NoResult NO_RESULT = new NoResult();
+
     public NoResult() {
     }
 
@@ -0,0 +1,348 @@
+package com.barsifedron.candid.cqrs.command;
+
+import com.barsifedron.candid.cqrs.deadline.Deadline;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Runs commands on a fixed number of single threaded lanes, chosen from a key found in the command.
+ * <p>
+ * Typically the key is the id of the aggregate the command changes (an item id, an account number...).
+ * All the commands of one aggregate go to the same lane and are handled one after the other, in the order they came in.
+ * Commands of different aggregates land on different lanes and run in parallel. No need for the database to lock
+ * everything to keep two loans of the same item from racing.
+ * <p>
+ * Commands for which no key was registered are dispatched straight away, on the calling thread.
+ * <p>
+ * A batch (dispatchAll) is split by lane: each lane runs its share as one batch of the decorated bus
+ * (one transaction, if that bus does so), in line with the other commands of the lane.
+ * The commands without a key run as one more batch, on the calling thread. So a batch is only as atomic as its slices.
+ * <p>
+ * Lanes have bounded queues. When the queue of a lane is full, the caller waits up to the enqueue timeout
+ * for some room, then the command is rejected with a CommandRejectedException. Better to say no than to pile up.
+ * <p>
+ * The decorated bus runs on the lane threads. Put this bus in front of your transactional middleware, not behind it.
+ * Wrap it in a BlockingCommandBus when the caller wants to wait for the response.
+ * <p>
+ * A command dispatched from a lane thread to its own lane (a handler dispatching a command for the same aggregate)
+ * runs right away on that thread, instead of waiting in line behind the command that dispatched it.
+ * Waiting, from a lane, for a command sent to another lane is asking for a deadlock. Don't.
+ */
+public class PartitionedCommandBus implements AsyncCommandBus {
+
+    private final CommandBus bus;
+    private final Keys keys;
+    private final long enqueueTimeoutNanos;
+    private final Lane[] lanes;
+
+    public PartitionedCommandBus(
+            CommandBus bus,
+            Keys keys,
+            int numberOfLanes,
+            int queueCapacity,
+            long enqueueTimeout,
+            TimeUnit unit) {
+        if (numberOfLanes < 1) {
+            throw new IllegalArgumentException("At least one lane is needed, not " + numberOfLanes);
+        }
+        this.bus = bus;
+        this.keys = keys.copy();
+        this.enqueueTimeoutNanos = unit.toNanos(enqueueTimeout);
+        this.lanes = new Lane[numberOfLanes];
+        for (int i = 0; i < numberOfLanes; i++) {
+            lanes[i] = new Lane(i, queueCapacity);
+        }
+    }
+
+    @Override
+    public <T> CompletableFuture<CommandResponse<T>> dispatch(Command<T> command) {
+        Object key = keys.keyOf(command);
+        if (key == null) {
+            return runNow(command);
+        }
+        Lane lane = lanes[laneIndex(key)];
+        if (Thread.currentThread() == lane.thread) {
+            return runNow(command);
+        }
+        Task<CommandResponse<T>> task = new Task<>(() -> bus.dispatch(command), Deadline.current());
+        lane.enqueue(task);
+        return task.future;
+    }
+
+    @Override
+    public CompletableFuture<List<BatchedCommandResponse<?>>> dispatchAll(List<? extends Command<?>> commands) {
+        // The positions of the commands of each lane in the batch. -1 for those without a key.
+        Map<Integer, List<Integer>> slices = new LinkedHashMap<>();
+        for (int i = 0; i < commands.size(); i++) {
+            Object key = keys.keyOf(commands.get(i));
+            slices.computeIfAbsent(key == null ? -1 : laneIndex(key), lane -> new ArrayList<>()).add(i);
+        }
+        BatchedCommandResponse<?>[] responses = new BatchedCommandResponse<?>[commands.size()];
+        List<CompletableFuture<?>> done = new ArrayList<>();
+        // Into the lanes first, so they get going while the commands without a key run here
+        List<Integer> withoutKey = slices.remove(-1);
+        slices.forEach((laneIndex, positions) -> done.add(dispatchSlice(lanes[laneIndex], commands, positions, responses)));
+        if (withoutKey != null) {
+            done.add(dispatchSlice(null, commands, withoutKey, responses));
+        }
+        return CompletableFuture
+                .allOf(done.toArray(new CompletableFuture[0]))
+                .thenApply(all -> Arrays.asList(responses));
+    }
+
+    /**
+     * Dispatches the commands at these positions as one batch, on this lane (or right away when null),
+     * and puts their responses at the same positions. A slice that can not be run fails its commands, not the batch.
+     */
+    private CompletableFuture<?> dispatchSlice(Lane lane, List<? extends Command<?>> commands, List<Integer> positions, BatchedCommandResponse<?>[] responses) {
+        List<Command<?>> slice = new ArrayList<>(positions.size());
+        positions.forEach(position -> slice.add(commands.get(position)));
+        CompletableFuture<List<BatchedCommandResponse<?>>> future;
+        if (lane == null || Thread.currentThread() == lane.thread) {
+            future = runNow(() -> bus.dispatchAll(slice));
+        } else {
+            Task<List<BatchedCommandResponse<?>>> task = new Task<>(() -> bus.dispatchAll(slice), Deadline.current());
+            try {
+                lane.enqueue(task);
+                future = task.future;
+            } catch (CommandRejectedException rejected) {
+                future = new CompletableFuture<>();
+                future.completeExceptionally(rejected);
+            }
+        }
+        return future.handle((sliceResponses, throwable) -> {
+            for (int i = 0; i < positions.size(); i++) {
+                responses[positions.get(i)] = throwable == null
+                        ? sliceResponses.get(i)
+                        : BatchedCommandResponse.failure(slice.get(i), BatchedCommandResponse.asRuntimeException(throwable));
+            }
+            return null;
+        });
+    }
+
+    private <T> CompletableFuture<CommandResponse<T>> runNow(Command<T> command) {
+        return runNow(() -> bus.dispatch(command));
+    }
+
+    private static <R> CompletableFuture<R> runNow(Supplier<R> work) {
+        CompletableFuture<R> future = new CompletableFuture<>();
+        try {
+            future.complete(work.get());
+        } catch (Throwable throwable) {
+            future.completeExceptionally(throwable);
+        }
+        return future;
+    }
+
+    private int laneIndex(Object key) {
+        int hash = key.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), lanes.length);
+    }
+
+    /**
+     * One snapshot per lane, in lane order.
+     */
+    public List<LaneMetrics> laneMetrics() {
+        List<LaneMetrics> metrics = new ArrayList<>(lanes.length);
+        for (Lane lane : lanes) {
+            metrics.add(lane.metrics());
+        }
+        return metrics;
+    }
+
+    /**
+     * Stops accepting commands. What is already queued is still handled, then the lane threads stop.
+     * <p>
+     * Interrupting a lane thread stops it straight away: the commands still queued are rejected,
+     * their futures completed with a CommandRejectedException.
+     */
+    public void shutdown() {
+        for (Lane lane : lanes) {
+            lane.running = false;
+        }
+    }
+
+    /**
+     * Waits for the lanes to be done with their queues, after a shutdown.
+     *
+     * @return false if some lane was still busy when the timeout elapsed
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Lane lane : lanes) {
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remainingMillis <= 0) {
+                return !lane.thread.isAlive();
+            }
+            lane.thread.join(remainingMillis);
+            if (lane.thread.isAlive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A command, or the slice of a batch, waiting in a lane
+     */
+    private static final class Task<R> {
+
+        private final Supplier<R> work;
+        private final Deadline deadline;
+        private final CompletableFuture<R> future = new CompletableFuture<>();
+
+        private Task(Supplier<R> work, Deadline deadline) {
+            this.work = work;
+            this.deadline = deadline;
+        }
+
+        private void run() {
+            try {
+                future.complete(Deadline.runWithin(deadline, work));
+            } catch (Throwable throwable) {
+                future.completeExceptionally(throwable);
+            }
+        }
+    }
+
+    private final class Lane {
+
+        private final int index;
+        private final BlockingQueue<Task<?>> queue;
+        private final Thread thread;
+        private final AtomicLong processed = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private volatile boolean running = true;
+
+        private Lane(int index, int queueCapacity) {
+            this.index = index;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.thread = new Thread(this::work, "command-lane-" + index);
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+
+        private void enqueue(Task<?> task) {
+            if (!running) {
+                throw rejection("is shut down");
+            }
+            boolean accepted;
+            try {
+                accepted = queue.offer(task, enqueueTimeoutNanos, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                accepted = false;
+            }
+            if (!accepted) {
+                throw rejection("is full");
+            }
+            // Shut down while we were offering: the lane may be gone already. Take the task back if it is still there.
+            // Otherwise the lane has it, and either runs it or rejects it.
+            if (!running && queue.remove(task)) {
+                throw rejection("is shut down");
+            }
+        }
+
+        private void work() {
+            try {
+                while (running || !queue.isEmpty()) {
+                    Task<?> task = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (task != null) {
+                        task.run();
+                        processed.incrementAndGet();
+                    }
+                }
+            } catch (InterruptedException e) {
+                running = false;
+            }
+            for (Task<?> task = queue.poll(); task != null; task = queue.poll()) {
+                task.future.completeExceptionally(rejection("was stopped"));
+            }
+        }
+
+        private CommandRejectedException rejection(String reason) {
+            rejected.incrementAndGet();
+            return new CommandRejectedException("Command bus lane " + index + " " + reason);
+        }
+
+        private LaneMetrics metrics() {
+            return new LaneMetrics(index, queue.size(), queue.remainingCapacity(), processed.get(), rejected.get());
+        }
+    }
+
+    /**
+     * Where to find the partition key of each type of command.
+     * Only the exact class of the command is looked at.
+     */
+    public static class Keys {
+
+        private final Map<Class<?>, Function<Command<?>, ?>> extractors;
+
+        public Keys() {
+            this(new HashMap<>());
+        }
+
+        private Keys(Map<Class<?>, Function<Command<?>, ?>> extractors) {
+            this.extractors = extractors;
+        }
+
+        public <C extends Command<?>> Keys add(Class<C> commandClass, Function<? super C, ?> keyExtractor) {
+            extractors.put(commandClass, command -> keyExtractor.apply(commandClass.cast(command)));
+            return this;
+        }
+
+        private Object keyOf(Command<?> command) {
+            Function<Command<?>, ?> extractor = extractors.get(command.getClass());
+            return extractor == null ? null : extractor.apply(command);
+        }
+
+        private Keys copy() {
+            return new Keys(Collections.unmodifiableMap(new HashMap<>(extractors)));
+        }
+    }
+
+    public static class LaneMetrics {
+
+        public final int lane;
+        public final int queueDepth;
+        public final int remainingCapacity;
+        public final long processed;
+        public final long rejected;
+
+        public LaneMetrics(int lane, int queueDepth, int remainingCapacity, long processed, long rejected) {
+            this.lane = lane;
+            this.queueDepth = queueDepth;
+            this.remainingCapacity = remainingCapacity;
+            this.processed = processed;
+            this.rejected = rejected;
+        }
+
+        @Override
+        public String toString() {
+            return "lane " + lane
+                    + " : depth=" + queueDepth
+                    + ", remainingCapacity=" + remainingCapacity
+                    + ", processed=" + processed
+                    + ", rejected=" + rejected;
+        }
+    }
+
+    public static class CommandRejectedException extends RuntimeException {
+        public CommandRejectedException(String message) {
+            super(message);
+        }
+    }
+}
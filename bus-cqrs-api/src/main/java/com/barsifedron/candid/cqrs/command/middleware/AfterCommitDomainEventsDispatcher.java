@@ -0,0 +1,90 @@
+package com.barsifedron.candid.cqrs.command.middleware;
+
+import com.barsifedron.candid.cqrs.command.BatchedCommandResponse;
+import com.barsifedron.candid.cqrs.command.Command;
+import com.barsifedron.candid.cqrs.command.CommandBus;
+import com.barsifedron.candid.cqrs.command.CommandBusMiddleware;
+import com.barsifedron.candid.cqrs.command.CommandResponse;
+import com.barsifedron.candid.cqrs.domainevent.AfterCommitDomainEventQueue;
+import com.barsifedron.candid.cqrs.domainevent.DomainEvent;
+import com.barsifedron.candid.cqrs.domainevent.DomainEventBus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * The command side of the AfterCommitDomainEventBusMiddleware, when there is no transaction manager to ask.
+ * <p>
+ * Put it in front of the middleware running the transaction: it then sees the command come back once the transaction
+ * committed, or fail. Events queued meanwhile (on this thread) are then handed to the executor, one by one, for the
+ * AFTER_COMMIT handlers. Or dropped, when the command failed.
+ * <p>
+ * A command dispatched by a handler of another command does not flush anything on its own: the outermost one does.
+ * For a batch, the events are only dispatched when no command of the batch failed.
+ * (A batch that is not all or nothing should not use this: events of the commands that went through would be dropped.)
+ * <p>
+ * Events queued outside of any command have nothing to wait for. They go to the executor straight away.
+ * What happens when an AFTER_COMMIT handler fails is up to the executor. The command is long gone.
+ */
+public class AfterCommitDomainEventsDispatcher implements CommandBusMiddleware, AfterCommitDomainEventQueue {
+
+    private final DomainEventBus afterCommitBus;
+    private final Executor executor;
+    private final ThreadLocal<List<DomainEvent>> queued = new ThreadLocal<>();
+
+    public AfterCommitDomainEventsDispatcher(DomainEventBus afterCommitBus, Executor executor) {
+        this.afterCommitBus = afterCommitBus;
+        this.executor = executor;
+    }
+
+    @Override
+    public <T> CommandResponse<T> dispatch(Command<T> command, CommandBus next) {
+        if (queued.get() != null) {
+            return next.dispatch(command);
+        }
+        List<DomainEvent> events = new ArrayList<>();
+        queued.set(events);
+        try {
+            CommandResponse<T> response = next.dispatch(command);
+            queued.remove();
+            events.forEach(this::dispatchLater);
+            return response;
+        } finally {
+            queued.remove();
+        }
+    }
+
+    @Override
+    public List<BatchedCommandResponse<?>> dispatchAll(List<? extends Command<?>> commands, CommandBus next) {
+        if (queued.get() != null) {
+            return next.dispatchAll(commands);
+        }
+        List<DomainEvent> events = new ArrayList<>();
+        queued.set(events);
+        try {
+            List<BatchedCommandResponse<?>> responses = next.dispatchAll(commands);
+            queued.remove();
+            if (responses.stream().allMatch(BatchedCommandResponse::succeeded)) {
+                events.forEach(this::dispatchLater);
+            }
+            return responses;
+        } finally {
+            queued.remove();
+        }
+    }
+
+    @Override
+    public void enqueue(DomainEvent event) {
+        List<DomainEvent> events = queued.get();
+        if (events == null) {
+            dispatchLater(event);
+        } else {
+            events.add(event);
+        }
+    }
+
+    private void dispatchLater(DomainEvent event) {
+        executor.execute(() -> afterCommitBus.dispatch(event));
+    }
+}
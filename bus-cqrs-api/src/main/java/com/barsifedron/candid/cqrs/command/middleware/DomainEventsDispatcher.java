@@ -1,11 +1,14 @@
 package com.barsifedron.candid.cqrs.command.middleware;
 
+import com.barsifedron.candid.cqrs.command.BatchedCommandResponse;
 import com.barsifedron.candid.cqrs.command.Command;
 import com.barsifedron.candid.cqrs.command.CommandBus;
 import com.barsifedron.candid.cqrs.command.CommandBusMiddleware;
 import com.barsifedron.candid.cqrs.command.CommandResponse;
 import com.barsifedron.candid.cqrs.domainevent.DomainEventBus;
 
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Your command handlers may return events (For example UserPhoneNumberUpdated).
@@ -28,6 +31,10 @@ import com.barsifedron.candid.cqrs.domainevent.DomainEventBus;
  * <li>Projections or other things affecting the database (Maybe. On a per use case basis)</li>
  * <li>Your "intent" to communicate changes to the outside world</li>
  * </ul>
+ * <p>
+ * For a batch, the events are dispatched once all the commands were handled, command after command.
+ * Only the events of the commands that succeeded are dispatched. If an event handler fails,
+ * the command that produced the event is marked as failed.
  */
 public class DomainEventsDispatcher implements CommandBusMiddleware {
 
@@ -43,4 +50,21 @@ public class DomainEventsDispatcher implements CommandBusMiddleware {
         response.domainEvents.forEach(eventBus::dispatch);
         return response;
     }
+
+    @Override
+    public List<BatchedCommandResponse<?>> dispatchAll(List<? extends Command<?>> commands, CommandBus next) {
+        List<BatchedCommandResponse<?>> responses = new ArrayList<>(next.dispatchAll(commands));
+        for (int i = 0; i < responses.size(); i++) {
+            BatchedCommandResponse<?> response = responses.get(i);
+            if (!response.succeeded()) {
+                continue;
+            }
+            try {
+                response.response.domainEvents.forEach(eventBus::dispatch);
+            } catch (RuntimeException exception) {
+                responses.set(i, response.failedWith(exception));
+            }
+        }
+        return responses;
+    }
 }
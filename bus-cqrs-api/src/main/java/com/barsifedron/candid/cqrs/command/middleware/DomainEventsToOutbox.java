@@ -0,0 +1,66 @@
+package com.barsifedron.candid.cqrs.command.middleware;
+
+import com.barsifedron.candid.cqrs.command.BatchedCommandResponse;
+import com.barsifedron.candid.cqrs.command.Command;
+import com.barsifedron.candid.cqrs.command.CommandBus;
+import com.barsifedron.candid.cqrs.command.CommandBusMiddleware;
+import com.barsifedron.candid.cqrs.command.CommandResponse;
+import com.barsifedron.candid.cqrs.domainevent.DomainEvent;
+import com.barsifedron.candid.cqrs.domainevent.DomainEventOutbox;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stands where the DomainEventsDispatcher would: within the command transaction.
+ * But instead of running the event handlers there and then, the events are written to an outbox.
+ * <p>
+ * The command transaction only has to hold its locks for the time of one insert, not for the time of every handler.
+ * The events are stored if and only if the command commits. A DomainEventOutboxRelay dispatches them afterwards.
+ * <p>
+ * Use one or the other, not both. Handlers run by the relay do not share the command transaction:
+ * anything they write is written in the transaction of the relay.
+ * <p>
+ * For a batch, the events of all the commands that succeeded are added to the outbox in one go.
+ */
+public class DomainEventsToOutbox implements CommandBusMiddleware {
+
+    private final DomainEventOutbox outbox;
+
+    public DomainEventsToOutbox(DomainEventOutbox outbox) {
+        this.outbox = outbox;
+    }
+
+    @Override
+    public <T> CommandResponse<T> dispatch(Command<T> command, CommandBus next) {
+        CommandResponse<T> response = next.dispatch(command);
+        if (!response.domainEvents.isEmpty()) {
+            outbox.add(response.domainEvents);
+        }
+        return response;
+    }
+
+    @Override
+    public List<BatchedCommandResponse<?>> dispatchAll(List<? extends Command<?>> commands, CommandBus next) {
+        List<BatchedCommandResponse<?>> responses = new ArrayList<>(next.dispatchAll(commands));
+        List<DomainEvent> events = new ArrayList<>();
+        for (BatchedCommandResponse<?> response : responses) {
+            if (response.succeeded()) {
+                events.addAll(response.response.domainEvents);
+            }
+        }
+        if (events.isEmpty()) {
+            return responses;
+        }
+        try {
+            outbox.add(events);
+        } catch (RuntimeException exception) {
+            for (int i = 0; i < responses.size(); i++) {
+                if (responses.get(i).succeeded()) {
+                    responses.set(i, responses.get(i).failedWith(exception));
+                }
+            }
+        }
+        return responses;
+    }
+}
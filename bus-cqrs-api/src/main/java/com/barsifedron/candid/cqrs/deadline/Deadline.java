@@ -0,0 +1,95 @@
+package com.barsifedron.candid.cqrs.deadline;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * When the one who asked stops waiting. Past that point, whatever work is left is wasted: better not to start it,
+ * and to stop what runs, the queries at the database first.
+ * <p>
+ * The deadline of the current dispatch is kept by the thread running it: open a scope with it, messages dispatched
+ * within see it through Deadline.current(). Buses handing messages over to other threads (LanedQueryBus...) take it along.
+ * A scope opened within another one can only bring the deadline closer, never push it back.
+ */
+public final class Deadline {
+
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    private final long deadlineNanos;
+
+    private Deadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    public static Deadline after(long duration, TimeUnit unit) {
+        return new Deadline(System.nanoTime() + unit.toNanos(duration));
+    }
+
+    /**
+     * The deadline of the dispatch running on this thread. Null when there is none.
+     */
+    public static Deadline current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Makes this deadline (or the current one, when it comes first) the current one, until the scope is closed.
+     * Opening a scope with a null deadline changes nothing.
+     */
+    public static Scope open(Deadline deadline) {
+        Deadline previous = CURRENT.get();
+        if (deadline != null && (previous == null || deadline.deadlineNanos - previous.deadlineNanos < 0)) {
+            CURRENT.set(deadline);
+        }
+        return new Scope(previous);
+    }
+
+    public static <T> T runWithin(Deadline deadline, Supplier<T> work) {
+        try (Scope scope = open(deadline)) {
+            return work.get();
+        }
+    }
+
+    /**
+     * Negative once past.
+     */
+    public long remaining(TimeUnit unit) {
+        return unit.convert(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    public boolean isExpired() {
+        return deadlineNanos - System.nanoTime() <= 0;
+    }
+
+    @Override
+    public String toString() {
+        return "Deadline in " + remaining(TimeUnit.MILLISECONDS) + " ms";
+    }
+
+    /**
+     * Puts the deadline from before back in place when closed.
+     */
+    public static final class Scope implements AutoCloseable {
+
+        private final Deadline previous;
+
+        private Scope(Deadline previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    public static class DeadlineExceededException extends RuntimeException {
+        public DeadlineExceededException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.barsifedron.candid.cqrs.domainevent;
+
+/**
+ * Splits the dispatch of an event in two phases.
+ * <p>
+ * The decorated bus runs the IN_TRANSACTION handlers, straight away, within the command transaction.
+ * The event is then queued for the AFTER_COMMIT handlers, which only run once the transaction committed.
+ * <p>
+ * Build the decorated bus with DomainEventPhase.IN_TRANSACTION.select(handlers),
+ * and the bus of the queue with DomainEventPhase.AFTER_COMMIT.select(handlers). Otherwise handlers run twice.
+ */
+public class AfterCommitDomainEventBusMiddleware implements DomainEventBusMiddleware {
+
+    private final AfterCommitDomainEventQueue queue;
+
+    public AfterCommitDomainEventBusMiddleware(AfterCommitDomainEventQueue queue) {
+        this.queue = queue;
+    }
+
+    @Override
+    public void dispatch(DomainEvent event, DomainEventBus next) {
+        next.dispatch(event);
+        queue.enqueue(event);
+    }
+}
@@ -0,0 +1,12 @@
+package com.barsifedron.candid.cqrs.domainevent;
+
+/**
+ * A marker for the handlers that should only run once the command transaction committed.
+ * Notifications, typically: nothing the command depends on, nothing worth holding its locks for.
+ * <p>
+ * See DomainEventPhase and the AfterCommitDomainEventBusMiddleware.
+ * These handlers do not share the transaction of the command: when they write to the database, they need one of their own.
+ * They are not run at all when the command transaction rolls back.
+ */
+public interface AfterCommitDomainEventHandler {
+}
@@ -0,0 +1,14 @@
+package com.barsifedron.candid.cqrs.domainevent;
+
+/**
+ * Holds the events for the AFTER_COMMIT handlers until the current transaction commits, then has them dispatched.
+ * Events queued within a transaction that rolls back are dropped.
+ * <p>
+ * See the AfterCommitDomainEventsDispatcher command middleware for a queue scoped to the dispatch of a command.
+ * A transaction manager usually knows better: hook the queue on its synchronizations when there is one around.
+ */
+public interface AfterCommitDomainEventQueue {
+
+    void enqueue(DomainEvent event);
+
+}
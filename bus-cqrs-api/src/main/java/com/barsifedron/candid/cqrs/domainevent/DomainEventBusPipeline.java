@@ -0,0 +1,67 @@
+package com.barsifedron.candid.cqrs.domainevent;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A chain of middleware, put together once and for all in front of a bus.
+ * <p>
+ * Same ordering as compositeOf(...).decorate(bus), without decorating every hop again on each dispatch.
+ * The first middleware of the list is the outermost one.
+ * See CommandBusPipeline for the longer story.
+ */
+public final class DomainEventBusPipeline implements DomainEventBus {
+
+    private final DomainEventBusMiddleware[] middlewares;
+
+    /**
+     * stages[i] goes through middlewares[i] and onwards. The last one is the terminal bus.
+     */
+    private final DomainEventBus[] stages;
+
+    private DomainEventBusPipeline(DomainEventBusMiddleware[] middlewares, DomainEventBus terminalBus) {
+        this.middlewares = middlewares;
+        this.stages = new DomainEventBus[middlewares.length + 1];
+        for (int i = 0; i < middlewares.length; i++) {
+            stages[i] = new Stage(i);
+        }
+        stages[middlewares.length] = terminalBus;
+    }
+
+    public static DomainEventBusPipeline compile(DomainEventBus terminalBus, DomainEventBusMiddleware... middlewares) {
+        return compile(terminalBus, Arrays.asList(middlewares));
+    }
+
+    public static DomainEventBusPipeline compile(DomainEventBus terminalBus, List<DomainEventBusMiddleware> middlewares) {
+        if (terminalBus == null) {
+            throw new IllegalArgumentException("A pipeline needs a bus to end with");
+        }
+        if (middlewares.contains(null)) {
+            throw new IllegalArgumentException("Can not compile a pipeline with a null middleware");
+        }
+        return new DomainEventBusPipeline(middlewares.toArray(new DomainEventBusMiddleware[0]), terminalBus);
+    }
+
+    @Override
+    public void dispatch(DomainEvent event) {
+        stages[0].dispatch(event);
+    }
+
+    public int depth() {
+        return middlewares.length;
+    }
+
+    private final class Stage implements DomainEventBus {
+
+        private final int index;
+
+        private Stage(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public void dispatch(DomainEvent event) {
+            middlewares[index].dispatch(event, stages[index + 1]);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.barsifedron.candid.cqrs.domainevent;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * The handlers of each class of event, for the domain event buses.
+ * <p>
+ * A handler listening to a superclass or an interface gets the events of all its subclasses and implementations.
+ * The handlers of an event class are collected once (in a ClassValue), in one array: its own handlers,
+ * then those of its superclasses, nearest first, then those of its interfaces, nearest first.
+ * A handler supplier found twice on the way (registered for two of these types) is kept once.
+ * <p>
+ * The handlers are copied when the table is built. Registering a handler in your map afterwards changes nothing.
+ */
+final class DomainEventDispatchTable {
+
+    private static final Supplier<DomainEventHandler>[] NO_HANDLERS = new Supplier[0];
+
+    private final Map<Class<?>, List<Supplier<DomainEventHandler>>> handlers;
+
+    private final ClassValue<Supplier<DomainEventHandler>[]> table = new ClassValue<Supplier<DomainEventHandler>[]>() {
+        @Override
+        protected Supplier<DomainEventHandler>[] computeValue(Class<?> eventClass) {
+            return resolve(eventClass);
+        }
+    };
+
+    DomainEventDispatchTable(Map<Class<DomainEvent>, List<Supplier<DomainEventHandler>>> handlers) {
+        Map<Class<?>, List<Supplier<DomainEventHandler>>> copy = new HashMap<>();
+        handlers.forEach((eventClass, suppliers) -> copy.put(eventClass, new ArrayList<>(suppliers)));
+        this.handlers = Collections.unmodifiableMap(copy);
+    }
+
+    /**
+     * Never null. Do not modify.
+     */
+    Supplier<DomainEventHandler>[] handlersOf(Class<?> eventClass) {
+        return table.get(eventClass);
+    }
+
+    private Supplier<DomainEventHandler>[] resolve(Class<?> eventClass) {
+        List<Supplier<DomainEventHandler>> found = new ArrayList<>();
+        Set<Supplier<DomainEventHandler>> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        for (Class<?> aClass = eventClass; aClass != null; aClass = aClass.getSuperclass()) {
+            addHandlersOf(aClass, found, seen);
+        }
+        Deque<Class<?>> toVisit = new ArrayDeque<>();
+        Set<Class<?>> visited = new HashSet<>();
+        for (Class<?> aClass = eventClass; aClass != null; aClass = aClass.getSuperclass()) {
+            Collections.addAll(toVisit, aClass.getInterfaces());
+        }
+        while (!toVisit.isEmpty()) {
+            Class<?> anInterface = toVisit.poll();
+            if (!visited.add(anInterface)) {
+                continue;
+            }
+            addHandlersOf(anInterface, found, seen);
+            Collections.addAll(toVisit, anInterface.getInterfaces());
+        }
+        return found.isEmpty() ? NO_HANDLERS : found.toArray(NO_HANDLERS);
+    }
+
+    private void addHandlersOf(Class<?> aClass, List<Supplier<DomainEventHandler>> found, Set<Supplier<DomainEventHandler>> seen) {
+        for (Supplier<DomainEventHandler> supplier : handlers.getOrDefault(aClass, Collections.emptyList())) {
+            if (seen.add(supplier)) {
+                found.add(supplier);
+            }
+        }
+    }
+}
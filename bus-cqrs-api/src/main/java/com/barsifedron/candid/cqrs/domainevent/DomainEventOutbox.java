@@ -0,0 +1,44 @@
+package com.barsifedron.candid.cqrs.domainevent;
+
+import java.util.List;
+
+/**
+ * Where domain events wait to be dispatched, when they should not be handled within the command transaction.
+ * <p>
+ * Events are added within the transaction of the command that produced them. They are stored if and only if
+ * the command commits. A DomainEventOutboxRelay then picks them up and dispatches them, later on, in its own transaction.
+ * <p>
+ * All the methods are expected to run within the transaction of the caller.
+ */
+public interface DomainEventOutbox {
+
+    void add(List<DomainEvent> events);
+
+    /**
+     * The oldest events waiting to be dispatched, at most 'max' of them.
+     * Until the current transaction is over, claimed events must not be handed to anyone else
+     * (select ... for update skip locked, or whatever the database can do).
+     */
+    List<PendingDomainEvent> claim(int max);
+
+    /**
+     * Done. Will not be claimed anymore.
+     */
+    void markDispatched(List<Long> ids);
+
+    /**
+     * Will be claimed again, later on. Up to the outbox to give up on events failing over and over.
+     */
+    void markFailed(List<Long> ids);
+
+    class PendingDomainEvent {
+
+        public final long id;
+        public final DomainEvent event;
+
+        public PendingDomainEvent(long id, DomainEvent event) {
+            this.id = id;
+            this.event = event;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.barsifedron.candid.cqrs.domainevent;
+
+import com.barsifedron.candid.cqrs.domainevent.DomainEventOutbox.PendingDomainEvent;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Takes the events out of a DomainEventOutbox, one batch at a time, and dispatches them.
+ * <p>
+ * Call relayNextBatch within a transaction, and keep calling it until the batch comes back smaller than the batch size.
+ * Claiming and marking as done (or failed) happen within that transaction.
+ * The dispatched events are marked in one go for the whole batch, not one row at a time.
+ * <p>
+ * Each event is dispatched within a transaction of its own, given by the EventTransaction: a new one,
+ * NOT one nested in the batch transaction (REQUIRES_NEW with spring). A failing handler then only rolls back
+ * what was written for its event, and the batch transaction still commits, with the failure recorded.
+ * Its handlers must not touch the claimed outbox rows: they are locked by the batch transaction.
+ * <p>
+ * Delivery is at least once. When the batch transaction rolls back after some events were dispatched (or the process dies),
+ * the whole batch is claimed again and their handlers will see the same events twice. Handlers should be fine with that.
+ * <p>
+ * An event whose handler fails is marked as failed and retried with a later batch.
+ * The failure is reported in the result, for the caller to log.
+ */
+public class DomainEventOutboxRelay {
+
+    private final DomainEventOutbox outbox;
+    private final DomainEventBus eventBus;
+    private final int batchSize;
+    private final EventTransaction eventTransaction;
+
+    /**
+     * Events dispatched within the batch transaction. Only for handlers that can not fail it: no database...
+     */
+    public DomainEventOutboxRelay(DomainEventOutbox outbox, DomainEventBus eventBus, int batchSize) {
+        this(outbox, eventBus, batchSize, Runnable::run);
+    }
+
+    public DomainEventOutboxRelay(DomainEventOutbox outbox, DomainEventBus eventBus, int batchSize, EventTransaction eventTransaction) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least one, not " + batchSize);
+        }
+        this.outbox = outbox;
+        this.eventBus = eventBus;
+        this.batchSize = batchSize;
+        this.eventTransaction = eventTransaction;
+    }
+
+    public RelayedBatch relayNextBatch() {
+        List<PendingDomainEvent> batch = outbox.claim(batchSize);
+        List<Long> dispatched = new ArrayList<>(batch.size());
+        Map<Long, RuntimeException> failures = new LinkedHashMap<>();
+        for (PendingDomainEvent pending : batch) {
+            try {
+                eventTransaction.run(() -> eventBus.dispatch(pending.event));
+                dispatched.add(pending.id);
+            } catch (RuntimeException exception) {
+                failures.put(pending.id, exception);
+            }
+        }
+        if (!dispatched.isEmpty()) {
+            outbox.markDispatched(dispatched);
+        }
+        if (!failures.isEmpty()) {
+            outbox.markFailed(new ArrayList<>(failures.keySet()));
+        }
+        return new RelayedBatch(batch.size(), dispatched.size(), failures, batch.size() < batchSize);
+    }
+
+    /**
+     * Runs the dispatch of one event within a new transaction. Commits when it returns, rolls back when it throws.
+     * A failing commit has to throw too.
+     */
+    @FunctionalInterface
+    public interface EventTransaction {
+        void run(Runnable dispatch);
+    }
+
+    public static class RelayedBatch {
+
+        public final int claimed;
+        public final int dispatched;
+        /**
+         * By id of the outbox entry.
+         */
+        public final Map<Long, RuntimeException> failures;
+        /**
+         * True when there was less than a full batch waiting. No need to ask for another one straight away.
+         */
+        public final boolean drained;
+
+        public RelayedBatch(int claimed, int dispatched, Map<Long, RuntimeException> failures, boolean drained) {
+            this.claimed = claimed;
+            this.dispatched = dispatched;
+            this.failures = failures;
+            this.drained = drained;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.barsifedron.candid.cqrs.domainevent;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * When a domain event handler runs, compared to the transaction of the command that produced the event.
+ * Handlers are IN_TRANSACTION unless they are AfterCommitDomainEventHandler(s).
+ */
+public enum DomainEventPhase {
+
+    IN_TRANSACTION,
+    AFTER_COMMIT;
+
+    public static DomainEventPhase of(DomainEventHandler handler) {
+        return handler instanceof AfterCommitDomainEventHandler ? AFTER_COMMIT : IN_TRANSACTION;
+    }
+
+    /**
+     * Only the handlers of this phase, to build a bus with.
+     * Each supplier is called once, here, to find out what handler it supplies. The suppliers themselves are kept as they are.
+     */
+    public Map<Class<DomainEvent>, List<Supplier<DomainEventHandler>>> select(
+            Map<Class<DomainEvent>, List<Supplier<DomainEventHandler>>> handlers) {
+
+        Map<Class<DomainEvent>, List<Supplier<DomainEventHandler>>> selected = new HashMap<>();
+        handlers.forEach((eventClass, suppliers) -> {
+            List<Supplier<DomainEventHandler>> ofThisPhase = new ArrayList<>();
+            for (Supplier<DomainEventHandler> supplier : suppliers) {
+                if (of(supplier.get()) == this) {
+                    ofThisPhase.add(supplier);
+                }
+            }
+            if (!ofThisPhase.isEmpty()) {
+                selected.put(eventClass, ofThisPhase);
+            }
+        });
+        return selected;
+    }
+}
@@ -1,7 +1,6 @@
 package com.barsifedron.candid.cqrs.domainevent;
 
 import java.util.Collection;
-import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -15,10 +14,14 @@ import static java.util.stream.Collectors.toMap;
 /**
  * This is in charge of dispatching the domain events to the right Handler.
  * This will only allow fowr many handlers per event. As it should be.
+ * <p>
+ * A handler listening to a superclass or an interface gets the events of all its subclasses and implementations:
+ * one handler for all the DomainEventToLog events for instance. Those of each event class are looked up once.
+ * See DomainEventDispatchTable.
  */
 public class MapDomainEventBus implements DomainEventBus {
 
-    private final Map<Class<DomainEvent>, List<Supplier<DomainEventHandler>>> handlers;
+    private final DomainEventDispatchTable handlers;
 
     public MapDomainEventBus(DomainEventHandler... handlers) {
         this(Stream.of(handlers).collect(Collectors.toSet()));
@@ -37,14 +40,14 @@ public class MapDomainEventBus implements DomainEventBus {
      * See examples in others modules.
      */
     public MapDomainEventBus(Map<Class<DomainEvent>, List<Supplier<DomainEventHandler>>> handlers) {
-        this.handlers = handlers;
+        this.handlers = new DomainEventDispatchTable(handlers);
     }
 
     @Override
     public void dispatch(DomainEvent event) {
-        handlers
-                .getOrDefault(event.getClass(), Collections.emptyList())
-                .forEach(handler -> handler.get().handle(event));
+        for (Supplier<DomainEventHandler> handler : handlers.handlersOf(event.getClass())) {
+            handler.get().handle(event);
+        }
     }
 
 }
@@ -0,0 +1,27 @@
+package com.barsifedron.candid.cqrs.domainevent;
+
+import com.barsifedron.candid.cqrs.metrics.BusMetrics;
+
+/**
+ * Times every event, all of its handlers together, and counts how it went, by type of event. Nothing is logged.
+ */
+public class MetricsDomainEventBusMiddleware implements DomainEventBusMiddleware {
+
+    private final BusMetrics metrics;
+
+    public MetricsDomainEventBusMiddleware(BusMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void dispatch(DomainEvent event, DomainEventBus next) {
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            next.dispatch(event);
+            succeeded = true;
+        } finally {
+            metrics.record(event.getClass(), System.nanoTime() - start, succeeded);
+        }
+    }
+}
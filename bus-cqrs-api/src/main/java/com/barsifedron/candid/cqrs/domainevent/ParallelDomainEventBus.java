@@ -0,0 +1,118 @@
+package com.barsifedron.candid.cqrs.domainevent;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
+
+/**
+ * Like the MapDomainEventBus, but the handlers of an event run at the same time, on the given executor.
+ * Handlers of superclasses and interfaces get the event too, as with the MapDomainEventBus.
+ * The dispatch only returns once all of them are done: for whoever dispatched the event, nothing changes.
+ * <p>
+ * The dispatching thread is not idle meanwhile. It runs the SequentialDomainEventHandler(s), in order.
+ * Every other handler runs on the executor, whatever the order they were registered in.
+ * <p>
+ * Beware, anything bound to the dispatching thread is NOT there for the handlers running on the executor.
+ * Most notably the transaction your command runs in: what they write is committed on its own, or not at all,
+ * even when the command rolls back. A handler that writes, or needs the command transaction for anything else,
+ * has to be a SequentialDomainEventHandler. Only those keep the meaning of the DomainEventsDispatcher.
+ * <p>
+ * When one handler fails, its exception is thrown as it is, once all the others are done.
+ * When several fail, a DomainEventHandlersFailedException is thrown, with every failure attached.
+ * <p>
+ * Do not give it the executor that runs your commands if that one is bounded. Waiting on a pool from within that very pool
+ * is how deadlocks are made.
+ */
+public class ParallelDomainEventBus implements DomainEventBus {
+
+    private final Executor executor;
+    private final DomainEventDispatchTable handlers;
+
+    public ParallelDomainEventBus(Executor executor, DomainEventHandler... handlers) {
+        this(executor, Stream.of(handlers).collect(Collectors.toSet()));
+    }
+
+    public ParallelDomainEventBus(Executor executor, Set<? extends DomainEventHandler> set) {
+        this(executor, set.stream().collect(toMap(
+                handler -> handler.listenTo(),
+                handler -> Stream.of((Supplier<DomainEventHandler>) () -> handler).collect(toList()),
+                (list1, list2) -> Stream.of(list1, list2).flatMap(Collection::stream).collect(toList())
+        )));
+    }
+
+    public ParallelDomainEventBus(Executor executor, Map<Class<DomainEvent>, List<Supplier<DomainEventHandler>>> handlers) {
+        this.executor = executor;
+        this.handlers = new DomainEventDispatchTable(handlers);
+    }
+
+    @Override
+    public void dispatch(DomainEvent event) {
+
+        List<DomainEventHandler> sequentialHandlers = new ArrayList<>();
+        List<DomainEventHandler> parallelHandlers = new ArrayList<>();
+        for (Supplier<DomainEventHandler> supplier : handlers.handlersOf(event.getClass())) {
+            DomainEventHandler handler = supplier.get();
+            if (handler instanceof SequentialDomainEventHandler) {
+                sequentialHandlers.add(handler);
+            } else {
+                parallelHandlers.add(handler);
+            }
+        }
+
+        List<CompletableFuture<Void>> running = new ArrayList<>(parallelHandlers.size());
+        for (DomainEventHandler handler : parallelHandlers) {
+            running.add(CompletableFuture.runAsync(() -> handler.handle(event), executor));
+        }
+
+        List<RuntimeException> failures = new ArrayList<>();
+        for (DomainEventHandler handler : sequentialHandlers) {
+            handle(handler, event, failures);
+        }
+        for (CompletableFuture<Void> future : running) {
+            try {
+                future.join();
+            } catch (CompletionException e) {
+                failures.add(e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e);
+            }
+        }
+
+        if (failures.size() == 1) {
+            throw failures.get(0);
+        }
+        if (failures.size() > 1) {
+            throw new DomainEventHandlersFailedException(event, failures);
+        }
+    }
+
+    private void handle(DomainEventHandler handler, DomainEvent event, List<RuntimeException> failures) {
+        try {
+            handler.handle(event);
+        } catch (RuntimeException exception) {
+            failures.add(exception);
+        }
+    }
+
+    public static class DomainEventHandlersFailedException extends RuntimeException {
+
+        public DomainEventHandlersFailedException(DomainEvent event, List<RuntimeException> failures) {
+            super(failures.size() + " handlers failed to handle domain event of type " + event.getClass().getName()
+                    + failures
+                    .stream()
+                    .map(failure -> failure.getClass().getName() + ": " + failure.getMessage())
+                    .collect(Collectors.joining("\n", ":\n", "")),
+                    failures.get(0));
+            failures.stream().skip(1).forEach(this::addSuppressed);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.barsifedron.candid.cqrs.domainevent;
+
+/**
+ * A marker for the handlers that must not be run in parallel with the others by a ParallelDomainEventBus.
+ * <p>
+ * They are run on the dispatching thread, one after the other, in the order they were registered.
+ * Any handler that writes, or needs something else bound to the dispatching thread (typically: the current
+ * database transaction), must be one of those. The others run on an executor, outside of the command transaction:
+ * what they write stays when the command rolls back.
+ */
+public interface SequentialDomainEventHandler {
+}
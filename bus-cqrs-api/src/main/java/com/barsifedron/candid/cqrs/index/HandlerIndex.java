@@ -0,0 +1,276 @@
+package com.barsifedron.candid.cqrs.index;
+
+import com.barsifedron.candid.cqrs.command.CommandHandler;
+import com.barsifedron.candid.cqrs.domainevent.DomainEventHandler;
+import com.barsifedron.candid.cqrs.query.QueryHandler;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.ref.SoftReference;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * The command, query and domain event handlers found at compile time by the HandlerIndexProcessor,
+ * with the type of messages each one handles. Read from every META-INF/candid-cqrs/handlers on the classpath.
+ * <p>
+ * The registries of the spring and guice modules use it instead of scanning the packages it covers:
+ * those of which every classpath entry (directory, jar) has an index. The others are still scanned.
+ * <p>
+ * One line per handler: its kind, the binary name of its class, the binary name of the messages it handles.
+ * <p>
+ * Read once per class loader, then kept for as long as memory allows: every registry asks for it.
+ * Classes are only loaded for the packages asked for. A line left over from a class since deleted fails the registry
+ * of its package, not those of the others.
+ */
+public final class HandlerIndex {
+
+    public static final String LOCATION = "META-INF/candid-cqrs/handlers";
+
+    public enum Kind {
+
+        COMMAND(CommandHandler.class, 1),
+        QUERY(QueryHandler.class, 1),
+        DOMAIN_EVENT(DomainEventHandler.class, 0);
+
+        final Class<?> handlerInterface;
+        /**
+         * Which of the type arguments of the handler interface is the type of messages
+         */
+        final int messageTypeArgument;
+
+        Kind(Class<?> handlerInterface, int messageTypeArgument) {
+            this.handlerInterface = handlerInterface;
+            this.messageTypeArgument = messageTypeArgument;
+        }
+    }
+
+    private static final Map<ClassLoader, SoftReference<HandlerIndex>> READ = new WeakHashMap<>();
+
+    private final ClassLoader classLoader;
+    private final boolean present;
+    /**
+     * The classpath entries with an index, as the URL of their root
+     */
+    private final Set<String> indexedRoots;
+    private final List<Line> lines;
+    private final Map<Kind, Map<String, Line>> linesByHandler = new EnumMap<>(Kind.class);
+    private final Map<Line, Entry> entries = new ConcurrentHashMap<>();
+
+    private HandlerIndex(ClassLoader classLoader, boolean present, Set<String> indexedRoots, List<Line> lines) {
+        this.classLoader = classLoader;
+        this.present = present;
+        this.indexedRoots = indexedRoots;
+        this.lines = Collections.unmodifiableList(lines);
+        lines.forEach(line -> linesByHandler
+                .computeIfAbsent(line.kind, kind -> new HashMap<>())
+                .put(line.handlerClass, line));
+    }
+
+    /**
+     * Reads the index from the thread context class loader, or that of this class when there is none.
+     */
+    public static HandlerIndex read() {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        return read(classLoader != null ? classLoader : HandlerIndex.class.getClassLoader());
+    }
+
+    /**
+     * @param classLoader null for the default one, see read()
+     */
+    public static HandlerIndex read(ClassLoader classLoader) {
+        if (classLoader == null) {
+            return read();
+        }
+        synchronized (READ) {
+            SoftReference<HandlerIndex> read = READ.get(classLoader);
+            HandlerIndex index = read == null ? null : read.get();
+            if (index == null) {
+                index = readFrom(classLoader);
+                READ.put(classLoader, new SoftReference<>(index));
+            }
+            return index;
+        }
+    }
+
+    private static HandlerIndex readFrom(ClassLoader classLoader) {
+        List<Line> lines = new ArrayList<>();
+        Set<String> indexedRoots = new HashSet<>();
+        boolean present = false;
+        try {
+            Enumeration<URL> indexes = classLoader.getResources(LOCATION);
+            while (indexes.hasMoreElements()) {
+                present = true;
+                URL index = indexes.nextElement();
+                indexedRoots.add(root(index, LOCATION));
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(index.openStream(), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        line = line.trim();
+                        if (!line.isEmpty() && !line.startsWith("#")) {
+                            lines.add(line(line, index));
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new HandlerIndexException("Could not read " + LOCATION, e);
+        }
+        return new HandlerIndex(classLoader, present, indexedRoots, lines);
+    }
+
+    /**
+     * False when there is no index on the classpath at all. Scan then.
+     */
+    public boolean isPresent() {
+        return present;
+    }
+
+    /**
+     * True when every classpath entry holding this package has an index: its handlers are all in there, no need to scan.
+     * False for a package found nowhere, and for the empty package (it is in every entry, jars included).
+     */
+    public boolean covers(String thePackage) {
+        if (!present || thePackage.isEmpty()) {
+            return false;
+        }
+        String path = thePackage.replace('.', '/');
+        try {
+            Enumeration<URL> directories = classLoader.getResources(path);
+            if (!directories.hasMoreElements()) {
+                return false;
+            }
+            while (directories.hasMoreElements()) {
+                if (!indexedRoots.contains(root(directories.nextElement(), path))) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            throw new HandlerIndexException("Could not look for package " + thePackage, e);
+        }
+    }
+
+    /**
+     * The handlers of this kind in any of these packages, or of their sub packages. An empty package name matches them all.
+     */
+    public List<Entry> entries(Kind kind, String... packages) {
+        return lines
+                .stream()
+                .filter(line -> line.kind == kind)
+                .filter(line -> Stream.of(packages).anyMatch(line::isIn))
+                .map(this::entry)
+                .collect(toList());
+    }
+
+    /**
+     * @return null when the handler is not in the index
+     */
+    public Class<?> messageTypeOf(Kind kind, Class<?> handlerClass) {
+        Line line = linesByHandler.getOrDefault(kind, Collections.emptyMap()).get(handlerClass.getName());
+        if (line == null) {
+            return null;
+        }
+        Entry entry = entry(line);
+        return entry.handlerClass == handlerClass ? entry.messageType : null;
+    }
+
+    /**
+     * The URL of the classpath entry a resource was found in: file:/project/build/classes/, jar:file:/app.jar!/...
+     */
+    private static String root(URL resource, String path) {
+        String url = resource.toString();
+        if (url.endsWith("/")) {
+            url = url.substring(0, url.length() - 1);
+        }
+        return url.endsWith(path) ? url.substring(0, url.length() - path.length()) : url;
+    }
+
+    private static Line line(String line, URL index) {
+        String[] fields = line.split("\\s+");
+        if (fields.length != 3) {
+            throw new HandlerIndexException("Malformed line in " + index + ": " + line, null);
+        }
+        try {
+            return new Line(Kind.valueOf(fields[0]), fields[1], fields[2], index);
+        } catch (IllegalArgumentException e) {
+            throw new HandlerIndexException("Malformed line in " + index + ": " + line, e);
+        }
+    }
+
+    /**
+     * Loads the classes of a line, the first time it is asked for
+     */
+    private Entry entry(Line line) {
+        return entries.computeIfAbsent(line, this::load);
+    }
+
+    private Entry load(Line line) {
+        try {
+            Class<?> handlerClass = Class.forName(line.handlerClass, false, classLoader);
+            Class<?> messageType = Class.forName(line.messageType, false, classLoader);
+            if (!line.kind.handlerInterface.isAssignableFrom(handlerClass)) {
+                throw new HandlerIndexException(handlerClass.getName() + " is not a " + line.kind.handlerInterface.getSimpleName() + ", in " + line.index, null);
+            }
+            return new Entry(line.kind, handlerClass, messageType);
+        } catch (ClassNotFoundException e) {
+            throw new HandlerIndexException("Outdated line in " + line.index + ": " + line.kind + " " + line.handlerClass + " " + line.messageType, e);
+        }
+    }
+
+    /**
+     * A line as read, classes not loaded yet
+     */
+    private static final class Line {
+
+        private final Kind kind;
+        private final String handlerClass;
+        private final String messageType;
+        private final URL index;
+
+        private Line(Kind kind, String handlerClass, String messageType, URL index) {
+            this.kind = kind;
+            this.handlerClass = handlerClass;
+            this.messageType = messageType;
+            this.index = index;
+        }
+
+        private boolean isIn(String thePackage) {
+            return thePackage.isEmpty() || handlerClass.startsWith(thePackage + ".");
+        }
+    }
+
+    public static class Entry {
+
+        public final Kind kind;
+        public final Class<?> handlerClass;
+        public final Class<?> messageType;
+
+        private Entry(Kind kind, Class<?> handlerClass, Class<?> messageType) {
+            this.kind = kind;
+            this.handlerClass = handlerClass;
+            this.messageType = messageType;
+        }
+    }
+
+    public static class HandlerIndexException extends RuntimeException {
+        public HandlerIndexException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+}
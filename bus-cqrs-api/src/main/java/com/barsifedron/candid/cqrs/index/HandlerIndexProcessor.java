@@ -0,0 +1,239 @@
+package com.barsifedron.candid.cqrs.index;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Writes the HandlerIndex of a module: every concrete command, query and domain event handler compiled,
+ * with the type of messages it handles, as resolved by the compiler. Through parent classes too:
+ * a handler extending AbstractHandler&lt;BorrowItemCommand&gt; is indexed for BorrowItemCommand.
+ * <p>
+ * Opt in: it does nothing unless given -Acandid.cqrs.index=true. Being in the bus-cqrs-api jar, javac finds it
+ * on the classpath of every module using the buses, and we do not want to write an index nobody asked for.
+ * <p>
+ * A handler whose type of messages can not be told at compile time (a raw type, a type variable) is left out,
+ * with a warning. The registries will not find it in a package the index covers.
+ * With -Acandid.cqrs.index.strict=true, it fails the compilation instead.
+ * Messages or parent classes generated by another processor are fine: such handlers are looked at again
+ * in the following rounds, once the generated types are there.
+ * <p>
+ * The index already in the output directory is merged with what is compiled, as incremental and IDE builds
+ * only compile part of the module. Lines of classes compiled again, or gone, are dropped.
+ * <p>
+ * With gradle: annotationProcessor project(":bus-cqrs-api")
+ * and compileJava { options.compilerArgs &lt;&lt; "-Acandid.cqrs.index=true" }
+ */
+@SupportedOptions({HandlerIndexProcessor.ENABLED, HandlerIndexProcessor.STRICT})
+public class HandlerIndexProcessor extends AbstractProcessor {
+
+    public static final String ENABLED = "candid.cqrs.index";
+    public static final String STRICT = "candid.cqrs.index.strict";
+
+    // Sorted, so the same sources always give the same index
+    private final Set<String> lines = new TreeSet<>();
+    // Binary names of all the classes compiled, handlers or not
+    private final Set<String> compiled = new HashSet<>();
+    // Handlers to look at again next round, by qualified name: some of their types are not generated yet
+    private final Set<String> deferred = new LinkedHashSet<>();
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return isInitialized() && enabled() ? Collections.singleton("*") : Collections.emptySet();
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (!enabled()) {
+            return false;
+        }
+        if (roundEnv.processingOver()) {
+            // Whatever is still deferred does not compile. Javac says so already.
+            write();
+        } else {
+            List<String> retry = new ArrayList<>(deferred);
+            deferred.clear();
+            for (String name : retry) {
+                TypeElement handler = processingEnv.getElementUtils().getTypeElement(name);
+                if (handler != null) {
+                    indexHandler(handler);
+                }
+            }
+            for (Element element : roundEnv.getRootElements()) {
+                index(element);
+            }
+        }
+        // Whatever the annotations, they are for other processors as well
+        return false;
+    }
+
+    private boolean enabled() {
+        return "true".equals(processingEnv.getOptions().get(ENABLED));
+    }
+
+    private void index(Element element) {
+        if (!element.getKind().isClass() && !element.getKind().isInterface()) {
+            return;
+        }
+        TypeElement type = (TypeElement) element;
+        compiled.add(processingEnv.getElementUtils().getBinaryName(type).toString());
+        for (Element enclosed : type.getEnclosedElements()) {
+            index(enclosed);
+        }
+        if (type.getKind() != ElementKind.CLASS
+                || type.getModifiers().contains(Modifier.ABSTRACT)
+                || (type.getNestingKind() == NestingKind.MEMBER && !type.getModifiers().contains(Modifier.STATIC))) {
+            return;
+        }
+        indexHandler(type);
+    }
+
+    private void indexHandler(TypeElement type) {
+        if (unresolved(type.asType())) {
+            deferred.add(type.getQualifiedName().toString());
+            return;
+        }
+        for (HandlerIndex.Kind kind : HandlerIndex.Kind.values()) {
+            DeclaredType handlerInterface = find(type.asType(), kind.handlerInterface.getName());
+            if (handlerInterface != null) {
+                add(type, kind, handlerInterface);
+            }
+        }
+    }
+
+    private void add(TypeElement handler, HandlerIndex.Kind kind, DeclaredType handlerInterface) {
+        List<? extends TypeMirror> typeArguments = handlerInterface.getTypeArguments();
+        TypeMirror messageType = typeArguments.isEmpty() ? null : typeArguments.get(kind.messageTypeArgument);
+        if (messageType != null && messageType.getKind() == TypeKind.ERROR) {
+            deferred.add(handler.getQualifiedName().toString());
+            return;
+        }
+        if (messageType == null || messageType.getKind() != TypeKind.DECLARED) {
+            boolean strict = "true".equals(processingEnv.getOptions().get(STRICT));
+            processingEnv.getMessager().printMessage(
+                    strict ? Diagnostic.Kind.ERROR : Diagnostic.Kind.WARNING,
+                    "Can not tell which messages " + handler.getQualifiedName() + " handles from " + handlerInterface
+                            + ". Give the " + kind.handlerInterface.getSimpleName() + " its type arguments"
+                            + (strict ? "." : ", or it is left out of the handler index."),
+                    handler);
+            return;
+        }
+        TypeElement messageElement = (TypeElement) ((DeclaredType) messageType).asElement();
+        lines.add(kind.name()
+                + " " + processingEnv.getElementUtils().getBinaryName(handler)
+                + " " + processingEnv.getElementUtils().getBinaryName(messageElement));
+    }
+
+    /**
+     * The handler interface as the given type implements it, its type arguments resolved as far as they can be.
+     */
+    private DeclaredType find(TypeMirror type, String handlerInterface) {
+        Types types = processingEnv.getTypeUtils();
+        for (TypeMirror supertype : types.directSupertypes(type)) {
+            Element element = types.asElement(supertype);
+            if (element instanceof TypeElement
+                    && ((TypeElement) element).getQualifiedName().contentEquals(handlerInterface)) {
+                return (DeclaredType) supertype;
+            }
+            DeclaredType found = find(supertype, handlerInterface);
+            if (found != null) {
+                return found;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * True when one of the parents of this type is not known yet: generated by another processor, in a later round.
+     */
+    private boolean unresolved(TypeMirror type) {
+        for (TypeMirror supertype : processingEnv.getTypeUtils().directSupertypes(type)) {
+            if (supertype.getKind() == TypeKind.ERROR || unresolved(supertype)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void write() {
+        List<String> previous = previousIndex();
+        Set<String> merged = new TreeSet<>(lines);
+        for (String line : previous) {
+            String[] fields = line.trim().split("\\s+");
+            if (fields.length == 3 && !compiled.contains(fields[1]) && exists(fields[1]) && exists(fields[2])) {
+                merged.add(line.trim());
+            }
+        }
+        if (merged.isEmpty() && previous.isEmpty()) {
+            return;
+        }
+        try (Writer writer = processingEnv
+                .getFiler()
+                .createResource(StandardLocation.CLASS_OUTPUT, "", HandlerIndex.LOCATION)
+                .openWriter()) {
+            for (String line : merged) {
+                writer.write(line);
+                writer.write("\n");
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Could not write " + HandlerIndex.LOCATION + ": " + e);
+        }
+    }
+
+    /**
+     * The index written by the previous compilation of this module, if any.
+     */
+    private List<String> previousIndex() {
+        List<String> previous = new ArrayList<>();
+        try {
+            FileObject index = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", HandlerIndex.LOCATION);
+            try (BufferedReader reader = new BufferedReader(index.openReader(true))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.trim().isEmpty() && !line.trim().startsWith("#")) {
+                        previous.add(line);
+                    }
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            // No previous index
+        }
+        return previous;
+    }
+
+    /**
+     * Whether the class of this binary name is still around, compiled now or before.
+     */
+    private boolean exists(String binaryName) {
+        return compiled.contains(binaryName)
+                || processingEnv.getElementUtils().getTypeElement(binaryName.replace('$', '.')) != null;
+    }
+}
@@ -0,0 +1,125 @@
+package com.barsifedron.candid.cqrs.limit;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How many messages may be handled at the same time, adjusted from their latencies (AIMD, as in TCP congestion control).
+ * <p>
+ * The usual latency is the average over the last few hundred messages, the recent one over the last ten or so.
+ * While the recent latency stays under twice the usual one, and the limit is used, it grows by about one per round
+ * of messages. When it goes above, the database or whatever is behind is queuing work up: the limit shrinks by 10%,
+ * once per round. Never under minLimit, nor above maxLimit.
+ * <p>
+ * Averages, not the lowest latency seen: with fast and slow messages mixed (cache hits and misses, small and large
+ * pages), the slow ones would look like load all the time. The usual latency of a mix is in between,
+ * and only the whole mix getting slower is taken for load.
+ * <p>
+ * Over the limit, a message waits for a permit for maxWait at most, then is rejected with a LimitExceededException.
+ * Rather that than every thread of the server waiting on a database that does not keep up.
+ */
+public class AdaptiveConcurrencyLimit {
+
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final double LATENCY_TOLERANCE = 2.0;
+    private static final double RECENT_LATENCY_WEIGHT = 0.1;
+    private static final double USUAL_LATENCY_WEIGHT = 0.002;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long maxWaitNanos;
+
+    private double limit;
+    private int inFlight;
+    private double usualLatency;
+    private double recentLatency;
+    private int completionsBeforeNextBackoff;
+    private long rejected;
+
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, long maxWait, TimeUnit unit) {
+        if (minLimit < 1 || minLimit > initialLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Expected 1 <= minLimit <= initialLimit <= maxLimit. Got "
+                    + minLimit + ", " + initialLimit + " and " + maxLimit);
+        }
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxWaitNanos = unit.toNanos(maxWait);
+    }
+
+    /**
+     * Takes a permit, waiting up to maxWait for one. Give it back with release(), whatever happens.
+     *
+     * @param messageType for the message of the exception
+     */
+    public synchronized void acquire(Class<?> messageType) {
+        long deadline = System.nanoTime() + maxWaitNanos;
+        while (inFlight >= (int) limit) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                rejected++;
+                throw new LimitExceededException(messageType, (int) limit);
+            }
+            try {
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                rejected++;
+                throw new LimitExceededException(messageType, (int) limit);
+            }
+        }
+        inFlight++;
+    }
+
+    /**
+     * @param latencyNanos from the permit being acquired to now. Failures included: a timeout is a latency too.
+     */
+    public synchronized void release(long latencyNanos) {
+        adjust(latencyNanos);
+        inFlight--;
+        notify();
+    }
+
+    private void adjust(long latencyNanos) {
+        // A database permanently slower is the new normal, after a while
+        usualLatency = usualLatency == 0
+                ? latencyNanos
+                : usualLatency + (latencyNanos - usualLatency) * USUAL_LATENCY_WEIGHT;
+        recentLatency = recentLatency == 0
+                ? latencyNanos
+                : recentLatency + (latencyNanos - recentLatency) * RECENT_LATENCY_WEIGHT;
+
+        if (completionsBeforeNextBackoff > 0) {
+            completionsBeforeNextBackoff--;
+        }
+        if (recentLatency > usualLatency * LATENCY_TOLERANCE) {
+            if (completionsBeforeNextBackoff == 0) {
+                limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+                // The messages in flight were sent under the old limit. Let them through before backing off again
+                completionsBeforeNextBackoff = inFlight;
+            }
+        } else if (inFlight >= limit / 2) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+
+    public synchronized int limit() {
+        return (int) limit;
+    }
+
+    public synchronized int inFlight() {
+        return inFlight;
+    }
+
+    /**
+     * How many messages were turned down so far.
+     */
+    public synchronized long rejected() {
+        return rejected;
+    }
+
+    public static class LimitExceededException extends RuntimeException {
+        public LimitExceededException(Class<?> messageType, int limit) {
+            super("Too many " + messageType.getSimpleName() + " at the same time (limit " + limit + "). Try again later.");
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.barsifedron.candid.cqrs.metrics;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies and outcomes of the messages of one bus, by type of message. Fed by the metrics middleware of the bus.
+ * <p>
+ * The counters of a type are found through a ClassValue: no hashing of the class, no lock, on every dispatch.
+ * Then a success costs one increment of its latency bucket. A failure one more, of the failures.
+ * They are created on the first message of that type, and kept for as long as these metrics are.
+ */
+public class BusMetrics implements BusMetricsMXBean {
+
+    private static final String JMX_DOMAIN = "com.barsifedron.candid.cqrs";
+
+    private final String name;
+    private final ConcurrentMap<Class<?>, MessageTypeMetrics> byType = new ConcurrentHashMap<>();
+    private final ClassValue<MessageTypeMetrics> lookup = new ClassValue<MessageTypeMetrics>() {
+        @Override
+        protected MessageTypeMetrics computeValue(Class<?> messageType) {
+            return byType.computeIfAbsent(messageType, MessageTypeMetrics::new);
+        }
+    };
+
+    /**
+     * @param name "commands", "queries"... Names the MBean.
+     */
+    public BusMetrics(String name) {
+        this.name = name;
+    }
+
+    public void record(Class<?> messageType, long elapsedNanos, boolean succeeded) {
+        MessageTypeMetrics metrics = lookup.get(messageType);
+        metrics.latencies.record(elapsedNanos);
+        if (!succeeded) {
+            metrics.failures.increment();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Every type of message seen so far, by name.
+     */
+    @Override
+    public List<MessageTypeStats> getMessageTypes() {
+        List<MessageTypeStats> stats = new ArrayList<>();
+        for (MessageTypeMetrics metrics : byType.values()) {
+            stats.add(metrics.stats());
+        }
+        stats.sort(Comparator.comparing(MessageTypeStats::getMessageType));
+        return stats;
+    }
+
+    /**
+     * Registers with the platform MBean server, as com.barsifedron.candid.cqrs:type=BusMetrics,name=[name].
+     * Takes the place of any other metrics registered under the same name.
+     */
+    public ObjectName registerMBean() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName objectName = objectName();
+        try {
+            try {
+                server.registerMBean(this, objectName);
+            } catch (InstanceAlreadyExistsException e) {
+                server.unregisterMBean(objectName);
+                server.registerMBean(this, objectName);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register the metrics of " + name, e);
+        }
+        return objectName;
+    }
+
+    public void unregisterMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName());
+        } catch (InstanceNotFoundException e) {
+            // Taken over by other metrics of the same name, or never registered
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not unregister the metrics of " + name, e);
+        }
+    }
+
+    private ObjectName objectName() {
+        try {
+            return new ObjectName(JMX_DOMAIN + ":type=BusMetrics,name=" + ObjectName.quote(name));
+        } catch (JMException e) {
+            throw new IllegalArgumentException("Not a name for metrics: " + name, e);
+        }
+    }
+
+    private static class MessageTypeMetrics {
+
+        private final Class<?> messageType;
+        private final LatencyHistogram latencies = new LatencyHistogram();
+        private final LongAdder failures = new LongAdder();
+
+        private MessageTypeMetrics(Class<?> messageType) {
+            this.messageType = messageType;
+        }
+
+        private MessageTypeStats stats() {
+            long failed = failures.sum();
+            LatencyHistogram.Snapshot snapshot = latencies.snapshot();
+            return new MessageTypeStats(
+                    messageType.getName(),
+                    // Read while others record: may be off by a few, but not below zero
+                    Math.max(0, snapshot.count - failed),
+                    failed,
+                    snapshot.meanNanos(),
+                    snapshot.valueAtPercentile(50),
+                    snapshot.valueAtPercentile(99),
+                    snapshot.valueAtPercentile(99.9),
+                    snapshot.maxNanos);
+        }
+    }
+}
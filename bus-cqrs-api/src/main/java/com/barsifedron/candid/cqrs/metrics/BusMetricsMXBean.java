@@ -0,0 +1,13 @@
+package com.barsifedron.candid.cqrs.metrics;
+
+import java.util.List;
+
+/**
+ * What jconsole (or any JMX client) gets to see of the BusMetrics.
+ */
+public interface BusMetricsMXBean {
+
+    String getName();
+
+    List<MessageTypeStats> getMessageTypes();
+}
@@ -0,0 +1,114 @@
+package com.barsifedron.candid.cqrs.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts durations, in nanoseconds, in buckets growing with the value (as HdrHistogram does):
+ * exact up to 127, then 64 buckets per power of two. Any value is off by 1.6% at most.
+ * <p>
+ * Recording is lock free and does not allocate: one increment of the bucket, and a read of the max.
+ * Durations of more than about half an hour land in the last bucket. The max is kept exact anyway.
+ * The mean is read from the buckets too, so it is as precise as they are.
+ * <p>
+ * A snapshot is read while others record: it can be off by the few values recorded in the meantime. Good enough for percentiles.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int VALUE_BITS = 41;
+    private static final long HIGHEST_TRACKABLE_VALUE = (1L << VALUE_BITS) - 1;
+    private static final int BUCKETS = (VALUE_BITS - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(Math.min(value, HIGHEST_TRACKABLE_VALUE)));
+        long currentMax;
+        while (value > (currentMax = max.get()) && !max.compareAndSet(currentMax, value)) {
+            // Lost the race to another bigger value, try again
+        }
+    }
+
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+        }
+        return new Snapshot(copy, max.get());
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    /**
+     * The biggest value counted in this bucket.
+     */
+    static long highestValueOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket >>> SUB_BUCKET_BITS) - 1;
+        long lowest = (long) (bucket - (shift << SUB_BUCKET_BITS)) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    public static class Snapshot {
+
+        private final long[] counts;
+        public final long count;
+        public final long maxNanos;
+
+        private Snapshot(long[] counts, long maxNanos) {
+            this.counts = counts;
+            long count = 0;
+            for (long bucketCount : counts) {
+                count += bucketCount;
+            }
+            this.count = count;
+            this.maxNanos = maxNanos;
+        }
+
+        /**
+         * @param percentile 50 for the median, 99.9 for the 999th of 1000...
+         * @return 0 when nothing was recorded
+         */
+        public long valueAtPercentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            long seen = 0;
+            for (int bucket = 0; bucket < counts.length; bucket++) {
+                seen += counts[bucket];
+                if (seen >= rank) {
+                    return Math.min(highestValueOf(bucket), maxNanos);
+                }
+            }
+            return maxNanos;
+        }
+
+        public long meanNanos() {
+            if (count == 0) {
+                return 0;
+            }
+            double total = 0;
+            for (int bucket = 0; bucket < counts.length; bucket++) {
+                if (counts[bucket] != 0) {
+                    long highest = highestValueOf(bucket);
+                    long lowest = bucket == 0 ? 0 : highestValueOf(bucket - 1) + 1;
+                    total += counts[bucket] * ((lowest + highest) / 2.0);
+                }
+            }
+            return Math.min((long) (total / count), maxNanos);
+        }
+    }
+}
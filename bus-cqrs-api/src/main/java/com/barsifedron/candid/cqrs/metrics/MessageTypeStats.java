@@ -0,0 +1,81 @@
+package com.barsifedron.candid.cqrs.metrics;
+
+/**
+ * How one type of message did on a bus, at the time it was read. Durations in nanoseconds.
+ * <p>
+ * Getters rather than fields, so JMX and json can read it as it is.
+ */
+public class MessageTypeStats {
+
+    private final String messageType;
+    private final long successes;
+    private final long failures;
+    private final long meanNanos;
+    private final long p50Nanos;
+    private final long p99Nanos;
+    private final long p999Nanos;
+    private final long maxNanos;
+
+    public MessageTypeStats(
+            String messageType,
+            long successes,
+            long failures,
+            long meanNanos,
+            long p50Nanos,
+            long p99Nanos,
+            long p999Nanos,
+            long maxNanos) {
+        this.messageType = messageType;
+        this.successes = successes;
+        this.failures = failures;
+        this.meanNanos = meanNanos;
+        this.p50Nanos = p50Nanos;
+        this.p99Nanos = p99Nanos;
+        this.p999Nanos = p999Nanos;
+        this.maxNanos = maxNanos;
+    }
+
+    public String getMessageType() {
+        return messageType;
+    }
+
+    public long getSuccesses() {
+        return successes;
+    }
+
+    public long getFailures() {
+        return failures;
+    }
+
+    public long getMeanNanos() {
+        return meanNanos;
+    }
+
+    public long getP50Nanos() {
+        return p50Nanos;
+    }
+
+    public long getP99Nanos() {
+        return p99Nanos;
+    }
+
+    public long getP999Nanos() {
+        return p999Nanos;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    @Override
+    public String toString() {
+        return messageType
+                + ": successes=" + successes
+                + ", failures=" + failures
+                + ", mean=" + meanNanos
+                + ", p50=" + p50Nanos
+                + ", p99=" + p99Nanos
+                + ", p999=" + p999Nanos
+                + ", max=" + maxNanos;
+    }
+}
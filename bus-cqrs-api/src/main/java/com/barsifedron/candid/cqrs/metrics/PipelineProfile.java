@@ -0,0 +1,202 @@
+package com.barsifedron.candid.cqrs.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Where the time of a pipeline goes: the exclusive time of each of its stages, by type of message.
+ * Exclusive as in "without the stages further down": what the transaction middleware took, not what the handler took within it.
+ * <p>
+ * Filled by a pipeline compiled with profiling, see CommandBusPipeline.compileProfiled(...).
+ * The stages are its middleware, in order, then the bus it ends with.
+ */
+public class PipelineProfile {
+
+    private final List<String> stages;
+    private final ConcurrentMap<Class<?>, LatencyHistogram[]> byType = new ConcurrentHashMap<>();
+    private final ClassValue<LatencyHistogram[]> lookup = new ClassValue<LatencyHistogram[]>() {
+        @Override
+        protected LatencyHistogram[] computeValue(Class<?> messageType) {
+            return byType.computeIfAbsent(messageType, type -> {
+                LatencyHistogram[] histograms = new LatencyHistogram[stages.size()];
+                for (int i = 0; i < histograms.length; i++) {
+                    histograms[i] = new LatencyHistogram();
+                }
+                return histograms;
+            });
+        }
+    };
+
+    public PipelineProfile(List<String> stages) {
+        this.stages = Collections.unmodifiableList(new ArrayList<>(stages));
+    }
+
+    /**
+     * The simple name of the class of a middleware or bus. The name in its enclosing class for anonymous ones ("CommandBusFactory$1").
+     */
+    public static String stageName(Object stage) {
+        Class<?> stageClass = stage.getClass();
+        if (!stageClass.getSimpleName().isEmpty()) {
+            return stageClass.getSimpleName();
+        }
+        return stageClass.getName().substring(stageClass.getName().lastIndexOf('.') + 1);
+    }
+
+    public List<String> getStages() {
+        return stages;
+    }
+
+    public void record(Class<?> messageType, int stage, long exclusiveNanos) {
+        lookup.get(messageType)[stage].record(exclusiveNanos);
+    }
+
+    /**
+     * Every type of message seen so far, by name. A stage a message did not reach (a cache hit...) is there with 0 calls.
+     */
+    public List<MessageTypeProfile> report() {
+        List<MessageTypeProfile> report = new ArrayList<>();
+        for (Map.Entry<Class<?>, LatencyHistogram[]> entry : byType.entrySet()) {
+            report.add(profileOf(entry.getKey(), entry.getValue()));
+        }
+        report.sort(Comparator.comparing(MessageTypeProfile::getMessageType));
+        return report;
+    }
+
+    private MessageTypeProfile profileOf(Class<?> messageType, LatencyHistogram[] histograms) {
+        LatencyHistogram.Snapshot[] snapshots = new LatencyHistogram.Snapshot[histograms.length];
+        long totalNanos = 0;
+        for (int i = 0; i < histograms.length; i++) {
+            snapshots[i] = histograms[i].snapshot();
+            totalNanos += snapshots[i].count * snapshots[i].meanNanos();
+        }
+        List<StageStats> stageStats = new ArrayList<>();
+        for (int i = 0; i < snapshots.length; i++) {
+            LatencyHistogram.Snapshot snapshot = snapshots[i];
+            long stageNanos = snapshot.count * snapshot.meanNanos();
+            stageStats.add(new StageStats(
+                    stages.get(i),
+                    snapshot.count,
+                    stageNanos,
+                    totalNanos == 0 ? 0 : Math.round(stageNanos * 1000.0 / totalNanos) / 10.0,
+                    snapshot.meanNanos(),
+                    snapshot.valueAtPercentile(50),
+                    snapshot.valueAtPercentile(99),
+                    snapshot.maxNanos));
+        }
+        return new MessageTypeProfile(messageType.getName(), totalNanos, stageStats);
+    }
+
+    /**
+     * The stages of one type of message. Getters rather than fields, for json.
+     */
+    public static class MessageTypeProfile {
+
+        private final String messageType;
+        private final long totalNanos;
+        private final List<StageStats> stages;
+
+        private MessageTypeProfile(String messageType, long totalNanos, List<StageStats> stages) {
+            this.messageType = messageType;
+            this.totalNanos = totalNanos;
+            this.stages = Collections.unmodifiableList(stages);
+        }
+
+        public String getMessageType() {
+            return messageType;
+        }
+
+        /**
+         * Spent in the pipeline by all the messages of this type so far.
+         */
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public List<StageStats> getStages() {
+            return stages;
+        }
+    }
+
+    /**
+     * The exclusive time of one stage, for one type of message. Durations in nanoseconds.
+     */
+    public static class StageStats {
+
+        private final String stage;
+        private final long calls;
+        private final long totalNanos;
+        private final double percentOfPipeline;
+        private final long meanNanos;
+        private final long p50Nanos;
+        private final long p99Nanos;
+        private final long maxNanos;
+
+        private StageStats(
+                String stage,
+                long calls,
+                long totalNanos,
+                double percentOfPipeline,
+                long meanNanos,
+                long p50Nanos,
+                long p99Nanos,
+                long maxNanos) {
+            this.stage = stage;
+            this.calls = calls;
+            this.totalNanos = totalNanos;
+            this.percentOfPipeline = percentOfPipeline;
+            this.meanNanos = meanNanos;
+            this.p50Nanos = p50Nanos;
+            this.p99Nanos = p99Nanos;
+            this.maxNanos = maxNanos;
+        }
+
+        public String getStage() {
+            return stage;
+        }
+
+        public long getCalls() {
+            return calls;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public double getPercentOfPipeline() {
+            return percentOfPipeline;
+        }
+
+        public long getMeanNanos() {
+            return meanNanos;
+        }
+
+        public long getP50Nanos() {
+            return p50Nanos;
+        }
+
+        public long getP99Nanos() {
+            return p99Nanos;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        @Override
+        public String toString() {
+            return stage
+                    + ": calls=" + calls
+                    + ", total=" + totalNanos
+                    + ", percent=" + percentOfPipeline
+                    + ", mean=" + meanNanos
+                    + ", p50=" + p50Nanos
+                    + ", p99=" + p99Nanos
+                    + ", max=" + maxNanos;
+        }
+    }
+}
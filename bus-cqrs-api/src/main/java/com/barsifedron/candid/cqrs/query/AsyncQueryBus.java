@@ -0,0 +1,13 @@
+package com.barsifedron.candid.cqrs.query;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A query bus that does not make you wait.
+ * See ExecutorQueryBus and BlockingQueryBus to go from a QueryBus to an AsyncQueryBus and back.
+ */
+public interface AsyncQueryBus {
+
+    <T> CompletableFuture<T> dispatch(Query<T> query);
+
+}
@@ -0,0 +1,77 @@
+package com.barsifedron.candid.cqrs.query;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+/**
+ * The asynchronous twin of the QueryBusMiddleware. Same idea, same wiring.
+ * What you want to do "after" the query was handled goes in a callback on the returned future.
+ */
+public interface AsyncQueryBusMiddleware {
+
+    <T> CompletableFuture<T> dispatch(Query<T> query, AsyncQueryBus next);
+
+    /**
+     * Passes to the next in line without doing anything.
+     * Logically useless but helpful for some wiring operations.
+     */
+    static AsyncQueryBusMiddleware neutral() {
+        return new AsyncQueryBusMiddleware() {
+            @Override
+            public <T> CompletableFuture<T> dispatch(Query<T> query, AsyncQueryBus next) {
+                return next.dispatch(query);
+            }
+        };
+    }
+
+    /**
+     * Decorates a bus with this middleware.
+     */
+    default AsyncQueryBus decorate(AsyncQueryBus bus) {
+        AsyncQueryBusMiddleware thisMiddleware = this;
+        AsyncQueryBus decoratedQueryBus = new AsyncQueryBus() {
+            @Override
+            public <T> CompletableFuture<T> dispatch(Query<T> query) {
+                return thisMiddleware.dispatch(query, bus);
+            }
+        };
+        return decoratedQueryBus;
+    }
+
+    /**
+     * Decorates an existing middleware with this middleware.
+     * We can always make a composite middleware from two middleware....
+     */
+    default AsyncQueryBusMiddleware compose(AsyncQueryBusMiddleware middleware) {
+        AsyncQueryBusMiddleware thisMiddleware = this;
+        AsyncQueryBusMiddleware decoratedQueryBusMiddleware = new AsyncQueryBusMiddleware() {
+            @Override
+            public <T> CompletableFuture<T> dispatch(Query<T> query, AsyncQueryBus next) {
+                return thisMiddleware.dispatch(query, middleware.decorate(next));
+            }
+        };
+        return decoratedQueryBusMiddleware;
+    }
+
+    /**
+     * ... And when you can compose two you can compose many. Functionally...
+     */
+    static AsyncQueryBusMiddleware compositeOf(AsyncQueryBusMiddleware... middlewares) {
+        return Stream.of(middlewares).reduce(AsyncQueryBusMiddleware.neutral(), (m1, m2) -> m1.compose(m2));
+    }
+
+    /**
+     * ... or recursively. Whatever you like most.
+     */
+    static AsyncQueryBusMiddleware compositeOf(List<AsyncQueryBusMiddleware> middlewares) {
+        if (middlewares.isEmpty()) {
+            return AsyncQueryBusMiddleware.neutral();
+        }
+        if (middlewares.size() == 1) {
+            return middlewares.get(0);
+        }
+        return middlewares.get(0).compose(compositeOf(middlewares.subList(1, middlewares.size())));
+    }
+
+}
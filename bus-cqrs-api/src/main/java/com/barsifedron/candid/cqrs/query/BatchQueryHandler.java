@@ -0,0 +1,16 @@
+package com.barsifedron.candid.cqrs.query;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A handler able to answer many queries of its type at once, given their batch keys (see BatchableQuery).
+ * Typically with one "where id in (...)" instead of one query per id.
+ */
+public interface BatchQueryHandler<K, V, Q extends Query<V>> extends QueryHandler<V, Q> {
+
+    /**
+     * @return the result for every key. What handle would have returned for the query with that key.
+     */
+    Map<K, V> handleAll(Set<K> keys);
+}
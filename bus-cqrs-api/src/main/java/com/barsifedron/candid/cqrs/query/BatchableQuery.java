@@ -0,0 +1,14 @@
+package com.barsifedron.candid.cqrs.query;
+
+/**
+ * A query a QueryBatcher can batch with others of its type: the ones with a key are answered together,
+ * by a single call to the BatchQueryHandler of that type.
+ */
+public interface BatchableQuery<K> {
+
+    /**
+     * What tells this query from the others of its type. Typically the id it looks for.
+     * Null when this one can not be batched (it then goes to the handler on its own).
+     */
+    K batchKey();
+}
@@ -0,0 +1,32 @@
+package com.barsifedron.candid.cqrs.query;
+
+import java.util.concurrent.CompletionException;
+
+/**
+ * Turns an AsyncQueryBus back into a QueryBus, by waiting for the result.
+ * Failures come out as the exception thrown by the handler, not a CompletionException.
+ */
+public class BlockingQueryBus implements QueryBus {
+
+    private final AsyncQueryBus bus;
+
+    public BlockingQueryBus(AsyncQueryBus bus) {
+        this.bus = bus;
+    }
+
+    @Override
+    public <T> T dispatch(Query<T> query) {
+        try {
+            return bus.dispatch(query).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.barsifedron.candid.cqrs.query;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * A small cache, bounded in size, whose entries expire after some time.
+ * <p>
+ * When it is full, a new entry is only let in if it was asked for more often than the least recently used entry,
+ * which is then evicted (TinyLFU). How often keys are asked for is estimated by a count min sketch: a few bytes per entry,
+ * halved every now and then so old habits are forgotten. Keys asked for once and never again do not push the popular ones out.
+ * There is no admission window: a brand new key has to be asked for a few times before it makes it in a full cache.
+ * <p>
+ * Every method is synchronized. Good enough for a cache in front of a database. Not for a hot loop on many cores.
+ */
+public class BoundedCache<K, V> {
+
+    private static final int[] SEEDS = { 0x9E3779B1, 0x85EBCA77, 0xC2B2AE3D, 0x27D4EB2F };
+    private static final int MAX_FREQUENCY = 15;
+
+    private final int maximumSize;
+    private final long timeToLiveNanos;
+    private final LongSupplier nanoTime;
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    private final byte[][] sketch;
+    private final int sketchShift;
+    private final int sketchResetThreshold;
+    private int sketchAdditions;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+    private long rejections;
+    private long invalidations;
+
+    public BoundedCache(int maximumSize, long timeToLive, TimeUnit unit) {
+        this(maximumSize, timeToLive, unit, System::nanoTime);
+    }
+
+    BoundedCache(int maximumSize, long timeToLive, TimeUnit unit, LongSupplier nanoTime) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("Maximum size must be at least one, not " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+        this.timeToLiveNanos = unit.toNanos(timeToLive);
+        this.nanoTime = nanoTime;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+
+        int width = Integer.highestOneBit(Math.max(16, maximumSize * 4) - 1) << 1;
+        this.sketch = new byte[SEEDS.length][width];
+        this.sketchShift = 32 - Integer.numberOfTrailingZeros(width);
+        this.sketchResetThreshold = 10 * Math.max(16, maximumSize);
+    }
+
+    /**
+     * @return null when there is nothing (still valid) for this key
+     */
+    public synchronized V get(K key) {
+        recordAccess(key);
+        Entry<V> entry = entries.get(key);
+        if (entry != null && isExpired(entry)) {
+            entries.remove(key);
+            expirations++;
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value;
+    }
+
+    /**
+     * May not keep the value at all, when the cache is full of keys that are more in demand.
+     */
+    public synchronized void put(K key, V value) {
+        Entry<V> entry = new Entry<>(value, nanoTime.getAsLong() + timeToLiveNanos);
+        if (entries.containsKey(key) || entries.size() < maximumSize) {
+            entries.put(key, entry);
+            return;
+        }
+        Iterator<Map.Entry<K, Entry<V>>> eldest = entries.entrySet().iterator();
+        Map.Entry<K, Entry<V>> victim = eldest.next();
+        if (isExpired(victim.getValue())) {
+            eldest.remove();
+            expirations++;
+        } else if (frequency(key) > frequency(victim.getKey())) {
+            eldest.remove();
+            evictions++;
+        } else {
+            rejections++;
+            return;
+        }
+        entries.put(key, entry);
+    }
+
+    /**
+     * Only puts the value if nothing was invalidated since the given count (see invalidationCount).
+     * Keeps a value read before an invalidation from landing in the cache after it.
+     */
+    public synchronized void putIfNotInvalidatedSince(K key, V value, long invalidationCount) {
+        if (invalidations == invalidationCount) {
+            put(key, value);
+        }
+    }
+
+    public synchronized long invalidationCount() {
+        return invalidations;
+    }
+
+    public synchronized void invalidate(K key) {
+        invalidations++;
+        entries.remove(key);
+    }
+
+    public synchronized void invalidateIf(Predicate<? super K> predicate) {
+        invalidations++;
+        entries.keySet().removeIf(predicate);
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(entries.size(), hits, misses, evictions, expirations, rejections, invalidations);
+    }
+
+    private boolean isExpired(Entry<V> entry) {
+        return nanoTime.getAsLong() - entry.expiresAt >= 0;
+    }
+
+    private void recordAccess(K key) {
+        int hash = spread(key.hashCode());
+        for (int row = 0; row < SEEDS.length; row++) {
+            int index = (hash * SEEDS[row]) >>> sketchShift;
+            if (sketch[row][index] < MAX_FREQUENCY) {
+                sketch[row][index]++;
+            }
+        }
+        if (++sketchAdditions >= sketchResetThreshold) {
+            for (byte[] counters : sketch) {
+                for (int i = 0; i < counters.length; i++) {
+                    counters[i] >>= 1;
+                }
+            }
+            sketchAdditions /= 2;
+        }
+    }
+
+    private int frequency(K key) {
+        int hash = spread(key.hashCode());
+        int frequency = MAX_FREQUENCY;
+        for (int row = 0; row < SEEDS.length; row++) {
+            frequency = Math.min(frequency, sketch[row][(hash * SEEDS[row]) >>> sketchShift]);
+        }
+        return frequency;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static final class Entry<V> {
+
+        private final V value;
+        private final long expiresAt;
+
+        private Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    public static class Stats {
+
+        public final int size;
+        public final long hits;
+        public final long misses;
+        /**
+         * Pushed out by a new entry in more demand.
+         */
+        public final long evictions;
+        public final long expirations;
+        /**
+         * New entries not let in, as less in demand than the ones already there.
+         */
+        public final long rejections;
+        public final long invalidations;
+
+        public Stats(int size, long hits, long misses, long evictions, long expirations, long rejections, long invalidations) {
+            this.size = size;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.expirations = expirations;
+            this.rejections = rejections;
+            this.invalidations = invalidations;
+        }
+
+        @Override
+        public String toString() {
+            return "size=" + size
+                    + ", hits=" + hits
+                    + ", misses=" + misses
+                    + ", evictions=" + evictions
+                    + ", expirations=" + expirations
+                    + ", rejections=" + rejections
+                    + ", invalidations=" + invalidations;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.barsifedron.candid.cqrs.query;
+
+import com.barsifedron.candid.cqrs.command.BatchedCommandResponse;
+import com.barsifedron.candid.cqrs.command.Command;
+import com.barsifedron.candid.cqrs.command.CommandBus;
+import com.barsifedron.candid.cqrs.command.CommandBusMiddleware;
+import com.barsifedron.candid.cqrs.command.CommandResponse;
+import com.barsifedron.candid.cqrs.domainevent.DomainEvent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiPredicate;
+
+/**
+ * Keeps the results of some queries, so the handler does not run again for the same query.
+ * <p>
+ * Only the query types declared in the Rules are cached. The query itself is the key: it needs a proper equals and hashCode,
+ * and must not be changed once dispatched. A null result is not kept.
+ * The very same result instance is handed to every caller: it must not be modified by any of them.
+ * <p>
+ * Results go stale when the data behind them changes. The Rules say which domain events evict which cached queries.
+ * The evictingCommandBusMiddleware applies them for every command that went through.
+ * Entries are also dropped after a while anyway (the time to live of the cache), for whatever changed behind our back.
+ * <p>
+ * A result read while an eviction happened is not cached: it may have been read just before the change.
+ */
+public class CachingQueryBusMiddleware implements QueryBusMiddleware {
+
+    private final Rules rules;
+    private final BoundedCache<Query<?>, Object> cache;
+
+    public CachingQueryBusMiddleware(Rules rules, int maximumSize, long timeToLive, TimeUnit unit) {
+        this(rules, new BoundedCache<>(maximumSize, timeToLive, unit));
+    }
+
+    public CachingQueryBusMiddleware(Rules rules, BoundedCache<Query<?>, Object> cache) {
+        this.rules = rules.copy();
+        this.cache = cache;
+    }
+
+    @Override
+    public <T> T dispatch(Query<T> query, QueryBus next) {
+        if (!rules.cached.contains(query.getClass())) {
+            return next.dispatch(query);
+        }
+        T cached = (T) cache.get(query);
+        if (cached != null) {
+            return cached;
+        }
+        long invalidations = cache.invalidationCount();
+        T result = next.dispatch(query);
+        if (result != null) {
+            cache.putIfNotInvalidatedSince(query, result, invalidations);
+        }
+        return result;
+    }
+
+    /**
+     * Drops the cached queries this event makes stale.
+     */
+    public void evict(DomainEvent event) {
+        for (Eviction eviction : rules.evictions.getOrDefault(event.getClass(), Collections.emptyList())) {
+            cache.invalidateIf(query -> query.getClass() == eviction.queryClass && eviction.when.test(query, event));
+        }
+    }
+
+    public BoundedCache.Stats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * Evicts with the events of every command that went through. Of every command of a batch that went through, too.
+     * <p>
+     * Put it in front of the middleware running the transaction: eviction then happens once the changes are committed.
+     * Behind it, a query could read and cache the old data again between the eviction and the commit.
+     */
+    public CommandBusMiddleware evictingCommandBusMiddleware() {
+        return new CommandBusMiddleware() {
+            @Override
+            public <T> CommandResponse<T> dispatch(Command<T> command, CommandBus next) {
+                CommandResponse<T> response = next.dispatch(command);
+                response.domainEvents.forEach(CachingQueryBusMiddleware.this::evict);
+                return response;
+            }
+
+            @Override
+            public List<BatchedCommandResponse<?>> dispatchAll(List<? extends Command<?>> commands, CommandBus next) {
+                List<BatchedCommandResponse<?>> responses = next.dispatchAll(commands);
+                for (BatchedCommandResponse<?> response : responses) {
+                    if (response.succeeded()) {
+                        response.response.domainEvents.forEach(CachingQueryBusMiddleware.this::evict);
+                    }
+                }
+                return responses;
+            }
+        };
+    }
+
+    /**
+     * Which queries to cache, and which events make them stale.
+     */
+    public static class Rules {
+
+        private final Set<Class<?>> cached;
+        private final Map<Class<?>, List<Eviction>> evictions;
+
+        public Rules() {
+            this(new HashSet<>(), new HashMap<>());
+        }
+
+        private Rules(Set<Class<?>> cached, Map<Class<?>, List<Eviction>> evictions) {
+            this.cached = cached;
+            this.evictions = evictions;
+        }
+
+        public Rules cache(Class<? extends Query<?>> queryClass) {
+            cached.add(queryClass);
+            return this;
+        }
+
+        /**
+         * Evicts the cached queries of this type for which the predicate holds, when such an event happens.
+         */
+        public <Q extends Query<?>, E extends DomainEvent> Rules evict(
+                Class<Q> queryClass,
+                Class<E> eventClass,
+                BiPredicate<? super Q, ? super E> when) {
+            evictions
+                    .computeIfAbsent(eventClass, key -> new ArrayList<>())
+                    .add(new Eviction(queryClass, (query, event) -> when.test(queryClass.cast(query), eventClass.cast(event))));
+            return this;
+        }
+
+        /**
+         * Evicts every cached query of this type when such an event happens.
+         */
+        public Rules evictAll(Class<? extends Query<?>> queryClass, Class<? extends DomainEvent> eventClass) {
+            evictions
+                    .computeIfAbsent(eventClass, key -> new ArrayList<>())
+                    .add(new Eviction(queryClass, (query, event) -> true));
+            return this;
+        }
+
+        private Rules copy() {
+            Map<Class<?>, List<Eviction>> evictionsCopy = new HashMap<>();
+            evictions.forEach((eventClass, list) -> evictionsCopy.put(eventClass, Collections.unmodifiableList(new ArrayList<>(list))));
+            return new Rules(
+                    Collections.unmodifiableSet(new HashSet<>(cached)),
+                    Collections.unmodifiableMap(evictionsCopy));
+        }
+    }
+
+    private static class Eviction {
+
+        private final Class<?> queryClass;
+        private final BiPredicate<Query<?>, DomainEvent> when;
+
+        private Eviction(Class<?> queryClass, BiPredicate<Query<?>, DomainEvent> when) {
+            this.queryClass = queryClass;
+            this.when = when;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.barsifedron.candid.cqrs.query;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toMap;
+import static java.util.stream.Collectors.toSet;
+
+/**
+ * Dispatches the query to the right Query Handler, like the MapQueryBus, with two differences:
+ * <p>
+ * 1. The handler of a query class is looked up once, then remembered (in a ClassValue, so right next to the class).
+ * Dispatching after that is a plain read, without locks and without allocating anything.
+ * <p>
+ * 2. A query that has no handler of its own goes to the handler of its closest parent:
+ * its superclasses first, nearest first, then the interfaces it implements, nearest first.
+ * <p>
+ * A QueryBatch goes to the handler of the queries it is made of.
+ * <p>
+ * The handlers are copied when the bus is built. Registering a handler in your map afterwards will not change this bus.
+ */
+public class ClassValueQueryBus implements QueryBus {
+
+    private static final Supplier<QueryHandler> NOT_FOUND = () -> null;
+
+    private final Map<Class<Query>, Supplier<QueryHandler>> handlers;
+
+    private final ClassValue<Supplier<QueryHandler>> dispatchTable = new ClassValue<Supplier<QueryHandler>>() {
+        @Override
+        protected Supplier<QueryHandler> computeValue(Class<?> queryClass) {
+            return resolve(queryClass);
+        }
+    };
+
+    public ClassValueQueryBus(QueryHandler... queryHandlers) {
+        this(Stream.of(queryHandlers).collect(toSet()));
+    }
+
+    public ClassValueQueryBus(Set<? extends QueryHandler> handlers) {
+        this(handlers.stream().collect(toMap(
+                handler -> handler.listenTo(),
+                handler -> () -> handler))
+        );
+    }
+
+    public ClassValueQueryBus(Map<Class<Query>, Supplier<QueryHandler>> handlers) {
+        this.handlers = Collections.unmodifiableMap(new HashMap<>(handlers));
+    }
+
+    @Override
+    public <T> T dispatch(Query<T> query) {
+        if (query instanceof QueryBatch) {
+            QueryBatch batch = (QueryBatch) query;
+            return (T) batch.handleWith(handlerOf(batch.queryClass));
+        }
+        return (T) handlerOf(query.getClass()).handle(query);
+    }
+
+    private QueryHandler handlerOf(Class<? extends Query> queryClass) {
+        Supplier<QueryHandler> handlerSupplier = dispatchTable.get(queryClass);
+        if (handlerSupplier == NOT_FOUND) {
+            throw new MapQueryBus.QueryHandlerNotFoundException(queryClass);
+        }
+        return handlerSupplier.get();
+    }
+
+    private Supplier<QueryHandler> resolve(Class<?> queryClass) {
+        for (Class<?> aClass = queryClass; aClass != null; aClass = aClass.getSuperclass()) {
+            Supplier<QueryHandler> handlerSupplier = handlers.get(aClass);
+            if (handlerSupplier != null) {
+                return handlerSupplier;
+            }
+        }
+        Deque<Class<?>> toVisit = new ArrayDeque<>();
+        Set<Class<?>> visited = new HashSet<>();
+        for (Class<?> aClass = queryClass; aClass != null; aClass = aClass.getSuperclass()) {
+            Collections.addAll(toVisit, aClass.getInterfaces());
+        }
+        while (!toVisit.isEmpty()) {
+            Class<?> anInterface = toVisit.poll();
+            if (!visited.add(anInterface)) {
+                continue;
+            }
+            Supplier<QueryHandler> handlerSupplier = handlers.get(anInterface);
+            if (handlerSupplier != null) {
+                return handlerSupplier;
+            }
+            Collections.addAll(toVisit, anInterface.getInterfaces());
+        }
+        return NOT_FOUND;
+    }
+}
@@ -0,0 +1,65 @@
+package com.barsifedron.candid.cqrs.query;
+
+import com.barsifedron.candid.cqrs.limit.AdaptiveConcurrencyLimit;
+
+import java.util.function.Supplier;
+
+/**
+ * Sheds load: over the limit of their type of query (or the shared one), queries wait a little, then are rejected
+ * with an AdaptiveConcurrencyLimit.LimitExceededException. Tell your users to come back later (a 503), rather than
+ * letting every thread of the server wait on a database that does not keep up.
+ * <p>
+ * Put it last in line, right in front of the handlers: cache hits and queries run by another thread already
+ * (see SingleFlightQueryBusMiddleware) have nothing to wait for.
+ */
+public class ConcurrencyLimitingQueryBusMiddleware implements QueryBusMiddleware {
+
+    private final ClassValue<AdaptiveConcurrencyLimit> limits;
+
+    private ConcurrencyLimitingQueryBusMiddleware(ClassValue<AdaptiveConcurrencyLimit> limits) {
+        this.limits = limits;
+    }
+
+    /**
+     * One limit for all queries.
+     */
+    public static ConcurrencyLimitingQueryBusMiddleware shared(AdaptiveConcurrencyLimit limit) {
+        return new ConcurrencyLimitingQueryBusMiddleware(new ClassValue<AdaptiveConcurrencyLimit>() {
+            @Override
+            protected AdaptiveConcurrencyLimit computeValue(Class<?> queryType) {
+                return limit;
+            }
+        });
+    }
+
+    /**
+     * A limit of its own for every type of query, created on its first query: a slow report does not hold the others back.
+     */
+    public static ConcurrencyLimitingQueryBusMiddleware perType(Supplier<AdaptiveConcurrencyLimit> newLimit) {
+        return new ConcurrencyLimitingQueryBusMiddleware(new ClassValue<AdaptiveConcurrencyLimit>() {
+            @Override
+            protected AdaptiveConcurrencyLimit computeValue(Class<?> queryType) {
+                return newLimit.get();
+            }
+        });
+    }
+
+    /**
+     * The limit queries of this type go through.
+     */
+    public AdaptiveConcurrencyLimit limitOf(Class<?> queryType) {
+        return limits.get(queryType);
+    }
+
+    @Override
+    public <T> T dispatch(Query<T> query, QueryBus next) {
+        AdaptiveConcurrencyLimit limit = limits.get(query.getClass());
+        limit.acquire(query.getClass());
+        long start = System.nanoTime();
+        try {
+            return next.dispatch(query);
+        } finally {
+            limit.release(System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.barsifedron.candid.cqrs.query;
+
+import com.barsifedron.candid.cqrs.deadline.Deadline;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fails fast, with a Deadline.DeadlineExceededException, a query that has too little time left to be worth starting.
+ * <p>
+ * The deadline is the one of the caller (see Deadline.open), else one given to every query from now on, when a default
+ * timeout is set. The handlers then see it as Deadline.current(), and can pass what is left of it on to the database.
+ */
+public class DeadlineQueryBusMiddleware implements QueryBusMiddleware {
+
+    private final long defaultTimeoutNanos;
+    private final long minimumBudgetNanos;
+
+    /**
+     * @param defaultTimeout for the queries sent without a deadline. 0 to leave them without one.
+     * @param minimumBudget  the least time left for a query to be worth starting
+     */
+    public DeadlineQueryBusMiddleware(long defaultTimeout, long minimumBudget, TimeUnit unit) {
+        this.defaultTimeoutNanos = unit.toNanos(defaultTimeout);
+        this.minimumBudgetNanos = unit.toNanos(minimumBudget);
+    }
+
+    @Override
+    public <T> T dispatch(Query<T> query, QueryBus next) {
+        Deadline deadline = Deadline.current();
+        if (deadline == null) {
+            if (defaultTimeoutNanos <= 0) {
+                return next.dispatch(query);
+            }
+            deadline = Deadline.after(defaultTimeoutNanos, TimeUnit.NANOSECONDS);
+        }
+        long remainingNanos = deadline.remaining(TimeUnit.NANOSECONDS);
+        if (remainingNanos < minimumBudgetNanos) {
+            throw new Deadline.DeadlineExceededException(query.getClass().getSimpleName()
+                    + " not run: " + TimeUnit.NANOSECONDS.toMillis(remainingNanos) + " ms left to its deadline");
+        }
+        return Deadline.runWithin(deadline, () -> next.dispatch(query));
+    }
+}
@@ -0,0 +1,29 @@
+package com.barsifedron.candid.cqrs.query;
+
+import com.barsifedron.candid.cqrs.deadline.Deadline;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Turns a QueryBus into an AsyncQueryBus: each query is dispatched to the decorated bus on the given executor.
+ * <p>
+ * Nothing bound to the calling thread (transaction, security context...) follows the query on the executor thread.
+ * Its deadline does, see Deadline.
+ */
+public class ExecutorQueryBus implements AsyncQueryBus {
+
+    private final QueryBus bus;
+    private final Executor executor;
+
+    public ExecutorQueryBus(QueryBus bus, Executor executor) {
+        this.bus = bus;
+        this.executor = executor;
+    }
+
+    @Override
+    public <T> CompletableFuture<T> dispatch(Query<T> query) {
+        Deadline deadline = Deadline.current();
+        return CompletableFuture.supplyAsync(() -> Deadline.runWithin(deadline, () -> bus.dispatch(query)), executor);
+    }
+}
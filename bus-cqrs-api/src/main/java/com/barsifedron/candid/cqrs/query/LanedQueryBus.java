@@ -0,0 +1,270 @@
+package com.barsifedron.candid.cqrs.query;
+
+import com.barsifedron.candid.cqrs.deadline.Deadline;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs queries on lanes of their own: a few threads and a bounded queue per lane.
+ * Reports scanning whole tables on a "batch" lane, reads of a single member on an "interactive" one:
+ * however many reports are asked for, they never take more than the threads of their lane, nor make the reads wait in line.
+ * <p>
+ * The threads of a lane are also the most connections its queries can hold at the same time.
+ * Keep the threads of all the lanes within the size of the connection pool, and a lane can not starve the others.
+ * <p>
+ * The lane of a query is the one it was assigned to (see Lanes.assign), else the one of its @QueryLane annotation,
+ * else the default lane. When the queue of its lane is full, the query is rejected with a QueryRejectedException.
+ * <p>
+ * A query dispatched from a lane thread (a report reading a member...) runs right away on that thread.
+ * It holds a thread and a connection already: waiting in line for another one could deadlock.
+ * <p>
+ * The deadline of the caller goes along with the query. A query still in line when it passes is not run.
+ */
+public class LanedQueryBus implements AsyncQueryBus {
+
+    private final QueryBus bus;
+    private final Map<String, Lane> lanes = new LinkedHashMap<>();
+    private final Lane defaultLane;
+    private final ClassValue<Lane> laneOfType = new ClassValue<Lane>() {
+        @Override
+        protected Lane computeValue(Class<?> queryType) {
+            return laneOf(queryType);
+        }
+    };
+    private final Map<Class<?>, String> assignments;
+
+    public LanedQueryBus(QueryBus bus, Lanes lanes) {
+        if (!lanes.settings.containsKey(lanes.defaultLane)) {
+            throw new IllegalArgumentException("No settings for the default lane " + lanes.defaultLane);
+        }
+        for (Map.Entry<Class<?>, String> assignment : lanes.assignments.entrySet()) {
+            if (!lanes.settings.containsKey(assignment.getValue())) {
+                throw new IllegalArgumentException(assignment.getKey().getSimpleName() + " assigned to an unknown lane: " + assignment.getValue());
+            }
+        }
+        this.bus = bus;
+        lanes.settings.forEach((name, settings) -> this.lanes.put(name, new Lane(name, settings[0], settings[1])));
+        this.defaultLane = this.lanes.get(lanes.defaultLane);
+        this.assignments = Collections.unmodifiableMap(new HashMap<>(lanes.assignments));
+    }
+
+    @Override
+    public <T> CompletableFuture<T> dispatch(Query<T> query) {
+        if (Thread.currentThread() instanceof LaneThread && ((LaneThread) Thread.currentThread()).bus == this) {
+            return runNow(query);
+        }
+        Lane lane = laneOfType.get(query.getClass());
+        Deadline deadline = Deadline.current();
+        CompletableFuture<T> future = new CompletableFuture<>();
+        lane.execute(() -> {
+            try {
+                if (deadline != null && deadline.isExpired()) {
+                    throw new Deadline.DeadlineExceededException(query.getClass().getSimpleName() + " waited in lane " + lane.name + " past its deadline");
+                }
+                future.complete(Deadline.runWithin(deadline, () -> bus.dispatch(query)));
+            } catch (Throwable throwable) {
+                future.completeExceptionally(throwable);
+            }
+        });
+        return future;
+    }
+
+    private <T> CompletableFuture<T> runNow(Query<T> query) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            future.complete(bus.dispatch(query));
+        } catch (Throwable throwable) {
+            future.completeExceptionally(throwable);
+        }
+        return future;
+    }
+
+    private Lane laneOf(Class<?> queryType) {
+        String assigned = assignments.get(queryType);
+        if (assigned != null) {
+            return lanes.get(assigned);
+        }
+        QueryLane annotation = queryType.getAnnotation(QueryLane.class);
+        if (annotation == null) {
+            return defaultLane;
+        }
+        Lane lane = lanes.get(annotation.value());
+        if (lane == null) {
+            throw new IllegalArgumentException(queryType.getSimpleName() + " asks for an unknown lane: " + annotation.value());
+        }
+        return lane;
+    }
+
+    /**
+     * The name of the lane queries of this type run on.
+     */
+    public String laneNameOf(Class<?> queryType) {
+        return laneOfType.get(queryType).name;
+    }
+
+    /**
+     * One snapshot per lane, in the order they were added.
+     */
+    public List<LaneMetrics> laneMetrics() {
+        List<LaneMetrics> metrics = new ArrayList<>(lanes.size());
+        for (Lane lane : lanes.values()) {
+            metrics.add(lane.metrics());
+        }
+        return metrics;
+    }
+
+    /**
+     * Stops accepting queries. What is already queued still runs.
+     */
+    public void shutdown() {
+        lanes.values().forEach(lane -> lane.executor.shutdown());
+    }
+
+    /**
+     * @return false if some lane was still busy when the timeout elapsed
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Lane lane : lanes.values()) {
+            if (!lane.executor.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private final class Lane {
+
+        private final String name;
+        private final ThreadPoolExecutor executor;
+        private final AtomicLong rejected = new AtomicLong();
+
+        private Lane(String name, int threads, int queueCapacity) {
+            this.name = name;
+            AtomicInteger threadCount = new AtomicInteger();
+            this.executor = new ThreadPoolExecutor(
+                    threads,
+                    threads,
+                    0,
+                    TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity),
+                    runnable -> new LaneThread(LanedQueryBus.this, runnable, "query-lane-" + name + "-" + threadCount.incrementAndGet()));
+        }
+
+        private void execute(Runnable task) {
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                rejected.incrementAndGet();
+                throw new QueryRejectedException(executor.isShutdown()
+                        ? "Query bus lane " + name + " is shut down"
+                        : "Query bus lane " + name + " is full");
+            }
+        }
+
+        private LaneMetrics metrics() {
+            return new LaneMetrics(
+                    name,
+                    executor.getMaximumPoolSize(),
+                    executor.getActiveCount(),
+                    executor.getQueue().size(),
+                    executor.getQueue().remainingCapacity(),
+                    executor.getCompletedTaskCount(),
+                    rejected.get());
+        }
+    }
+
+    private static final class LaneThread extends Thread {
+
+        private final LanedQueryBus bus;
+
+        private LaneThread(LanedQueryBus bus, Runnable runnable, String name) {
+            super(runnable, name);
+            this.bus = bus;
+            setDaemon(true);
+        }
+    }
+
+    /**
+     * The lanes, their threads and queues, and which queries go where.
+     */
+    public static class Lanes {
+
+        private final String defaultLane;
+        private final Map<String, int[]> settings = new LinkedHashMap<>();
+        private final Map<Class<?>, String> assignments = new HashMap<>();
+
+        /**
+         * @param defaultLane for the queries neither assigned nor annotated
+         */
+        public Lanes(String defaultLane) {
+            this.defaultLane = defaultLane;
+        }
+
+        public Lanes add(String name, int threads, int queueCapacity) {
+            if (threads < 1 || queueCapacity < 1) {
+                throw new IllegalArgumentException("Lane " + name + " needs at least one thread and room for one query");
+            }
+            settings.put(name, new int[] { threads, queueCapacity });
+            return this;
+        }
+
+        /**
+         * Runs queries of this exact class on that lane, whatever their @QueryLane says.
+         */
+        public Lanes assign(Class<? extends Query<?>> queryType, String lane) {
+            assignments.put(queryType, lane);
+            return this;
+        }
+    }
+
+    public static class LaneMetrics {
+
+        public final String lane;
+        public final int threads;
+        public final int active;
+        public final int queueDepth;
+        public final int remainingCapacity;
+        public final long completed;
+        public final long rejected;
+
+        public LaneMetrics(String lane, int threads, int active, int queueDepth, int remainingCapacity, long completed, long rejected) {
+            this.lane = lane;
+            this.threads = threads;
+            this.active = active;
+            this.queueDepth = queueDepth;
+            this.remainingCapacity = remainingCapacity;
+            this.completed = completed;
+            this.rejected = rejected;
+        }
+
+        @Override
+        public String toString() {
+            return "lane " + lane
+                    + " : threads=" + threads
+                    + ", active=" + active
+                    + ", depth=" + queueDepth
+                    + ", remainingCapacity=" + remainingCapacity
+                    + ", completed=" + completed
+                    + ", rejected=" + rejected;
+        }
+    }
+
+    public static class QueryRejectedException extends RuntimeException {
+        public QueryRejectedException(String message) {
+            super(message);
+        }
+    }
+}
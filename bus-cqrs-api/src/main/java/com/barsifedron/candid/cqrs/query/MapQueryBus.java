@@ -12,6 +12,7 @@ import static java.util.stream.Collectors.toMap;
 /**
  * This is in charge of dispatching the query to the right Query Handler.
  * This will only allow for one handler per query type. As it should be.
+ * A QueryBatch goes to the handler of the queries it is made of.
  */
 public class MapQueryBus implements QueryBus {
 
@@ -38,11 +39,18 @@ public class MapQueryBus implements QueryBus {
 
     @Override
     public <T> T dispatch(Query<T> query) {
-        QueryHandler queryHandler = Optional
-                .ofNullable(handlers.get(query.getClass()))
+        if (query instanceof QueryBatch) {
+            QueryBatch batch = (QueryBatch) query;
+            return (T) batch.handleWith(handlerOf(batch.queryClass));
+        }
+        return (T) handlerOf(query.getClass()).handle(query);
+    }
+
+    private QueryHandler handlerOf(Class<? extends Query> queryClass) {
+        return Optional
+                .ofNullable(handlers.get(queryClass))
                 .map(handlerSupplier -> handlerSupplier.get())
-                .orElseThrow(() -> new QueryHandlerNotFoundException(query.getClass()));
-        return (T) queryHandler.handle(query);
+                .orElseThrow(() -> new QueryHandlerNotFoundException(queryClass));
     }
 
     public static class QueryHandlerNotFoundException extends RuntimeException {
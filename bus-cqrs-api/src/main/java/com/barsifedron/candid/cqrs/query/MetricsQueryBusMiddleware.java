@@ -0,0 +1,31 @@
+package com.barsifedron.candid.cqrs.query;
+
+import com.barsifedron.candid.cqrs.metrics.BusMetrics;
+
+/**
+ * Times every query and counts how it went, by type of query. Nothing is logged.
+ * <p>
+ * Put it first in line to time the whole chain (cache hits included), or behind the cache to time the handlers alone.
+ * A QueryBatch is recorded as such, not as the queries it is made of.
+ */
+public class MetricsQueryBusMiddleware implements QueryBusMiddleware {
+
+    private final BusMetrics metrics;
+
+    public MetricsQueryBusMiddleware(BusMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public <T> T dispatch(Query<T> query, QueryBus next) {
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            T result = next.dispatch(query);
+            succeeded = true;
+            return result;
+        } finally {
+            metrics.record(query.getClass(), System.nanoTime() - start, succeeded);
+        }
+    }
+}
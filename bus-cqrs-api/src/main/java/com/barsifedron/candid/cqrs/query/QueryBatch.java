@@ -0,0 +1,39 @@
+package com.barsifedron.candid.cqrs.query;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Queries of the same type, by batch key, to be answered together. Just another query for the middlewares:
+ * the terminal bus gives it to the handler of queryClass.
+ * <p>
+ * Usually built by a QueryBatcher rather than by hand.
+ */
+public final class QueryBatch<K, V, Q extends Query<V>> implements Query<Map<K, V>> {
+
+    public final Class<Q> queryClass;
+    public final Map<K, Q> queries;
+
+    public QueryBatch(Class<Q> queryClass, Map<K, Q> queries) {
+        this.queryClass = queryClass;
+        this.queries = Collections.unmodifiableMap(new LinkedHashMap<>(queries));
+    }
+
+    /**
+     * In one go when the handler is a BatchQueryHandler. One query after the other otherwise.
+     */
+    public Map<K, V> handleWith(QueryHandler<V, Q> handler) {
+        if (handler instanceof BatchQueryHandler) {
+            return ((BatchQueryHandler<K, V, Q>) handler).handleAll(queries.keySet());
+        }
+        Map<K, V> results = new LinkedHashMap<>();
+        queries.forEach((key, query) -> results.put(key, handler.handle(query)));
+        return results;
+    }
+
+    @Override
+    public String toString() {
+        return "QueryBatch of " + queries.size() + " " + queryClass.getSimpleName() + " " + queries.keySet();
+    }
+}
@@ -0,0 +1,110 @@
+package com.barsifedron.candid.cqrs.query;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Collects queries, then dispatches them all at once: the BatchableQuery(s) of the same type as one QueryBatch,
+ * the others one by one. Same idea as a DataLoader, without an event loop: dispatch is called explicitly,
+ * once whoever needed data has asked for it.
+ * <p>
+ * Queries with the same batch key are only fetched once. A batch of a single query is dispatched as that query.
+ * When a batch fails, every query of it fails with the same exception.
+ * <p>
+ * Meant for one request, on one thread. Not thread safe.
+ */
+public class QueryBatcher {
+
+    private final QueryBus bus;
+    private Map<Class<?>, Map<Object, Pending>> batched = new LinkedHashMap<>();
+    private List<Pending> unbatched = new ArrayList<>();
+
+    public QueryBatcher(QueryBus bus) {
+        this.bus = bus;
+    }
+
+    /**
+     * Nothing is dispatched yet: the future completes on the next call to dispatch.
+     */
+    public <T> CompletableFuture<T> load(Query<T> query) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        Object key = query instanceof BatchableQuery ? ((BatchableQuery<?>) query).batchKey() : null;
+        if (key == null) {
+            unbatched.add(new Pending(query, future));
+        } else {
+            batched
+                    .computeIfAbsent(query.getClass(), queryClass -> new LinkedHashMap<>())
+                    .computeIfAbsent(key, sameKey -> new Pending(query))
+                    .futures
+                    .add(future);
+        }
+        return (CompletableFuture<T>) future;
+    }
+
+    /**
+     * Dispatches everything loaded so far. Queries loaded meanwhile (by whoever waits on a result) wait for the next call.
+     */
+    public void dispatch() {
+        Map<Class<?>, Map<Object, Pending>> batchedNow = batched;
+        List<Pending> unbatchedNow = unbatched;
+        batched = new LinkedHashMap<>();
+        unbatched = new ArrayList<>();
+
+        batchedNow.forEach(this::dispatchBatch);
+        unbatchedNow.forEach(pending -> {
+            try {
+                pending.complete(bus.dispatch(pending.query));
+            } catch (RuntimeException exception) {
+                pending.fail(exception);
+            }
+        });
+    }
+
+    private void dispatchBatch(Class<?> queryClass, Map<Object, Pending> pendings) {
+        if (pendings.size() == 1) {
+            Pending pending = pendings.values().iterator().next();
+            try {
+                pending.complete(bus.dispatch(pending.query));
+            } catch (RuntimeException exception) {
+                pending.fail(exception);
+            }
+            return;
+        }
+        Map<Object, Query> queries = new LinkedHashMap<>();
+        pendings.forEach((key, pending) -> queries.put(key, pending.query));
+        Map<Object, Object> results;
+        try {
+            results = (Map<Object, Object>) bus.dispatch(new QueryBatch(queryClass, queries));
+        } catch (RuntimeException exception) {
+            pendings.values().forEach(pending -> pending.fail(exception));
+            return;
+        }
+        pendings.forEach((key, pending) -> pending.complete(results.get(key)));
+    }
+
+    private static class Pending {
+
+        private final Query<?> query;
+        private final List<CompletableFuture<Object>> futures = new ArrayList<>(1);
+
+        private Pending(Query<?> query) {
+            this.query = query;
+        }
+
+        private Pending(Query<?> query, CompletableFuture<Object> future) {
+            this(query);
+            futures.add(future);
+        }
+
+        private void complete(Object result) {
+            futures.forEach(future -> future.complete(result));
+        }
+
+        private void fail(RuntimeException exception) {
+            futures.forEach(future -> future.completeExceptionally(exception));
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.barsifedron.candid.cqrs.query;
+
+import com.barsifedron.candid.cqrs.metrics.PipelineProfile;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A chain of middleware, put together once and for all in front of a bus.
+ * <p>
+ * Same ordering as compositeOf(...).decorate(bus), without decorating every hop again on each dispatch.
+ * The first middleware of the list is the outermost one.
+ * See CommandBusPipeline for the longer story, and for profiling.
+ */
+public final class QueryBusPipeline implements QueryBus {
+
+    private final QueryBusMiddleware[] middlewares;
+
+    /**
+     * stages[i] goes through middlewares[i] and onwards. The last one is the terminal bus.
+     */
+    private final QueryBus[] stages;
+
+    /**
+     * Null unless compiled with profiling.
+     */
+    private final PipelineProfile profile;
+
+    private QueryBusPipeline(QueryBusMiddleware[] middlewares, QueryBus terminalBus, boolean profiled) {
+        this.middlewares = middlewares;
+        this.stages = new QueryBus[middlewares.length + 1];
+        if (!profiled) {
+            this.profile = null;
+            for (int i = 0; i < middlewares.length; i++) {
+                stages[i] = new Stage(i);
+            }
+            stages[middlewares.length] = terminalBus;
+            return;
+        }
+        List<String> stageNames = new ArrayList<>();
+        for (QueryBusMiddleware middleware : middlewares) {
+            stageNames.add(PipelineProfile.stageName(middleware));
+        }
+        stageNames.add(PipelineProfile.stageName(terminalBus));
+        this.profile = new PipelineProfile(stageNames);
+        for (int i = 0; i < middlewares.length; i++) {
+            stages[i] = new ProfiledStage(i);
+        }
+        stages[middlewares.length] = new ProfiledTerminalStage(terminalBus);
+    }
+
+    public static QueryBusPipeline compile(QueryBus terminalBus, QueryBusMiddleware... middlewares) {
+        return compile(terminalBus, Arrays.asList(middlewares));
+    }
+
+    public static QueryBusPipeline compile(QueryBus terminalBus, List<QueryBusMiddleware> middlewares) {
+        return compile(terminalBus, middlewares, false);
+    }
+
+    /**
+     * The same pipeline, timing the exclusive time of each stage, by type of query. See profile().
+     */
+    public static QueryBusPipeline compileProfiled(QueryBus terminalBus, QueryBusMiddleware... middlewares) {
+        return compileProfiled(terminalBus, Arrays.asList(middlewares));
+    }
+
+    public static QueryBusPipeline compileProfiled(QueryBus terminalBus, List<QueryBusMiddleware> middlewares) {
+        return compile(terminalBus, middlewares, true);
+    }
+
+    private static QueryBusPipeline compile(QueryBus terminalBus, List<QueryBusMiddleware> middlewares, boolean profiled) {
+        if (terminalBus == null) {
+            throw new IllegalArgumentException("A pipeline needs a bus to end with");
+        }
+        if (middlewares.contains(null)) {
+            throw new IllegalArgumentException("Can not compile a pipeline with a null middleware");
+        }
+        return new QueryBusPipeline(middlewares.toArray(new QueryBusMiddleware[0]), terminalBus, profiled);
+    }
+
+    @Override
+    public <T> T dispatch(Query<T> query) {
+        return stages[0].dispatch(query);
+    }
+
+    public int depth() {
+        return middlewares.length;
+    }
+
+    /**
+     * The time spent in each stage, without the stages further down. Null when the pipeline was not compiled with profiling.
+     */
+    public PipelineProfile profile() {
+        return profile;
+    }
+
+    private final class Stage implements QueryBus {
+
+        private final int index;
+
+        private Stage(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public <T> T dispatch(Query<T> query) {
+            return middlewares[index].dispatch(query, stages[index + 1]);
+        }
+    }
+
+    private final class ProfiledStage implements QueryBus {
+
+        private final int index;
+
+        private ProfiledStage(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public <T> T dispatch(Query<T> query) {
+            TimedNext next = new TimedNext(stages[index + 1]);
+            long start = System.nanoTime();
+            try {
+                return middlewares[index].dispatch(query, next);
+            } finally {
+                profile.record(query.getClass(), index, System.nanoTime() - start - next.nanos);
+            }
+        }
+    }
+
+    private final class ProfiledTerminalStage implements QueryBus {
+
+        private final QueryBus terminalBus;
+
+        private ProfiledTerminalStage(QueryBus terminalBus) {
+            this.terminalBus = terminalBus;
+        }
+
+        @Override
+        public <T> T dispatch(Query<T> query) {
+            long start = System.nanoTime();
+            try {
+                return terminalBus.dispatch(query);
+            } finally {
+                profile.record(query.getClass(), middlewares.length, System.nanoTime() - start);
+            }
+        }
+    }
+
+    private static final class TimedNext implements QueryBus {
+
+        private final QueryBus next;
+        private long nanos;
+
+        private TimedNext(QueryBus next) {
+            this.next = next;
+        }
+
+        @Override
+        public <T> T dispatch(Query<T> query) {
+            long start = System.nanoTime();
+            try {
+                return next.dispatch(query);
+            } finally {
+                nanos += System.nanoTime() - start;
+            }
+        }
+    }
+}
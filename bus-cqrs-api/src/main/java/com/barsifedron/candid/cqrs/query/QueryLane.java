@@ -0,0 +1,20 @@
+package com.barsifedron.candid.cqrs.query;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The lane of a LanedQueryBus queries of this type run on, unless the bus was told otherwise.
+ * Typically "batch" for the reports that scan whole tables.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface QueryLane {
+
+    String value();
+
+}
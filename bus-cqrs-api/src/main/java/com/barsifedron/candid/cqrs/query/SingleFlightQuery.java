@@ -0,0 +1,9 @@
+package com.barsifedron.candid.cqrs.query;
+
+/**
+ * A marker for the queries a SingleFlightQueryBusMiddleware may coalesce.
+ * <p>
+ * Only for queries with a proper equals and hashCode, whose result can be shared by every caller (and is not modified by any).
+ */
+public interface SingleFlightQuery {
+}
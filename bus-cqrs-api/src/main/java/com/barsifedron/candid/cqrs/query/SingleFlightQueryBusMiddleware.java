@@ -0,0 +1,80 @@
+package com.barsifedron.candid.cqrs.query;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * When the same query (as in equals) is dispatched while it is already running, waits for that one instead of running it again.
+ * Every caller then gets the same result. Or the same exception.
+ * <p>
+ * Only for the queries marked as SingleFlightQuery. Nothing is kept once the query is done: this is not a cache.
+ * <p>
+ * The first caller runs the query on its own thread. The others block until it is done.
+ * A handler dispatching the very query it is handling would wait for itself forever. Do not.
+ */
+public class SingleFlightQueryBusMiddleware implements QueryBusMiddleware {
+
+    private final ConcurrentHashMap<Query<?>, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder collapsed = new LongAdder();
+
+    @Override
+    public <T> T dispatch(Query<T> query, QueryBus next) {
+        if (!(query instanceof SingleFlightQuery)) {
+            return next.dispatch(query);
+        }
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> running = inFlight.putIfAbsent(query, flight);
+        if (running != null) {
+            collapsed.increment();
+            return (T) await(running);
+        }
+        executed.increment();
+        T result;
+        try {
+            result = next.dispatch(query);
+        } catch (RuntimeException | Error exception) {
+            inFlight.remove(query, flight);
+            flight.completeExceptionally(exception);
+            throw exception;
+        }
+        inFlight.remove(query, flight);
+        flight.complete(result);
+        return result;
+    }
+
+    /**
+     * Queries that actually ran.
+     */
+    public long executed() {
+        return executed.sum();
+    }
+
+    /**
+     * Calls that waited for an identical query already running, instead of running it again.
+     */
+    public long collapsed() {
+        return collapsed.sum();
+    }
+
+    public int inFlight() {
+        return inFlight.size();
+    }
+
+    private static Object await(CompletableFuture<Object> running) {
+        try {
+            return running.join();
+        } catch (CompletionException exception) {
+            Throwable cause = exception.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw exception;
+        }
+    }
+}
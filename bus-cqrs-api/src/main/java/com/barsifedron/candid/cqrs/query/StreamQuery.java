@@ -0,0 +1,17 @@
+package com.barsifedron.candid.cqrs.query;
+
+import java.util.stream.Stream;
+
+/**
+ * A query whose results are read as the caller goes, one by one, instead of all at once in a collection.
+ * For results too big to hold in memory.
+ * <p>
+ * The stream holds on to whatever it reads from (a database cursor, usually), until it is closed. So:
+ * <p>
+ * 1. Close it. Try with resources.
+ * 2. Consume it within the transaction (or whatever else) it was dispatched in. Once that is over, the cursor is gone.
+ * <p>
+ * Do not cache the result, nor hand it to another thread.
+ */
+public interface StreamQuery<T> extends Query<Stream<T>> {
+}
@@ -0,0 +1,151 @@
+package com.barsifedron.candid.cqrs.command;
+
+import com.barsifedron.candid.cqrs.deadline.Deadline;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AsyncCommandBusMiddlewareTest {
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void canDecorateAnAsyncCommandBusOrAnAsyncCommandMiddleware() {
+
+        List<String> logs = Collections.synchronizedList(new ArrayList<>());
+
+        AsyncCommandBusMiddleware firstMiddleware = new AsyncCommandBusMiddleware() {
+            @Override
+            public <T> CompletableFuture<CommandResponse<T>> dispatch(Command<T> command, AsyncCommandBus next) {
+                logs.add("First middleware");
+                return next.dispatch(command).whenComplete((response, failure) -> logs.add("First middleware"));
+            }
+        };
+
+        AsyncCommandBusMiddleware secondMiddleware = new AsyncCommandBusMiddleware() {
+            @Override
+            public <T> CompletableFuture<CommandResponse<T>> dispatch(Command<T> command, AsyncCommandBus next) {
+                logs.add("\tSecond middleware");
+                return next.dispatch(command).whenComplete((response, failure) -> logs.add("\tSecond middleware"));
+            }
+        };
+
+        CommandBus baseBus = new CommandBus() {
+            @Override
+            public <T> CommandResponse<T> dispatch(Command<T> command) {
+                logs.add("\t\tDecorated bus execution.");
+                return new MapCommandBus(new ReturnsThreadNameCommandHandler()).dispatch(command);
+            }
+        };
+        AsyncCommandBus asyncBaseBus = new ExecutorCommandBus(baseBus, executor);
+
+        AsyncCommandBus commandBus = firstMiddleware.decorate(secondMiddleware.decorate(asyncBaseBus));
+        AsyncCommandBus secondCommandBus = AsyncCommandBusMiddleware
+                .compositeOf(firstMiddleware, secondMiddleware)
+                .decorate(asyncBaseBus);
+
+        commandBus.dispatch(new ReturnThreadNameCommand()).join();
+        assertEquals(
+                "First middleware\n" +
+                        "\tSecond middleware\n" +
+                        "\t\tDecorated bus execution.\n" +
+                        "\tSecond middleware\n" +
+                        "First middleware",
+                logs.stream().collect(Collectors.joining("\n")));
+
+        logs.clear();
+
+        secondCommandBus.dispatch(new ReturnThreadNameCommand()).join();
+        assertEquals(
+                "First middleware\n" +
+                        "\tSecond middleware\n" +
+                        "\t\tDecorated bus execution.\n" +
+                        "\tSecond middleware\n" +
+                        "First middleware",
+                logs.stream().collect(Collectors.joining("\n")));
+    }
+
+    @Test
+    public void anExecutorCommandBusHandlesCommandsOnTheExecutor() {
+        AsyncCommandBus commandBus = new ExecutorCommandBus(new MapCommandBus(new ReturnsThreadNameCommandHandler()), executor);
+
+        String handlingThread = commandBus.dispatch(new ReturnThreadNameCommand()).join().result;
+
+        assertNotEquals(Thread.currentThread().getName(), handlingThread);
+    }
+
+    @Test
+    public void anExecutorCommandBusRunsCommandsAndBatchesWithinTheirDeadline() {
+        CommandBus remainingTime = new CommandBus() {
+            @Override
+            public <T> CommandResponse<T> dispatch(Command<T> command) {
+                return (CommandResponse<T>) new CommandResponse<>(Deadline.current().remaining(TimeUnit.MILLISECONDS));
+            }
+        };
+        AsyncCommandBus commandBus = new ExecutorCommandBus(remainingTime, executor);
+
+        long remaining = Deadline.runWithin(Deadline.after(1, TimeUnit.SECONDS), () -> commandBus.dispatch(new RemainingTimeCommand())).join().result;
+        long remainingInBatch = (Long) Deadline.runWithin(
+                Deadline.after(1, TimeUnit.SECONDS),
+                () -> commandBus.dispatchAll(Collections.singletonList(new RemainingTimeCommand()))).join().get(0).response.result;
+
+        assertTrue(remaining > 500 && remaining <= 1000, "remaining " + remaining);
+        assertTrue(remainingInBatch > 500 && remainingInBatch <= 1000, "remaining " + remainingInBatch);
+    }
+
+    @Test
+    public void aBlockingCommandBusGivesBackTheResponseOfTheAsyncBus() {
+        CommandBus commandBus = new BlockingCommandBus(
+                new ExecutorCommandBus(new MapCommandBus(new ReturnsThreadNameCommandHandler()), executor));
+
+        CommandResponse<String> response = commandBus.dispatch(new ReturnThreadNameCommand());
+
+        assertNotEquals(Thread.currentThread().getName(), response.result);
+    }
+
+    @Test
+    public void aBlockingCommandBusRethrowsTheExceptionOfTheHandler() {
+        CommandBus commandBus = new BlockingCommandBus(new ExecutorCommandBus(new MapCommandBus(), executor));
+
+        assertThrows(
+                MapCommandBus.CommandHandlerNotFoundException.class,
+                () -> commandBus.dispatch(new ReturnThreadNameCommand()));
+    }
+
+    static class ReturnThreadNameCommand implements Command<String> {
+    }
+
+    static class RemainingTimeCommand implements Command<Long> {
+    }
+
+    static class ReturnsThreadNameCommandHandler implements CommandHandler<String, ReturnThreadNameCommand> {
+
+        @Override
+        public CommandResponse<String> handle(ReturnThreadNameCommand command) {
+            return new CommandResponse<>(Thread.currentThread().getName());
+        }
+
+        @Override
+        public Class<ReturnThreadNameCommand> listenTo() {
+            return ReturnThreadNameCommand.class;
+        }
+    }
+}
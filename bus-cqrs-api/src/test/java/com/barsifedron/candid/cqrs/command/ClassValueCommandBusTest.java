@@ -0,0 +1,100 @@
+package com.barsifedron.candid.cqrs.command;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ClassValueCommandBusTest {
+
+    @Test
+    public void shouldDispatchToTheHandlerOfTheCommandClass() {
+        CommandBus bus = new ClassValueCommandBus(
+                new NamedHandler<>(GreetCommand.class, "greet"),
+                new NamedHandler<>(PoliteGreetCommand.class, "polite greet"));
+
+        assertEquals("greet", bus.dispatch(new GreetCommand()).result);
+        assertEquals("polite greet", bus.dispatch(new PoliteGreetCommand()).result);
+    }
+
+    @Test
+    public void shouldFallBackToTheHandlerOfTheClosestSuperclass() {
+        CommandBus bus = new ClassValueCommandBus(new NamedHandler<>(GreetCommand.class, "greet"));
+
+        assertEquals("greet", bus.dispatch(new PoliteGreetCommand()).result);
+        assertEquals("greet", bus.dispatch(new VeryPoliteGreetCommand()).result);
+    }
+
+    @Test
+    public void shouldFallBackToTheHandlerOfAnInterfaceWhenNoSuperclassIsHandled() {
+        CommandBus bus = new ClassValueCommandBus(new NamedHandler<>(Greeting.class, "any greeting"));
+
+        assertEquals("any greeting", bus.dispatch(new VeryPoliteGreetCommand()).result);
+    }
+
+    @Test
+    public void shouldPreferASuperclassToAnInterface() {
+        CommandBus bus = new ClassValueCommandBus(
+                new NamedHandler<>(Greeting.class, "any greeting"),
+                new NamedHandler<>(PoliteGreetCommand.class, "polite greet"));
+
+        assertEquals("polite greet", bus.dispatch(new VeryPoliteGreetCommand()).result);
+    }
+
+    @Test
+    public void shouldFailToProcessCommandsWhenNoMatchingHandler() {
+        CommandBus bus = new ClassValueCommandBus(new NamedHandler<>(PoliteGreetCommand.class, "polite greet"));
+
+        assertThrows(MapCommandBus.CommandHandlerNotFoundException.class, () -> bus.dispatch(new GreetCommand()));
+        // and still fails the second time, once the miss is remembered
+        assertThrows(MapCommandBus.CommandHandlerNotFoundException.class, () -> bus.dispatch(new GreetCommand()));
+    }
+
+    @Test
+    public void shouldNotSeeHandlersRegisteredAfterTheBusWasBuilt() {
+        Map<Class<Command>, Supplier<CommandHandler>> handlers = new HashMap<>();
+        CommandBus bus = new ClassValueCommandBus(handlers);
+
+        NamedHandler<GreetCommand> handler = new NamedHandler<>(GreetCommand.class, "greet");
+        handlers.put((Class) GreetCommand.class, () -> handler);
+
+        assertThrows(MapCommandBus.CommandHandlerNotFoundException.class, () -> bus.dispatch(new GreetCommand()));
+    }
+
+    interface Greeting extends Command<String> {
+    }
+
+    static class GreetCommand implements Greeting {
+    }
+
+    static class PoliteGreetCommand extends GreetCommand {
+    }
+
+    static class VeryPoliteGreetCommand extends PoliteGreetCommand {
+    }
+
+    static class NamedHandler<K extends Command<String>> implements CommandHandler<String, K> {
+
+        private final Class<K> listenTo;
+        private final String name;
+
+        NamedHandler(Class<K> listenTo, String name) {
+            this.listenTo = listenTo;
+            this.name = name;
+        }
+
+        @Override
+        public CommandResponse<String> handle(K command) {
+            return new CommandResponse<>(name);
+        }
+
+        @Override
+        public Class<K> listenTo() {
+            return listenTo;
+        }
+    }
+}
@@ -9,12 +9,14 @@ import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.times;
@@ -140,6 +142,149 @@ public class CommandBusMiddlewareTest {
 
     }
 
+    @Test
+    public void aCompiledPipelineKeepsTheOrderOfACompositeMiddleware() {
+
+        List<String> logs = new ArrayList<>();
+        List<CommandBusMiddleware> middlewares = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            middlewares.add(new RecordingMiddleware(i, logs));
+        }
+        CommandBus baseBus = new MapCommandBus(new ProducesThreeEventsCommandHandler());
+
+        CommandResponse<NoResult> response = CommandBusPipeline
+                .compile(baseBus, middlewares)
+                .dispatch(new CommandThatProducesThreeEvents());
+        String pipelineLogs = logs.stream().collect(Collectors.joining("\n"));
+
+        logs.clear();
+        CommandBusMiddleware.compositeOf(middlewares).decorate(baseBus).dispatch(new CommandThatProducesThreeEvents());
+
+        assertEquals("0 in\n1 in\n2 in\n2 out\n1 out\n0 out", pipelineLogs);
+        assertEquals(logs.stream().collect(Collectors.joining("\n")), pipelineLogs);
+        assertEquals(3, response.domainEvents.size());
+    }
+
+    @Test
+    public void aCompiledPipelineWithoutMiddlewareIsTheBusItself() {
+        CommandBusPipeline pipeline = CommandBusPipeline.compile(new MapCommandBus(new ProducesThreeEventsCommandHandler()));
+        assertEquals(0, pipeline.depth());
+        assertEquals(3, pipeline.dispatch(new CommandThatProducesThreeEvents()).domainEvents.size());
+    }
+
+    @Test
+    public void shouldFailToCompileAPipelineWithoutTerminalBus() {
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> CommandBusPipeline.compile(null, new FirstTestMiddleware()));
+    }
+
+    static class RecordingMiddleware implements CommandBusMiddleware {
+
+        private final Integer layer;
+        private final List<String> logs;
+
+        RecordingMiddleware(Integer layer, List<String> logs) {
+            this.layer = layer;
+            this.logs = logs;
+        }
+
+        @Override
+        public <T> CommandResponse<T> dispatch(Command<T> command, CommandBus next) {
+            logs.add(layer + " in");
+            CommandResponse<T> response = next.dispatch(command);
+            logs.add(layer + " out");
+            return response;
+        }
+    }
+
+    @Test
+    public void aBatchGoesOnceThroughBatchAwareMiddlewareAndCommandByCommandThroughTheOthers() {
+
+        List<String> logs = new ArrayList<>();
+        CommandBusMiddleware batchAwareMiddleware = new CommandBusMiddleware() {
+            @Override
+            public <T> CommandResponse<T> dispatch(Command<T> command, CommandBus next) {
+                logs.add("batch aware : one");
+                return next.dispatch(command);
+            }
+
+            @Override
+            public List<BatchedCommandResponse<?>> dispatchAll(List<? extends Command<?>> commands, CommandBus next) {
+                logs.add("batch aware : " + commands.size());
+                return next.dispatchAll(commands);
+            }
+        };
+        CommandBus baseBus = new MapCommandBus(new ProducesThreeEventsCommandHandler());
+        List<CommandThatProducesThreeEvents> commands = Arrays.asList(
+                new CommandThatProducesThreeEvents(),
+                new CommandThatProducesThreeEvents());
+
+        CommandBusMiddleware
+                .compositeOf(batchAwareMiddleware, new RecordingMiddleware(1, logs), batchAwareMiddleware)
+                .decorate(baseBus)
+                .dispatchAll(commands);
+        String compositeLogs = logs.stream().collect(Collectors.joining("\n"));
+
+        logs.clear();
+        CommandBusPipeline
+                .compile(baseBus, batchAwareMiddleware, new RecordingMiddleware(1, logs), batchAwareMiddleware)
+                .dispatchAll(commands);
+
+        assertEquals(
+                "batch aware : 2\n" +
+                        "1 in\n" +
+                        "batch aware : one\n" +
+                        "1 out\n" +
+                        "1 in\n" +
+                        "batch aware : one\n" +
+                        "1 out",
+                compositeLogs);
+        assertEquals(compositeLogs, logs.stream().collect(Collectors.joining("\n")));
+    }
+
+    @Test
+    public void aFailingCommandOfABatchDoesNotStopTheOthers() {
+
+        // Given
+        TestDomainEventHandler firstEventHandler = new TestDomainEventHandler(FirstTestDomainEvent.class);
+        CommandBus commandBus = new DomainEventsDispatcher(new MapDomainEventBus(firstEventHandler))
+                .decorate(new MapCommandBus(new ProducesThreeEventsCommandHandler()));
+
+        // When
+        List<BatchedCommandResponse<?>> responses = commandBus.dispatchAll(Arrays.asList(
+                new Command<NoResult>() {
+                },
+                new CommandThatProducesThreeEvents()));
+
+        // Then
+        assertEquals(2, responses.size());
+        assertFalse(responses.get(0).succeeded());
+        assertTrue(responses.get(0).failure instanceof MapCommandBus.CommandHandlerNotFoundException);
+        assertTrue(responses.get(1).succeeded());
+        assertEquals(3, responses.get(1).response.domainEvents.size());
+        assertTrue(firstEventHandler.receivedEvent);
+    }
+
+    @Test
+    public void aCommandOfABatchFailsWhenOneOfItsEventHandlersFails() {
+
+        // Given
+        DomainEventBus failingEventBus = event -> {
+            throw new IllegalStateException("Could not handle event");
+        };
+        CommandBus commandBus = new DomainEventsDispatcher(failingEventBus)
+                .decorate(new MapCommandBus(new ProducesThreeEventsCommandHandler()));
+
+        // When
+        List<BatchedCommandResponse<?>> responses = commandBus.dispatchAll(Arrays.asList(
+                new CommandThatProducesThreeEvents()));
+
+        // Then
+        assertFalse(responses.get(0).succeeded());
+        assertEquals("Could not handle event", responses.get(0).failure.getMessage());
+    }
+
     static class LayeredMiddleware implements CommandBusMiddleware {
 
         private final static Logger LOGGER = Logger.getLogger(FirstTestMiddleware.class.getName());
@@ -0,0 +1,70 @@
+package com.barsifedron.candid.cqrs.command;
+
+import com.barsifedron.candid.cqrs.domainevent.DomainEvent;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CommandResponseTest {
+
+    private final DomainEvent first = new SomethingHappened();
+    private final DomainEvent second = new SomethingHappened();
+    private final DomainEvent third = new SomethingHappened();
+
+    @Test
+    public void theFactoryMethodsKeepAddingToTheEvents() {
+
+        CommandResponse<String> response = CommandResponse
+                .empty()
+                .withResult("id")
+                .withAddedDomainEvents(first)
+                .withAddedDomainEvents(Arrays.asList(second, third));
+
+        assertEquals("id", response.result);
+        assertEquals(Arrays.asList(first, second, third), response.domainEvents);
+        assertSame(NoResult.NO_RESULT, CommandResponse.withoutResults(first).result);
+        assertEquals(Collections.singletonList(first), CommandResponse.withoutResults(first).domainEvents);
+        assertTrue(CommandResponse.empty().domainEvents.isEmpty());
+    }
+
+    @Test
+    public void theBuilderAccumulatesEvents() {
+
+        CommandResponse.Builder<String> builder = CommandResponse
+                .builder()
+                .result("id")
+                .domainEvent(first)
+                .domainEvent(second);
+        CommandResponse<String> two = builder.build();
+        CommandResponse<String> three = builder.domainEvents(third).build();
+
+        assertEquals("id", two.result);
+        assertEquals(Arrays.asList(first, second), two.domainEvents);
+        assertEquals(Arrays.asList(first, second, third), three.domainEvents);
+        assertSame(NoResult.NO_RESULT, CommandResponse.builder().build().result);
+        assertTrue(CommandResponse.builder().build().domainEvents.isEmpty());
+    }
+
+    @Test
+    public void eventsCanNotBeModified() {
+
+        DomainEvent[] events = { first, second };
+        CommandResponse<NoResult> response = CommandResponse.withoutResults(events);
+        events[0] = third;
+
+        assertEquals(Arrays.asList(first, second), response.domainEvents);
+        assertThrows(UnsupportedOperationException.class, () -> response.domainEvents.add(third));
+        assertThrows(UnsupportedOperationException.class, () -> CommandResponse.empty().domainEvents.add(third));
+        assertThrows(UnsupportedOperationException.class, () -> CommandResponse.builder().domainEvent(first).build().domainEvents.add(third));
+        assertThrows(UnsupportedOperationException.class, () -> new CommandResponse<>("id").domainEvents.add(third));
+    }
+
+    static class SomethingHappened implements DomainEvent {
+    }
+}
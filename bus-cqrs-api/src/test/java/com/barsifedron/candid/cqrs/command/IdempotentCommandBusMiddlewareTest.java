@@ -0,0 +1,281 @@
+package com.barsifedron.candid.cqrs.command;
+
+import com.barsifedron.candid.cqrs.deadline.Deadline;
+import com.barsifedron.candid.cqrs.domainevent.DomainEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class IdempotentCommandBusMiddlewareTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final AtomicInteger handled = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final IdempotentCommandBusMiddleware.Keys keys = new IdempotentCommandBusMiddleware.Keys()
+            .add(BorrowItem.class, command -> command.loanId);
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void aRetryGetsTheResultOfTheFirstRunWithoutItsEvents() {
+
+        release.countDown();
+        IdempotentCommandBusMiddleware middleware = new IdempotentCommandBusMiddleware(keys, 100, 1, TimeUnit.MINUTES);
+        CommandBus bus = middleware.decorate(handler());
+
+        CommandResponse<String> first = bus.dispatch(new BorrowItem("loan1"));
+        CommandResponse<String> retry = bus.dispatch(new BorrowItem("loan1"));
+
+        assertEquals("loan1 #1", first.result);
+        assertEquals(1, first.domainEvents.size());
+        assertEquals("loan1 #1", retry.result);
+        assertTrue(retry.domainEvents.isEmpty());
+        assertEquals("loan2 #2", bus.dispatch(new BorrowItem("loan2")).result);
+        assertEquals(2, middleware.executed());
+        assertEquals(1, middleware.replayed());
+    }
+
+    @Test
+    public void aRetryArrivingDuringTheFirstRunWaitsForIt() throws Exception {
+
+        IdempotentCommandBusMiddleware middleware = new IdempotentCommandBusMiddleware(keys, 100, 1, TimeUnit.MINUTES);
+        CommandBus bus = middleware.decorate(handler());
+
+        Future<CommandResponse<String>> first = executor.submit(() -> bus.dispatch(new BorrowItem("loan1")));
+        Future<CommandResponse<String>> retry = executor.submit(() -> bus.dispatch(new BorrowItem("loan1")));
+        for (int i = 0; i < 500 && middleware.replayed() == 0; i++) {
+            Thread.sleep(10);
+        }
+        release.countDown();
+
+        assertEquals("loan1 #1", first.get(5, TimeUnit.SECONDS).result);
+        assertEquals("loan1 #1", retry.get(5, TimeUnit.SECONDS).result);
+        assertEquals(1, handled.get());
+        assertEquals(0, middleware.inFlight());
+    }
+
+    @Test
+    public void failuresAreNotRemembered() {
+
+        release.countDown();
+        AtomicInteger calls = new AtomicInteger();
+        CommandBus failingOnce = new CommandBus() {
+            @Override
+            public <T> CommandResponse<T> dispatch(Command<T> command) {
+                if (calls.incrementAndGet() == 1) {
+                    throw new IllegalStateException("database is down");
+                }
+                return (CommandResponse<T>) new CommandResponse<>("done");
+            }
+        };
+        CommandBus bus = new IdempotentCommandBusMiddleware(keys, 100, 1, TimeUnit.MINUTES).decorate(failingOnce);
+
+        assertThrows(IllegalStateException.class, () -> bus.dispatch(new BorrowItem("loan1")));
+        assertEquals("done", bus.dispatch(new BorrowItem("loan1")).result);
+    }
+
+    @Test
+    public void theStoreAnswersRetriesForgottenByTheMemory() {
+
+        release.countDown();
+        InMemoryStore store = new InMemoryStore();
+        IdempotentCommandBusMiddleware beforeRestart = new IdempotentCommandBusMiddleware(keys, store, 100, 1, TimeUnit.MINUTES);
+        beforeRestart.decorate(beforeRestart.recordingCommandBusMiddleware().decorate(handler())).dispatch(new BorrowItem("loan1"));
+
+        IdempotentCommandBusMiddleware afterRestart = new IdempotentCommandBusMiddleware(keys, store, 100, 1, TimeUnit.MINUTES);
+        CommandBus bus = afterRestart.decorate(afterRestart.recordingCommandBusMiddleware().decorate(handler()));
+
+        assertEquals("loan1 #1", bus.dispatch(new BorrowItem("loan1")).result);
+        assertEquals(1, handled.get());
+        assertEquals(1, afterRestart.size());
+    }
+
+    @Test
+    public void aKeyShowingTwiceInABatchRunsOnce() {
+
+        release.countDown();
+        IdempotentCommandBusMiddleware middleware = new IdempotentCommandBusMiddleware(keys, 100, 1, TimeUnit.MINUTES);
+        CommandBus bus = middleware.decorate(handler());
+        bus.dispatch(new BorrowItem("loan1"));
+
+        List<BatchedCommandResponse<?>> responses = bus.dispatchAll(Arrays.asList(
+                new BorrowItem("loan1"),
+                new BorrowItem("loan2"),
+                new BorrowItem("loan2")));
+
+        assertEquals("loan1 #1", responses.get(0).response.result);
+        assertEquals("loan2 #2", responses.get(1).response.result);
+        assertEquals("loan2 #2", responses.get(2).response.result);
+        assertEquals(2, handled.get());
+    }
+
+    @Test
+    public void aRetryArrivingDuringTheBatchOfTheFirstRunWaitsForIt() throws Exception {
+
+        IdempotentCommandBusMiddleware middleware = new IdempotentCommandBusMiddleware(keys, 100, 1, TimeUnit.MINUTES);
+        CommandBus bus = middleware.decorate(handler());
+
+        Future<List<BatchedCommandResponse<?>>> batch = executor.submit(() -> bus.dispatchAll(Arrays.asList(
+                new BorrowItem("loan1"),
+                new BorrowItem("loan2"))));
+        for (int i = 0; i < 500 && middleware.inFlight() < 2; i++) {
+            Thread.sleep(10);
+        }
+        Future<CommandResponse<String>> retry = executor.submit(() -> bus.dispatch(new BorrowItem("loan2")));
+        for (int i = 0; i < 500 && middleware.replayed() == 0; i++) {
+            Thread.sleep(10);
+        }
+        release.countDown();
+
+        assertEquals("loan2 #2", batch.get(5, TimeUnit.SECONDS).get(1).response.result);
+        assertEquals("loan2 #2", retry.get(5, TimeUnit.SECONDS).result);
+        assertEquals(2, handled.get());
+        assertEquals(0, middleware.inFlight());
+    }
+
+    @Test
+    public void aCommandReusingTheKeyOfAnotherIsRejected() {
+
+        release.countDown();
+        InMemoryStore store = new InMemoryStore();
+        IdempotentCommandBusMiddleware middleware = new IdempotentCommandBusMiddleware(keys, store, 100, 1, TimeUnit.MINUTES);
+        CommandBus bus = middleware.decorate(middleware.recordingCommandBusMiddleware().decorate(handler()));
+        bus.dispatch(new BorrowItem("loan1", "ladder"));
+
+        assertThrows(
+                IdempotentCommandBusMiddleware.IdempotencyKeyReusedException.class,
+                () -> bus.dispatch(new BorrowItem("loan1", "drill")));
+        List<BatchedCommandResponse<?>> responses = bus.dispatchAll(Arrays.asList(
+                new BorrowItem("loan1", "drill"),
+                new BorrowItem("loan2", "ladder"),
+                new BorrowItem("loan2", "drill")));
+        IdempotentCommandBusMiddleware afterRestart = new IdempotentCommandBusMiddleware(keys, store, 100, 1, TimeUnit.MINUTES);
+
+        assertTrue(responses.get(0).failure instanceof IdempotentCommandBusMiddleware.IdempotencyKeyReusedException);
+        assertEquals("loan2 #2", responses.get(1).response.result);
+        assertTrue(responses.get(2).failure instanceof IdempotentCommandBusMiddleware.IdempotencyKeyReusedException);
+        assertThrows(
+                IdempotentCommandBusMiddleware.IdempotencyKeyReusedException.class,
+                () -> afterRestart.decorate(handler()).dispatch(new BorrowItem("loan1", "drill")));
+        assertEquals("loan1 #1", afterRestart.decorate(handler()).dispatch(new BorrowItem("loan1", "ladder")).result);
+        assertEquals(2, handled.get());
+        assertEquals(0, middleware.replayed());
+    }
+
+    @Test
+    public void aRetryWaitsForTheFirstRunUntilItsDeadlineOnly() throws Exception {
+
+        IdempotentCommandBusMiddleware middleware = new IdempotentCommandBusMiddleware(keys, 100, 1, TimeUnit.MINUTES);
+        CommandBus bus = middleware.decorate(handler());
+
+        Future<CommandResponse<String>> first = executor.submit(() -> bus.dispatch(new BorrowItem("loan1")));
+        for (int i = 0; i < 500 && middleware.inFlight() == 0; i++) {
+            Thread.sleep(10);
+        }
+        Future<?> retry = executor.submit(() -> Deadline.runWithin(
+                Deadline.after(50, TimeUnit.MILLISECONDS),
+                () -> bus.dispatch(new BorrowItem("loan1"))));
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> retry.get(5, TimeUnit.SECONDS));
+        assertTrue(failure.getCause() instanceof Deadline.DeadlineExceededException);
+        release.countDown();
+        assertEquals("loan1 #1", first.get(5, TimeUnit.SECONDS).result);
+        assertEquals(1, handled.get());
+    }
+
+    @Test
+    public void theOldestResultsAreForgottenFirst() {
+
+        release.countDown();
+        IdempotentCommandBusMiddleware middleware = new IdempotentCommandBusMiddleware(keys, 2, 1, TimeUnit.MINUTES);
+        CommandBus bus = middleware.decorate(handler());
+
+        bus.dispatch(new BorrowItem("loan1"));
+        bus.dispatch(new BorrowItem("loan2"));
+        bus.dispatch(new BorrowItem("loan3"));
+
+        assertEquals(2, middleware.size());
+        assertEquals("loan1 #4", bus.dispatch(new BorrowItem("loan1")).result);
+    }
+
+    private CommandBus handler() {
+        return new CommandBus() {
+            @Override
+            public <T> CommandResponse<T> dispatch(Command<T> command) {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                String result = ((BorrowItem) command).loanId + " #" + handled.incrementAndGet();
+                return (CommandResponse<T>) new CommandResponse<>(result, new ItemBorrowed());
+            }
+        };
+    }
+
+    static class BorrowItem implements Command<String> {
+
+        final String loanId;
+        final String itemId;
+
+        BorrowItem(String loanId) {
+            this(loanId, "ladder");
+        }
+
+        BorrowItem(String loanId, String itemId) {
+            this.loanId = loanId;
+            this.itemId = itemId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof BorrowItem)) {
+                return false;
+            }
+            BorrowItem other = (BorrowItem) o;
+            return loanId.equals(other.loanId) && itemId.equals(other.itemId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(loanId, itemId);
+        }
+    }
+
+    static class ItemBorrowed implements DomainEvent {
+    }
+
+    static class InMemoryStore implements IdempotencyStore {
+
+        private final Map<String, CompletedCommand> results = new HashMap<>();
+
+        @Override
+        public CompletedCommand find(String key) {
+            return results.get(key);
+        }
+
+        @Override
+        public void save(String key, int fingerprint, Object result) {
+            results.put(key, new CompletedCommand(fingerprint, result));
+        }
+    }
+}
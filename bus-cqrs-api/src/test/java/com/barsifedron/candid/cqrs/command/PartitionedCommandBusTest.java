@@ -0,0 +1,270 @@
+package com.barsifedron.candid.cqrs.command;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PartitionedCommandBusTest {
+
+    private final List<String> handled = Collections.synchronizedList(new ArrayList<>());
+    private PartitionedCommandBus partitionedBus;
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        partitionedBus.shutdown();
+        partitionedBus.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void commandsOfOneAggregateAreHandledOneAfterTheOtherInOrder() {
+
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CommandBus bus = new MapCommandBus(new TouchAggregateCommandHandler(() -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            sleep(1);
+            running.decrementAndGet();
+        }));
+        partitionedBus = new PartitionedCommandBus(bus, keys(), 4, 100, 1, TimeUnit.SECONDS);
+
+        List<CompletableFuture<CommandResponse<String>>> futures = IntStream
+                .range(0, 20)
+                .mapToObj(i -> partitionedBus.dispatch(new TouchAggregateCommand("item-1", "" + i)))
+                .collect(Collectors.toList());
+        futures.forEach(CompletableFuture::join);
+
+        assertEquals(1, maxRunning.get());
+        assertEquals(
+                IntStream.range(0, 20).mapToObj(i -> "item-1:" + i).collect(Collectors.toList()),
+                handled);
+    }
+
+    @Test
+    public void commandsOfDifferentAggregatesRunInParallel() throws InterruptedException {
+
+        CountDownLatch bothRunning = new CountDownLatch(2);
+        CommandBus bus = new MapCommandBus(new TouchAggregateCommandHandler(() -> {
+            bothRunning.countDown();
+            await(bothRunning);
+        }));
+        partitionedBus = new PartitionedCommandBus(bus, keys(), 2, 10, 1, TimeUnit.SECONDS);
+
+        // "a" and "b" happen to land on different lanes out of two
+        CompletableFuture<CommandResponse<String>> first = partitionedBus.dispatch(new TouchAggregateCommand("a", "1"));
+        CompletableFuture<CommandResponse<String>> second = partitionedBus.dispatch(new TouchAggregateCommand("b", "1"));
+
+        assertTrue(bothRunning.await(5, TimeUnit.SECONDS));
+        first.join();
+        second.join();
+    }
+
+    @Test
+    public void shouldRejectCommandsWhenTheLaneIsFull() {
+
+        CountDownLatch release = new CountDownLatch(1);
+        CommandBus bus = new MapCommandBus(new TouchAggregateCommandHandler(() -> await(release)));
+        partitionedBus = new PartitionedCommandBus(bus, keys(), 1, 1, 10, TimeUnit.MILLISECONDS);
+
+        CompletableFuture<CommandResponse<String>> running = partitionedBus.dispatch(new TouchAggregateCommand("a", "running"));
+        waitUntil(() -> handled.size() == 1);
+        CompletableFuture<CommandResponse<String>> queued = partitionedBus.dispatch(new TouchAggregateCommand("a", "queued"));
+
+        assertThrows(
+                PartitionedCommandBus.CommandRejectedException.class,
+                () -> partitionedBus.dispatch(new TouchAggregateCommand("a", "rejected")));
+        assertEquals(1, partitionedBus.laneMetrics().get(0).queueDepth);
+        assertEquals(1, partitionedBus.laneMetrics().get(0).rejected);
+
+        release.countDown();
+        running.join();
+        queued.join();
+        waitUntil(() -> partitionedBus.laneMetrics().get(0).processed == 2);
+        assertEquals(2, partitionedBus.laneMetrics().get(0).processed);
+    }
+
+    @Test
+    public void interruptingALaneRejectsWhatIsStillQueued() {
+
+        AtomicReference<Thread> lane = new AtomicReference<>();
+        CountDownLatch release = new CountDownLatch(1);
+        CommandBus bus = new MapCommandBus(new TouchAggregateCommandHandler(() -> {
+            lane.set(Thread.currentThread());
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        partitionedBus = new PartitionedCommandBus(bus, keys(), 1, 10, 10, TimeUnit.MILLISECONDS);
+
+        CompletableFuture<CommandResponse<String>> running = partitionedBus.dispatch(new TouchAggregateCommand("a", "running"));
+        waitUntil(() -> lane.get() != null);
+        CompletableFuture<CommandResponse<String>> queued = partitionedBus.dispatch(new TouchAggregateCommand("a", "queued"));
+        lane.get().interrupt();
+
+        running.join();
+        CompletionException rejected = assertThrows(CompletionException.class, queued::join);
+        assertTrue(rejected.getCause() instanceof PartitionedCommandBus.CommandRejectedException);
+        assertThrows(
+                PartitionedCommandBus.CommandRejectedException.class,
+                () -> partitionedBus.dispatch(new TouchAggregateCommand("a", "too late")));
+    }
+
+    @Test
+    public void commandsWithoutKeyAreHandledOnTheCallingThread() {
+
+        CommandBus bus = new MapCommandBus(new TouchAggregateCommandHandler(() -> {
+        }));
+        partitionedBus = new PartitionedCommandBus(bus, new PartitionedCommandBus.Keys(), 1, 1, 1, TimeUnit.SECONDS);
+
+        CommandResponse<String> response = partitionedBus.dispatch(new TouchAggregateCommand("a", "1")).join();
+
+        assertEquals(Thread.currentThread().getName(), response.result);
+    }
+
+    @Test
+    public void aCommandDispatchedFromItsOwnLaneDoesNotWaitInLine() throws Exception {
+
+        PartitionedCommandBus[] self = new PartitionedCommandBus[1];
+        CommandBus bus = new MapCommandBus(new TouchAggregateCommandHandler(() -> {
+            if (handled.size() == 1) {
+                self[0].dispatch(new TouchAggregateCommand("a", "nested")).join();
+            }
+        }));
+        partitionedBus = new PartitionedCommandBus(bus, keys(), 1, 1, 1, TimeUnit.SECONDS);
+        self[0] = partitionedBus;
+
+        partitionedBus.dispatch(new TouchAggregateCommand("a", "outer")).get(5, TimeUnit.SECONDS);
+
+        assertEquals(2, handled.size());
+    }
+
+    @Test
+    public void aBlockingPartitionedBusRethrowsTheExceptionOfTheHandler() {
+
+        partitionedBus = new PartitionedCommandBus(new MapCommandBus(), keys(), 1, 1, 1, TimeUnit.SECONDS);
+
+        assertThrows(
+                MapCommandBus.CommandHandlerNotFoundException.class,
+                () -> new BlockingCommandBus(partitionedBus).dispatch(new TouchAggregateCommand("a", "1")));
+    }
+
+    @Test
+    public void aBatchWaitsInTheLanesBehindTheCommandsOfTheSameAggregates() {
+
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger batches = new AtomicInteger();
+        // The first command handled holds its lane
+        CommandBus simpleBus = new MapCommandBus(new TouchAggregateCommandHandler(() -> {
+            if (handled.size() == 1) {
+                await(release);
+            }
+        }));
+        CommandBus bus = new CommandBus() {
+            @Override
+            public <T> CommandResponse<T> dispatch(Command<T> command) {
+                return simpleBus.dispatch(command);
+            }
+
+            @Override
+            public List<BatchedCommandResponse<?>> dispatchAll(List<? extends Command<?>> commands) {
+                batches.incrementAndGet();
+                return CommandBus.super.dispatchAll(commands);
+            }
+        };
+        // "a" and "b" happen to land on different lanes out of two
+        partitionedBus = new PartitionedCommandBus(bus, keys(), 2, 10, 1, TimeUnit.SECONDS);
+
+        CompletableFuture<CommandResponse<String>> first = partitionedBus.dispatch(new TouchAggregateCommand("a", "first"));
+        CompletableFuture<List<BatchedCommandResponse<?>>> batch = CompletableFuture.supplyAsync(
+                () -> new BlockingCommandBus(partitionedBus).dispatchAll(Arrays.asList(
+                        new TouchAggregateCommand("a", "batched"),
+                        new TouchAggregateCommand("b", "batched"))));
+
+        waitUntil(() -> handled.contains("b:batched"));
+        assertEquals(Arrays.asList("a:first", "b:batched"), new ArrayList<>(handled));
+        release.countDown();
+
+        List<BatchedCommandResponse<?>> responses = batch.join();
+        assertEquals(Arrays.asList("a:first", "b:batched", "a:batched"), handled);
+        assertEquals(2, batches.get());
+        assertEquals(2, responses.size());
+        assertEquals(first.join().result, responses.get(0).response.result);
+        assertEquals("b", ((TouchAggregateCommand) responses.get(1).command).aggregateId);
+    }
+
+    private PartitionedCommandBus.Keys keys() {
+        return new PartitionedCommandBus.Keys().add(TouchAggregateCommand.class, command -> command.aggregateId);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void waitUntil(java.util.function.BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            sleep(1);
+        }
+    }
+
+    static class TouchAggregateCommand implements Command<String> {
+
+        final String aggregateId;
+        final String label;
+
+        TouchAggregateCommand(String aggregateId, String label) {
+            this.aggregateId = aggregateId;
+            this.label = label;
+        }
+    }
+
+    class TouchAggregateCommandHandler implements CommandHandler<String, TouchAggregateCommand> {
+
+        private final Runnable whileHandling;
+
+        TouchAggregateCommandHandler(Runnable whileHandling) {
+            this.whileHandling = whileHandling;
+        }
+
+        @Override
+        public CommandResponse<String> handle(TouchAggregateCommand command) {
+            handled.add(command.aggregateId + ":" + command.label);
+            whileHandling.run();
+            return new CommandResponse<>(Thread.currentThread().getName());
+        }
+
+        @Override
+        public Class<TouchAggregateCommand> listenTo() {
+            return TouchAggregateCommand.class;
+        }
+    }
+}
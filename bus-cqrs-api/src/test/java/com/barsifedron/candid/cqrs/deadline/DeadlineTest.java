@@ -0,0 +1,83 @@
+package com.barsifedron.candid.cqrs.deadline;
+
+import com.barsifedron.candid.cqrs.query.DeadlineQueryBusMiddleware;
+import com.barsifedron.candid.cqrs.query.LanedQueryBus;
+import com.barsifedron.candid.cqrs.query.Query;
+import com.barsifedron.candid.cqrs.query.QueryBus;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DeadlineTest {
+
+    private final QueryBus remainingTime = new QueryBus() {
+        @Override
+        public <T> T dispatch(Query<T> query) {
+            return (T) Long.valueOf(Deadline.current().remaining(TimeUnit.MILLISECONDS));
+        }
+    };
+
+    @Test
+    public void aNestedScopeOnlyBringsTheDeadlineCloser() {
+
+        Deadline soon = Deadline.after(1, TimeUnit.SECONDS);
+        Deadline later = Deadline.after(1, TimeUnit.MINUTES);
+
+        try (Deadline.Scope outer = Deadline.open(soon)) {
+            try (Deadline.Scope inner = Deadline.open(later)) {
+                assertSame(soon, Deadline.current());
+            }
+            assertSame(soon, Deadline.current());
+        }
+        assertNull(Deadline.current());
+    }
+
+    @Test
+    public void queriesWithTooLittleTimeLeftAreNotRun() {
+
+        QueryBus bus = new DeadlineQueryBusMiddleware(0, 10, TimeUnit.MILLISECONDS).decorate(remainingTime);
+
+        Deadline.runWithin(Deadline.after(5, TimeUnit.MILLISECONDS), () ->
+                assertThrows(Deadline.DeadlineExceededException.class, () -> bus.dispatch(new SomeQuery())));
+
+        long remaining = Deadline.runWithin(Deadline.after(1, TimeUnit.SECONDS), () -> bus.dispatch(new SomeQuery()));
+        assertTrue(remaining > 500 && remaining <= 1000, "remaining " + remaining);
+    }
+
+    @Test
+    public void queriesSentWithoutADeadlineGetTheDefaultOne() {
+
+        QueryBus bus = new DeadlineQueryBusMiddleware(2, 0, TimeUnit.SECONDS).decorate(remainingTime);
+
+        long remaining = bus.dispatch(new SomeQuery());
+        assertTrue(remaining > 1000 && remaining <= 2000, "remaining " + remaining);
+        assertNull(Deadline.current());
+    }
+
+    @Test
+    public void theDeadlineGoesAlongWithQueriesRunOnOtherThreads() throws Exception {
+
+        LanedQueryBus bus = new LanedQueryBus(remainingTime, new LanedQueryBus.Lanes("default").add("default", 1, 10));
+        try {
+            long remaining = Deadline.runWithin(Deadline.after(1, TimeUnit.SECONDS), () -> bus.dispatch(new SomeQuery())).get(5, TimeUnit.SECONDS);
+            assertTrue(remaining > 500 && remaining <= 1000, "remaining " + remaining);
+
+            ExecutionException exception = assertThrows(
+                    ExecutionException.class,
+                    () -> Deadline.runWithin(Deadline.after(-1, TimeUnit.MILLISECONDS), () -> bus.dispatch(new SomeQuery())).get(5, TimeUnit.SECONDS));
+            assertEquals(Deadline.DeadlineExceededException.class, exception.getCause().getClass());
+        } finally {
+            bus.shutdown();
+        }
+    }
+
+    static class SomeQuery implements Query<Long> {
+    }
+}
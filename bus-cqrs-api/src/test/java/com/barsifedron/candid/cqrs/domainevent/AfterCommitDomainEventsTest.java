@@ -0,0 +1,143 @@
+package com.barsifedron.candid.cqrs.domainevent;
+
+import com.barsifedron.candid.cqrs.command.Command;
+import com.barsifedron.candid.cqrs.command.CommandBus;
+import com.barsifedron.candid.cqrs.command.CommandBusPipeline;
+import com.barsifedron.candid.cqrs.command.CommandResponse;
+import com.barsifedron.candid.cqrs.command.NoResult;
+import com.barsifedron.candid.cqrs.command.middleware.AfterCommitDomainEventsDispatcher;
+import com.barsifedron.candid.cqrs.command.middleware.DomainEventsDispatcher;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AfterCommitDomainEventsTest {
+
+    private final List<String> log = new ArrayList<>();
+    private final List<Runnable> submitted = new ArrayList<>();
+    private final Executor executor = submitted::add;
+
+    @Test
+    public void handlersAreSelectedByPhase() {
+
+        Map<Class<DomainEvent>, List<Supplier<DomainEventHandler>>> handlers = handlers();
+
+        assertEquals(1, DomainEventPhase.IN_TRANSACTION.select(handlers).get(SomethingHappened.class).size());
+        assertEquals(1, DomainEventPhase.AFTER_COMMIT.select(handlers).get(SomethingHappened.class).size());
+        assertEquals(DomainEventPhase.AFTER_COMMIT, DomainEventPhase.of(new NotifyingHandler()));
+    }
+
+    @Test
+    public void afterCommitHandlersOnlyRunOnceTheCommandIsDone() {
+
+        CommandBus bus = bus(() -> log.add("command handled"));
+
+        bus.dispatch(new DoSomething());
+        log.add("command returned");
+        submitted.forEach(Runnable::run);
+
+        assertEquals(Arrays.asList("command handled", "in transaction", "command returned", "after commit"), log);
+    }
+
+    @Test
+    public void eventsOfAFailingCommandAreDropped() {
+
+        CommandBus bus = bus(() -> {
+            throw new IllegalStateException("rolled back");
+        });
+
+        assertThrows(IllegalStateException.class, () -> bus.dispatch(new DoSomething()));
+
+        assertTrue(submitted.isEmpty());
+    }
+
+    @Test
+    public void eventsOfABatchAreDroppedWhenOneCommandFailed() {
+
+        CommandBus bus = bus(() -> {
+            if (log.contains("command handled")) {
+                throw new IllegalStateException("rolled back");
+            }
+            log.add("command handled");
+        });
+
+        bus.dispatchAll(Arrays.asList(new DoSomething(), new DoSomething()));
+
+        assertTrue(submitted.isEmpty());
+    }
+
+    /**
+     * The whole chain, as wired when there is no transaction manager to hook the queue on.
+     */
+    private CommandBus bus(Runnable handle) {
+
+        Map<Class<DomainEvent>, List<Supplier<DomainEventHandler>>> handlers = handlers();
+        AfterCommitDomainEventsDispatcher afterCommit = new AfterCommitDomainEventsDispatcher(
+                new MapDomainEventBus(DomainEventPhase.AFTER_COMMIT.select(handlers)),
+                executor);
+        DomainEventBus eventBus = DomainEventBusPipeline.compile(
+                new MapDomainEventBus(DomainEventPhase.IN_TRANSACTION.select(handlers)),
+                new AfterCommitDomainEventBusMiddleware(afterCommit));
+
+        return CommandBusPipeline.compile(
+                new CommandBus() {
+                    @Override
+                    public <T> CommandResponse<T> dispatch(Command<T> command) {
+                        handle.run();
+                        return (CommandResponse<T>) CommandResponse.withoutResults(new SomethingHappened());
+                    }
+                },
+                afterCommit,
+                new DomainEventsDispatcher(eventBus));
+    }
+
+    private Map<Class<DomainEvent>, List<Supplier<DomainEventHandler>>> handlers() {
+        Map<Class<DomainEvent>, List<Supplier<DomainEventHandler>>> handlers = new HashMap<>();
+        handlers.put((Class) SomethingHappened.class, Arrays.asList(
+                () -> new InTransactionHandler(),
+                () -> new NotifyingHandler()));
+        return handlers;
+    }
+
+    static class DoSomething implements Command<NoResult> {
+    }
+
+    static class SomethingHappened implements DomainEvent {
+    }
+
+    class InTransactionHandler implements DomainEventHandler<SomethingHappened> {
+
+        @Override
+        public void handle(SomethingHappened event) {
+            log.add("in transaction");
+        }
+
+        @Override
+        public Class<SomethingHappened> listenTo() {
+            return SomethingHappened.class;
+        }
+    }
+
+    class NotifyingHandler implements DomainEventHandler<SomethingHappened>, AfterCommitDomainEventHandler {
+
+        @Override
+        public void handle(SomethingHappened event) {
+            log.add("after commit");
+        }
+
+        @Override
+        public Class<SomethingHappened> listenTo() {
+            return SomethingHappened.class;
+        }
+    }
+}
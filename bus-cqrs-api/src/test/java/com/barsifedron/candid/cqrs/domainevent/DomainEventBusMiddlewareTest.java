@@ -73,6 +73,31 @@ public class DomainEventBusMiddlewareTest {
         chain.dispatch(new NothingToDoEvent());
     }
 
+    @Test
+    public void aCompiledPipelineKeepsTheOrderOfACompositeMiddleware() {
+
+        List<String> logs = new ArrayList<>();
+        List<DomainEventBusMiddleware> middlewares = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            int layer = i;
+            middlewares.add((domainEvent, next) -> {
+                logs.add(layer + " in");
+                next.dispatch(domainEvent);
+                logs.add(layer + " out");
+            });
+        }
+        DomainEventBus baseBus = domainEvent -> logs.add("bus");
+
+        DomainEventBusPipeline.compile(baseBus, middlewares).dispatch(new NothingToDoEvent());
+        String pipelineLogs = logs.stream().collect(Collectors.joining("\n"));
+
+        logs.clear();
+        DomainEventBusMiddleware.compositeOf(middlewares).decorate(baseBus).dispatch(new NothingToDoEvent());
+
+        assertEquals("0 in\n1 in\n2 in\nbus\n2 out\n1 out\n0 out", pipelineLogs);
+        assertEquals(logs.stream().collect(Collectors.joining("\n")), pipelineLogs);
+    }
+
     static class FirstTestMiddleware implements DomainEventBusMiddleware {
 
         private final static Logger LOGGER = Logger.getLogger(FirstTestMiddleware.class.getName());
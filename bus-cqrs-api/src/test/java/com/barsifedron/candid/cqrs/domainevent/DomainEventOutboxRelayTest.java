@@ -0,0 +1,177 @@
+package com.barsifedron.candid.cqrs.domainevent;
+
+import com.barsifedron.candid.cqrs.command.Command;
+import com.barsifedron.candid.cqrs.command.CommandBus;
+import com.barsifedron.candid.cqrs.command.CommandResponse;
+import com.barsifedron.candid.cqrs.command.NoResult;
+import com.barsifedron.candid.cqrs.command.middleware.DomainEventsToOutbox;
+import com.barsifedron.candid.cqrs.domainevent.DomainEventOutbox.PendingDomainEvent;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DomainEventOutboxRelayTest {
+
+    private final InMemoryOutbox outbox = new InMemoryOutbox();
+    private final List<DomainEvent> handled = new ArrayList<>();
+
+    @Test
+    public void eventsOfACommandGoToTheOutboxInsteadOfTheHandlers() {
+
+        CommandBus bus = new DomainEventsToOutbox(outbox).decorate(new CommandBus() {
+            @Override
+            public <T> CommandResponse<T> dispatch(Command<T> command) {
+                return (CommandResponse<T>) CommandResponse.withoutResults(new SomethingHappened(1), new SomethingHappened(2));
+            }
+        });
+
+        bus.dispatch(new DoSomething());
+
+        assertEquals(2, outbox.entries.size());
+        assertTrue(handled.isEmpty());
+    }
+
+    @Test
+    public void eventsAreRelayedInBatchesAndMarkedAsDispatchedInOneGo() {
+
+        outbox.add(Arrays.asList(new SomethingHappened(1), new SomethingHappened(2), new SomethingHappened(3)));
+        DomainEventOutboxRelay relay = new DomainEventOutboxRelay(outbox, handled::add, 2);
+
+        DomainEventOutboxRelay.RelayedBatch first = relay.relayNextBatch();
+        DomainEventOutboxRelay.RelayedBatch second = relay.relayNextBatch();
+
+        assertEquals(2, first.dispatched);
+        assertFalse(first.drained);
+        assertEquals(1, second.dispatched);
+        assertTrue(second.drained);
+        assertEquals(Arrays.asList(1, 2, 3), handled.stream().map(event -> ((SomethingHappened) event).number).collect(Collectors.toList()));
+        assertEquals(2, outbox.markDispatchedCalls);
+        assertTrue(outbox.pending().isEmpty());
+    }
+
+    @Test
+    public void failingEventsAreReportedAndLeftForLater() {
+
+        outbox.add(Arrays.asList(new SomethingHappened(1), new SomethingHappened(2)));
+        DomainEventOutboxRelay relay = new DomainEventOutboxRelay(outbox, event -> {
+            if (((SomethingHappened) event).number == 1) {
+                throw new IllegalStateException("not now");
+            }
+            handled.add(event);
+        }, 10);
+
+        DomainEventOutboxRelay.RelayedBatch batch = relay.relayNextBatch();
+
+        assertEquals(2, batch.claimed);
+        assertEquals(1, batch.dispatched);
+        assertEquals("not now", batch.failures.values().iterator().next().getMessage());
+        assertEquals(1, outbox.pending().size());
+        assertEquals(1, outbox.entries.get(batch.failures.keySet().iterator().next()).attempts);
+    }
+
+    @Test
+    public void eachEventIsDispatchedInItsOwnTransactionAndFailuresAreRecordedOutsideOfIt() {
+
+        List<String> transactions = new ArrayList<>();
+        outbox.add(Arrays.asList(new SomethingHappened(1), new SomethingHappened(2)));
+        DomainEventOutboxRelay relay = new DomainEventOutboxRelay(
+                outbox,
+                event -> {
+                    if (((SomethingHappened) event).number == 1) {
+                        throw new IllegalStateException("not now");
+                    }
+                    handled.add(event);
+                },
+                10,
+                dispatch -> {
+                    try {
+                        dispatch.run();
+                        transactions.add("commit");
+                    } catch (RuntimeException exception) {
+                        transactions.add("rollback");
+                        throw exception;
+                    }
+                });
+
+        DomainEventOutboxRelay.RelayedBatch batch = relay.relayNextBatch();
+
+        assertEquals(Arrays.asList("rollback", "commit"), transactions);
+        assertEquals(1, batch.dispatched);
+        assertEquals(1, batch.failures.size());
+        assertEquals(1, outbox.entries.get(batch.failures.keySet().iterator().next()).attempts);
+        assertEquals(1, outbox.markDispatchedCalls);
+    }
+
+    static class DoSomething implements Command<NoResult> {
+    }
+
+    static class SomethingHappened implements DomainEvent {
+
+        final int number;
+
+        SomethingHappened(int number) {
+            this.number = number;
+        }
+    }
+
+    /**
+     * No transaction, no lock. Good enough to check what the relay asks for.
+     */
+    static class InMemoryOutbox implements DomainEventOutbox {
+
+        final Map<Long, Entry> entries = new LinkedHashMap<>();
+        int markDispatchedCalls;
+        private long nextId;
+
+        @Override
+        public void add(List<DomainEvent> events) {
+            events.forEach(event -> entries.put(++nextId, new Entry(event)));
+        }
+
+        @Override
+        public List<PendingDomainEvent> claim(int max) {
+            return entries
+                    .entrySet()
+                    .stream()
+                    .filter(entry -> !entry.getValue().dispatched && entry.getValue().attempts == 0)
+                    .limit(max)
+                    .map(entry -> new PendingDomainEvent(entry.getKey(), entry.getValue().event))
+                    .collect(Collectors.toList());
+        }
+
+        @Override
+        public void markDispatched(List<Long> ids) {
+            markDispatchedCalls++;
+            ids.forEach(id -> entries.get(id).dispatched = true);
+        }
+
+        @Override
+        public void markFailed(List<Long> ids) {
+            ids.forEach(id -> entries.get(id).attempts++);
+        }
+
+        List<Entry> pending() {
+            return entries.values().stream().filter(entry -> !entry.dispatched).collect(Collectors.toList());
+        }
+    }
+
+    static class Entry {
+
+        final DomainEvent event;
+        boolean dispatched;
+        int attempts;
+
+        Entry(DomainEvent event) {
+            this.event = event;
+        }
+    }
+}
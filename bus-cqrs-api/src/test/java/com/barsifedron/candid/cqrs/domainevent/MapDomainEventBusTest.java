@@ -0,0 +1,89 @@
+package com.barsifedron.candid.cqrs.domainevent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class MapDomainEventBusTest {
+
+    private final List<String> handled = new ArrayList<>();
+
+    @Test
+    public void handlersOfSuperclassesAndInterfacesGetTheEventToo() {
+
+        DomainEventBus bus = new MapDomainEventBus(
+                new TestHandler<>("every event", DomainEvent.class),
+                new TestHandler<>("to log", ToLog.class),
+                new TestHandler<>("item event", ItemEvent.class),
+                new TestHandler<>("item borrowed", ItemBorrowed.class),
+                new TestHandler<>("item returned", ItemReturned.class));
+
+        bus.dispatch(new ItemBorrowed());
+
+        assertEquals(Arrays.asList("item borrowed", "item event", "to log", "every event"), handled);
+    }
+
+    @Test
+    public void eventsWithoutAnyHandlerAreIgnored() {
+
+        DomainEventBus bus = new MapDomainEventBus(new TestHandler<>("item returned", ItemReturned.class));
+
+        bus.dispatch(new ItemBorrowed());
+
+        assertEquals(Collections.emptyList(), handled);
+    }
+
+    @Test
+    public void aHandlerRegisteredForSeveralTypesOfTheHierarchyRunsOnce() {
+
+        Supplier<DomainEventHandler> toLog = () -> new TestHandler<>("to log", ToLog.class);
+        Map<Class<DomainEvent>, List<Supplier<DomainEventHandler>>> handlers = new HashMap<>();
+        handlers.put((Class) ToLog.class, Collections.singletonList(toLog));
+        handlers.put((Class) ItemEvent.class, Collections.singletonList(toLog));
+
+        new MapDomainEventBus(handlers).dispatch(new ItemBorrowed());
+
+        assertEquals(Collections.singletonList("to log"), handled);
+    }
+
+    interface ToLog extends DomainEvent {
+    }
+
+    static class ItemEvent implements DomainEvent {
+    }
+
+    static class ItemBorrowed extends ItemEvent implements ToLog {
+    }
+
+    static class ItemReturned extends ItemEvent {
+    }
+
+    class TestHandler<K extends DomainEvent> implements DomainEventHandler<K> {
+
+        private final String name;
+        private final Class<K> eventClass;
+
+        TestHandler(String name, Class<K> eventClass) {
+            this.name = name;
+            this.eventClass = eventClass;
+        }
+
+        @Override
+        public void handle(K event) {
+            handled.add(name);
+        }
+
+        @Override
+        public Class<K> listenTo() {
+            return eventClass;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.barsifedron.candid.cqrs.domainevent;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static java.util.Arrays.asList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ParallelDomainEventBusTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final List<String> handledOn = Collections.synchronizedList(new ArrayList<>());
+
+    // A transaction bound to its thread, as a JPA one would be. Writes outside of any transaction are committed right away.
+    private final ThreadLocal<List<String>> transaction = new ThreadLocal<>();
+    private final List<String> committed = Collections.synchronizedList(new ArrayList<>());
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void handlersOfOneEventRunAtTheSameTime() {
+
+        CountDownLatch allRunning = new CountDownLatch(3);
+        DomainEventBus bus = new ParallelDomainEventBus(executor, handlers(
+                new TestHandler("first", () -> awaitAll(allRunning)),
+                new TestHandler("second", () -> awaitAll(allRunning)),
+                new TestHandler("third", () -> awaitAll(allRunning))));
+
+        bus.dispatch(new SomethingHappened());
+
+        assertEquals(3, handledOn.size());
+        assertEquals(0, allRunning.getCount());
+    }
+
+    @Test
+    public void sequentialHandlersRunInOrderOnTheDispatchingThread() {
+
+        DomainEventBus bus = new ParallelDomainEventBus(executor, handlers(
+                new SequentialTestHandler("first"),
+                new TestHandler("parallel", () -> {
+                }),
+                new SequentialTestHandler("second")));
+
+        bus.dispatch(new SomethingHappened());
+
+        String thisThread = Thread.currentThread().getName();
+        assertTrue(handledOn.indexOf("first:" + thisThread) < handledOn.indexOf("second:" + thisThread));
+        assertEquals(3, handledOn.size());
+    }
+
+    @Test
+    public void onlySequentialHandlersWriteWithinTheTransactionOfTheDispatchingThread() {
+
+        DomainEventBus bus = new ParallelDomainEventBus(executor, handlers(
+                new TestHandler("first parallel", () -> write("first parallel")),
+                new SequentialTestHandler("sequential", () -> write("sequential")),
+                new TestHandler("last parallel", () -> write("last parallel"))));
+
+        transaction.set(new ArrayList<>());
+        bus.dispatch(new SomethingHappened());
+        List<String> rolledBack = transaction.get();
+        transaction.remove();
+
+        assertEquals(Collections.singletonList("sequential"), rolledBack);
+        // Whatever their order, parallel handlers are out of the transaction: their writes survive the rollback
+        assertEquals(new HashSet<>(asList("first parallel", "last parallel")), new HashSet<>(committed));
+    }
+
+    @Test
+    public void theExceptionOfASingleFailingHandlerIsThrownAsItIs() {
+
+        DomainEventBus bus = new ParallelDomainEventBus(executor, handlers(
+                new TestHandler("failing", () -> {
+                    throw new IllegalStateException("nope");
+                }),
+                new TestHandler("working", () -> {
+                })));
+
+        IllegalStateException exception = assertThrows(
+                IllegalStateException.class,
+                () -> bus.dispatch(new SomethingHappened()));
+        assertEquals("nope", exception.getMessage());
+        assertEquals(2, handledOn.size());
+    }
+
+    @Test
+    public void failuresOfSeveralHandlersAreReportedTogether() {
+
+        DomainEventBus bus = new ParallelDomainEventBus(executor, handlers(
+                new TestHandler("first", () -> {
+                    throw new IllegalStateException("first failure");
+                }),
+                new TestHandler("second", () -> {
+                    throw new IllegalArgumentException("second failure");
+                }),
+                new SequentialTestHandler("working")));
+
+        ParallelDomainEventBus.DomainEventHandlersFailedException exception = assertThrows(
+                ParallelDomainEventBus.DomainEventHandlersFailedException.class,
+                () -> bus.dispatch(new SomethingHappened()));
+        assertEquals(1, exception.getSuppressed().length);
+        assertTrue(exception.getMessage().contains("first failure"));
+        assertTrue(exception.getMessage().contains("second failure"));
+        assertEquals(3, handledOn.size());
+    }
+
+    private Map<Class<DomainEvent>, List<Supplier<DomainEventHandler>>> handlers(DomainEventHandler... handlers) {
+        List<Supplier<DomainEventHandler>> suppliers = new ArrayList<>();
+        for (DomainEventHandler handler : handlers) {
+            suppliers.add(() -> handler);
+        }
+        Map<Class<DomainEvent>, List<Supplier<DomainEventHandler>>> map = new HashMap<>();
+        map.put((Class) SomethingHappened.class, suppliers);
+        return map;
+    }
+
+    private void write(String row) {
+        List<String> current = transaction.get();
+        (current != null ? current : committed).add(row);
+    }
+
+    private static void awaitAll(CountDownLatch latch) {
+        latch.countDown();
+        try {
+            if (!latch.await(5, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Handlers did not run at the same time");
+            }
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static class SomethingHappened implements DomainEvent {
+    }
+
+    class TestHandler implements DomainEventHandler<SomethingHappened> {
+
+        private final String name;
+        private final Runnable whileHandling;
+
+        TestHandler(String name, Runnable whileHandling) {
+            this.name = name;
+            this.whileHandling = whileHandling;
+        }
+
+        @Override
+        public void handle(SomethingHappened event) {
+            handledOn.add(name + ":" + Thread.currentThread().getName());
+            whileHandling.run();
+        }
+
+        @Override
+        public Class<SomethingHappened> listenTo() {
+            return SomethingHappened.class;
+        }
+    }
+
+    class SequentialTestHandler extends TestHandler implements SequentialDomainEventHandler {
+
+        SequentialTestHandler(String name) {
+            this(name, () -> {
+            });
+        }
+
+        SequentialTestHandler(String name, Runnable whileHandling) {
+            super(name, whileHandling);
+        }
+    }
+}
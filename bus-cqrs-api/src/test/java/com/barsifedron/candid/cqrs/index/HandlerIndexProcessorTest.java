@@ -0,0 +1,238 @@
+package com.barsifedron.candid.cqrs.index;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.TypeElement;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HandlerIndexProcessorTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void indexesConcreteHandlersWithTheTypeOfMessagesTheyHandle() throws Exception {
+
+        source("shop/BuyCommand.java", "package shop; public class BuyCommand implements com.barsifedron.candid.cqrs.command.Command<String> {}");
+        source("shop/Handlers.java", "package shop;\n" +
+                "import com.barsifedron.candid.cqrs.command.*;\n" +
+                "import com.barsifedron.candid.cqrs.domainevent.*;\n" +
+                "public class Handlers {\n" +
+                "    public static abstract class Base<C extends Command<String>> implements CommandHandler<String, C> {\n" +
+                "        public CommandResponse<String> handle(C command) { return new CommandResponse<>(\"done\"); }\n" +
+                "    }\n" +
+                "    public static class BuyHandler extends Base<BuyCommand> {\n" +
+                "        public Class<BuyCommand> listenTo() { return BuyCommand.class; }\n" +
+                "    }\n" +
+                "    public static class AnyEventHandler implements DomainEventHandler<DomainEvent> {\n" +
+                "        public void handle(DomainEvent event) { }\n" +
+                "        public Class<DomainEvent> listenTo() { return DomainEvent.class; }\n" +
+                "    }\n" +
+                "}");
+
+        assertEquals(0, compile());
+
+        List<String> index = Files.readAllLines(index());
+        assertEquals(Arrays.asList(
+                "COMMAND shop.Handlers$BuyHandler shop.BuyCommand",
+                "DOMAIN_EVENT shop.Handlers$AnyEventHandler com.barsifedron.candid.cqrs.domainevent.DomainEvent"),
+                index);
+
+        try (URLClassLoader classLoader = new URLClassLoader(
+                new URL[]{ directory.resolve("classes").toUri().toURL() },
+                getClass().getClassLoader())) {
+            HandlerIndex handlerIndex = HandlerIndex.read(classLoader);
+            Class<?> buyHandler = classLoader.loadClass("shop.Handlers$BuyHandler");
+
+            assertTrue(handlerIndex.isPresent());
+            assertEquals(classLoader.loadClass("shop.BuyCommand"), handlerIndex.messageTypeOf(HandlerIndex.Kind.COMMAND, buyHandler));
+            assertEquals(1, handlerIndex.entries(HandlerIndex.Kind.COMMAND, "shop").size());
+            assertTrue(handlerIndex.entries(HandlerIndex.Kind.COMMAND, "sho").isEmpty());
+            assertTrue(handlerIndex.entries(HandlerIndex.Kind.QUERY, "").isEmpty());
+            assertTrue(handlerIndex.covers("shop"));
+            // Not in a classpath entry with an index: to scan
+            assertFalse(handlerIndex.covers(Test.class.getPackage().getName()));
+            assertFalse(handlerIndex.covers(""));
+        }
+    }
+
+    @Test
+    public void isReadOnceAndOnlyLoadsThePackagesAskedFor() throws Exception {
+
+        source("shop/BuyCommand.java", "package shop; public class BuyCommand implements com.barsifedron.candid.cqrs.command.Command<String> {}");
+        source("shop/BuyHandler.java", handler("BuyHandler", "BuyCommand"));
+        assertEquals(0, compile());
+        // Left over from a class deleted since, in another package
+        Files.write(index(), Collections.singletonList("COMMAND attic.GoneHandler attic.GoneCommand"), StandardOpenOption.APPEND);
+
+        try (URLClassLoader classLoader = new URLClassLoader(
+                new URL[]{ directory.resolve("classes").toUri().toURL() },
+                getClass().getClassLoader())) {
+            HandlerIndex handlerIndex = HandlerIndex.read(classLoader);
+
+            assertSame(handlerIndex, HandlerIndex.read(classLoader));
+            assertEquals(classLoader.loadClass("shop.BuyHandler"), handlerIndex.entries(HandlerIndex.Kind.COMMAND, "shop").get(0).handlerClass);
+            assertThrows(HandlerIndex.HandlerIndexException.class, () -> handlerIndex.entries(HandlerIndex.Kind.COMMAND, "attic"));
+        }
+    }
+
+    @Test
+    public void leavesOutHandlersWhoseMessagesCanNotBeToldOrFailsWhenStrict() throws Exception {
+
+        source("shop/RawHandler.java", "package shop;\n" +
+                "public class RawHandler implements com.barsifedron.candid.cqrs.domainevent.DomainEventHandler {\n" +
+                "    public void handle(com.barsifedron.candid.cqrs.domainevent.DomainEvent event) { }\n" +
+                "    public Class listenTo() { return null; }\n" +
+                "}");
+
+        assertNotEquals(0, compile("-A" + HandlerIndexProcessor.STRICT + "=true"));
+        assertFalse(Files.exists(index()));
+
+        assertEquals(0, compile());
+        assertFalse(Files.exists(index()));
+    }
+
+    @Test
+    public void writesNothingUnlessAskedTo() throws Exception {
+
+        source("shop/BuyCommand.java", "package shop; public class BuyCommand implements com.barsifedron.candid.cqrs.command.Command<String> {}");
+        source("shop/BuyHandler.java", handler("BuyHandler", "BuyCommand"));
+
+        assertEquals(0, compileWithOptions("-processor", HandlerIndexProcessor.class.getName()));
+
+        assertFalse(Files.exists(index()));
+    }
+
+    @Test
+    public void keepsTheHandlersOfThePreviousCompilationThatAreStillThere() throws Exception {
+
+        source("shop/BuyCommand.java", "package shop; public class BuyCommand implements com.barsifedron.candid.cqrs.command.Command<String> {}");
+        source("shop/BuyHandler.java", handler("BuyHandler", "BuyCommand"));
+        source("shop/OtherBuyHandler.java", handler("OtherBuyHandler", "BuyCommand"));
+        source("shop/ThirdBuyHandler.java", handler("ThirdBuyHandler", "BuyCommand"));
+        assertEquals(0, compile());
+
+        // Only the handler changed is compiled again, a handler is deleted
+        Files.delete(directory.resolve("src/shop/BuyCommand.java"));
+        Files.delete(directory.resolve("src/shop/OtherBuyHandler.java"));
+        Files.delete(directory.resolve("src/shop/ThirdBuyHandler.java"));
+        Files.delete(directory.resolve("classes/shop/ThirdBuyHandler.class"));
+        assertEquals(0, compile());
+
+        assertEquals(Arrays.asList(
+                "COMMAND shop.BuyHandler shop.BuyCommand",
+                "COMMAND shop.OtherBuyHandler shop.BuyCommand"),
+                Files.readAllLines(index()));
+    }
+
+    @Test
+    public void waitsForMessagesGeneratedByAnotherProcessor() throws Exception {
+
+        source("shop/BuyHandler.java", handler("BuyHandler", "GeneratedCommand"));
+
+        assertEquals(0, compileWithOptions(
+                "-processor", HandlerIndexProcessor.class.getName() + "," + GeneratingProcessor.class.getName(),
+                "-A" + HandlerIndexProcessor.ENABLED + "=true"));
+
+        assertEquals(
+                Collections.singletonList("COMMAND shop.BuyHandler shop.GeneratedCommand"),
+                Files.readAllLines(index()));
+    }
+
+    private void source(String path, String source) throws IOException {
+        Path file = directory.resolve("src").resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.write(file, source.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Writes shop.GeneratedCommand, in its first round.
+     */
+    @SupportedAnnotationTypes("*")
+    public static class GeneratingProcessor extends AbstractProcessor {
+
+        private boolean generated;
+
+        @Override
+        public SourceVersion getSupportedSourceVersion() {
+            return SourceVersion.latestSupported();
+        }
+
+        @Override
+        public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+            if (!generated) {
+                generated = true;
+                try (Writer writer = processingEnv.getFiler().createSourceFile("shop.GeneratedCommand").openWriter()) {
+                    writer.write("package shop; public class GeneratedCommand implements com.barsifedron.candid.cqrs.command.Command<String> {}");
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return false;
+        }
+    }
+
+    private static String handler(String name, String command) {
+        return "package shop;\n" +
+                "import com.barsifedron.candid.cqrs.command.*;\n" +
+                "public class " + name + " implements CommandHandler<String, " + command + "> {\n" +
+                "    public CommandResponse<String> handle(" + command + " command) { return new CommandResponse<>(\"done\"); }\n" +
+                "    public Class<" + command + "> listenTo() { return " + command + ".class; }\n" +
+                "}";
+    }
+
+    private Path index() {
+        return directory.resolve("classes").resolve(HandlerIndex.LOCATION);
+    }
+
+    private int compile(String... options) throws IOException {
+        List<String> arguments = new ArrayList<>(Arrays.asList(
+                "-processor", HandlerIndexProcessor.class.getName(),
+                "-A" + HandlerIndexProcessor.ENABLED + "=true"));
+        arguments.addAll(Arrays.asList(options));
+        return compileWithOptions(arguments.toArray(new String[0]));
+    }
+
+    private int compileWithOptions(String... options) throws IOException {
+        Path classes = Files.createDirectories(directory.resolve("classes"));
+        List<String> arguments = new ArrayList<>(Arrays.asList(
+                "-classpath", System.getProperty("java.class.path") + File.pathSeparator + classes,
+                "-d", classes.toString()));
+        arguments.addAll(Arrays.asList(options));
+        try (Stream<Path> sources = Files.walk(directory.resolve("src"))) {
+            sources.filter(Files::isRegularFile).forEach(source -> arguments.add(source.toString()));
+        }
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        return compiler.run(null, null, new ByteArrayOutputStream(), arguments.toArray(new String[0]));
+    }
+}
@@ -0,0 +1,126 @@
+package com.barsifedron.candid.cqrs.limit;
+
+import com.barsifedron.candid.cqrs.query.ConcurrencyLimitingQueryBusMiddleware;
+import com.barsifedron.candid.cqrs.query.Query;
+import com.barsifedron.candid.cqrs.query.QueryBus;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AdaptiveConcurrencyLimitTest {
+
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void queriesOverTheLimitAreRejectedOnceTheyWaitedLongEnough() throws Exception {
+
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        QueryBus blockingBus = new QueryBus() {
+            @Override
+            public <T> T dispatch(Query<T> query) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return (T) "done";
+            }
+        };
+        ConcurrencyLimitingQueryBusMiddleware middleware = ConcurrencyLimitingQueryBusMiddleware.shared(
+                new AdaptiveConcurrencyLimit(2, 2, 2, 50, TimeUnit.MILLISECONDS));
+        QueryBus bus = middleware.decorate(blockingBus);
+
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> bus.dispatch(new SomeQuery()));
+        CompletableFuture<String> second = CompletableFuture.supplyAsync(() -> bus.dispatch(new SomeQuery()));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        assertThrows(AdaptiveConcurrencyLimit.LimitExceededException.class, () -> bus.dispatch(new SomeQuery()));
+        assertEquals(1, middleware.limitOf(SomeQuery.class).rejected());
+
+        release.countDown();
+        assertEquals("done", first.get(5, TimeUnit.SECONDS));
+        assertEquals("done", second.get(5, TimeUnit.SECONDS));
+        assertEquals("done", bus.dispatch(new SomeQuery()));
+        assertEquals(0, middleware.limitOf(SomeQuery.class).inFlight());
+    }
+
+    @Test
+    public void theLimitShrinksWhenLatenciesGoUp() {
+
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(20, 2, 100, 0, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 20; i++) {
+            limit.acquire(SomeQuery.class);
+            limit.release(MILLIS);
+        }
+        assertEquals(20, limit.limit());
+
+        for (int i = 0; i < 50; i++) {
+            limit.acquire(SomeQuery.class);
+            limit.release(10 * MILLIS);
+        }
+        assertTrue(limit.limit() < 20, "limit " + limit.limit());
+        assertTrue(limit.limit() >= 2, "limit " + limit.limit());
+    }
+
+    @Test
+    public void theLimitGrowsWhileItIsUsedAndLatenciesHold() {
+
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(2, 1, 10, 0, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 100; i++) {
+            for (int j = 0; j < limit.limit(); j++) {
+                limit.acquire(SomeQuery.class);
+            }
+            for (int j = limit.inFlight(); j > 0; j--) {
+                limit.release(MILLIS);
+            }
+        }
+        assertEquals(10, limit.limit());
+    }
+
+    @Test
+    public void fastAndSlowMessagesMixedAreNotTakenForLoad() {
+
+        // Cache hits and misses: one message in two is twenty times slower
+        Random random = new Random(42);
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(20, 2, 100, 0, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 200; i++) {
+            for (int j = 0; j < limit.limit(); j++) {
+                limit.acquire(SomeQuery.class);
+            }
+            for (int j = limit.inFlight(); j > 0; j--) {
+                limit.release(random.nextBoolean() ? MILLIS : 20 * MILLIS);
+            }
+        }
+        int unloaded = limit.limit();
+        assertTrue(unloaded > 20, "limit " + unloaded);
+
+        // Then the whole mix gets slower
+        for (int i = 0; i < 50; i++) {
+            for (int j = 0; j < limit.limit(); j++) {
+                limit.acquire(SomeQuery.class);
+            }
+            for (int j = limit.inFlight(); j > 0; j--) {
+                limit.release(random.nextBoolean() ? 10 * MILLIS : 200 * MILLIS);
+            }
+        }
+        assertTrue(limit.limit() < unloaded, "limit " + limit.limit());
+    }
+
+    @Test
+    public void aLimitNeedsSensibleBounds() {
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveConcurrencyLimit(5, 10, 20, 0, TimeUnit.MILLISECONDS));
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveConcurrencyLimit(5, 0, 20, 0, TimeUnit.MILLISECONDS));
+    }
+
+    static class SomeQuery implements Query<String> {
+    }
+}
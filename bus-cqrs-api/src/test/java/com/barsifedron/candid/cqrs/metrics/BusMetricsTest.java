@@ -0,0 +1,105 @@
+package com.barsifedron.candid.cqrs.metrics;
+
+import com.barsifedron.candid.cqrs.command.BatchedCommandResponse;
+import com.barsifedron.candid.cqrs.command.Command;
+import com.barsifedron.candid.cqrs.command.CommandBus;
+import com.barsifedron.candid.cqrs.command.CommandResponse;
+import com.barsifedron.candid.cqrs.command.MetricsCommandBusMiddleware;
+import com.barsifedron.candid.cqrs.command.NoResult;
+import org.junit.jupiter.api.Test;
+
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BusMetricsTest {
+
+    @Test
+    public void everyValueIsCountedWithinTwoPercent() {
+
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            // Anything from 0 to the highest trackable value, about half an hour
+            long value = (random.nextLong() >>> 23) >>> random.nextInt(42);
+            long bucketValue = LatencyHistogram.highestValueOf(LatencyHistogram.bucketOf(value));
+            assertTrue(bucketValue >= value && bucketValue - value <= value / 64, value + " counted as " + bucketValue);
+        }
+    }
+
+    @Test
+    public void percentilesAreReadFromTheBuckets() {
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 1000; micros++) {
+            histogram.record(micros * 1000);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1000, snapshot.count);
+        assertEquals(500_500, snapshot.meanNanos(), 500_500 / 64);
+        assertEquals(1_000_000, snapshot.maxNanos);
+        assertEquals(500_000, snapshot.valueAtPercentile(50), 500_000 / 64);
+        assertEquals(990_000, snapshot.valueAtPercentile(99), 990_000 / 64);
+        assertEquals(1_000_000, snapshot.valueAtPercentile(99.9), 1_000_000 / 64);
+    }
+
+    @Test
+    public void outcomesAreCountedByTypeOfCommand() {
+
+        BusMetrics metrics = new BusMetrics("commands");
+        CommandBus bus = new MetricsCommandBusMiddleware(metrics).decorate(new CommandBus() {
+            @Override
+            public <T> CommandResponse<T> dispatch(Command<T> command) {
+                if (command instanceof FailingCommand) {
+                    throw new IllegalStateException("failing");
+                }
+                return (CommandResponse<T>) CommandResponse.empty();
+            }
+        });
+
+        bus.dispatch(new WorkingCommand());
+        assertThrows(IllegalStateException.class, () -> bus.dispatch(new FailingCommand()));
+        List<BatchedCommandResponse<?>> responses = bus.dispatchAll(Arrays.asList(new WorkingCommand(), new FailingCommand()));
+        assertEquals(2, responses.size());
+
+        List<MessageTypeStats> stats = metrics.getMessageTypes();
+        assertEquals(2, stats.size());
+        assertEquals(FailingCommand.class.getName(), stats.get(0).getMessageType());
+        assertEquals(0, stats.get(0).getSuccesses());
+        assertEquals(2, stats.get(0).getFailures());
+        assertEquals(WorkingCommand.class.getName(), stats.get(1).getMessageType());
+        assertEquals(2, stats.get(1).getSuccesses());
+        assertEquals(0, stats.get(1).getFailures());
+    }
+
+    @Test
+    public void metricsCanBeReadThroughJmx() throws Exception {
+
+        BusMetrics metrics = new BusMetrics("jmx test");
+        metrics.record(WorkingCommand.class, 1000, true);
+
+        ObjectName objectName = metrics.registerMBean();
+        try {
+            CompositeData[] messageTypes = (CompositeData[]) ManagementFactory.getPlatformMBeanServer().getAttribute(objectName, "MessageTypes");
+            assertEquals(1, messageTypes.length);
+            assertEquals(WorkingCommand.class.getName(), messageTypes[0].get("messageType"));
+            assertEquals(1L, messageTypes[0].get("successes"));
+            assertEquals(1000L, messageTypes[0].get("maxNanos"));
+        } finally {
+            metrics.unregisterMBean();
+        }
+    }
+
+    static class WorkingCommand implements Command<NoResult> {
+    }
+
+    static class FailingCommand implements Command<NoResult> {
+    }
+}
@@ -0,0 +1,127 @@
+package com.barsifedron.candid.cqrs.metrics;
+
+import com.barsifedron.candid.cqrs.command.Command;
+import com.barsifedron.candid.cqrs.command.CommandBus;
+import com.barsifedron.candid.cqrs.command.CommandBusMiddleware;
+import com.barsifedron.candid.cqrs.command.CommandBusPipeline;
+import com.barsifedron.candid.cqrs.command.CommandResponse;
+import com.barsifedron.candid.cqrs.command.NoResult;
+import com.barsifedron.candid.cqrs.query.Query;
+import com.barsifedron.candid.cqrs.query.QueryBus;
+import com.barsifedron.candid.cqrs.query.QueryBusMiddleware;
+import com.barsifedron.candid.cqrs.query.QueryBusPipeline;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PipelineProfileTest {
+
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void eachStageIsTimedWithoutTheStagesFurtherDown() {
+
+        CommandBusPipeline pipeline = CommandBusPipeline.compileProfiled(
+                new SleepingCommandBus(50),
+                new SleepingCommandMiddleware(20),
+                CommandBusMiddleware.neutral());
+
+        pipeline.dispatch(new SlowCommand());
+        pipeline.dispatch(new SlowCommand());
+
+        List<String> stageNames = pipeline.profile().getStages();
+        assertEquals(3, stageNames.size());
+        assertEquals("SleepingCommandMiddleware", stageNames.get(0));
+        assertTrue(stageNames.get(1).startsWith("CommandBusMiddleware$"), stageNames.get(1));
+        assertEquals("SleepingCommandBus", stageNames.get(2));
+        List<PipelineProfile.MessageTypeProfile> report = pipeline.profile().report();
+        assertEquals(1, report.size());
+        assertEquals(SlowCommand.class.getName(), report.get(0).getMessageType());
+
+        List<PipelineProfile.StageStats> stages = report.get(0).getStages();
+        assertEquals(2, stages.get(0).getCalls());
+        assertTrue(stages.get(0).getMeanNanos() >= 19 * MILLIS && stages.get(0).getMeanNanos() < 45 * MILLIS, stages.get(0).toString());
+        assertTrue(stages.get(1).getMeanNanos() < 5 * MILLIS, stages.get(1).toString());
+        assertTrue(stages.get(2).getMeanNanos() >= 49 * MILLIS, stages.get(2).toString());
+        assertTrue(stages.get(2).getPercentOfPipeline() > 50, stages.get(2).toString());
+    }
+
+    @Test
+    public void aStageNotReachedIsNotCalled() {
+
+        QueryBusMiddleware answersItself = new QueryBusMiddleware() {
+            @Override
+            public <T> T dispatch(Query<T> query, QueryBus next) {
+                return (T) "cached";
+            }
+        };
+        QueryBusPipeline pipeline = QueryBusPipeline.compileProfiled(
+                new QueryBus() {
+                    @Override
+                    public <T> T dispatch(Query<T> query) {
+                        return (T) "handled";
+                    }
+                },
+                answersItself);
+
+        assertEquals("cached", pipeline.dispatch(new CachedQuery()));
+
+        List<PipelineProfile.StageStats> stages = pipeline.profile().report().get(0).getStages();
+        assertEquals(1, stages.get(0).getCalls());
+        assertEquals(0, stages.get(1).getCalls());
+    }
+
+    @Test
+    public void aPipelineIsNotProfiledUnlessAskedTo() {
+        assertNull(CommandBusPipeline.compile(new SleepingCommandBus(0)).profile());
+    }
+
+    static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static class SleepingCommandMiddleware implements CommandBusMiddleware {
+
+        private final long millis;
+
+        SleepingCommandMiddleware(long millis) {
+            this.millis = millis;
+        }
+
+        @Override
+        public <T> CommandResponse<T> dispatch(Command<T> command, CommandBus next) {
+            sleep(millis);
+            return next.dispatch(command);
+        }
+    }
+
+    static class SleepingCommandBus implements CommandBus {
+
+        private final long millis;
+
+        SleepingCommandBus(long millis) {
+            this.millis = millis;
+        }
+
+        @Override
+        public <T> CommandResponse<T> dispatch(Command<T> command) {
+            sleep(millis);
+            return (CommandResponse<T>) CommandResponse.empty();
+        }
+    }
+
+    static class SlowCommand implements Command<NoResult> {
+    }
+
+    static class CachedQuery implements Query<String> {
+    }
+}
@@ -0,0 +1,68 @@
+package com.barsifedron.candid.cqrs.query;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class AsyncQueryBusMiddlewareTest {
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void canDecorateAnAsyncQueryBus() {
+
+        List<String> logs = Collections.synchronizedList(new ArrayList<>());
+
+        AsyncQueryBusMiddleware middleware = new AsyncQueryBusMiddleware() {
+            @Override
+            public <T> CompletableFuture<T> dispatch(Query<T> query, AsyncQueryBus next) {
+                logs.add("middleware");
+                return next.dispatch(query).whenComplete((result, failure) -> logs.add("middleware"));
+            }
+        };
+        QueryBus baseBus = new QueryBus() {
+            @Override
+            public <T> T dispatch(Query<T> query) {
+                logs.add("\tDecorated bus execution.");
+                return new MapQueryBus(new QueryBusMiddlewareTest.ReturnTwoQueryHandler()).dispatch(query);
+            }
+        };
+
+        Integer result = AsyncQueryBusMiddleware
+                .compositeOf(middleware)
+                .decorate(new ExecutorQueryBus(baseBus, executor))
+                .dispatch(new QueryBusMiddlewareTest.ReturnTwoQuery())
+                .join();
+
+        assertEquals(Integer.valueOf(2), result);
+        assertEquals(
+                "middleware\n" +
+                        "\tDecorated bus execution.\n" +
+                        "middleware",
+                logs.stream().collect(Collectors.joining("\n")));
+    }
+
+    @Test
+    public void aBlockingQueryBusRethrowsTheExceptionOfTheHandler() {
+        QueryBus queryBus = new BlockingQueryBus(new ExecutorQueryBus(new MapQueryBus(), executor));
+
+        assertThrows(
+                MapQueryBus.QueryHandlerNotFoundException.class,
+                () -> queryBus.dispatch(new QueryBusMiddlewareTest.ReturnTwoQuery()));
+    }
+}
@@ -0,0 +1,175 @@
+package com.barsifedron.candid.cqrs.query;
+
+import com.barsifedron.candid.cqrs.command.Command;
+import com.barsifedron.candid.cqrs.command.CommandBus;
+import com.barsifedron.candid.cqrs.command.CommandResponse;
+import com.barsifedron.candid.cqrs.command.NoResult;
+import com.barsifedron.candid.cqrs.domainevent.DomainEvent;
+import org.junit.jupiter.api.Test;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class CachingQueryBusMiddlewareTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final AtomicInteger handled = new AtomicInteger();
+
+    private final QueryBus handler = new QueryBus() {
+        @Override
+        public <T> T dispatch(Query<T> query) {
+            handled.incrementAndGet();
+            return (T) ("item " + ((GetItem) query).itemId);
+        }
+    };
+
+    @Test
+    public void onlyDeclaredQueriesAreCached() {
+
+        CachingQueryBusMiddleware middleware = middleware();
+        QueryBus bus = middleware.decorate(handler);
+
+        assertEquals("item a", bus.dispatch(new GetItem("a")));
+        assertEquals("item a", bus.dispatch(new GetItem("a")));
+        assertEquals(1, handled.get());
+
+        bus.dispatch(new NotCached("a"));
+        bus.dispatch(new NotCached("a"));
+        assertEquals(3, handled.get());
+
+        BoundedCache.Stats stats = middleware.stats();
+        assertEquals(1, stats.hits);
+        assertEquals(1, stats.misses);
+        assertEquals(1, stats.size);
+    }
+
+    @Test
+    public void entriesExpire() {
+
+        CachingQueryBusMiddleware middleware = middleware();
+        QueryBus bus = middleware.decorate(handler);
+
+        bus.dispatch(new GetItem("a"));
+        now.addAndGet(TimeUnit.SECONDS.toNanos(61));
+        bus.dispatch(new GetItem("a"));
+
+        assertEquals(2, handled.get());
+        assertEquals(1, middleware.stats().expirations);
+    }
+
+    @Test
+    public void eventsOfACommandEvictWhatTheRulesSay() {
+
+        CachingQueryBusMiddleware middleware = middleware();
+        QueryBus bus = middleware.decorate(handler);
+        bus.dispatch(new GetItem("a"));
+        bus.dispatch(new GetItem("b"));
+
+        CommandBus commandBus = middleware.evictingCommandBusMiddleware().decorate(new CommandBus() {
+            @Override
+            public <T> CommandResponse<T> dispatch(Command<T> command) {
+                return (CommandResponse<T>) CommandResponse.withoutResults(new ItemBorrowed("a"));
+            }
+        });
+        commandBus.dispatch(new BorrowItem());
+
+        bus.dispatch(new GetItem("a"));
+        bus.dispatch(new GetItem("b"));
+        assertEquals(3, handled.get());
+        assertEquals(1, middleware.stats().invalidations);
+    }
+
+    @Test
+    public void aFullCacheOnlyLetsInWhatIsAskedForMoreOften() {
+
+        BoundedCache<String, String> cache = new BoundedCache<>(2, 1, TimeUnit.MINUTES, now::get);
+        for (int i = 0; i < 5; i++) {
+            cache.get("popular");
+        }
+        cache.put("popular", "popular");
+        cache.get("other");
+        cache.put("other", "other");
+        cache.get("popular");
+
+        // Asked for once: not worth pushing anything out
+        cache.get("oneHitWonder");
+        cache.put("oneHitWonder", "oneHitWonder");
+        assertNull(cache.get("oneHitWonder"));
+        assertEquals(1, cache.stats().rejections);
+
+        // Now asked for more often than "other", the least recently used
+        cache.put("oneHitWonder", "oneHitWonder");
+        assertEquals("oneHitWonder", cache.get("oneHitWonder"));
+        assertEquals("popular", cache.get("popular"));
+        assertNull(cache.get("other"));
+        assertEquals(1, cache.stats().evictions);
+    }
+
+    @Test
+    public void aResultReadDuringAnEvictionIsNotCached() {
+
+        CachingQueryBusMiddleware middleware = middleware();
+        QueryBus bus = middleware.decorate(new QueryBus() {
+            @Override
+            public <T> T dispatch(Query<T> query) {
+                middleware.evict(new ItemBorrowed("a"));
+                return handler.dispatch(query);
+            }
+        });
+
+        bus.dispatch(new GetItem("a"));
+
+        assertEquals(0, middleware.stats().size);
+    }
+
+    private CachingQueryBusMiddleware middleware() {
+        return new CachingQueryBusMiddleware(
+                new CachingQueryBusMiddleware.Rules()
+                        .cache(GetItem.class)
+                        .evict(GetItem.class, ItemBorrowed.class, (query, event) -> query.itemId.equals(event.itemId)),
+                new BoundedCache<>(10, 60, TimeUnit.SECONDS, now::get));
+    }
+
+    static class GetItem implements Query<String> {
+
+        final String itemId;
+
+        GetItem(String itemId) {
+            this.itemId = itemId;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof GetItem && ((GetItem) other).itemId.equals(itemId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(itemId);
+        }
+    }
+
+    static class NotCached extends GetItem {
+
+        NotCached(String itemId) {
+            super(itemId);
+        }
+    }
+
+    static class ItemBorrowed implements DomainEvent {
+
+        final String itemId;
+
+        ItemBorrowed(String itemId) {
+            this.itemId = itemId;
+        }
+    }
+
+    static class BorrowItem implements Command<NoResult> {
+    }
+}
@@ -0,0 +1,150 @@
+package com.barsifedron.candid.cqrs.query;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LanedQueryBusTest {
+
+    private final CountDownLatch reportsMayEnd = new CountDownLatch(1);
+    private LanedQueryBus bus;
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        reportsMayEnd.countDown();
+        bus.shutdown();
+        bus.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void readsDoNotWaitBehindReports() throws Exception {
+
+        bus = new LanedQueryBus(
+                new MapQueryBus(new SlowReportQueryHandler(), new ReadQueryHandler()),
+                new LanedQueryBus.Lanes("interactive")
+                        .add("interactive", 2, 10)
+                        .add("batch", 1, 10));
+
+        CompletableFuture<String> report = bus.dispatch(new SlowReportQuery());
+        CompletableFuture<String> otherReport = bus.dispatch(new SlowReportQuery());
+
+        assertEquals("read", bus.dispatch(new ReadQuery()).get(5, TimeUnit.SECONDS));
+        assertFalse(report.isDone());
+        assertEquals(1, bus.laneMetrics().get(1).queueDepth);
+
+        reportsMayEnd.countDown();
+        assertEquals("report", report.get(5, TimeUnit.SECONDS));
+        assertEquals("report", otherReport.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void queriesAreRejectedWhenTheirLaneIsFull() throws Exception {
+
+        bus = new LanedQueryBus(
+                new MapQueryBus(new SlowReportQueryHandler(), new ReadQueryHandler()),
+                new LanedQueryBus.Lanes("interactive")
+                        .add("interactive", 1, 1)
+                        .add("batch", 1, 1));
+
+        bus.dispatch(new SlowReportQuery());
+        waitUntilRunning("batch");
+        bus.dispatch(new SlowReportQuery());
+
+        assertThrows(LanedQueryBus.QueryRejectedException.class, () -> bus.dispatch(new SlowReportQuery()));
+        assertEquals(1, bus.laneMetrics().get(1).rejected);
+        assertEquals("read", bus.dispatch(new ReadQuery()).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void anAssignmentWinsOverTheAnnotation() {
+
+        bus = new LanedQueryBus(
+                new MapQueryBus(new SlowReportQueryHandler(), new ReadQueryHandler()),
+                new LanedQueryBus.Lanes("interactive")
+                        .add("interactive", 1, 1)
+                        .add("batch", 1, 1)
+                        .add("nightly", 1, 1)
+                        .assign(ReadQuery.class, "nightly"));
+
+        assertEquals("batch", bus.laneNameOf(SlowReportQuery.class));
+        assertEquals("nightly", bus.laneNameOf(ReadQuery.class));
+    }
+
+    @Test
+    public void aQueryDispatchedFromALaneRunsRightAway() throws Exception {
+
+        LanedQueryBus[] self = new LanedQueryBus[1];
+        QueryBus nesting = new QueryBus() {
+            @Override
+            public <T> T dispatch(Query<T> query) {
+                if (query instanceof ReadQuery) {
+                    return (T) Thread.currentThread().getName();
+                }
+                // The only thread of the batch lane is this one
+                return (T) self[0].dispatch(new ReadQuery()).join();
+            }
+        };
+        bus = new LanedQueryBus(
+                nesting,
+                new LanedQueryBus.Lanes("batch")
+                        .add("batch", 1, 1));
+        self[0] = bus;
+
+        assertTrue(bus.dispatch(new SlowReportQuery()).get(5, TimeUnit.SECONDS).startsWith("query-lane-batch-"));
+    }
+
+    private void waitUntilRunning(String lane) throws InterruptedException {
+        for (int i = 0; i < 500; i++) {
+            if (bus.laneMetrics().stream().anyMatch(metrics -> metrics.lane.equals(lane) && metrics.active == 1)) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    @QueryLane("batch")
+    static class SlowReportQuery implements Query<String> {
+    }
+
+    static class ReadQuery implements Query<String> {
+    }
+
+    class SlowReportQueryHandler implements QueryHandler<String, SlowReportQuery> {
+
+        @Override
+        public String handle(SlowReportQuery query) {
+            try {
+                reportsMayEnd.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "report";
+        }
+
+        @Override
+        public Class<SlowReportQuery> listenTo() {
+            return SlowReportQuery.class;
+        }
+    }
+
+    static class ReadQueryHandler implements QueryHandler<String, ReadQuery> {
+
+        @Override
+        public String handle(ReadQuery query) {
+            return "read";
+        }
+
+        @Override
+        public Class<ReadQuery> listenTo() {
+            return ReadQuery.class;
+        }
+    }
+}
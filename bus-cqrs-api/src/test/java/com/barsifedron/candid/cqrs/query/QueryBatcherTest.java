@@ -0,0 +1,135 @@
+package com.barsifedron.candid.cqrs.query;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class QueryBatcherTest {
+
+    private final List<String> calls = new ArrayList<>();
+
+    @Test
+    public void queriesOfTheSameTypeAreAnsweredTogether() {
+
+        QueryBatcher batcher = new QueryBatcher(new ClassValueQueryBus(new GetMemberHandler()));
+
+        CompletableFuture<String> first = batcher.load(new GetMember("a"));
+        CompletableFuture<String> second = batcher.load(new GetMember("b"));
+        CompletableFuture<String> again = batcher.load(new GetMember("a"));
+        assertFalse(first.isDone());
+
+        batcher.dispatch();
+
+        assertEquals("member a", first.join());
+        assertEquals("member b", second.join());
+        assertEquals("member a", again.join());
+        assertEquals(Arrays.asList("handleAll [a, b]"), calls);
+    }
+
+    @Test
+    public void aBatchOfOneIsDispatchedAsTheQueryItself() {
+
+        QueryBatcher batcher = new QueryBatcher(new ClassValueQueryBus(new GetMemberHandler()));
+
+        CompletableFuture<String> member = batcher.load(new GetMember("a"));
+        CompletableFuture<String> everyone = batcher.load(new GetMember(null));
+        batcher.dispatch();
+
+        assertEquals("member a", member.join());
+        assertEquals("member null", everyone.join());
+        assertEquals(Arrays.asList("handle a", "handle null"), calls);
+    }
+
+    @Test
+    public void handlersThatCanNotBatchGetTheQueriesOneByOne() {
+
+        QueryHandler<String, GetMember> oneByOne = new QueryHandler<String, GetMember>() {
+            @Override
+            public String handle(GetMember query) {
+                calls.add("handle " + query.memberId);
+                return "member " + query.memberId;
+            }
+
+            @Override
+            public Class<GetMember> listenTo() {
+                return GetMember.class;
+            }
+        };
+        QueryBatcher batcher = new QueryBatcher(new MapQueryBus(oneByOne));
+
+        CompletableFuture<String> first = batcher.load(new GetMember("a"));
+        CompletableFuture<String> second = batcher.load(new GetMember("b"));
+        batcher.dispatch();
+
+        assertEquals("member a", first.join());
+        assertEquals("member b", second.join());
+        assertEquals(Arrays.asList("handle a", "handle b"), calls);
+    }
+
+    @Test
+    public void everyQueryOfAFailedBatchFailsWithTheSameException() {
+
+        IllegalStateException failure = new IllegalStateException("database is down");
+        QueryBatcher batcher = new QueryBatcher(new QueryBus() {
+            @Override
+            public <T> T dispatch(Query<T> query) {
+                throw failure;
+            }
+        });
+
+        CompletableFuture<String> first = batcher.load(new GetMember("a"));
+        CompletableFuture<String> second = batcher.load(new GetMember("b"));
+        batcher.dispatch();
+
+        assertSame(failure, assertThrows(CompletionException.class, first::join).getCause());
+        assertSame(failure, assertThrows(CompletionException.class, second::join).getCause());
+    }
+
+    static class GetMember implements Query<String>, BatchableQuery<String> {
+
+        final String memberId;
+
+        GetMember(String memberId) {
+            this.memberId = memberId;
+        }
+
+        @Override
+        public String batchKey() {
+            return memberId;
+        }
+    }
+
+    class GetMemberHandler implements BatchQueryHandler<String, String, GetMember> {
+
+        @Override
+        public String handle(GetMember query) {
+            calls.add("handle " + query.memberId);
+            return "member " + query.memberId;
+        }
+
+        @Override
+        public Map<String, String> handleAll(Set<String> memberIds) {
+            calls.add("handleAll " + memberIds);
+            Map<String, String> members = new LinkedHashMap<>();
+            memberIds.forEach(memberId -> members.put(memberId, "member " + memberId));
+            return members;
+        }
+
+        @Override
+        public Class<GetMember> listenTo() {
+            return GetMember.class;
+        }
+    }
+}
@@ -69,6 +69,49 @@ public class QueryBusMiddlewareTest {
                 logs.stream().collect(Collectors.joining("\n")));
     }
 
+    @Test
+    public void aCompiledPipelineKeepsTheOrderOfACompositeMiddleware() {
+
+        List<String> logs = new ArrayList<>();
+        List<QueryBusMiddleware> middlewares = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            int layer = i;
+            middlewares.add(new QueryBusMiddleware() {
+                @Override
+                public <T> T dispatch(Query<T> query, QueryBus next) {
+                    logs.add(layer + " in");
+                    T response = next.dispatch(query);
+                    logs.add(layer + " out");
+                    return response;
+                }
+            });
+        }
+        QueryBus baseBus = new MapQueryBus(new ReturnTwoQueryHandler());
+
+        Integer result = QueryBusPipeline.compile(baseBus, middlewares).dispatch(new ReturnTwoQuery());
+        String pipelineLogs = logs.stream().collect(Collectors.joining("\n"));
+
+        logs.clear();
+        QueryBusMiddleware.compositeOf(middlewares).decorate(baseBus).dispatch(new ReturnTwoQuery());
+
+        assertEquals("0 in\n1 in\n2 in\n2 out\n1 out\n0 out", pipelineLogs);
+        assertEquals(logs.stream().collect(Collectors.joining("\n")), pipelineLogs);
+        assertEquals(Integer.valueOf(2), result);
+    }
+
+    @Test
+    public void aClassValueQueryBusFallsBackToTheHandlerOfTheClosestParent() {
+        QueryBus queryBus = new ClassValueQueryBus(new ReturnTwoQueryHandler());
+
+        assertEquals(Integer.valueOf(2), queryBus.dispatch(new ReturnTwoQuery()));
+        assertEquals(Integer.valueOf(2), queryBus.dispatch(new ReturnTwoAgainQuery()));
+        assertThrows(MapQueryBus.QueryHandlerNotFoundException.class, () -> queryBus.dispatch(new Query<Integer>() {
+        }));
+    }
+
+    static class ReturnTwoAgainQuery extends ReturnTwoQuery {
+    }
+
     static class FirstTestMiddleware implements QueryBusMiddleware {
 
         private final static Logger LOGGER = Logger.getLogger(FirstTestMiddleware.class.getName());
@@ -0,0 +1,133 @@
+package com.barsifedron.candid.cqrs.query;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class SingleFlightQueryBusMiddlewareTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final SingleFlightQueryBusMiddleware middleware = new SingleFlightQueryBusMiddleware();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger handled = new AtomicInteger();
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void identicalQueriesRunningAtTheSameTimeRunOnce() throws Exception {
+
+        QueryBus bus = middleware.decorate(blockingHandler(() -> new StringBuilder("item")));
+
+        List<Future<Object>> results = dispatchFourTimes(bus, new GetItem("a"));
+        awaitCollapsed(3);
+        release.countDown();
+
+        for (Future<Object> result : results) {
+            assertSame(results.get(0).get(), result.get());
+        }
+        assertEquals(1, handled.get());
+        assertEquals(1, middleware.executed());
+        assertEquals(3, middleware.collapsed());
+        assertEquals(0, middleware.inFlight());
+    }
+
+    @Test
+    public void everyWaiterGetsTheSameException() throws Exception {
+
+        IllegalStateException failure = new IllegalStateException("database is down");
+        QueryBus bus = middleware.decorate(blockingHandler(() -> {
+            throw failure;
+        }));
+
+        List<Future<Object>> results = dispatchFourTimes(bus, new GetItem("a"));
+        awaitCollapsed(3);
+        release.countDown();
+
+        for (Future<Object> result : results) {
+            ExecutionException exception = assertThrows(ExecutionException.class, result::get);
+            assertSame(failure, exception.getCause());
+        }
+        assertEquals(1, handled.get());
+    }
+
+    @Test
+    public void unmarkedQueriesAlwaysRun() {
+
+        release.countDown();
+        QueryBus bus = middleware.decorate(blockingHandler(() -> "report"));
+
+        bus.dispatch(new GetReport());
+        bus.dispatch(new GetReport());
+
+        assertEquals(2, handled.get());
+        assertEquals(0, middleware.executed());
+    }
+
+    private List<Future<Object>> dispatchFourTimes(QueryBus bus, Query<Object> query) {
+        List<Future<Object>> results = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            results.add(executor.submit(() -> bus.dispatch(query)));
+        }
+        return results;
+    }
+
+    private void awaitCollapsed(int calls) throws InterruptedException {
+        while (middleware.collapsed() < calls) {
+            Thread.sleep(1);
+        }
+    }
+
+    private QueryBus blockingHandler(Supplier<Object> result) {
+        return new QueryBus() {
+            @Override
+            public <T> T dispatch(Query<T> query) {
+                handled.incrementAndGet();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return (T) result.get();
+            }
+        };
+    }
+
+    static class GetItem implements Query<Object>, SingleFlightQuery {
+
+        final String itemId;
+
+        GetItem(String itemId) {
+            this.itemId = itemId;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof GetItem && ((GetItem) other).itemId.equals(itemId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(itemId);
+        }
+    }
+
+    static class GetReport implements Query<Object> {
+    }
+}
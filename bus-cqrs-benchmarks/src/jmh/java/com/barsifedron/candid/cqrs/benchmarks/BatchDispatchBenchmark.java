@@ -0,0 +1,102 @@
+package com.barsifedron.candid.cqrs.benchmarks;
+
+import com.barsifedron.candid.cqrs.benchmarks.Fixtures.DoSomethingCommand;
+import com.barsifedron.candid.cqrs.benchmarks.Fixtures.DoSomethingCommandHandler;
+import com.barsifedron.candid.cqrs.benchmarks.Fixtures.SomethingHappenedHandler;
+import com.barsifedron.candid.cqrs.command.BatchedCommandResponse;
+import com.barsifedron.candid.cqrs.command.Command;
+import com.barsifedron.candid.cqrs.command.CommandBus;
+import com.barsifedron.candid.cqrs.command.CommandBusMiddleware;
+import com.barsifedron.candid.cqrs.command.CommandBusPipeline;
+import com.barsifedron.candid.cqrs.command.CommandResponse;
+import com.barsifedron.candid.cqrs.command.MapCommandBus;
+import com.barsifedron.candid.cqrs.command.middleware.DomainEventsDispatcher;
+import com.barsifedron.candid.cqrs.domainevent.MapDomainEventBus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * N commands dispatched one by one, against the same N commands dispatched as one batch.
+ * <p>
+ * There is no database here. The transaction is simulated by a middleware burning a fixed amount of cpu
+ * when it "begins" and "commits": what is measured is how many times a batch pays for it, not what a real commit costs.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class BatchDispatchBenchmark {
+
+    @Param({ "1", "10", "100" })
+    public int batchSize;
+
+    /**
+     * Cpu burnt, in JMH tokens, to begin and to commit a transaction.
+     */
+    @Param({ "1000" })
+    public long transactionCost;
+
+    private CommandBus bus;
+    private List<DoSomethingCommand> commands;
+
+    @Setup
+    public void setUp() {
+        bus = CommandBusPipeline.compile(
+                new MapCommandBus(new DoSomethingCommandHandler()),
+                new Fixtures.PassThroughCommandBusMiddleware(),
+                new Fixtures.PassThroughCommandBusMiddleware(),
+                new SimulatedTransactionMiddleware(transactionCost),
+                new DomainEventsDispatcher(new MapDomainEventBus(new SomethingHappenedHandler())));
+        commands = new ArrayList<>();
+        for (int i = 0; i < batchSize; i++) {
+            commands.add(new DoSomethingCommand());
+        }
+    }
+
+    @Benchmark
+    public void oneByOne(Blackhole blackhole) {
+        for (DoSomethingCommand command : commands) {
+            blackhole.consume(bus.dispatch(command));
+        }
+    }
+
+    @Benchmark
+    public List<BatchedCommandResponse<?>> asOneBatch() {
+        return bus.dispatchAll(commands);
+    }
+
+    static class SimulatedTransactionMiddleware implements CommandBusMiddleware {
+
+        private final long cost;
+
+        SimulatedTransactionMiddleware(long cost) {
+            this.cost = cost;
+        }
+
+        @Override
+        public <T> CommandResponse<T> dispatch(Command<T> command, CommandBus next) {
+            Blackhole.consumeCPU(cost);
+            CommandResponse<T> response = next.dispatch(command);
+            Blackhole.consumeCPU(cost);
+            return response;
+        }
+
+        @Override
+        public List<BatchedCommandResponse<?>> dispatchAll(List<? extends Command<?>> commands, CommandBus next) {
+            Blackhole.consumeCPU(cost);
+            List<BatchedCommandResponse<?>> responses = next.dispatchAll(commands);
+            Blackhole.consumeCPU(cost);
+            return responses;
+        }
+    }
+}
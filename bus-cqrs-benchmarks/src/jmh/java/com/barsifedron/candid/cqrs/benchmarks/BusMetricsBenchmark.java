@@ -0,0 +1,126 @@
+package com.barsifedron.candid.cqrs.benchmarks;
+
+import com.barsifedron.candid.cqrs.benchmarks.Fixtures.DoSomethingCommand;
+import com.barsifedron.candid.cqrs.benchmarks.Fixtures.DoSomethingCommandHandler;
+import com.barsifedron.candid.cqrs.benchmarks.Fixtures.GetSomethingQuery;
+import com.barsifedron.candid.cqrs.benchmarks.Fixtures.GetSomethingQueryHandler;
+import com.barsifedron.candid.cqrs.command.ClassValueCommandBus;
+import com.barsifedron.candid.cqrs.command.CommandBus;
+import com.barsifedron.candid.cqrs.command.CommandBusPipeline;
+import com.barsifedron.candid.cqrs.command.CommandResponse;
+import com.barsifedron.candid.cqrs.command.MetricsCommandBusMiddleware;
+import com.barsifedron.candid.cqrs.command.NoResult;
+import com.barsifedron.candid.cqrs.happy.utils.cqrs.command.middleware.DetailedLoggingCommandBusMiddleware;
+import com.barsifedron.candid.cqrs.happy.utils.cqrs.command.middleware.WithExecutionDurationLoggingCommandBusMiddleware;
+import com.barsifedron.candid.cqrs.happy.utils.cqrs.logging.AsyncLogWriter;
+import com.barsifedron.candid.cqrs.happy.utils.cqrs.logging.LogSampling;
+import com.barsifedron.candid.cqrs.metrics.BusMetrics;
+import com.barsifedron.candid.cqrs.query.ClassValueQueryBus;
+import com.barsifedron.candid.cqrs.query.MetricsQueryBusMiddleware;
+import com.barsifedron.candid.cqrs.query.QueryBus;
+import com.barsifedron.candid.cqrs.query.QueryBusPipeline;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.LogManager;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+import java.util.logging.StreamHandler;
+
+/**
+ * What timing every dispatch costs: the metrics middleware against the bare bus, and against the middleware
+ * logging the duration of every command (two info lines per command, formatted then thrown away here).
+ * Also the detailed logging middleware, which leaves building and writing its lines to a thread of its own.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class BusMetricsBenchmark {
+
+    private final DoSomethingCommand command = new DoSomethingCommand();
+    private final GetSomethingQuery query = new GetSomethingQuery();
+
+    private CommandBus bareCommandBus;
+    private CommandBus commandBusWithMetrics;
+    private CommandBus commandBusWithDurationLogging;
+    private CommandBus commandBusWithDetailedLogging;
+    private AsyncLogWriter logWriter;
+    private QueryBus queryBusWithMetrics;
+    private Handler[] rootHandlers;
+
+    @Setup
+    public void setUp() {
+        bareCommandBus = new ClassValueCommandBus(new DoSomethingCommandHandler());
+        commandBusWithMetrics = CommandBusPipeline.compile(
+                bareCommandBus,
+                new MetricsCommandBusMiddleware(new BusMetrics("commands")));
+        commandBusWithDurationLogging = CommandBusPipeline.compile(
+                bareCommandBus,
+                new WithExecutionDurationLoggingCommandBusMiddleware());
+        logWriter = new AsyncLogWriter(10_000);
+        commandBusWithDetailedLogging = CommandBusPipeline.compile(
+                bareCommandBus,
+                new DetailedLoggingCommandBusMiddleware(logWriter, new LogSampling()));
+        queryBusWithMetrics = QueryBusPipeline.compile(
+                new ClassValueQueryBus(new GetSomethingQueryHandler()),
+                new MetricsQueryBusMiddleware(new BusMetrics("queries")));
+
+        // Log lines are formatted as usual, but written nowhere
+        Logger root = LogManager.getLogManager().getLogger("");
+        rootHandlers = root.getHandlers();
+        for (Handler handler : rootHandlers) {
+            root.removeHandler(handler);
+        }
+        root.addHandler(new StreamHandler(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+        }, new SimpleFormatter()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        logWriter.close();
+        Logger root = LogManager.getLogManager().getLogger("");
+        for (Handler handler : root.getHandlers()) {
+            root.removeHandler(handler);
+        }
+        for (Handler handler : rootHandlers) {
+            root.addHandler(handler);
+        }
+    }
+
+    @Benchmark
+    public CommandResponse<NoResult> bareCommandBus() {
+        return bareCommandBus.dispatch(command);
+    }
+
+    @Benchmark
+    public CommandResponse<NoResult> commandBusWithMetrics() {
+        return commandBusWithMetrics.dispatch(command);
+    }
+
+    @Benchmark
+    public CommandResponse<NoResult> commandBusWithDurationLogging() {
+        return commandBusWithDurationLogging.dispatch(command);
+    }
+
+    @Benchmark
+    public CommandResponse<NoResult> commandBusWithDetailedLogging() {
+        return commandBusWithDetailedLogging.dispatch(command);
+    }
+
+    @Benchmark
+    public String queryBusWithMetrics() {
+        return queryBusWithMetrics.dispatch(query);
+    }
+}
@@ -0,0 +1,80 @@
+package com.barsifedron.candid.cqrs.benchmarks;
+
+import com.barsifedron.candid.cqrs.benchmarks.Fixtures.DoSomethingCommand;
+import com.barsifedron.candid.cqrs.benchmarks.Fixtures.DoSomethingCommandHandler;
+import com.barsifedron.candid.cqrs.command.CommandBus;
+import com.barsifedron.candid.cqrs.command.CommandBusMiddleware;
+import com.barsifedron.candid.cqrs.command.CommandBusPipeline;
+import com.barsifedron.candid.cqrs.command.CommandResponse;
+import com.barsifedron.candid.cqrs.command.MapCommandBus;
+import com.barsifedron.candid.cqrs.command.NoResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of a chain of middleware, per dispatch, depending on how deep it is.
+ * <p>
+ * Both flavours of CommandBusMiddleware.compositeOf are measured. The "rebuilt" benchmarks also pay
+ * for the construction of the chain on every call, which is what happens when a bus factory
+ * is asked for a new bus on every request.
+ * <p>
+ * The same middleware compiled in a CommandBusPipeline should only pay for the hops themselves, and allocate nothing.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class CommandMiddlewareChainBenchmark {
+
+    @Param({ "1", "5", "10", "20" })
+    public int depth;
+
+    private final DoSomethingCommand command = new DoSomethingCommand();
+
+    private List<CommandBusMiddleware> middlewares;
+    private MapCommandBus handlersBus;
+    private CommandBus varargsChain;
+    private CommandBus listChain;
+    private CommandBus pipeline;
+
+    @Setup
+    public void setUp() {
+        middlewares = Fixtures.passThroughMiddlewares(depth);
+        handlersBus = new MapCommandBus(new DoSomethingCommandHandler());
+        varargsChain = varargsComposite().decorate(handlersBus);
+        listChain = CommandBusMiddleware.compositeOf(middlewares).decorate(handlersBus);
+        pipeline = CommandBusPipeline.compile(handlersBus, middlewares);
+    }
+
+    @Benchmark
+    public CommandResponse<NoResult> varargsCompositeOf() {
+        return varargsChain.dispatch(command);
+    }
+
+    @Benchmark
+    public CommandResponse<NoResult> listCompositeOf() {
+        return listChain.dispatch(command);
+    }
+
+    @Benchmark
+    public CommandResponse<NoResult> compiledPipeline() {
+        return pipeline.dispatch(command);
+    }
+
+    @Benchmark
+    public CommandResponse<NoResult> varargsCompositeOfRebuiltOnEachDispatch() {
+        return varargsComposite().decorate(handlersBus).dispatch(command);
+    }
+
+    private CommandBusMiddleware varargsComposite() {
+        return CommandBusMiddleware.compositeOf(middlewares.toArray(new CommandBusMiddleware[0]));
+    }
+}
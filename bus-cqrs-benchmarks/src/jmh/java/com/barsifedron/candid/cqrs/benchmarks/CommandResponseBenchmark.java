@@ -0,0 +1,76 @@
+package com.barsifedron.candid.cqrs.benchmarks;
+
+import com.barsifedron.candid.cqrs.command.CommandResponse;
+import com.barsifedron.candid.cqrs.command.NoResult;
+import com.barsifedron.candid.cqrs.domainevent.DomainEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * What a handler pays to build its response: a result and 0, 1 or 3 events.
+ * <p>
+ * The way the sample handlers used to do it (empty().withResult(id).withAddedDomainEvents(event), once per event),
+ * with the factory methods as they were, then as they are now, and with the builder.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class CommandResponseBenchmark {
+
+    @Param({ "0", "1", "3" })
+    public int eventCount;
+
+    private final Object id = new Object();
+    private DomainEvent[] events;
+
+    @Setup
+    public void setUp() {
+        events = new DomainEvent[eventCount];
+        for (int i = 0; i < eventCount; i++) {
+            events[i] = new Fixtures.SomethingHappened();
+        }
+    }
+
+    @Benchmark
+    public CommandResponse<Object> previousFactoryMethods() {
+        CommandResponse<Object> response = new CommandResponse<NoResult>(new NoResult(), new ArrayList<>())
+                .withResult(id);
+        for (DomainEvent event : events) {
+            // withAddedDomainEvents, as it was
+            List<DomainEvent> newDomainEvents = response.domainEvents.stream().collect(toList());
+            newDomainEvents.add(event);
+            response = new CommandResponse<>(response.result, newDomainEvents);
+        }
+        return response;
+    }
+
+    @Benchmark
+    public CommandResponse<Object> factoryMethods() {
+        CommandResponse<Object> response = CommandResponse.empty().withResult(id);
+        for (DomainEvent event : events) {
+            response = response.withAddedDomainEvents(event);
+        }
+        return response;
+    }
+
+    @Benchmark
+    public CommandResponse<Object> builder() {
+        CommandResponse.Builder<Object> builder = CommandResponse.builder().result(id);
+        for (DomainEvent event : events) {
+            builder.domainEvent(event);
+        }
+        return builder.build();
+    }
+}
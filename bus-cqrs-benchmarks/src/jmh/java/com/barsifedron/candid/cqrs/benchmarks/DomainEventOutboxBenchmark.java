@@ -0,0 +1,152 @@
+package com.barsifedron.candid.cqrs.benchmarks;
+
+import com.barsifedron.candid.cqrs.domainevent.DomainEvent;
+import com.barsifedron.candid.cqrs.domainevent.DomainEventOutboxRelay;
+import com.barsifedron.candid.cqrs.domainevent.MapDomainEventBus;
+import com.barsifedron.candid.cqrs.happy.command.BorrowItemCommandHandler;
+import com.barsifedron.candid.cqrs.happy.domain.Email;
+import com.barsifedron.candid.cqrs.happy.domainevents.ItemBorrowedDomainEvent;
+import com.barsifedron.candid.cqrs.happy.domainevents.ItemBorrowedDomainEventHandler;
+import com.barsifedron.candid.cqrs.happy.infrastructure.DomainEventOutboxEntry;
+import com.barsifedron.candid.cqrs.happy.infrastructure.HibernateDomainEventOutbox;
+import com.barsifedron.candid.cqrs.happy.infrastructure.HibernateEmailRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import javax.persistence.EntityManager;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * The domain event outbox, against an in memory H2 database, through hibernate.
+ * <p>
+ * What the command transaction pays for its events: running the email handler inline, or storing the event in the outbox.
+ * Then what the relay pays to dispatch a batch of them, claim and bulk update included.
+ * <p>
+ * H2 does not know about skip locked: the claim is a plain "select ... for update" here.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class DomainEventOutboxBenchmark {
+
+    @Param({ "1", "10", "100" })
+    public int batchSize;
+
+    private SessionFactory sessionFactory;
+    private EntityManager entityManager;
+    private HibernateDomainEventOutbox outbox;
+    private ItemBorrowedDomainEventHandler handler;
+    private DomainEventOutboxRelay relay;
+    private List<DomainEvent> oneEvent;
+    private List<DomainEvent> batchOfEvents;
+
+    @Setup
+    public void setUp() {
+        StandardServiceRegistry registry = new StandardServiceRegistryBuilder()
+                .applySetting("hibernate.connection.driver_class", "org.h2.Driver")
+                .applySetting("hibernate.connection.url", "jdbc:h2:mem:outbox" + batchSize + ";DB_CLOSE_DELAY=-1")
+                .applySetting("hibernate.dialect", "org.hibernate.dialect.H2Dialect")
+                .applySetting("hibernate.hbm2ddl.auto", "create")
+                .build();
+        sessionFactory = new MetadataSources(registry)
+                .addAnnotatedClass(DomainEventOutboxEntry.class)
+                .addAnnotatedClass(Email.class)
+                .buildMetadata()
+                .buildSessionFactory();
+        entityManager = sessionFactory.createEntityManager();
+
+        outbox = new HibernateDomainEventOutbox(entityManager, new ObjectMapper().registerModule(new JavaTimeModule()), 10);
+        handler = new ItemBorrowedDomainEventHandler(new HibernateEmailRepository(entityManager));
+        relay = new DomainEventOutboxRelay(outbox, new MapDomainEventBus(handler), batchSize);
+
+        oneEvent = Collections.singletonList(itemBorrowed());
+        batchOfEvents = new ArrayList<>();
+        for (int i = 0; i < batchSize; i++) {
+            batchOfEvents.add(itemBorrowed());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        entityManager.close();
+        sessionFactory.close();
+    }
+
+    /**
+     * The email is rendered and stored by the command transaction.
+     */
+    @Benchmark
+    public void commandTransactionRunningTheHandler() {
+        inTransaction(() -> {
+            handler.handle((ItemBorrowedDomainEvent) oneEvent.get(0));
+            return null;
+        });
+    }
+
+    /**
+     * The event is only serialized and stored by the command transaction.
+     */
+    @Benchmark
+    public void commandTransactionWritingToTheOutbox() {
+        inTransaction(() -> {
+            outbox.add(oneEvent);
+            return null;
+        });
+    }
+
+    /**
+     * Stores 'batchSize' events (one transaction), then relays them (another one). Events per second is ops * batchSize.
+     */
+    @Benchmark
+    public DomainEventOutboxRelay.RelayedBatch storeThenRelayOneBatch() {
+        inTransaction(() -> {
+            outbox.add(batchOfEvents);
+            return null;
+        });
+        return inTransaction(relay::relayNextBatch);
+    }
+
+    private <T> T inTransaction(Supplier<T> work) {
+        entityManager.getTransaction().begin();
+        T result = work.get();
+        entityManager.getTransaction().commit();
+        entityManager.clear();
+        return result;
+    }
+
+    private static ItemBorrowedDomainEvent itemBorrowed() {
+        return ItemBorrowedDomainEvent
+                .builder()
+                .email("the.first@email.com")
+                .itemId("hammerId")
+                .memberId("john")
+                .itemName("hammer")
+                .memberFirstname("the")
+                .memberSurname("first")
+                .borrowedOn(LocalDate.now())
+                .expectedReturnOn(LocalDate.now().plusDays(14))
+                .regularDailyRate(new BigDecimal("1.00"))
+                .dailyFineWhenLate(new BigDecimal("2.00"))
+                .notification(BorrowItemCommandHandler.NOTIFICATION.EMAIL_CONFIRMATION_TO_MEMBER)
+                .build();
+    }
+}
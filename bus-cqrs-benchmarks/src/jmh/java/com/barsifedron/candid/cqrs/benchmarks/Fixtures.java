@@ -0,0 +1,130 @@
+package com.barsifedron.candid.cqrs.benchmarks;
+
+import com.barsifedron.candid.cqrs.command.BatchedCommandResponse;
+import com.barsifedron.candid.cqrs.command.Command;
+import com.barsifedron.candid.cqrs.command.CommandBus;
+import com.barsifedron.candid.cqrs.command.CommandBusMiddleware;
+import com.barsifedron.candid.cqrs.command.CommandHandler;
+import com.barsifedron.candid.cqrs.command.CommandResponse;
+import com.barsifedron.candid.cqrs.command.NoResult;
+import com.barsifedron.candid.cqrs.domainevent.DomainEvent;
+import com.barsifedron.candid.cqrs.domainevent.DomainEventHandler;
+import com.barsifedron.candid.cqrs.query.Query;
+import com.barsifedron.candid.cqrs.query.QueryHandler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The messages, handlers and middleware used by the benchmarks.
+ * They do (almost) nothing on purpose: what we measure here is the cost of the bus itself.
+ */
+public final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    public static class DoSomethingCommand implements Command<NoResult> {
+    }
+
+    public static class DoSomethingSpecialCommand extends DoSomethingCommand {
+    }
+
+    public static class DoSomethingCommandHandler implements CommandHandler<NoResult, DoSomethingCommand> {
+
+        private final CommandResponse<NoResult> response = CommandResponse.empty();
+
+        @Override
+        public CommandResponse<NoResult> handle(DoSomethingCommand command) {
+            return response;
+        }
+
+        @Override
+        public Class<DoSomethingCommand> listenTo() {
+            return DoSomethingCommand.class;
+        }
+    }
+
+    public static class GetSomethingQuery implements Query<String> {
+    }
+
+    public static class GetSomethingQueryHandler implements QueryHandler<String, GetSomethingQuery> {
+
+        @Override
+        public String handle(GetSomethingQuery query) {
+            return "something";
+        }
+
+        @Override
+        public Class<GetSomethingQuery> listenTo() {
+            return GetSomethingQuery.class;
+        }
+    }
+
+    public static class SomethingHappened implements DomainEvent {
+    }
+
+    public static class SomethingSpecialHappened extends SomethingHappened {
+    }
+
+    public static class SomethingHappenedHandler implements DomainEventHandler<SomethingHappened> {
+
+        public long handled;
+
+        @Override
+        public void handle(SomethingHappened event) {
+            handled++;
+        }
+
+        @Override
+        public Class<SomethingHappened> listenTo() {
+            return SomethingHappened.class;
+        }
+    }
+
+    /**
+     * Listens to every event, whatever its class.
+     */
+    public static class AnyEventHandler implements DomainEventHandler<DomainEvent> {
+
+        public long handled;
+
+        @Override
+        public void handle(DomainEvent event) {
+            handled++;
+        }
+
+        @Override
+        public Class<DomainEvent> listenTo() {
+            return DomainEvent.class;
+        }
+    }
+
+    /**
+     * Stands for any of the "do something, then pass along" middleware of a real pipeline.
+     */
+    public static class PassThroughCommandBusMiddleware implements CommandBusMiddleware {
+
+        public long seen;
+
+        @Override
+        public <T> CommandResponse<T> dispatch(Command<T> command, CommandBus next) {
+            seen++;
+            return next.dispatch(command);
+        }
+
+        @Override
+        public List<BatchedCommandResponse<?>> dispatchAll(List<? extends Command<?>> commands, CommandBus next) {
+            seen++;
+            return next.dispatchAll(commands);
+        }
+    }
+
+    public static List<CommandBusMiddleware> passThroughMiddlewares(int depth) {
+        List<CommandBusMiddleware> middlewares = new ArrayList<>();
+        for (int i = 0; i < depth; i++) {
+            middlewares.add(new PassThroughCommandBusMiddleware());
+        }
+        return middlewares;
+    }
+}
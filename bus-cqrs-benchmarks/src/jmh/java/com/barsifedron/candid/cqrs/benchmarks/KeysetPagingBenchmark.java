@@ -0,0 +1,145 @@
+package com.barsifedron.candid.cqrs.benchmarks;
+
+import com.barsifedron.candid.cqrs.happy.domain.Item;
+import com.barsifedron.candid.cqrs.happy.domain.Loan;
+import com.barsifedron.candid.cqrs.happy.domain.Member;
+import com.barsifedron.candid.cqrs.happy.query.GetItemsQuery;
+import com.barsifedron.candid.cqrs.happy.query.GetItemsQueryHandler;
+import com.barsifedron.candid.cqrs.happy.query.GetMemberQuery;
+import com.barsifedron.candid.cqrs.happy.query.GetMemberQueryHandler;
+import com.barsifedron.candid.cqrs.happy.query.PageCursor;
+import com.querydsl.jpa.impl.JPAQuery;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static com.barsifedron.candid.cqrs.happy.domain.QMember.member;
+
+/**
+ * Pages of members and items, against an in memory H2 database, through hibernate.
+ * <p>
+ * A page deep down the table costs what the first one does with a cursor: a range of the index, then the loans of the page.
+ * With an offset, the database walks past every row before the page, so the deeper the page, the slower.
+ * One member in ten has a loan.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class KeysetPagingBenchmark {
+
+    private static final int PAGE_SIZE = 20;
+
+    @Param({ "1000", "10000", "100000" })
+    public int rows;
+
+    private SessionFactory sessionFactory;
+    private EntityManager entityManager;
+    private GetMemberQueryHandler memberHandler;
+    private GetItemsQueryHandler itemsHandler;
+    private String lastMembersPageCursor;
+    private String lastItemsPageCursor;
+
+    @Setup
+    public void setUp() {
+        StandardServiceRegistry registry = new StandardServiceRegistryBuilder()
+                .applySetting("hibernate.connection.driver_class", "org.h2.Driver")
+                .applySetting("hibernate.connection.url", "jdbc:h2:mem:paging" + rows + ";DB_CLOSE_DELAY=-1;OPTIMIZE_REUSE_RESULTS=0")
+                .applySetting("hibernate.dialect", "org.hibernate.dialect.H2Dialect")
+                .applySetting("hibernate.hbm2ddl.auto", "create")
+                .build();
+        sessionFactory = new MetadataSources(registry)
+                .addAnnotatedClass(Member.class)
+                .addAnnotatedClass(Item.class)
+                .addAnnotatedClass(Loan.class)
+                .buildMetadata()
+                .buildSessionFactory();
+        entityManager = sessionFactory.createEntityManager();
+        memberHandler = new GetMemberQueryHandler(entityManager);
+        itemsHandler = new GetItemsQueryHandler(entityManager);
+
+        inTransaction(() -> {
+            entityManager
+                    .createNativeQuery("insert into member (id, email, firstname, surname, registeredon) "
+                            + "select 'member' || x, 'member' || x || '@email.com', 'first', 'last', dateadd('SECOND', x, timestamp '2020-01-01 00:00:00') "
+                            + "from system_range(1, " + rows + ")")
+                    .executeUpdate();
+            entityManager
+                    .createNativeQuery("insert into item (id, name, email, maximumloanperiod, regulardailyrate, dailyfinewhenlatereturn) "
+                            + "select 'item' || x, 'hammer', dateadd('DAY', x / 10, date '2020-01-01'), 14, 1.00, 2.00 "
+                            + "from system_range(1, " + rows + ")")
+                    .executeUpdate();
+            entityManager
+                    .createNativeQuery("insert into loan (loanid, itemid, memberid, borrowedon, expectedreturnon, regulardailyrate, dailyfinewhenlate, status) "
+                            + "select 'loan' || x, 'item' || x, 'member' || x, date '2020-02-01', date '2020-02-15', 1.00, 2.00, 0 "
+                            + "from system_range(1, " + rows + ") where mod(x, 10) = 0")
+                    .executeUpdate();
+            return null;
+        });
+
+        // Where the last full page starts. Latest first: the last page is the oldest 20, whatever the number of rows.
+        // Members 21 to 1. Items: 1 to 9 the first day, 10 to 19 the second, then 20 (ids are compared as strings)
+        lastMembersPageCursor = PageCursor.encode(LocalDateTime.of(2020, 1, 1, 0, 0).plusSeconds(PAGE_SIZE + 1), "member" + (PAGE_SIZE + 1));
+        lastItemsPageCursor = PageCursor.encode(LocalDate.of(2020, 1, 3), "item21");
+    }
+
+    @TearDown
+    public void tearDown() {
+        entityManager.close();
+        sessionFactory.close();
+    }
+
+    @Benchmark
+    public Collection<GetMemberQueryHandler.MemberDto> firstPageOfMembers() {
+        return inTransaction(() -> memberHandler.handle(GetMemberQuery.builder().pageSize(PAGE_SIZE).build()));
+    }
+
+    @Benchmark
+    public Collection<GetMemberQueryHandler.MemberDto> lastPageOfMembersWithACursor() {
+        return inTransaction(() -> memberHandler.handle(GetMemberQuery.builder().pageSize(PAGE_SIZE).after(lastMembersPageCursor).build()));
+    }
+
+    /**
+     * The ids of the same last page, skipped to with an offset. Loans not even joined.
+     */
+    @Benchmark
+    public List<String> lastPageOfMemberIdsWithAnOffset() {
+        return inTransaction(() -> new JPAQuery<>(entityManager)
+                .select(member.memberId.id)
+                .from(member)
+                .orderBy(member.registeredOn.desc(), member.memberId.id.desc())
+                .offset(rows - PAGE_SIZE)
+                .limit(PAGE_SIZE)
+                .fetch());
+    }
+
+    @Benchmark
+    public List<GetItemsQueryHandler.ItemDto> lastPageOfItemsWithACursor() {
+        return inTransaction(() -> itemsHandler.handle(GetItemsQuery.builder().pageSize(PAGE_SIZE).after(lastItemsPageCursor).build()));
+    }
+
+    private <T> T inTransaction(Supplier<T> work) {
+        entityManager.getTransaction().begin();
+        T result = work.get();
+        entityManager.getTransaction().commit();
+        entityManager.clear();
+        return result;
+    }
+}
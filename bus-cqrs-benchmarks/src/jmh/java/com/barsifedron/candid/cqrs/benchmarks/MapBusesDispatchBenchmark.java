@@ -0,0 +1,100 @@
+package com.barsifedron.candid.cqrs.benchmarks;
+
+import com.barsifedron.candid.cqrs.benchmarks.Fixtures.AnyEventHandler;
+import com.barsifedron.candid.cqrs.benchmarks.Fixtures.DoSomethingCommand;
+import com.barsifedron.candid.cqrs.benchmarks.Fixtures.DoSomethingCommandHandler;
+import com.barsifedron.candid.cqrs.benchmarks.Fixtures.DoSomethingSpecialCommand;
+import com.barsifedron.candid.cqrs.benchmarks.Fixtures.GetSomethingQuery;
+import com.barsifedron.candid.cqrs.benchmarks.Fixtures.GetSomethingQueryHandler;
+import com.barsifedron.candid.cqrs.benchmarks.Fixtures.SomethingHappened;
+import com.barsifedron.candid.cqrs.benchmarks.Fixtures.SomethingHappenedHandler;
+import com.barsifedron.candid.cqrs.benchmarks.Fixtures.SomethingSpecialHappened;
+import com.barsifedron.candid.cqrs.command.ClassValueCommandBus;
+import com.barsifedron.candid.cqrs.command.CommandBus;
+import com.barsifedron.candid.cqrs.command.CommandResponse;
+import com.barsifedron.candid.cqrs.command.MapCommandBus;
+import com.barsifedron.candid.cqrs.command.NoResult;
+import com.barsifedron.candid.cqrs.domainevent.DomainEventBus;
+import com.barsifedron.candid.cqrs.domainevent.MapDomainEventBus;
+import com.barsifedron.candid.cqrs.query.ClassValueQueryBus;
+import com.barsifedron.candid.cqrs.query.MapQueryBus;
+import com.barsifedron.candid.cqrs.query.QueryBus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What does it cost to find a handler and call it, without any middleware around?
+ * <p>
+ * The ClassValue buses are measured both on an exact match and on a command handled by the handler of its parent class.
+ * The domain event bus also on an event handled by the handler of its parent class and by one listening to every DomainEvent.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class MapBusesDispatchBenchmark {
+
+    private CommandBus commandBus;
+    private QueryBus queryBus;
+    private DomainEventBus domainEventBus;
+    private DomainEventBus polymorphicDomainEventBus;
+    private CommandBus classValueCommandBus;
+    private QueryBus classValueQueryBus;
+
+    private final DoSomethingCommand command = new DoSomethingCommand();
+    private final GetSomethingQuery query = new GetSomethingQuery();
+    private final SomethingHappened event = new SomethingHappened();
+    private final DoSomethingSpecialCommand subCommand = new DoSomethingSpecialCommand();
+    private final SomethingSpecialHappened subEvent = new SomethingSpecialHappened();
+
+    @Setup
+    public void setUp() {
+        commandBus = new MapCommandBus(new DoSomethingCommandHandler());
+        queryBus = new MapQueryBus(new GetSomethingQueryHandler());
+        domainEventBus = new MapDomainEventBus(new SomethingHappenedHandler());
+        polymorphicDomainEventBus = new MapDomainEventBus(new SomethingHappenedHandler(), new AnyEventHandler());
+        classValueCommandBus = new ClassValueCommandBus(new DoSomethingCommandHandler());
+        classValueQueryBus = new ClassValueQueryBus(new GetSomethingQueryHandler());
+    }
+
+    @Benchmark
+    public CommandResponse<NoResult> mapCommandBus() {
+        return commandBus.dispatch(command);
+    }
+
+    @Benchmark
+    public String mapQueryBus() {
+        return queryBus.dispatch(query);
+    }
+
+    @Benchmark
+    public void mapDomainEventBus() {
+        domainEventBus.dispatch(event);
+    }
+
+    @Benchmark
+    public void mapDomainEventBusOnSubclass() {
+        polymorphicDomainEventBus.dispatch(subEvent);
+    }
+
+    @Benchmark
+    public CommandResponse<NoResult> classValueCommandBus() {
+        return classValueCommandBus.dispatch(command);
+    }
+
+    @Benchmark
+    public CommandResponse<NoResult> classValueCommandBusOnSubclass() {
+        return classValueCommandBus.dispatch(subCommand);
+    }
+
+    @Benchmark
+    public String classValueQueryBus() {
+        return classValueQueryBus.dispatch(query);
+    }
+}
@@ -0,0 +1,121 @@
+package com.barsifedron.candid.cqrs.benchmarks;
+
+import com.barsifedron.candid.cqrs.command.Command;
+import com.barsifedron.candid.cqrs.command.CommandBus;
+import com.barsifedron.candid.cqrs.command.CommandBusMiddleware;
+import com.barsifedron.candid.cqrs.command.CommandBusPipeline;
+import com.barsifedron.candid.cqrs.command.CommandResponse;
+import com.barsifedron.candid.cqrs.happy.command.BorrowItemCommand;
+import com.barsifedron.candid.cqrs.happy.command.BorrowItemCommandHandler;
+import com.barsifedron.candid.cqrs.happy.command.RegisterNewItemCommand;
+import com.barsifedron.candid.cqrs.happy.command.ReturnItemCommand;
+import com.barsifedron.candid.cqrs.happy.utils.cqrs.command.middleware.ValidatingCommandBusMiddleware;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The validating middleware of the sample application, against validating every command whatever its type
+ * (what the middleware did before it learnt to skip the types without constraints). Same validator for both.
+ * <p>
+ * BorrowItemCommand and RegisterNewItemCommand have constraints, ReturnItemCommand has none.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class ValidationBenchmark {
+
+    @Param({ "BorrowItemCommand", "RegisterNewItemCommand", "ReturnItemCommand" })
+    public String commandType;
+
+    private Command<?> command;
+    private CommandBus validatingEveryCommand;
+    private CommandBus skippingUnconstrainedCommands;
+
+    @Setup
+    public void setUp() {
+        command = commandOfType(commandType);
+        Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+        CommandResponse<Object> response = new CommandResponse<>(null);
+        CommandBus handler = new CommandBus() {
+            @Override
+            public <T> CommandResponse<T> dispatch(Command<T> command) {
+                return (CommandResponse<T>) response;
+            }
+        };
+        validatingEveryCommand = CommandBusPipeline.compile(handler, new ValidateEverything(validator));
+        skippingUnconstrainedCommands = CommandBusPipeline.compile(handler, new ValidatingCommandBusMiddleware(validator));
+    }
+
+    @Benchmark
+    public CommandResponse<?> validatingEveryCommand() {
+        return validatingEveryCommand.dispatch(command);
+    }
+
+    @Benchmark
+    public CommandResponse<?> skippingUnconstrainedCommands() {
+        return skippingUnconstrainedCommands.dispatch(command);
+    }
+
+    private static Command<?> commandOfType(String commandType) {
+        switch (commandType) {
+            case "BorrowItemCommand":
+                return BorrowItemCommand
+                        .builder()
+                        .loanId("loan")
+                        .memberId("member")
+                        .itemId("item")
+                        .borrowedOn(LocalDate.now())
+                        .notification(BorrowItemCommandHandler.NOTIFICATION.NONE)
+                        .build();
+            case "RegisterNewItemCommand":
+                return RegisterNewItemCommand
+                        .builder()
+                        .id("item")
+                        .name("saw")
+                        .maximumLoanPeriod(14)
+                        .dailyRate(new BigDecimal("1.00"))
+                        .dailyFineWhenLateReturn(new BigDecimal("2.00"))
+                        .build();
+            case "ReturnItemCommand":
+                return ReturnItemCommand
+                        .builder()
+                        .itemId("item")
+                        .ifNoActiveLoanIsFound(ReturnItemCommand.IF_NO_ACTIVE_LOAN_FOUND.FAIL)
+                        .build();
+            default:
+                throw new IllegalArgumentException(commandType);
+        }
+    }
+
+    private static class ValidateEverything implements CommandBusMiddleware {
+
+        private final Validator validator;
+
+        private ValidateEverything(Validator validator) {
+            this.validator = validator;
+        }
+
+        @Override
+        public <T> CommandResponse<T> dispatch(Command<T> command, CommandBus next) {
+            Set<ConstraintViolation<Command<T>>> violations = validator.validate(command);
+            if (!violations.isEmpty()) {
+                throw new IllegalStateException(violations.toString());
+            }
+            return next.dispatch(command);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.barsifedron.candid.cqrs.guice;
 
 import com.barsifedron.candid.cqrs.command.Command;
 import com.barsifedron.candid.cqrs.command.CommandHandler;
+import com.barsifedron.candid.cqrs.index.HandlerIndex;
 import com.google.inject.Injector;
 import com.google.inject.Provider;
 import org.reflections.Reflections;
@@ -9,10 +10,13 @@ import org.reflections.Reflections;
 import javax.inject.Inject;
 import javax.inject.Named;
 import java.lang.reflect.ParameterizedType;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.Supplier;
 
+import static java.util.stream.Collectors.partitioningBy;
 import static java.util.stream.Collectors.toMap;
 
 /**
@@ -38,14 +42,26 @@ public class CommandHandlersRegistry {
      * To save resources we will map each command type to a provider so we only instantiate what we need at the right time.
      */
     private void init() {
-        map = new Reflections(packages.toArray())
-                .getSubTypesOf(CommandHandler.class)
+        HandlerIndex index = HandlerIndex.read();
+        Map<Boolean, List<String>> indexed = packages.stream().collect(partitioningBy(index::covers));
+        Map<Class<?>, Class<?>> commandTypes = new HashMap<>();
+        // Indexed at compile time: no need to scan, nor to look for the type of commands
+        indexed.get(true).forEach(thePackage -> index
+                .entries(HandlerIndex.Kind.COMMAND, thePackage)
+                .forEach(commandHandler -> commandTypes.put(commandHandler.handlerClass, commandHandler.messageType)));
+        if (!indexed.get(false).isEmpty()) {
+            new Reflections(indexed.get(false).toArray())
+                    .getSubTypesOf(CommandHandler.class)
+                    .forEach(commandHandler -> commandTypes.put(commandHandler, commandType(commandHandler)));
+        }
+        map = commandTypes
+                .entrySet()
                 .stream()
                 .collect(toMap(
-                        commandHandler -> commandType(commandHandler),
+                        commandHandler -> (Class<Command>) commandHandler.getValue(),
                         commandHandler -> {
-                            Provider<? extends CommandHandler> provider = injector.getProvider(commandHandler);
-                            return () -> provider.get();
+                            Provider<?> provider = injector.getProvider(commandHandler.getKey());
+                            return () -> (CommandHandler) provider.get();
                         }));
     }
 
@@ -14,6 +14,9 @@ import java.util.stream.Stream;
  *
  *
  * This one is to use if your guice version does not handle MapBinder well.
+ *
+ * The handlers of the packages a HandlerIndex covers (see HandlerIndexProcessor) are taken
+ * from the index rather than found by scanning. The other packages are scanned.
  */
 public class CqrsHandlersModule extends AbstractModule {
 
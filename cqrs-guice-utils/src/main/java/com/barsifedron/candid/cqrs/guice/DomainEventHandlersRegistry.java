@@ -2,6 +2,7 @@ package com.barsifedron.candid.cqrs.guice;
 
 import com.barsifedron.candid.cqrs.domainevent.DomainEvent;
 import com.barsifedron.candid.cqrs.domainevent.DomainEventHandler;
+import com.barsifedron.candid.cqrs.index.HandlerIndex;
 import com.google.inject.Injector;
 import com.google.inject.Provider;
 import org.reflections.Reflections;
@@ -16,6 +17,8 @@ import java.util.Map;
 import java.util.Set;
 import java.util.function.Supplier;
 
+import static java.util.stream.Collectors.partitioningBy;
+
 /**
  * This is a really ugly way of doing things, due to guice limitations. We
  * should be able to do better when we upgrade versions. Theoretically,
@@ -40,15 +43,27 @@ public class DomainEventHandlersRegistry {
      */
     private void init() {
         Map<Class<DomainEvent>, List<Supplier<DomainEventHandler>>> workMap = new HashMap<>();
-        new Reflections(packages.toArray())
-                .getSubTypesOf(DomainEventHandler.class)
-                .stream()
-                .forEach(domainEventHandler -> {
-                    Class<DomainEvent> domainEventType = domainEventType(domainEventHandler);
-                    Provider<DomainEventHandler> handlerProvider = provider(domainEventHandler);
-                    workMap.putIfAbsent(domainEventType, new ArrayList<>());
-                    workMap.get(domainEventType).add(() -> handlerProvider.get());
-                });
+        HandlerIndex index = HandlerIndex.read();
+        Map<Boolean, List<String>> indexed = packages.stream().collect(partitioningBy(index::covers));
+        // Indexed at compile time: no need to scan, nor to look for the type of events
+        for (String thePackage : indexed.get(true)) {
+            for (HandlerIndex.Entry handler : index.entries(HandlerIndex.Kind.DOMAIN_EVENT, thePackage)) {
+                Provider<DomainEventHandler> handlerProvider = provider((Class<? extends DomainEventHandler>) handler.handlerClass);
+                workMap.putIfAbsent((Class<DomainEvent>) handler.messageType, new ArrayList<>());
+                workMap.get(handler.messageType).add(() -> handlerProvider.get());
+            }
+        }
+        if (!indexed.get(false).isEmpty()) {
+            new Reflections(indexed.get(false).toArray())
+                    .getSubTypesOf(DomainEventHandler.class)
+                    .stream()
+                    .forEach(domainEventHandler -> {
+                        Class<DomainEvent> domainEventType = domainEventType(domainEventHandler);
+                        Provider<DomainEventHandler> handlerProvider = provider(domainEventHandler);
+                        workMap.putIfAbsent(domainEventType, new ArrayList<>());
+                        workMap.get(domainEventType).add(() -> handlerProvider.get());
+                    });
+        }
         map = workMap;
     }
 
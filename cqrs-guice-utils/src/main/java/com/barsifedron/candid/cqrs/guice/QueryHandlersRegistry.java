@@ -1,5 +1,7 @@
 package com.barsifedron.candid.cqrs.guice;
 
+import com.barsifedron.candid.cqrs.index.HandlerIndex;
+import com.barsifedron.candid.cqrs.query.BatchQueryHandler;
 import com.barsifedron.candid.cqrs.query.Query;
 import com.barsifedron.candid.cqrs.query.QueryHandler;
 import com.google.inject.Injector;
@@ -8,11 +10,16 @@ import org.reflections.Reflections;
 
 import javax.inject.Inject;
 import javax.inject.Named;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.Supplier;
 
+import static java.util.stream.Collectors.partitioningBy;
 import static java.util.stream.Collectors.toMap;
 
 /**
@@ -38,14 +45,29 @@ public class QueryHandlersRegistry {
      * To save resources we will map each command type to a provider so we only instantiate what we need at the right time.
      */
     private void init() {
-        map = new Reflections(packages.toArray())
-                .getSubTypesOf(QueryHandler.class)
+        HandlerIndex index = HandlerIndex.read();
+        Map<Boolean, List<String>> indexed = packages.stream().collect(partitioningBy(index::covers));
+        Map<Class<?>, Class<?>> queryTypes = new HashMap<>();
+        // Indexed at compile time: no need to scan, nor to look for the type of queries
+        indexed.get(true).forEach(thePackage -> index
+                .entries(HandlerIndex.Kind.QUERY, thePackage)
+                .forEach(queryHandler -> queryTypes.put(queryHandler.handlerClass, queryHandler.messageType)));
+        if (!indexed.get(false).isEmpty()) {
+            new Reflections(indexed.get(false).toArray())
+                    .getSubTypesOf(QueryHandler.class)
+                    .stream()
+                    // BatchQueryHandler and the likes
+                    .filter(queryHandler -> !queryHandler.isInterface() && !Modifier.isAbstract(queryHandler.getModifiers()))
+                    .forEach(queryHandler -> queryTypes.put(queryHandler, queryType(queryHandler)));
+        }
+        map = queryTypes
+                .entrySet()
                 .stream()
                 .collect(toMap(
-                        queryHandler -> queryType(queryHandler),
+                        queryHandler -> (Class<Query>) queryHandler.getValue(),
                         queryHandler -> {
-                            Provider<? extends QueryHandler> provider = injector.getProvider(queryHandler);
-                            return () -> provider.get();
+                            Provider<?> provider = injector.getProvider(queryHandler.getKey());
+                            return () -> (QueryHandler) provider.get();
                         }));
     }
 
@@ -53,7 +75,19 @@ public class QueryHandlersRegistry {
      * The type of queries this handler can handle
      */
     private Class<Query> queryType(Class<? extends QueryHandler> queryHandler) {
-        return (Class<Query>) ((ParameterizedType) queryHandler.getGenericInterfaces()[0]).getActualTypeArguments()[1];
+        for (Type type : queryHandler.getGenericInterfaces()) {
+            if (!(type instanceof ParameterizedType)) {
+                continue;
+            }
+            ParameterizedType handlerType = (ParameterizedType) type;
+            if (handlerType.getRawType() == QueryHandler.class) {
+                return (Class<Query>) handlerType.getActualTypeArguments()[1];
+            }
+            if (handlerType.getRawType() == BatchQueryHandler.class) {
+                return (Class<Query>) handlerType.getActualTypeArguments()[2];
+            }
+        }
+        throw new IllegalStateException("Could not find the type of queries handled by " + queryHandler.getName());
     }
 
     public  Map<Class<Query>, Supplier<QueryHandler>>  handlers() {
@@ -0,0 +1,30 @@
+package com.barsifedron.candid.cqrs.guice;
+
+import com.barsifedron.candid.cqrs.guice.indexed.IndexedHandlers;
+import com.barsifedron.candid.cqrs.index.HandlerIndex;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CqrsHandlersModuleTest {
+
+    @Test
+    public void takesTheHandlersOfIndexedPackagesFromTheIndex() {
+
+        String indexedPackage = IndexedHandlers.class.getPackage().getName();
+
+        Injector injector = Guice.createInjector(new CqrsHandlersModule(indexedPackage));
+
+        assertTrue(HandlerIndex.read().covers(indexedPackage));
+        assertEquals(
+                IndexedHandlers.BuyCommandHandler.class,
+                injector.getInstance(CommandHandlersRegistry.class).handlers().get(IndexedHandlers.BuyCommand.class).get().getClass());
+        assertEquals(
+                IndexedHandlers.SomethingBoughtHandler.class,
+                injector.getInstance(DomainEventHandlersRegistry.class).handlers().get(IndexedHandlers.SomethingBought.class).get(0).get().getClass());
+        assertTrue(injector.getInstance(QueryHandlersRegistry.class).handlers().isEmpty());
+    }
+}
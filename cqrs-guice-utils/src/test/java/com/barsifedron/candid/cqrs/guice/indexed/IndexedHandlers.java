@@ -0,0 +1,50 @@
+package com.barsifedron.candid.cqrs.guice.indexed;
+
+import com.barsifedron.candid.cqrs.command.Command;
+import com.barsifedron.candid.cqrs.command.CommandHandler;
+import com.barsifedron.candid.cqrs.command.CommandResponse;
+import com.barsifedron.candid.cqrs.domainevent.DomainEvent;
+import com.barsifedron.candid.cqrs.domainevent.DomainEventHandler;
+
+/**
+ * Indexed when the tests are compiled, see build.gradle.
+ */
+public class IndexedHandlers {
+
+    public static class BuyCommand implements Command<String> {
+    }
+
+    public static class SomethingBought implements DomainEvent {
+    }
+
+    /**
+     * The type of commands is not on the handler itself. Reflections alone would not find it.
+     */
+    public static abstract class ReplyingHandler<K extends Command<String>> implements CommandHandler<String, K> {
+
+        @Override
+        public CommandResponse<String> handle(K command) {
+            return new CommandResponse<>("done");
+        }
+    }
+
+    public static class BuyCommandHandler extends ReplyingHandler<BuyCommand> {
+
+        @Override
+        public Class<BuyCommand> listenTo() {
+            return BuyCommand.class;
+        }
+    }
+
+    public static class SomethingBoughtHandler implements DomainEventHandler<SomethingBought> {
+
+        @Override
+        public void handle(SomethingBought event) {
+        }
+
+        @Override
+        public Class<SomethingBought> listenTo() {
+            return SomethingBought.class;
+        }
+    }
+}
@@ -2,11 +2,13 @@ package com.barsifedron.candid.cqrs.spring;
 
 import com.barsifedron.candid.cqrs.command.Command;
 import com.barsifedron.candid.cqrs.command.CommandHandler;
+import com.barsifedron.candid.cqrs.index.HandlerIndex;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
 import org.springframework.beans.factory.config.ConfigurableBeanFactory;
 import org.springframework.beans.factory.support.BeanDefinitionRegistry;
 import org.springframework.beans.factory.support.GenericBeanDefinition;
+import org.springframework.beans.factory.support.RootBeanDefinition;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
 import org.springframework.context.annotation.Scope;
@@ -15,7 +17,6 @@ import org.springframework.core.type.filter.AssignableTypeFilter;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.function.Supplier;
@@ -34,6 +35,7 @@ public class CommandHandlersRegistry {
 
     /**
      * Will scan packages for Command Handlers.
+     * The packages a HandlerIndex covers (see HandlerIndexProcessor) are read from the index instead, the others are scanned.
      * <p>
      * If you use @Component on your handlers, you will have errors here as the classes will be found twice.
      * Once because of the annotation and once because of this scanning.
@@ -44,19 +46,23 @@ public class CommandHandlersRegistry {
      */
     public CommandHandlersRegistry(ApplicationContext applicationContext, String... packages) {
 
-        registerHandlersToApplicationContext(applicationContext, packages);
+        HandlerIndex index = HandlerIndex.read(applicationContext.getClassLoader());
+        registerHandlersToApplicationContext(applicationContext, index, packages);
 
         String[] names = applicationContext.getBeanNamesForType(CommandHandler.class);
         for (String name : names) {
-            register(applicationContext, name);
+            register(applicationContext, index, name);
         }
 
     }
 
-    private void register(ApplicationContext applicationContext, String name) {
+    private void register(ApplicationContext applicationContext, HandlerIndex index, String name) {
         Class<CommandHandler<?, ?>> handlerClass = (Class<CommandHandler<?, ?>>) applicationContext.getType(name);
-        Class<?>[] generics = GenericTypeResolver.resolveTypeArguments(handlerClass, CommandHandler.class);
-        Class<Command> commandType = (Class<Command>) generics[1];
+        Class<Command> commandType = (Class<Command>) index.messageTypeOf(HandlerIndex.Kind.COMMAND, handlerClass);
+        if (commandType == null) {
+            Class<?>[] generics = GenericTypeResolver.resolveTypeArguments(handlerClass, CommandHandler.class);
+            commandType = (Class<Command>) generics[1];
+        }
         map.put(commandType, () -> applicationContext.getBean(handlerClass));
     }
 
@@ -66,6 +72,7 @@ public class CommandHandlersRegistry {
 
     private void registerHandlersToApplicationContext(
             ApplicationContext applicationContext,
+            HandlerIndex index,
             String... packages) {
 
         AutowireCapableBeanFactory factory = applicationContext.getAutowireCapableBeanFactory();
@@ -77,14 +84,18 @@ public class CommandHandlersRegistry {
         Stream
                 .of(packages)
                 .filter(thePackage -> !StringUtils.isEmpty(thePackage))
-                .map(provider::findCandidateComponents)
-                .flatMap(Collection::stream)
-                .forEach(handlerDefinition -> {
-
+                .forEach(thePackage -> {
+                    if (index.covers(thePackage)) {
+                        // Indexed at compile time: no need to scan
+                        index.entries(HandlerIndex.Kind.COMMAND, thePackage).forEach(handler -> definitionRegistry.registerBeanDefinition(
+                                handler.handlerClass.getName(),
+                                new RootBeanDefinition(handler.handlerClass)));
+                        return;
+                    }
                     // register the handlers in the application context
-                    definitionRegistry.registerBeanDefinition(
+                    provider.findCandidateComponents(thePackage).forEach(handlerDefinition -> definitionRegistry.registerBeanDefinition(
                             handlerDefinition.getBeanClassName(),
-                            new GenericBeanDefinition(handlerDefinition));
+                            new GenericBeanDefinition(handlerDefinition)));
                 });
     }
 
@@ -2,6 +2,7 @@ package com.barsifedron.candid.cqrs.spring;
 
 import com.barsifedron.candid.cqrs.command.Command;
 import com.barsifedron.candid.cqrs.command.CommandHandler;
+import com.barsifedron.candid.cqrs.index.HandlerIndex;
 import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
 import org.springframework.beans.factory.support.BeanDefinitionRegistry;
 import org.springframework.beans.factory.support.GenericBeanDefinition;
@@ -11,7 +12,6 @@ import org.springframework.context.annotation.ClassPathScanningCandidateComponen
 import org.springframework.core.type.filter.AssignableTypeFilter;
 import org.springframework.util.StringUtils;
 
-import java.util.Collection;
 import java.util.Map;
 import java.util.function.Supplier;
 import java.util.stream.Stream;
@@ -21,6 +21,8 @@ import java.util.stream.Stream;
  * <p>
  * Warning, if you use @Component on your handler, you will have errors here as the class will be found twice.
  * One because of the annotation and one because of this scanning.
+ * <p>
+ * The packages a HandlerIndex covers are read from the index instead of scanned.
  */
 public class CommandHandlersRegistryNoAnnotation {
 
@@ -31,20 +33,25 @@ public class CommandHandlersRegistryNoAnnotation {
         AutowireCapableBeanFactory factory = applicationContext.getAutowireCapableBeanFactory();
         BeanDefinitionRegistry beanDefinitionRegistry = (BeanDefinitionRegistry) factory;
 
+        HandlerIndex index = HandlerIndex.read(applicationContext.getClassLoader());
         ClassPathScanningCandidateComponentProvider provider = new ClassPathScanningCandidateComponentProvider(false);
         provider.addIncludeFilter(new AssignableTypeFilter(CommandHandler.class));
 
         Stream
                 .of(packages)
                 .filter(thePackage -> !StringUtils.isEmpty(thePackage))
-                .map(provider::findCandidateComponents)
-                .flatMap(Collection::stream)
-                .forEach(beanDefinition -> {
-
+                .forEach(thePackage -> {
+                    if (index.covers(thePackage)) {
+                        // Indexed at compile time: no need to scan
+                        index.entries(HandlerIndex.Kind.COMMAND, thePackage).forEach(handler -> beanDefinitionRegistry.registerBeanDefinition(
+                                handler.handlerClass.getName(),
+                                new RootBeanDefinition(handler.handlerClass)));
+                        return;
+                    }
                     // register the handlers in the application context
-                    beanDefinitionRegistry.registerBeanDefinition(
-                            beanDefinition.getBeanClassName(),
-                            new GenericBeanDefinition(beanDefinition));
+                    provider.findCandidateComponents(thePackage).forEach(handlerDefinition -> beanDefinitionRegistry.registerBeanDefinition(
+                            handlerDefinition.getBeanClassName(),
+                            new GenericBeanDefinition(handlerDefinition)));
                 });
 
         // now the beans are in the application context
@@ -3,11 +3,13 @@ package com.barsifedron.candid.cqrs.spring;
 import com.barsifedron.candid.cqrs.command.CommandHandler;
 import com.barsifedron.candid.cqrs.domainevent.DomainEvent;
 import com.barsifedron.candid.cqrs.domainevent.DomainEventHandler;
+import com.barsifedron.candid.cqrs.index.HandlerIndex;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
 import org.springframework.beans.factory.config.ConfigurableBeanFactory;
 import org.springframework.beans.factory.support.BeanDefinitionRegistry;
 import org.springframework.beans.factory.support.GenericBeanDefinition;
+import org.springframework.beans.factory.support.RootBeanDefinition;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
 import org.springframework.context.annotation.Scope;
@@ -17,7 +19,6 @@ import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -37,6 +38,7 @@ public class DomainEventHandlersRegistry {
 
     /**
      * Will scan packages for Command Handlers.
+     * The packages a HandlerIndex covers (see HandlerIndexProcessor) are read from the index instead, the others are scanned.
      * <p>
      * If you use @Component on your handlers, you will have errors here as the classes will be found twice.
      * Once because of the annotation and once because of this scanning.
@@ -47,18 +49,22 @@ public class DomainEventHandlersRegistry {
      */
     public DomainEventHandlersRegistry(ApplicationContext applicationContext, String... packages) {
 
-        registerHandlersToApplicationContext(applicationContext, packages);
+        HandlerIndex index = HandlerIndex.read(applicationContext.getClassLoader());
+        registerHandlersToApplicationContext(applicationContext, index, packages);
 
         String[] names = applicationContext.getBeanNamesForType(DomainEventHandler.class);
         for (String name : names) {
-            register(applicationContext, name);
+            register(applicationContext, index, name);
         }
     }
 
-    private void register(ApplicationContext applicationContext, String name) {
+    private void register(ApplicationContext applicationContext, HandlerIndex index, String name) {
         Class<DomainEventHandler<?>> handlerClass = (Class<DomainEventHandler<?>>) applicationContext.getType(name);
-        Class<?>[] generics = GenericTypeResolver.resolveTypeArguments(handlerClass, DomainEventHandler.class);
-        Class<DomainEvent> domainType = (Class<DomainEvent>) generics[0];
+        Class<DomainEvent> domainType = (Class<DomainEvent>) index.messageTypeOf(HandlerIndex.Kind.DOMAIN_EVENT, handlerClass);
+        if (domainType == null) {
+            Class<?>[] generics = GenericTypeResolver.resolveTypeArguments(handlerClass, DomainEventHandler.class);
+            domainType = (Class<DomainEvent>) generics[0];
+        }
         map.putIfAbsent(domainType, new ArrayList<>());
         map.get(domainType).add(() -> applicationContext.getBean(handlerClass));
     }
@@ -69,6 +75,7 @@ public class DomainEventHandlersRegistry {
 
     private void registerHandlersToApplicationContext(
             ApplicationContext applicationContext,
+            HandlerIndex index,
             String... packages) {
 
         AutowireCapableBeanFactory factory = applicationContext.getAutowireCapableBeanFactory();
@@ -80,14 +87,18 @@ public class DomainEventHandlersRegistry {
         Stream
                 .of(packages)
                 .filter(thePackage -> !StringUtils.isEmpty(thePackage))
-                .map(provider::findCandidateComponents)
-                .flatMap(Collection::stream)
-                .forEach(handlerDefinition -> {
-
+                .forEach(thePackage -> {
+                    if (index.covers(thePackage)) {
+                        // Indexed at compile time: no need to scan
+                        index.entries(HandlerIndex.Kind.DOMAIN_EVENT, thePackage).forEach(handler -> definitionRegistry.registerBeanDefinition(
+                                handler.handlerClass.getName(),
+                                new RootBeanDefinition(handler.handlerClass)));
+                        return;
+                    }
                     // register the handlers in the application context
-                    definitionRegistry.registerBeanDefinition(
+                    provider.findCandidateComponents(thePackage).forEach(handlerDefinition -> definitionRegistry.registerBeanDefinition(
                             handlerDefinition.getBeanClassName(),
-                            new GenericBeanDefinition(handlerDefinition));
+                            new GenericBeanDefinition(handlerDefinition)));
                 });
     }
 }
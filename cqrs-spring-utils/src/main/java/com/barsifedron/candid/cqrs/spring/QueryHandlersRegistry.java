@@ -1,6 +1,7 @@
 package com.barsifedron.candid.cqrs.spring;
 
 import com.barsifedron.candid.cqrs.domainevent.DomainEventHandler;
+import com.barsifedron.candid.cqrs.index.HandlerIndex;
 import com.barsifedron.candid.cqrs.query.Query;
 import com.barsifedron.candid.cqrs.query.QueryHandler;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -8,6 +9,7 @@ import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
 import org.springframework.beans.factory.config.ConfigurableBeanFactory;
 import org.springframework.beans.factory.support.BeanDefinitionRegistry;
 import org.springframework.beans.factory.support.GenericBeanDefinition;
+import org.springframework.beans.factory.support.RootBeanDefinition;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
 import org.springframework.context.annotation.Scope;
@@ -16,7 +18,6 @@ import org.springframework.core.type.filter.AssignableTypeFilter;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.function.Supplier;
@@ -35,18 +36,22 @@ public class QueryHandlersRegistry {
 
     public QueryHandlersRegistry(ApplicationContext applicationContext, String... packages) {
 
-        registerHandlersToApplicationContext(applicationContext, packages);
+        HandlerIndex index = HandlerIndex.read(applicationContext.getClassLoader());
+        registerHandlersToApplicationContext(applicationContext, index, packages);
 
         String[] names = applicationContext.getBeanNamesForType(QueryHandler.class);
         for (String name : names) {
-            register(applicationContext, name);
+            register(applicationContext, index, name);
         }
     }
 
-    private void register(ApplicationContext applicationContext, String name) {
+    private void register(ApplicationContext applicationContext, HandlerIndex index, String name) {
         Class<QueryHandler<?, ?>> handlerClass = (Class<QueryHandler<?, ?>>) applicationContext.getType(name);
-        Class<?>[] generics = GenericTypeResolver.resolveTypeArguments(handlerClass, QueryHandler.class);
-        Class<Query> queryType = (Class<Query>) generics[1];
+        Class<Query> queryType = (Class<Query>) index.messageTypeOf(HandlerIndex.Kind.QUERY, handlerClass);
+        if (queryType == null) {
+            Class<?>[] generics = GenericTypeResolver.resolveTypeArguments(handlerClass, QueryHandler.class);
+            queryType = (Class<Query>) generics[1];
+        }
         map.put(queryType, () -> applicationContext.getBean(handlerClass));
     }
 
@@ -56,6 +61,7 @@ public class QueryHandlersRegistry {
 
     private void registerHandlersToApplicationContext(
             ApplicationContext applicationContext,
+            HandlerIndex index,
             String... packages) {
 
         AutowireCapableBeanFactory factory = applicationContext.getAutowireCapableBeanFactory();
@@ -67,14 +73,18 @@ public class QueryHandlersRegistry {
         Stream
                 .of(packages)
                 .filter(thePackage -> !StringUtils.isEmpty(thePackage))
-                .map(provider::findCandidateComponents)
-                .flatMap(Collection::stream)
-                .forEach(handlerDefinition -> {
-
+                .forEach(thePackage -> {
+                    if (index.covers(thePackage)) {
+                        // Indexed at compile time: no need to scan
+                        index.entries(HandlerIndex.Kind.QUERY, thePackage).forEach(handler -> definitionRegistry.registerBeanDefinition(
+                                handler.handlerClass.getName(),
+                                new RootBeanDefinition(handler.handlerClass)));
+                        return;
+                    }
                     // register the handlers in the application context
-                    definitionRegistry.registerBeanDefinition(
+                    provider.findCandidateComponents(thePackage).forEach(handlerDefinition -> definitionRegistry.registerBeanDefinition(
                             handlerDefinition.getBeanClassName(),
-                            new GenericBeanDefinition(handlerDefinition));
+                            new GenericBeanDefinition(handlerDefinition)));
                 });
     }
 
@@ -0,0 +1,35 @@
+package com.barsifedron.candid.cqrs.spring;
+
+import com.barsifedron.candid.cqrs.command.Command;
+import com.barsifedron.candid.cqrs.command.CommandHandler;
+import com.barsifedron.candid.cqrs.index.HandlerIndex;
+import com.barsifedron.candid.cqrs.spring.indexed.IndexedHandlers;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CommandHandlersRegistryTest {
+
+    @Test
+    public void takesTheHandlersOfIndexedPackagesFromTheIndex() {
+
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.refresh();
+        String indexedPackage = IndexedHandlers.class.getPackage().getName();
+
+        Map<Class<Command>, Supplier<CommandHandler>> handlers = new CommandHandlersRegistry(context, indexedPackage).handlers();
+
+        assertTrue(HandlerIndex.read().covers(indexedPackage));
+        // Scanned handlers get a copy of the scanned definition instead
+        assertTrue(context.getBeanDefinition(IndexedHandlers.BuyCommandHandler.class.getName()) instanceof RootBeanDefinition);
+        assertEquals(
+                IndexedHandlers.BuyCommandHandler.class,
+                handlers.get(IndexedHandlers.BuyCommand.class).get().getClass());
+    }
+}
@@ -0,0 +1,27 @@
+package com.barsifedron.candid.cqrs.spring.indexed;
+
+import com.barsifedron.candid.cqrs.command.Command;
+import com.barsifedron.candid.cqrs.command.CommandHandler;
+import com.barsifedron.candid.cqrs.command.CommandResponse;
+
+/**
+ * Indexed when the tests are compiled, see build.gradle.
+ */
+public class IndexedHandlers {
+
+    public static class BuyCommand implements Command<String> {
+    }
+
+    public static class BuyCommandHandler implements CommandHandler<String, BuyCommand> {
+
+        @Override
+        public CommandResponse<String> handle(BuyCommand command) {
+            return new CommandResponse<>("bought");
+        }
+
+        @Override
+        public Class<BuyCommand> listenTo() {
+            return BuyCommand.class;
+        }
+    }
+}
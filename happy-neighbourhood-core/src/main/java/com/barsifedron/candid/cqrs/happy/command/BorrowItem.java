@@ -80,9 +80,10 @@ public class BorrowItem implements CommandHandler<LoanId, BorrowItem.Command> {
                 .build();
 
         return CommandResponse
-                .empty()
-                .withResult(newLoan.id())
-                .withAddedDomainEvents(domainEvent);
+                .builder()
+                .result(newLoan.id())
+                .domainEvent(domainEvent)
+                .build();
     }
 
     private void validate(Command command) {
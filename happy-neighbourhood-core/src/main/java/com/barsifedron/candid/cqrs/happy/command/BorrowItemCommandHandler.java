@@ -69,9 +69,10 @@ public class BorrowItemCommandHandler implements CommandHandler<LoanId, BorrowIt
                 .build();
 
         return CommandResponse
-                .empty()
-                .withResult(newLoan.id())
-                .withAddedDomainEvents(domainEvent);
+                .builder()
+                .result(newLoan.id())
+                .domainEvent(domainEvent)
+                .build();
     }
 
     private void validate(BorrowItemCommand command) {
@@ -5,6 +5,7 @@ import com.barsifedron.candid.cqrs.command.CommandResponse;
 import com.barsifedron.candid.cqrs.happy.domain.Item;
 import com.barsifedron.candid.cqrs.happy.domain.ItemId;
 import com.barsifedron.candid.cqrs.happy.domain.ItemsRepository;
+import com.barsifedron.candid.cqrs.happy.domainevents.NewItemRegisteredDomainEvent;
 
 import javax.inject.Inject;
 import java.time.LocalDate;
@@ -38,9 +39,18 @@ public class RegisterNewItemCommandHandler implements CommandHandler<ItemId, Reg
 
         items.add(newItem);
 
+        NewItemRegisteredDomainEvent domainEvent = NewItemRegisteredDomainEvent
+                .builder()
+                .itemId(command.id)
+                .name(command.name)
+                .since(LocalDate.now())
+                .build();
+
         return CommandResponse
-                .empty()
-                .withResult(newItem.id());
+                .builder()
+                .result(newItem.id())
+                .domainEvent(domainEvent)
+                .build();
     }
 
     @Override
@@ -55,9 +55,10 @@ public class RegisterNewMemberCommandHandler implements CommandHandler<MemberId,
                 .build();
 
         return CommandResponse
-                .empty()
-                .withResult(newMember.memberId())
-                .withAddedDomainEvents(domainEvent);
+                .builder()
+                .result(newMember.memberId())
+                .domainEvent(domainEvent)
+                .build();
     }
 
     @Override
@@ -62,7 +62,7 @@ public class ReturnItemCommandHandler implements CommandHandler<NoResult, Return
                 .bill(loan.bill())
                 .build();
 
-        return CommandResponse.empty().withAddedDomainEvents(domainEvent);
+        return CommandResponse.builder().domainEvent(domainEvent).build();
     }
 
     private void validate(ReturnItemCommand command) {
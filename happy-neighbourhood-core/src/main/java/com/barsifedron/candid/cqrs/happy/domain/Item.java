@@ -12,6 +12,7 @@ import javax.persistence.Column;
 import javax.persistence.Embedded;
 import javax.persistence.EmbeddedId;
 import javax.persistence.Entity;
+import javax.persistence.Index;
 import javax.persistence.Table;
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -24,7 +25,8 @@ import java.util.stream.Stream;
 @Builder(toBuilder = true)
 @ToString
 @Entity
-@Table(name = "item")
+// The since date lives in the email column
+@Table(name = "item", indexes = @Index(name = "item_by_since", columnList = "email desc, id desc"))
 public class Item {
 
     @Embedded
@@ -13,6 +13,7 @@ import javax.persistence.Column;
 import javax.persistence.Embedded;
 import javax.persistence.EmbeddedId;
 import javax.persistence.Entity;
+import javax.persistence.Index;
 import javax.persistence.Table;
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -28,7 +29,9 @@ import static java.lang.String.format;
 @Builder(toBuilder = true)
 @ToString
 @Entity
-@Table(name = "loan")
+@Table(name = "loan", indexes = {
+        @Index(name = "loan_by_member", columnList = "memberid"),
+        @Index(name = "loan_by_item", columnList = "itemid") })
 public class Loan {
 
     @Embedded
@@ -12,6 +12,7 @@ import javax.persistence.Column;
 import javax.persistence.Embedded;
 import javax.persistence.EmbeddedId;
 import javax.persistence.Entity;
+import javax.persistence.Index;
 import javax.persistence.Table;
 import java.time.LocalDateTime;
 
@@ -21,7 +22,7 @@ import java.time.LocalDateTime;
 @Builder(toBuilder = true)
 @ToString
 @Entity
-@Table(name = "member")
+@Table(name = "member", indexes = @Index(name = "member_by_registration", columnList = "registeredon desc, id desc"))
 public class Member {
 
     @Embedded
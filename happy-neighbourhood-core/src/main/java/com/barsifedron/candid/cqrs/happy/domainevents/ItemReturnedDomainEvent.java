@@ -3,9 +3,11 @@ package com.barsifedron.candid.cqrs.happy.domainevents;
 import com.barsifedron.candid.cqrs.domainevent.DomainEvent;
 import com.barsifedron.candid.cqrs.happy.command.BorrowItemCommandHandler;
 import com.barsifedron.candid.cqrs.happy.utils.cqrs.domainevents.DomainEventToLog;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
 import lombok.ToString;
 
 import java.math.BigDecimal;
@@ -13,6 +15,7 @@ import java.time.LocalDate;
 
 @Builder(toBuilder = true)
 @AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PRIVATE, force = true) // for jackson, when read back from the outbox
 @EqualsAndHashCode
 @ToString
 public class ItemReturnedDomainEvent implements DomainEvent, DomainEventToLog {
@@ -1,13 +1,20 @@
 package com.barsifedron.candid.cqrs.happy.domainevents;
 
+import com.barsifedron.candid.cqrs.domainevent.AfterCommitDomainEventHandler;
 import com.barsifedron.candid.cqrs.domainevent.DomainEventHandler;
+import com.barsifedron.candid.cqrs.domainevent.SequentialDomainEventHandler;
 import com.barsifedron.candid.cqrs.happy.command.BorrowItemCommandHandler;
 import com.barsifedron.candid.cqrs.happy.domain.Email;
 import com.barsifedron.candid.cqrs.happy.domain.EmailRepository;
 
 import javax.inject.Inject;
 
-public class ItemReturnedDomainEventHandler implements DomainEventHandler<ItemReturnedDomainEvent> {
+/**
+ * Stores the email to be sent. A notification: the command does not need to wait for it, hence AFTER_COMMIT.
+ * Within the transaction of whoever runs it (the outbox relay, or the after commit queue).
+ * Must not be run on another thread than that one: see SequentialDomainEventHandler.
+ */
+public class ItemReturnedDomainEventHandler implements DomainEventHandler<ItemReturnedDomainEvent>, SequentialDomainEventHandler, AfterCommitDomainEventHandler {
 
     private final EmailRepository emailRepository;
 
@@ -0,0 +1,24 @@
+package com.barsifedron.candid.cqrs.happy.domainevents;
+
+import com.barsifedron.candid.cqrs.domainevent.DomainEvent;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.time.LocalDate;
+
+@Builder(toBuilder = true)
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PRIVATE, force = true) // for jackson, when read back from the outbox
+@EqualsAndHashCode
+@ToString
+public class NewItemRegisteredDomainEvent implements DomainEvent {
+
+    public final String itemId;
+    public final String name;
+    public final LocalDate since;
+
+}
@@ -1,15 +1,18 @@
 package com.barsifedron.candid.cqrs.happy.domainevents;
 
 import com.barsifedron.candid.cqrs.domainevent.DomainEvent;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
 import lombok.ToString;
 
 import java.time.LocalDateTime;
 
 @Builder(toBuilder = true)
 @AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PRIVATE, force = true) // for jackson, when read back from the outbox
 @EqualsAndHashCode
 @ToString
 public class NewMemberRegisteredDomainEvent implements DomainEvent {
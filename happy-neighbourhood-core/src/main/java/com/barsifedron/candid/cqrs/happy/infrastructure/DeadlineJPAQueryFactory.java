@@ -0,0 +1,40 @@
+package com.barsifedron.candid.cqrs.happy.infrastructure;
+
+import com.barsifedron.candid.cqrs.deadline.Deadline;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+
+import javax.persistence.EntityManager;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queries stopped at the database once the deadline of the current dispatch is gone: what is left of it is
+ * passed on as javax.persistence.query.timeout. No deadline, no timeout.
+ * <p>
+ * Hibernate rounds the timeout to the second (JDBC only knows seconds), and 0 means no timeout at all:
+ * what is left is rounded up to the next second. A query is not even started once the deadline passed.
+ */
+public class DeadlineJPAQueryFactory extends JPAQueryFactory {
+
+    static final String QUERY_TIMEOUT_HINT = "javax.persistence.query.timeout";
+
+    public DeadlineJPAQueryFactory(EntityManager entityManager) {
+        super(entityManager);
+    }
+
+    @Override
+    public JPAQuery<?> query() {
+        JPAQuery<?> query = super.query();
+        Deadline deadline = Deadline.current();
+        if (deadline == null) {
+            return query;
+        }
+        long remainingMillis = deadline.remaining(TimeUnit.MILLISECONDS);
+        if (remainingMillis <= 0) {
+            throw new Deadline.DeadlineExceededException("Query not run: its deadline passed " + -remainingMillis + " ms ago");
+        }
+        long timeoutSeconds = (remainingMillis + 999) / 1000;
+        query.setHint(QUERY_TIMEOUT_HINT, (int) Math.min(Integer.MAX_VALUE, timeoutSeconds * 1000));
+        return query;
+    }
+}
@@ -0,0 +1,54 @@
+package com.barsifedron.candid.cqrs.happy.infrastructure;
+
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.hibernate.annotations.Type;
+
+import javax.persistence.Access;
+import javax.persistence.AccessType;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.time.LocalDateTime;
+
+/**
+ * One serialized domain event, waiting in the outbox. See HibernateDomainEventOutbox.
+ */
+@Access(AccessType.FIELD)
+@NoArgsConstructor
+@ToString
+@Entity
+@Table(name = "domain_event_outbox", indexes = @Index(name = "domain_event_outbox_pending", columnList = "dispatchedon, id"))
+public class DomainEventOutboxEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    Long id;
+
+    @Column(name = "eventtype", nullable = false)
+    String eventType;
+
+    @Column(name = "payload", nullable = false)
+    @Type(type = "text")
+    String payload;
+
+    @Column(name = "createdon", nullable = false)
+    LocalDateTime createdOn;
+
+    @Column(name = "dispatchedon")
+    LocalDateTime dispatchedOn;
+
+    @Column(name = "attempts", nullable = false)
+    int attempts;
+
+    DomainEventOutboxEntry(String eventType, String payload, LocalDateTime createdOn) {
+        this.eventType = eventType;
+        this.payload = payload;
+        this.createdOn = createdOn;
+    }
+}
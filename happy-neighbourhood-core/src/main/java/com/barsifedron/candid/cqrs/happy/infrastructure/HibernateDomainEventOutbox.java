@@ -0,0 +1,135 @@
+package com.barsifedron.candid.cqrs.happy.infrastructure;
+
+import com.barsifedron.candid.cqrs.domainevent.DomainEvent;
+import com.barsifedron.candid.cqrs.domainevent.DomainEventOutbox;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.LockOptions;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The outbox is a table of the application database. Events are written by the command transaction, as json.
+ * <p>
+ * Claimed rows are locked with "select ... for update skip locked" when the database (and the hibernate dialect)
+ * knows about skip locked: Postgres, Oracle, MySQL 8... Several relays then share the outbox without waiting on each other.
+ * Elsewhere (H2 for one) hibernate falls back to a plain "for update", and relays take turns.
+ * <p>
+ * Dispatched rows are kept, with their dispatch date. Rows failing 'maxAttempts' times are not claimed anymore
+ * and stay there for someone to have a look. So do rows that can not be read back as an event,
+ * and rows whose type is not a DomainEvent: nothing else is ever instantiated from the table.
+ * <p>
+ * Events are read back with jackson. They need a constructor jackson can use (a no args one is fine).
+ */
+public class HibernateDomainEventOutbox implements DomainEventOutbox {
+
+    private static final Logger LOGGER = Logger.getLogger(HibernateDomainEventOutbox.class.getName());
+    private static final QDomainEventOutboxEntry ENTRY = QDomainEventOutboxEntry.domainEventOutboxEntry;
+
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final int maxAttempts;
+
+    public HibernateDomainEventOutbox(EntityManager entityManager, ObjectMapper objectMapper, int maxAttempts) {
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+        this.maxAttempts = maxAttempts;
+    }
+
+    @Override
+    public void add(List<DomainEvent> events) {
+        LocalDateTime now = LocalDateTime.now();
+        for (DomainEvent event : events) {
+            entityManager.persist(new DomainEventOutboxEntry(event.getClass().getName(), serialize(event), now));
+        }
+    }
+
+    @Override
+    public List<PendingDomainEvent> claim(int max) {
+        List<DomainEventOutboxEntry> entries = new JPAQueryFactory(entityManager)
+                .selectFrom(ENTRY)
+                .where(
+                        ENTRY.dispatchedOn.isNull(),
+                        ENTRY.attempts.lt(maxAttempts))
+                .orderBy(ENTRY.id.asc())
+                .limit(max)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .setHint("javax.persistence.lock.timeout", LockOptions.SKIP_LOCKED)
+                .fetch();
+
+        List<PendingDomainEvent> pending = new ArrayList<>(entries.size());
+        List<Long> unreadable = new ArrayList<>();
+        for (DomainEventOutboxEntry entry : entries) {
+            DomainEvent event = deserialize(entry);
+            if (event == null) {
+                unreadable.add(entry.id);
+            } else {
+                pending.add(new PendingDomainEvent(entry.id, event));
+            }
+        }
+        if (!unreadable.isEmpty()) {
+            // No point in trying again. Parked until someone fixes the event class.
+            new JPAQueryFactory(entityManager)
+                    .update(ENTRY)
+                    .set(ENTRY.attempts, maxAttempts)
+                    .where(ENTRY.id.in(unreadable))
+                    .execute();
+        }
+        return pending;
+    }
+
+    @Override
+    public void markDispatched(List<Long> ids) {
+        new JPAQueryFactory(entityManager)
+                .update(ENTRY)
+                .set(ENTRY.dispatchedOn, LocalDateTime.now())
+                .where(ENTRY.id.in(ids))
+                .execute();
+    }
+
+    @Override
+    public void markFailed(List<Long> ids) {
+        new JPAQueryFactory(entityManager)
+                .update(ENTRY)
+                .set(ENTRY.attempts, ENTRY.attempts.add(1))
+                .where(ENTRY.id.in(ids))
+                .execute();
+    }
+
+    private String serialize(DomainEvent event) {
+        try {
+            return objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new OutboxSerializationException("Could not write event of type " + event.getClass().getName(), e);
+        }
+    }
+
+    private DomainEvent deserialize(DomainEventOutboxEntry entry) {
+        try {
+            // Not initialized: the class is checked before anything of it runs
+            Class<?> eventType = Class.forName(entry.eventType, false, getClass().getClassLoader());
+            if (!DomainEvent.class.isAssignableFrom(eventType)) {
+                LOGGER.severe("Outbox entry " + entry.id + " is of type " + entry.eventType + ", not a domain event");
+                return null;
+            }
+            return objectMapper.readValue(entry.payload, eventType.asSubclass(DomainEvent.class));
+        } catch (IOException | ClassNotFoundException e) {
+            LOGGER.log(Level.SEVERE, "Could not read outbox entry " + entry.id + " of type " + entry.eventType, e);
+            return null;
+        }
+    }
+
+    public static class OutboxSerializationException extends RuntimeException {
+        public OutboxSerializationException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+}
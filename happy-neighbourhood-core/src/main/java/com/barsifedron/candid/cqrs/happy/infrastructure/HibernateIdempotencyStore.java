@@ -0,0 +1,107 @@
+package com.barsifedron.candid.cqrs.happy.infrastructure;
+
+import com.barsifedron.candid.cqrs.command.IdempotencyStore;
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+
+import javax.persistence.EntityManager;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The results of the commands, in a table of the application database. Written by the command transaction, as json.
+ * <p>
+ * Records older than the time to live are ignored, then deleted by removeExpired. So are the records that can not be
+ * read back: the command runs again, as if it had never been seen.
+ * <p>
+ * Results are written and read back with jackson, field by field (ids rarely have getters). They need a constructor
+ * jackson can use (a no args one is fine).
+ */
+public class HibernateIdempotencyStore implements IdempotencyStore {
+
+    private static final Logger LOGGER = Logger.getLogger(HibernateIdempotencyStore.class.getName());
+    private static final QIdempotencyRecord RECORD = QIdempotencyRecord.idempotencyRecord;
+
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final Duration timeToLive;
+
+    public HibernateIdempotencyStore(EntityManager entityManager, ObjectMapper objectMapper, Duration timeToLive) {
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper
+                .copy()
+                .setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY)
+                .disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
+        this.timeToLive = timeToLive;
+    }
+
+    @Override
+    public CompletedCommand find(String key) {
+        IdempotencyRecord record = new JPAQueryFactory(entityManager)
+                .selectFrom(RECORD)
+                .where(
+                        RECORD.key.eq(key),
+                        RECORD.createdOn.after(LocalDateTime.now().minus(timeToLive)))
+                .fetchOne();
+        if (record == null) {
+            return null;
+        }
+        if (record.resultType == null) {
+            return new CompletedCommand(record.fingerprint, null);
+        }
+        try {
+            return new CompletedCommand(record.fingerprint, objectMapper.readValue(record.payload, Class.forName(record.resultType)));
+        } catch (IOException | ClassNotFoundException e) {
+            LOGGER.log(Level.WARNING, "Could not read the result of " + key + " of type " + record.resultType + ". The command will run again.", e);
+            return null;
+        }
+    }
+
+    @Override
+    public void save(String key, int fingerprint, Object result) {
+        // An expired record of the same key would stand in the way. One still valid is kept: the insert fails, and the transaction with it
+        new JPAQueryFactory(entityManager)
+                .delete(RECORD)
+                .where(
+                        RECORD.key.eq(key),
+                        RECORD.createdOn.before(LocalDateTime.now().minus(timeToLive)))
+                .execute();
+        entityManager.persist(new IdempotencyRecord(
+                key,
+                fingerprint,
+                result == null ? null : result.getClass().getName(),
+                result == null ? null : serialize(key, result),
+                LocalDateTime.now()));
+    }
+
+    /**
+     * @return how many records were deleted
+     */
+    public long removeExpired() {
+        return new JPAQueryFactory(entityManager)
+                .delete(RECORD)
+                .where(RECORD.createdOn.before(LocalDateTime.now().minus(timeToLive)))
+                .execute();
+    }
+
+    private String serialize(String key, Object result) {
+        try {
+            return objectMapper.writeValueAsString(result);
+        } catch (JsonProcessingException e) {
+            throw new IdempotencySerializationException("Could not write the result of " + key + " of type " + result.getClass().getName(), e);
+        }
+    }
+
+    public static class IdempotencySerializationException extends RuntimeException {
+        public IdempotencySerializationException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+}
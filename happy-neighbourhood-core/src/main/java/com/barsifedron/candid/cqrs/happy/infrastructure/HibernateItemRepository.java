@@ -4,7 +4,6 @@ import com.barsifedron.candid.cqrs.happy.domain.Item;
 import com.barsifedron.candid.cqrs.happy.domain.ItemId;
 import com.barsifedron.candid.cqrs.happy.domain.ItemsRepository;
 import com.barsifedron.candid.cqrs.happy.domain.QItem;
-import com.querydsl.jpa.impl.JPAQueryFactory;
 
 import javax.inject.Inject;
 import javax.persistence.EntityManager;
@@ -26,7 +25,7 @@ public class HibernateItemRepository implements ItemsRepository {
 
     @Override
     public Item get(ItemId id) {
-        return new JPAQueryFactory(entityManager)
+        return new DeadlineJPAQueryFactory(entityManager)
                 .select(QItem.item)
                 .from(QItem.item)
                 .where(QItem.item.id.eq(id))
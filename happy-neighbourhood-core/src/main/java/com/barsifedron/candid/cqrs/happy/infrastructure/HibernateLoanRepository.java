@@ -6,7 +6,6 @@ import com.barsifedron.candid.cqrs.happy.domain.LoanId;
 import com.barsifedron.candid.cqrs.happy.domain.LoanRepository;
 import com.barsifedron.candid.cqrs.happy.domain.MemberId;
 import com.barsifedron.candid.cqrs.happy.domain.QLoan;
-import com.querydsl.jpa.impl.JPAQueryFactory;
 
 import javax.inject.Inject;
 import javax.persistence.EntityManager;
@@ -28,7 +27,7 @@ public class HibernateLoanRepository implements LoanRepository {
 
     @Override
     public Loan get(LoanId id) {
-        return new JPAQueryFactory(entityManager)
+        return new DeadlineJPAQueryFactory(entityManager)
                 .select(QLoan.loan)
                 .from(QLoan.loan)
                 .where(QLoan.loan.id.eq(id))
@@ -37,7 +36,7 @@ public class HibernateLoanRepository implements LoanRepository {
 
     @Override
     public List<Loan> forMember(MemberId memberId, Loan.STATUS... statuses) {
-        List<Loan> fetch = new JPAQueryFactory(entityManager)
+        List<Loan> fetch = new DeadlineJPAQueryFactory(entityManager)
                 .select(QLoan.loan)
                 .from(QLoan.loan)
                 .where(
@@ -49,7 +48,7 @@ public class HibernateLoanRepository implements LoanRepository {
 
     @Override
     public List<Loan> forItem(ItemId itemId, Loan.STATUS... statuses) {
-        return new JPAQueryFactory(entityManager)
+        return new DeadlineJPAQueryFactory(entityManager)
                 .select(QLoan.loan)
                 .from(QLoan.loan)
                 .where(
@@ -60,7 +59,7 @@ public class HibernateLoanRepository implements LoanRepository {
 
     @Override
     public List<Loan> all() {
-        return new JPAQueryFactory(entityManager)
+        return new DeadlineJPAQueryFactory(entityManager)
                 .select(QLoan.loan)
                 .from(QLoan.loan)
                 .fetch();
@@ -4,7 +4,6 @@ import com.barsifedron.candid.cqrs.happy.domain.Member;
 import com.barsifedron.candid.cqrs.happy.domain.MemberId;
 import com.barsifedron.candid.cqrs.happy.domain.MembersRepository;
 import com.barsifedron.candid.cqrs.happy.domain.QMember;
-import com.querydsl.jpa.impl.JPAQueryFactory;
 
 import javax.inject.Inject;
 import javax.persistence.EntityManager;
@@ -20,7 +19,7 @@ public class HibernateMemberRepository implements MembersRepository {
 
     @Override
     public Member get(MemberId memberId) {
-        return new JPAQueryFactory(entityManager)
+        return new DeadlineJPAQueryFactory(entityManager)
                 .select(QMember.member)
                 .from(QMember.member)
                 .where(QMember.member.memberId.eq(memberId))
@@ -29,7 +28,7 @@ public class HibernateMemberRepository implements MembersRepository {
 
     @Override
     public Member withEmail(String email) {
-        return new JPAQueryFactory(entityManager)
+        return new DeadlineJPAQueryFactory(entityManager)
                 .select(QMember.member)
                 .from(QMember.member)
                 .where(QMember.member.email.eq(email))
@@ -0,0 +1,56 @@
+package com.barsifedron.candid.cqrs.happy.infrastructure;
+
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.hibernate.annotations.Type;
+
+import javax.persistence.Access;
+import javax.persistence.AccessType;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.time.LocalDateTime;
+
+/**
+ * The serialized result of one command, by idempotency key. See HibernateIdempotencyStore.
+ */
+@Access(AccessType.FIELD)
+@NoArgsConstructor
+@ToString
+@Entity
+@Table(name = "idempotency_record", indexes = @Index(name = "idempotency_record_createdon", columnList = "createdon"))
+public class IdempotencyRecord {
+
+    @Id
+    @Column(name = "idempotencykey", nullable = false)
+    String key;
+
+    /**
+     * Of the command. See IdempotentCommandBusMiddleware.Keys.
+     */
+    @Column(name = "fingerprint", nullable = false)
+    int fingerprint;
+
+    /**
+     * Null when the command returned null.
+     */
+    @Column(name = "resulttype")
+    String resultType;
+
+    @Column(name = "payload")
+    @Type(type = "text")
+    String payload;
+
+    @Column(name = "createdon", nullable = false)
+    LocalDateTime createdOn;
+
+    IdempotencyRecord(String key, int fingerprint, String resultType, String payload, LocalDateTime createdOn) {
+        this.key = key;
+        this.fingerprint = fingerprint;
+        this.resultType = resultType;
+        this.payload = payload;
+        this.createdOn = createdOn;
+    }
+}
@@ -2,19 +2,41 @@ package com.barsifedron.candid.cqrs.happy.query;
 
 import com.barsifedron.candid.cqrs.happy.utils.cqrs.query.QueryResultToLog;
 import com.barsifedron.candid.cqrs.happy.utils.cqrs.query.QueryToLog;
+import com.barsifedron.candid.cqrs.query.BatchableQuery;
 import com.barsifedron.candid.cqrs.query.Query;
+import com.barsifedron.candid.cqrs.query.SingleFlightQuery;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.EqualsAndHashCode;
 import lombok.ToString;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
 import java.util.List;
 
 @Builder
 @EqualsAndHashCode
 @AllArgsConstructor
 @ToString
-public class GetItemsQuery implements Query<List<GetItemsQueryHandler.ItemDto>>, QueryToLog, QueryResultToLog {
+public class GetItemsQuery implements Query<List<GetItemsQueryHandler.ItemDto>>, QueryToLog, QueryResultToLog, SingleFlightQuery, BatchableQuery<String> {
 
     public String itemId;
 
+    /**
+     * Null for all the items at once. Otherwise, one page of that many items, the latest first.
+     */
+    @Min(1)
+    @Max(1000)
+    public Integer pageSize;
+
+    /**
+     * Where the page starts: the cursor of the previous page. Null for the first one.
+     */
+    public String after;
+
+    @Override
+    public String batchKey() {
+        return pageSize == null ? itemId : null;
+    }
+
 }
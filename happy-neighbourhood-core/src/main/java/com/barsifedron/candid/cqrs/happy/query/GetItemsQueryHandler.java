@@ -2,10 +2,11 @@ package com.barsifedron.candid.cqrs.happy.query;
 
 import com.barsifedron.candid.cqrs.happy.domain.ItemId;
 import com.barsifedron.candid.cqrs.happy.domain.Loan;
-import com.barsifedron.candid.cqrs.query.QueryHandler;
+import com.barsifedron.candid.cqrs.happy.infrastructure.DeadlineJPAQueryFactory;
+import com.barsifedron.candid.cqrs.query.BatchQueryHandler;
 import com.querydsl.core.types.ConstructorExpression;
+import com.querydsl.core.types.Predicate;
 import com.querydsl.core.types.Projections;
-import com.querydsl.jpa.impl.JPAQueryFactory;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.EqualsAndHashCode;
@@ -16,9 +17,14 @@ import javax.inject.Inject;
 import javax.persistence.EntityManager;
 import javax.transaction.Transactional;
 import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import static com.barsifedron.candid.cqrs.happy.domain.QItem.item;
@@ -27,8 +33,17 @@ import static com.barsifedron.candid.cqrs.happy.domain.QMember.member;
 import static com.querydsl.core.group.GroupBy.groupBy;
 import static com.querydsl.core.group.GroupBy.list;
 import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
 
-public class GetItemsQueryHandler implements QueryHandler<List<GetItemsQueryHandler.ItemDto>, GetItemsQuery> {
+public class GetItemsQueryHandler implements BatchQueryHandler<String, List<GetItemsQueryHandler.ItemDto>, GetItemsQuery> {
+
+    /**
+     * The latest first, the same for all the items, their pages and their stream
+     */
+    private static final Comparator<ItemDto> ORDER = Comparator
+            .comparing((ItemDto itemDto) -> itemDto.since)
+            .thenComparing(itemDto -> itemDto.id)
+            .reversed();
 
     private final EntityManager entityManager;
 
@@ -40,17 +55,76 @@ public class GetItemsQueryHandler implements QueryHandler<List<GetItemsQueryHand
     @Override
     @Transactional
     public List<ItemDto> handle(GetItemsQuery query) {
+        Predicate where = query.itemId == null ? null : item.id.id.eq(query.itemId);
+        return query.pageSize == null ? items(where) : page(where, query.pageSize, query.after);
+    }
+
+    /**
+     * The cursor of the page starting right after this item.
+     */
+    public static String cursorAfter(ItemDto itemDto) {
+        return PageCursor.encode(itemDto.since, itemDto.id);
+    }
+
+    /**
+     * All the items asked for, in one query.
+     */
+    @Override
+    @Transactional
+    public Map<String, List<ItemDto>> handleAll(Set<String> itemIds) {
+        Map<String, List<ItemDto>> itemsById = new LinkedHashMap<>();
+        itemIds.forEach(itemId -> itemsById.put(itemId, new ArrayList<>()));
+        items(item.id.id.in(itemIds)).forEach(itemDto -> itemsById.computeIfAbsent(itemDto.id, itemId -> new ArrayList<>()).add(itemDto));
+        return itemsById;
+    }
+
+    /**
+     * The ids of the page come first, a range of the (since desc, id desc) index. Loans are then joined for these items only.
+     */
+    private List<ItemDto> page(Predicate where, int pageSize, String after) {
+
+        List<String> itemIds = new DeadlineJPAQueryFactory(entityManager)
+                .select(item.id.id)
+                .from(item)
+                .where(where, after == null ? null : startingAfter(after))
+                .orderBy(item.since.desc(), item.id.id.desc())
+                .limit(pageSize)
+                .fetch();
+        if (itemIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Map<String, ItemDto> itemsById = items(item.id.id.in(itemIds))
+                .stream()
+                .collect(toMap(itemDto -> itemDto.id, itemDto -> itemDto));
+        return itemIds.stream().map(itemsById::get).collect(toList());
+    }
+
+    private Predicate startingAfter(String after) {
+        PageCursor cursor = PageCursor.decode(after);
+        LocalDate since;
+        try {
+            since = LocalDate.parse(cursor.sortValue);
+        } catch (DateTimeParseException e) {
+            throw new PageCursor.InvalidPageCursorException(after);
+        }
+        // Latest first. The leading bound alone is what the database needs to start right at the index
+        return item.since.loe(since)
+                .and(item.since.lt(since).or(item.id.id.lt(cursor.id)));
+    }
+
+    private List<ItemDto> items(Predicate where) {
 
-        Map<ItemId, ItemDto> items = new JPAQueryFactory(entityManager)
+        Map<ItemId, ItemDto> items = new DeadlineJPAQueryFactory(entityManager)
                 .from(item)
                 .leftJoin(loan)
                 .on(item.id.eq(loan.itemId))
                 .leftJoin(member)
                 .on(member.memberId.eq(loan.memberId))
-                .where(query.itemId == null ? null : item.id.id.eq(query.itemId))
+                .where(where)
                 .transform(groupBy(item.id).as(itemDtoProjection()));
 
-        return items.values().stream().collect(Collectors.toList());
+        return items.values().stream().sorted(ORDER).collect(Collectors.toList());
     }
 
     private ConstructorExpression<ItemDto> itemDtoProjection() {
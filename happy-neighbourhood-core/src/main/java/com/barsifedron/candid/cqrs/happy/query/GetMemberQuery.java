@@ -1,6 +1,7 @@
 package com.barsifedron.candid.cqrs.happy.query;
 
 import com.barsifedron.candid.cqrs.happy.query.GetMemberQueryHandler.MemberDto;
+import com.barsifedron.candid.cqrs.query.BatchableQuery;
 import com.barsifedron.candid.cqrs.query.Query;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -8,6 +9,8 @@ import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 import lombok.ToString;
 
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotEmpty;
 import java.util.Collection;
 import java.util.List;
@@ -16,7 +19,24 @@ import java.util.List;
 @EqualsAndHashCode
 @AllArgsConstructor
 @ToString
-public class GetMemberQuery implements Query<Collection<MemberDto>> {
+public class GetMemberQuery implements Query<Collection<MemberDto>>, BatchableQuery<String> {
 
     public String memberId;
+
+    /**
+     * Null for all the members at once. Otherwise, one page of that many members, the latest registered first.
+     */
+    @Min(1)
+    @Max(1000)
+    public Integer pageSize;
+
+    /**
+     * Where the page starts: the cursor of the previous page. Null for the first one.
+     */
+    public String after;
+
+    @Override
+    public String batchKey() {
+        return pageSize == null ? memberId : null;
+    }
 }
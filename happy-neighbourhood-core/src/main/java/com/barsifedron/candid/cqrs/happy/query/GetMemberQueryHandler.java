@@ -2,16 +2,17 @@ package com.barsifedron.candid.cqrs.happy.query;
 
 import com.barsifedron.candid.cqrs.happy.domain.Loan;
 import com.barsifedron.candid.cqrs.happy.domain.MemberId;
+import com.barsifedron.candid.cqrs.happy.infrastructure.DeadlineJPAQueryFactory;
 
 import static com.barsifedron.candid.cqrs.happy.domain.QItem.item;
 import static com.barsifedron.candid.cqrs.happy.domain.QLoan.loan;
 import static com.barsifedron.candid.cqrs.happy.domain.QMember.member;
 
-import com.barsifedron.candid.cqrs.query.QueryHandler;
+import com.barsifedron.candid.cqrs.query.BatchQueryHandler;
 import com.querydsl.core.types.ConstructorExpression;
+import com.querydsl.core.types.Predicate;
 import com.querydsl.core.types.Projections;
 import com.querydsl.jpa.impl.JPAQuery;
-import com.querydsl.jpa.impl.JPAQueryFactory;
 import lombok.AllArgsConstructor;
 import lombok.NoArgsConstructor;
 import lombok.ToString;
@@ -21,17 +22,22 @@ import javax.persistence.EntityManager;
 import javax.transaction.Transactional;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Stream;
 
 import static com.querydsl.core.group.GroupBy.groupBy;
 import static com.querydsl.core.group.GroupBy.list;
 import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
 
 public class GetMemberQueryHandler
-        implements QueryHandler<Collection<GetMemberQueryHandler.MemberDto>, GetMemberQuery> {
+        implements BatchQueryHandler<String, Collection<GetMemberQueryHandler.MemberDto>, GetMemberQuery> {
 
     private final EntityManager entityManager;
 
@@ -43,14 +49,73 @@ public class GetMemberQueryHandler
     @Override
     @Transactional
     public Collection<MemberDto> handle(GetMemberQuery query) {
+        Predicate where = query.memberId != null ? member.memberId.id.eq(query.memberId) : null;
+        return query.pageSize == null ? members(where) : page(where, query.pageSize, query.after);
+    }
+
+    /**
+     * The cursor of the page starting right after this member.
+     */
+    public static String cursorAfter(MemberDto memberDto) {
+        return PageCursor.encode(memberDto.registeredOn, memberDto.id);
+    }
+
+    /**
+     * All the members asked for, in one query (well, two: with and without loans. As for one member).
+     */
+    @Override
+    @Transactional
+    public Map<String, Collection<MemberDto>> handleAll(Set<String> memberIds) {
+        Map<String, Collection<MemberDto>> membersById = new LinkedHashMap<>();
+        memberIds.forEach(memberId -> membersById.put(memberId, new ArrayList<>()));
+        members(member.memberId.id.in(memberIds)).forEach(memberDto -> membersById.computeIfAbsent(memberDto.id, memberId -> new ArrayList<>()).add(memberDto));
+        return membersById;
+    }
+
+    /**
+     * The ids of the page come first, a range of the (registeredon desc, id desc) index. Loans are then joined for these members only.
+     */
+    private List<MemberDto> page(Predicate where, int pageSize, String after) {
+
+        List<String> memberIds = new DeadlineJPAQueryFactory(entityManager)
+                .select(member.memberId.id)
+                .from(member)
+                .where(where, after == null ? null : startingAfter(after))
+                .orderBy(member.registeredOn.desc(), member.memberId.id.desc())
+                .limit(pageSize)
+                .fetch();
+        if (memberIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Map<String, MemberDto> membersById = members(member.memberId.id.in(memberIds))
+                .stream()
+                .collect(toMap(memberDto -> memberDto.id, memberDto -> memberDto));
+        return memberIds.stream().map(membersById::get).collect(toList());
+    }
+
+    private Predicate startingAfter(String after) {
+        PageCursor cursor = PageCursor.decode(after);
+        LocalDateTime registeredOn;
+        try {
+            registeredOn = LocalDateTime.parse(cursor.sortValue);
+        } catch (DateTimeParseException e) {
+            throw new PageCursor.InvalidPageCursorException(after);
+        }
+        // Latest registered first. The leading bound alone is what the database needs to start right at the index
+        return member.registeredOn.loe(registeredOn)
+                .and(member.registeredOn.lt(registeredOn).or(member.memberId.id.lt(cursor.id)));
+    }
+
+    private List<MemberDto> members(Predicate where) {
 
-        JPAQuery<?> jpaQuery = new JPAQueryFactory(entityManager)
+        JPAQuery<?> jpaQuery = new DeadlineJPAQueryFactory(entityManager)
                 .from(member)
                 .leftJoin(loan)
                 .on(member.memberId.eq(loan.memberId))
                 .leftJoin(item)
                 .on(item.id.eq(loan.itemId))
-                .where(query.memberId != null ? member.memberId.id.eq(query.memberId) : null);
+                .where(where);
 
         Map<MemberId, MemberDto> membersWithLoans = jpaQuery
                 .clone()
@@ -127,9 +192,13 @@ public class GetMemberQueryHandler
             this.registeredOn = registeredOn;
         }
 
+        /**
+         * Latest registered first, as pages and streams are
+         */
         @Override
         public int compareTo(MemberDto o) {
-            return o.registeredOn.compareTo(registeredOn);
+            int byRegistration = o.registeredOn.compareTo(registeredOn);
+            return byRegistration != 0 ? byRegistration : o.id.compareTo(id);
         }
     }
 
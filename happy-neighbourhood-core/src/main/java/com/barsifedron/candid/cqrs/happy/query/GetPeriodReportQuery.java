@@ -1,6 +1,7 @@
 package com.barsifedron.candid.cqrs.happy.query;
 
 import com.barsifedron.candid.cqrs.query.Query;
+import com.barsifedron.candid.cqrs.query.QueryLane;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.EqualsAndHashCode;
@@ -13,6 +14,8 @@ import java.time.LocalDate;
 @EqualsAndHashCode
 @AllArgsConstructor
 @ToString
+// Scans the loans of the whole period: kept away from the quick reads
+@QueryLane("batch")
 public class GetPeriodReportQuery implements Query<GetPeriodReportQueryHandler.ReportDto> {
 
     @NotNull
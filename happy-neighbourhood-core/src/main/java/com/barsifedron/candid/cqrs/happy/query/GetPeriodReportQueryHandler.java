@@ -3,10 +3,10 @@ package com.barsifedron.candid.cqrs.happy.query;
 import com.barsifedron.candid.cqrs.happy.domain.ItemId;
 import com.barsifedron.candid.cqrs.happy.domain.Loan;
 import com.barsifedron.candid.cqrs.happy.domain.LoanCost;
+import com.barsifedron.candid.cqrs.happy.infrastructure.DeadlineJPAQueryFactory;
 import com.barsifedron.candid.cqrs.query.QueryHandler;
 import com.querydsl.core.group.Group;
 import com.querydsl.core.group.GroupBy;
-import com.querydsl.jpa.impl.JPAQueryFactory;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 
@@ -42,7 +42,7 @@ public class GetPeriodReportQueryHandler
             throw new IllegalArgumentException("Search end date can not be before start date.");
         }
 
-        Map<ItemId, Group> periodLoans = new JPAQueryFactory(entityManager)
+        Map<ItemId, Group> periodLoans = new DeadlineJPAQueryFactory(entityManager)
                 .from(loan, item)
                 .where(
                         loan.effectiveReturnOn.isNotNull(),
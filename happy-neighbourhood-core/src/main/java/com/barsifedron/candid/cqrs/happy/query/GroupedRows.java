@@ -0,0 +1,77 @@
+package com.barsifedron.candid.cqrs.happy.query;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.jpa.impl.JPAQuery;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Turns rows of a left join (one per loan, say) into one dto per group of rows (one per member), as they are read.
+ * Like groupBy in querydsl, without holding every group at once: the rows must come ordered by the group key.
+ */
+final class GroupedRows {
+
+    private GroupedRows() {
+    }
+
+    /**
+     * The rows are read through a forward only cursor, fetchSize at a time. Closing the stream closes the cursor.
+     * <p>
+     * Not with iterate() from querydsl: it only scrolls with the Hibernate versions before 5.2 and reads the whole list otherwise.
+     */
+    static <D> Stream<D> stream(JPAQuery<Tuple> query, int fetchSize, Expression<?> groupKey, Function<List<Tuple>, D> toDto) {
+
+        FactoryExpression<Tuple> projection = (FactoryExpression<Tuple>) query.getMetadata().getProjection();
+        Stream<Tuple> rows = ((Stream<Object[]>) query
+                .createQuery()
+                .unwrap(org.hibernate.query.Query.class)
+                .setFetchSize(fetchSize)
+                .stream())
+                .map(projection::newInstance);
+        Iterator<Tuple> rowIterator = rows.iterator();
+
+        Iterator<D> groups = new Iterator<D>() {
+
+            private Tuple next;
+            private boolean started;
+
+            @Override
+            public boolean hasNext() {
+                if (!started) {
+                    started = true;
+                    next = rowIterator.hasNext() ? rowIterator.next() : null;
+                }
+                return next != null;
+            }
+
+            @Override
+            public D next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Object key = next.get(groupKey);
+                List<Tuple> group = new ArrayList<>();
+                while (next != null && Objects.equals(key, next.get(groupKey))) {
+                    group.add(next);
+                    next = rowIterator.hasNext() ? rowIterator.next() : null;
+                }
+                return toDto.apply(group);
+            }
+        };
+
+        return StreamSupport
+                .stream(Spliterators.spliteratorUnknownSize(groups, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(rows::close);
+    }
+}
@@ -0,0 +1,49 @@
+package com.barsifedron.candid.cqrs.happy.query;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Where the next page starts: the sort value and the id of the last row of the previous page.
+ * <p>
+ * Opaque to the clients (url safe base64). They hand back what they were given, and nothing else.
+ */
+public class PageCursor {
+
+    private static final char SEPARATOR = '\n';
+
+    public final String sortValue;
+    public final String id;
+
+    private PageCursor(String sortValue, String id) {
+        this.sortValue = sortValue;
+        this.id = id;
+    }
+
+    public static String encode(Object sortValue, String id) {
+        return Base64
+                .getUrlEncoder()
+                .withoutPadding()
+                .encodeToString((sortValue.toString() + SEPARATOR + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static PageCursor decode(String cursor) {
+        String decoded;
+        try {
+            decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidPageCursorException(cursor);
+        }
+        int separator = decoded.indexOf(SEPARATOR);
+        if (separator < 0) {
+            throw new InvalidPageCursorException(cursor);
+        }
+        return new PageCursor(decoded.substring(0, separator), decoded.substring(separator + 1));
+    }
+
+    public static class InvalidPageCursorException extends RuntimeException {
+        public InvalidPageCursorException(String cursor) {
+            super("Invalid page cursor: " + cursor);
+        }
+    }
+}
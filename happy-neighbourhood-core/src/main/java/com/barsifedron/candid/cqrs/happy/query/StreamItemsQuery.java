@@ -0,0 +1,14 @@
+package com.barsifedron.candid.cqrs.happy.query;
+
+import com.barsifedron.candid.cqrs.happy.query.GetItemsQueryHandler.ItemDto;
+import com.barsifedron.candid.cqrs.query.StreamQuery;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+/**
+ * Every item, latest first, as GetItemsQuery would. But read as they go.
+ */
+@EqualsAndHashCode
+@ToString
+public class StreamItemsQuery implements StreamQuery<ItemDto> {
+}
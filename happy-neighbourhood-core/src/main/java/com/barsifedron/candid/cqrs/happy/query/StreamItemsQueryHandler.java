@@ -0,0 +1,92 @@
+package com.barsifedron.candid.cqrs.happy.query;
+
+import com.barsifedron.candid.cqrs.happy.infrastructure.DeadlineJPAQueryFactory;
+import com.barsifedron.candid.cqrs.happy.query.GetItemsQueryHandler.ItemDto;
+import com.barsifedron.candid.cqrs.happy.query.GetItemsQueryHandler.LoanDto;
+import com.barsifedron.candid.cqrs.query.QueryHandler;
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQuery;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static com.barsifedron.candid.cqrs.happy.domain.QItem.item;
+import static com.barsifedron.candid.cqrs.happy.domain.QLoan.loan;
+import static com.barsifedron.candid.cqrs.happy.domain.QMember.member;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Reads the items through a cursor, and hands each one out once all its loans are read. See StreamMembersQueryHandler.
+ * <p>
+ * There must be a transaction going on already: the stream reads within it. See StreamQuery.
+ * The query is stopped at the deadline of the dispatch, if there is one. See StreamMembersQueryHandler.
+ */
+public class StreamItemsQueryHandler implements QueryHandler<Stream<ItemDto>, StreamItemsQuery> {
+
+    private static final int FETCH_SIZE = 500;
+
+    private final EntityManager entityManager;
+
+    @Inject
+    public StreamItemsQueryHandler(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    @Transactional(Transactional.TxType.MANDATORY)
+    public Stream<ItemDto> handle(StreamItemsQuery query) {
+
+        JPAQuery<Tuple> rows = new DeadlineJPAQueryFactory(entityManager)
+                .select(
+                        item.id.id,
+                        item.name,
+                        item.since,
+                        loan.id.loanId,
+                        member.memberId.id,
+                        member.firstname,
+                        member.surname,
+                        member.email,
+                        loan.borrowedOn,
+                        loan.effectiveReturnOn,
+                        loan.status,
+                        loan.detailedCosts)
+                .from(item)
+                .leftJoin(loan)
+                .on(item.id.eq(loan.itemId))
+                .leftJoin(member)
+                .on(member.memberId.eq(loan.memberId))
+                // the rows of an item one after the other, latest first
+                .orderBy(item.since.desc(), item.id.id.desc());
+
+        return GroupedRows.stream(rows, FETCH_SIZE, item.id.id, this::itemDto);
+    }
+
+    private ItemDto itemDto(List<Tuple> rows) {
+        Tuple first = rows.get(0);
+        return new ItemDto(
+                first.get(item.id.id),
+                first.get(item.name),
+                first.get(item.since),
+                rows
+                        .stream()
+                        .map(row -> new LoanDto(
+                                row.get(loan.id.loanId),
+                                row.get(member.memberId.id),
+                                row.get(member.firstname),
+                                row.get(member.surname),
+                                row.get(member.email),
+                                row.get(loan.borrowedOn),
+                                row.get(loan.effectiveReturnOn),
+                                row.get(loan.status),
+                                row.get(loan.detailedCosts)))
+                        .collect(toList()));
+    }
+
+    @Override
+    public Class<StreamItemsQuery> listenTo() {
+        return StreamItemsQuery.class;
+    }
+}
@@ -0,0 +1,14 @@
+package com.barsifedron.candid.cqrs.happy.query;
+
+import com.barsifedron.candid.cqrs.happy.query.GetMemberQueryHandler.MemberDto;
+import com.barsifedron.candid.cqrs.query.StreamQuery;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+/**
+ * Every member, latest registered first, as GetMemberQuery would. But read as they go.
+ */
+@EqualsAndHashCode
+@ToString
+public class StreamMembersQuery implements StreamQuery<MemberDto> {
+}
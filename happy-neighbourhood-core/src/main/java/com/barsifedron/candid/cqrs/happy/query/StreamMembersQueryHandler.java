@@ -0,0 +1,96 @@
+package com.barsifedron.candid.cqrs.happy.query;
+
+import com.barsifedron.candid.cqrs.happy.infrastructure.DeadlineJPAQueryFactory;
+import com.barsifedron.candid.cqrs.happy.query.GetMemberQueryHandler.LoanDto;
+import com.barsifedron.candid.cqrs.happy.query.GetMemberQueryHandler.MemberDto;
+import com.barsifedron.candid.cqrs.query.QueryHandler;
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQuery;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static com.barsifedron.candid.cqrs.happy.domain.QItem.item;
+import static com.barsifedron.candid.cqrs.happy.domain.QLoan.loan;
+import static com.barsifedron.candid.cqrs.happy.domain.QMember.member;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Reads the members through a cursor, a few hundred rows at a time, and hands each one out once all its loans are read.
+ * However many members there are, only one is held in memory at a time. Well, one and its loans.
+ * <p>
+ * There must be a transaction going on already: the stream reads within it. See StreamQuery.
+ * The query is stopped at the deadline of the dispatch, if there is one: reading the stream must not outlast it.
+ */
+public class StreamMembersQueryHandler implements QueryHandler<Stream<MemberDto>, StreamMembersQuery> {
+
+    private static final int FETCH_SIZE = 500;
+
+    private final EntityManager entityManager;
+
+    @Inject
+    public StreamMembersQueryHandler(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    @Transactional(Transactional.TxType.MANDATORY)
+    public Stream<MemberDto> handle(StreamMembersQuery query) {
+
+        JPAQuery<Tuple> rows = new DeadlineJPAQueryFactory(entityManager)
+                .select(
+                        member.memberId.id,
+                        member.firstname,
+                        member.surname,
+                        member.email,
+                        member.registeredOn,
+                        loan.id.loanId,
+                        item.id.id,
+                        item.name,
+                        loan.borrowedOn,
+                        loan.effectiveReturnOn,
+                        loan.status,
+                        loan.detailedCosts)
+                .from(member)
+                .leftJoin(loan)
+                .on(member.memberId.eq(loan.memberId))
+                .leftJoin(item)
+                .on(item.id.eq(loan.itemId))
+                // the rows of a member one after the other, latest registered first
+                .orderBy(member.registeredOn.desc(), member.memberId.id.desc());
+
+        return GroupedRows.stream(rows, FETCH_SIZE, member.memberId.id, this::memberDto);
+    }
+
+    private MemberDto memberDto(List<Tuple> rows) {
+        Tuple first = rows.get(0);
+        MemberDto memberDto = new MemberDto(
+                first.get(member.memberId.id),
+                first.get(member.firstname),
+                first.get(member.surname),
+                first.get(member.email),
+                first.get(member.registeredOn));
+        if (first.get(loan.id.loanId) != null) {
+            memberDto.loansHistory = rows
+                    .stream()
+                    .map(row -> new LoanDto(
+                            row.get(loan.id.loanId),
+                            row.get(item.id.id),
+                            row.get(item.name),
+                            row.get(loan.borrowedOn),
+                            row.get(loan.effectiveReturnOn),
+                            row.get(loan.status),
+                            row.get(loan.detailedCosts)))
+                    .collect(toList());
+        }
+        return memberDto;
+    }
+
+    @Override
+    public Class<StreamMembersQuery> listenTo() {
+        return StreamMembersQuery.class;
+    }
+}
@@ -1,5 +1,6 @@
 package com.barsifedron.candid.cqrs.happy.utils.cqrs.command.middleware;
 
+import com.barsifedron.candid.cqrs.command.BatchedCommandResponse;
 import com.barsifedron.candid.cqrs.command.Command;
 import com.barsifedron.candid.cqrs.command.CommandBus;
 import com.barsifedron.candid.cqrs.command.CommandBusMiddleware;
@@ -8,71 +9,136 @@ import com.barsifedron.candid.cqrs.domainevent.DomainEvent;
 import com.barsifedron.candid.cqrs.happy.utils.cqrs.command.CommandResultToLog;
 import com.barsifedron.candid.cqrs.happy.utils.cqrs.command.CommandToLog;
 import com.barsifedron.candid.cqrs.happy.utils.cqrs.domainevents.DomainEventToLog;
+import com.barsifedron.candid.cqrs.happy.utils.cqrs.logging.AsyncLogWriter;
+import com.barsifedron.candid.cqrs.happy.utils.cqrs.logging.LogSampling;
+import com.barsifedron.candid.cqrs.happy.utils.cqrs.logging.MessageLogPolicies;
 
 import java.util.List;
+import java.util.function.Supplier;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import static java.util.stream.Collectors.joining;
-import static java.util.stream.Collectors.toList;
-
+/**
+ * Logs every command, its result and its domain events. In details for the types marked as such (CommandToLog...),
+ * their type only for the others.
+ * <p>
+ * What to log of a type is worked out once. Lines are built and written by the AsyncLogWriter, on its own thread:
+ * the command pays for a few suppliers in a queue. Nothing at all when info is off.
+ */
 public class DetailedLoggingCommandBusMiddleware implements CommandBusMiddleware {
 
     private final static Logger LOGGER = Logger.getLogger(
             DetailedLoggingCommandBusMiddleware.class.getName());
+    private final static String SOURCE = DetailedLoggingCommandBusMiddleware.class.getName();
+
+    private static final ClassValue<Boolean> EVENT_TO_LOG = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> eventType) {
+            return DomainEventToLog.class.isAssignableFrom(eventType);
+        }
+    };
+
+    private final AsyncLogWriter writer;
+    private final MessageLogPolicies policies;
+
+    public DetailedLoggingCommandBusMiddleware(AsyncLogWriter writer, LogSampling sampling) {
+        this.writer = writer;
+        this.policies = new MessageLogPolicies(CommandToLog.class, CommandResultToLog.class, sampling);
+    }
 
     @Override
     public <T> CommandResponse<T> dispatch(Command<T> command, CommandBus bus) {
-
-        logCommand(command);
+        if (!LOGGER.isLoggable(Level.INFO)) {
+            return bus.dispatch(command);
+        }
+        MessageLogPolicies.Policy policy = policies.of(command.getClass());
+        if (!policy.sampled()) {
+            return bus.dispatch(command);
+        }
+        logCommand(command, policy);
         CommandResponse<T> commandResponse = bus.dispatch(command);
-        logCommandResponse(command, commandResponse);
-        logDomainEvents(commandResponse);
+        logCommandResponse(commandResponse, policy);
 
         return commandResponse;
     }
 
-    private <T> void logCommand(Command<T> command) {
-        boolean logCommandDetail = CommandToLog.class.isAssignableFrom(command.getClass());
-        if (logCommandDetail) {
-            LOGGER.info("\n\nProcessing command :\n" + command.toString());
+    @Override
+    public List<BatchedCommandResponse<?>> dispatchAll(List<? extends Command<?>> commands, CommandBus bus) {
+        if (!LOGGER.isLoggable(Level.INFO)) {
+            return bus.dispatchAll(commands);
+        }
+        int size = commands.size();
+        log(() -> "\n\nProcessing batch of " + size + " commands");
+        // Sampled once per command, for the command and its response alike
+        MessageLogPolicies.Policy[] sampled = new MessageLogPolicies.Policy[size];
+        for (int i = 0; i < size; i++) {
+            Command<?> command = commands.get(i);
+            MessageLogPolicies.Policy policy = policies.of(command.getClass());
+            if (policy.sampled()) {
+                sampled[i] = policy;
+                logCommand(command, policy);
+            }
         }
-        if (!logCommandDetail) {
-            LOGGER.info("\n\nProcessing  command of type :\n" + command.getClass().getName());
+        List<BatchedCommandResponse<?>> responses = bus.dispatchAll(commands);
+        for (int i = 0; i < size; i++) {
+            if (sampled[i] != null) {
+                logBatchedCommandResponse(responses.get(i), sampled[i]);
+            }
         }
+
+        return responses;
     }
 
-    private <T> void logCommandResponse(Command<T> command, CommandResponse<T> commandResponse) {
-        boolean logCommandResult = CommandResultToLog.class.isAssignableFrom(command.getClass());
-        if (logCommandResult) {
-            LOGGER.info("Command response was : " + commandResponse.result);
-        }
-        if (!logCommandResult) {
-            LOGGER.info("Command response was of type : " + commandResponse.result.getClass().getName());
+    private void logBatchedCommandResponse(BatchedCommandResponse<?> response, MessageLogPolicies.Policy policy) {
+        if (!response.succeeded()) {
+            String commandType = response.command.getClass().getName();
+            RuntimeException failure = response.failure;
+            log(() -> "Command of type " + commandType + " failed : " + failure.getMessage());
+            return;
         }
+        logCommandResponse(response.response, policy);
     }
 
-    private <T> void logDomainEvents(CommandResponse<T> commandResponse) {
-
-        List<DomainEvent> eventsToLog = commandResponse.domainEvents
-                .stream()
-                .filter(evt -> DomainEventToLog.class.isAssignableFrom(evt.getClass()))
-                .collect(toList());
-
-        LOGGER.info("Command generated "
-                + commandResponse.domainEvents.size()
-                + " domain events (local) of types :\n "
-                + commandResponse.domainEvents.stream().map(evt -> evt.getClass().getName()).collect(joining("\n")));
+    private void logCommand(Command<?> command, MessageLogPolicies.Policy policy) {
+        if (policy.details) {
+            log(() -> "\n\nProcessing command :\n" + command);
+        } else {
+            String commandType = command.getClass().getName();
+            log(() -> "\n\nProcessing  command of type :\n" + commandType);
+        }
+    }
 
-        if (eventsToLog.isEmpty()) {
-            return;
+    private void logCommandResponse(CommandResponse<?> commandResponse, MessageLogPolicies.Policy policy) {
+        Object result = commandResponse.result;
+        if (policy.result || result == null) {
+            log(() -> "Command response was : " + result);
+        } else {
+            String resultType = result.getClass().getName();
+            log(() -> "Command response was of type : " + resultType);
         }
+        List<DomainEvent> events = commandResponse.domainEvents;
+        log(() -> describe(events));
+    }
 
-        LOGGER.info("" +
-                "Safely loggable domain events (local) are :\n  "
-                + eventsToLog
-                .stream()
-                .map(evt -> evt.toString())
-                .collect(joining("\n")));
+    /**
+     * The types of all the events, then the details of those safe to log. In one pass.
+     */
+    private static String describe(List<DomainEvent> events) {
+        StringBuilder types = new StringBuilder();
+        StringBuilder loggable = new StringBuilder();
+        for (DomainEvent event : events) {
+            types.append(types.length() == 0 ? "" : "\n").append(event.getClass().getName());
+            if (EVENT_TO_LOG.get(event.getClass())) {
+                loggable.append(loggable.length() == 0 ? "" : "\n").append(event);
+            }
+        }
+        String description = "Command generated " + events.size() + " domain events (local) of types :\n " + types;
+        return loggable.length() == 0
+                ? description
+                : description + "\nSafely loggable domain events (local) are :\n  " + loggable;
+    }
 
+    private void log(Supplier<String> message) {
+        writer.log(LOGGER, Level.INFO, SOURCE, message);
     }
 }
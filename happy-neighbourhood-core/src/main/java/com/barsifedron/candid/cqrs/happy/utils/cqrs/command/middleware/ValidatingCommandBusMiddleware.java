@@ -2,6 +2,7 @@ package com.barsifedron.candid.cqrs.happy.utils.cqrs.command.middleware;
 
 
 
+import com.barsifedron.candid.cqrs.command.BatchedCommandResponse;
 import com.barsifedron.candid.cqrs.command.Command;
 import com.barsifedron.candid.cqrs.command.CommandBus;
 import com.barsifedron.candid.cqrs.command.CommandBusMiddleware;
@@ -11,15 +12,30 @@ import javax.inject.Inject;
 import javax.validation.ConstraintViolation;
 import javax.validation.Validation;
 import javax.validation.Validator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
  * A decorating command middleware that will validate all the commands that passes through it.
+ * <p>
+ * Whether a type of command has any constraint at all is checked once. Those without any go straight through,
+ * without a trip through the validator. The others are validated as usual: the validator keeps their metadata.
+ * <p>
+ * In a batch, invalid commands fail on their own and only the valid ones are passed along.
  */
 public class ValidatingCommandBusMiddleware implements CommandBusMiddleware {
 
     private final Validator validator;
+    private final ClassValue<Boolean> constrained = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> commandType) {
+            return validator.getConstraintsForClass(commandType).isBeanConstrained();
+        }
+    };
 
     @Inject
     public ValidatingCommandBusMiddleware() {
@@ -32,13 +48,44 @@ public class ValidatingCommandBusMiddleware implements CommandBusMiddleware {
 
     @Override
     public <T> CommandResponse<T> dispatch(Command<T> command, CommandBus bus) {
-        Set<ConstraintViolation<Command>> violations = validator.validate(command);
+        Set<ConstraintViolation<Command>> violations = validate(command);
         if (!violations.isEmpty()) {
             throw new IllegalCommandException(violations);
         }
         return bus.dispatch(command);
     }
 
+    @Override
+    public List<BatchedCommandResponse<?>> dispatchAll(List<? extends Command<?>> commands, CommandBus bus) {
+        List<BatchedCommandResponse<?>> invalidCommands = new ArrayList<>(commands.size());
+        List<Command<?>> validCommands = new ArrayList<>(commands.size());
+        for (Command<?> command : commands) {
+            Set<ConstraintViolation<Command>> violations = validate(command);
+            invalidCommands.add(violations.isEmpty()
+                    ? null
+                    : BatchedCommandResponse.failure(command, new IllegalCommandException(violations)));
+            if (violations.isEmpty()) {
+                validCommands.add(command);
+            }
+        }
+        if (validCommands.isEmpty()) {
+            return invalidCommands;
+        }
+
+        Iterator<BatchedCommandResponse<?>> validResponses = bus.dispatchAll(validCommands).iterator();
+        List<BatchedCommandResponse<?>> responses = new ArrayList<>(commands.size());
+        for (BatchedCommandResponse<?> invalidCommand : invalidCommands) {
+            responses.add(invalidCommand != null ? invalidCommand : validResponses.next());
+        }
+        return responses;
+    }
+
+    private Set<ConstraintViolation<Command>> validate(Command<?> command) {
+        return constrained.get(command.getClass())
+                ? validator.validate((Command) command)
+                : Collections.emptySet();
+    }
+
     public static class IllegalCommandException extends RuntimeException {
         public IllegalCommandException(Set<ConstraintViolation<Command>> violations) {
             super(violations
@@ -1,10 +1,12 @@
 package com.barsifedron.candid.cqrs.happy.utils.cqrs.command.middleware;
 
+import com.barsifedron.candid.cqrs.command.BatchedCommandResponse;
 import com.barsifedron.candid.cqrs.command.Command;
 import com.barsifedron.candid.cqrs.command.CommandBus;
 import com.barsifedron.candid.cqrs.command.CommandBusMiddleware;
 import com.barsifedron.candid.cqrs.command.CommandResponse;
 
+import java.util.List;
 import java.util.logging.Logger;
 
 /**
@@ -34,4 +36,19 @@ public class WithExecutionDurationLoggingCommandBusMiddleware implements Command
         return result;
     }
 
+    @Override
+    public List<BatchedCommandResponse<?>> dispatchAll(List<? extends Command<?>> commands, CommandBus bus) {
+
+        LOGGER.info("Processing batch of " + commands.size() + " commands");
+
+        long timeBefore = System.nanoTime();
+        List<BatchedCommandResponse<?>> responses = bus.dispatchAll(commands);
+        long timeAfter = System.nanoTime();
+
+        LOGGER.info("" +
+                "Done processing batch of " + commands.size() + " commands" +
+                "\nExecution time was :" + ((timeAfter - timeBefore) / 1000000) + " ms");
+        return responses;
+    }
+
 }
\ No newline at end of file
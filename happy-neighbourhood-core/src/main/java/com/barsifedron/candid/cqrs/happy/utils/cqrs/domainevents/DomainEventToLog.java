@@ -1,5 +1,7 @@
 package com.barsifedron.candid.cqrs.happy.utils.cqrs.domainevents;
 
+import com.barsifedron.candid.cqrs.domainevent.DomainEvent;
+
 /**
  * When queries implement this interface, the result of their execution will be
  * logged
@@ -7,6 +9,8 @@ package com.barsifedron.candid.cqrs.happy.utils.cqrs.domainevents;
  * Be careful to not use when sensitive data is passed around.
  *
  * Also be careful if you response contains 10k transaction lines.
+ *
+ * A DomainEvent itself, so a single handler can listen to all of them.
  */
-public interface DomainEventToLog {
+public interface DomainEventToLog extends DomainEvent {
 }
@@ -0,0 +1,126 @@
+package com.barsifedron.candid.cqrs.happy.utils.cqrs.logging;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writes log lines on a thread of its own. The caller only drops a supplier in a bounded queue:
+ * the message is built, then formatted and written by the handlers, on the writer thread.
+ * <p>
+ * When the queue is full, lines are dropped (and counted) rather than making the caller wait.
+ * Messages are built after the fact: log only what does not change once dispatched.
+ * <p>
+ * Close it on shutdown. What is still queued is written first.
+ */
+public class AsyncLogWriter implements AutoCloseable {
+
+    private final static Logger LOGGER = Logger.getLogger(AsyncLogWriter.class.getName());
+
+    private final BlockingQueue<Line> queue;
+    private final Thread writer;
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private volatile boolean closed;
+
+    public AsyncLogWriter(int capacity) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.writer = new Thread(this::writeUntilClosed, "async-log-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Nothing is queued when the logger would not log at that level anyway.
+     *
+     * @param sourceClass shown as the source of the line, as the writer thread is not where it comes from
+     */
+    public void log(Logger logger, Level level, String sourceClass, Supplier<String> message) {
+        if (!logger.isLoggable(level)) {
+            return;
+        }
+        Line line = new Line(logger, level, sourceClass, message);
+        if (closed || !queue.offer(line)) {
+            dropped.increment();
+            return;
+        }
+        // Closed while we were offering: the writer may be done with the queue already. Take the line back if it is still there.
+        // Otherwise the writer has it.
+        if (closed && queue.remove(line)) {
+            dropped.increment();
+        }
+    }
+
+    public long written() {
+        return written.sum();
+    }
+
+    /**
+     * Lines lost because the queue was full, or the writer closed.
+     */
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    public int queued() {
+        return queue.size();
+    }
+
+    /**
+     * Writes what is queued, then stops the writer thread. Waits up to 5 seconds for it.
+     * Interrupted meanwhile, it stops waiting and keeps the interrupt flag set.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        writer.interrupt();
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeUntilClosed() {
+        try {
+            while (!closed) {
+                write(queue.take());
+            }
+        } catch (InterruptedException e) {
+            // Closing
+        }
+        Line line;
+        while ((line = queue.poll()) != null) {
+            write(line);
+        }
+    }
+
+    private void write(Line line) {
+        try {
+            line.logger.logp(line.level, line.sourceClass, null, line.message);
+            written.increment();
+        } catch (RuntimeException exception) {
+            // A toString() gone wrong must not stop the writer
+            LOGGER.log(Level.WARNING, "Could not write a log line from " + line.sourceClass, exception);
+        }
+    }
+
+    private static final class Line {
+
+        private final Logger logger;
+        private final Level level;
+        private final String sourceClass;
+        private final Supplier<String> message;
+
+        private Line(Logger logger, Level level, String sourceClass, Supplier<String> message) {
+            this.logger = logger;
+            this.level = level;
+            this.sourceClass = sourceClass;
+            this.message = message;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.barsifedron.candid.cqrs.happy.utils.cqrs.logging;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * How many messages of a type are logged: one in N. All of them, for the types not listed.
+ * For the messages sent thousands of times a second, where the first few say all there is to say.
+ */
+public class LogSampling {
+
+    private final Map<Class<?>, Integer> everyNth;
+
+    public LogSampling() {
+        this(new LinkedHashMap<>());
+    }
+
+    private LogSampling(Map<Class<?>, Integer> everyNth) {
+        this.everyNth = everyNth;
+    }
+
+    /**
+     * Logs one message of this type (subtypes included) in 'n'. 1 logs them all.
+     */
+    public LogSampling everyNth(Class<?> messageType, int n) {
+        if (n < 1) {
+            throw new IllegalArgumentException("Can not log one " + messageType.getSimpleName() + " in " + n);
+        }
+        everyNth.put(messageType, n);
+        return this;
+    }
+
+    /**
+     * The one of the type itself first, else the one of the first supertype listed.
+     */
+    int everyNthOf(Class<?> messageType) {
+        Integer exact = everyNth.get(messageType);
+        if (exact != null) {
+            return exact;
+        }
+        for (Map.Entry<Class<?>, Integer> entry : everyNth.entrySet()) {
+            if (entry.getKey().isAssignableFrom(messageType)) {
+                return entry.getValue();
+            }
+        }
+        return 1;
+    }
+
+    LogSampling copy() {
+        return new LogSampling(Collections.unmodifiableMap(new LinkedHashMap<>(everyNth)));
+    }
+}
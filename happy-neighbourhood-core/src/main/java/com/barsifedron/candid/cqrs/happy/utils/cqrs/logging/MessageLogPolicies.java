@@ -0,0 +1,57 @@
+package com.barsifedron.candid.cqrs.happy.utils.cqrs.logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * What to log of each type of message. Worked out once per type, from its marker interfaces (CommandToLog...) and the sampling.
+ */
+public class MessageLogPolicies {
+
+    private final Class<?> detailsMarker;
+    private final Class<?> resultMarker;
+    private final LogSampling sampling;
+    private final ClassValue<Policy> policies = new ClassValue<Policy>() {
+        @Override
+        protected Policy computeValue(Class<?> messageType) {
+            return new Policy(
+                    detailsMarker.isAssignableFrom(messageType),
+                    resultMarker.isAssignableFrom(messageType),
+                    sampling.everyNthOf(messageType));
+        }
+    };
+
+    /**
+     * @param detailsMarker messages of types implementing it are logged with their toString(). Else only their type.
+     * @param resultMarker  same for their results
+     */
+    public MessageLogPolicies(Class<?> detailsMarker, Class<?> resultMarker, LogSampling sampling) {
+        this.detailsMarker = detailsMarker;
+        this.resultMarker = resultMarker;
+        this.sampling = sampling.copy();
+    }
+
+    public Policy of(Class<?> messageType) {
+        return policies.get(messageType);
+    }
+
+    public static final class Policy {
+
+        public final boolean details;
+        public final boolean result;
+        private final int everyNth;
+        private final AtomicLong seen = new AtomicLong();
+
+        private Policy(boolean details, boolean result, int everyNth) {
+            this.details = details;
+            this.result = result;
+            this.everyNth = everyNth;
+        }
+
+        /**
+         * Whether this message is one of those logged. Call it once per message.
+         */
+        public boolean sampled() {
+            return everyNth == 1 || seen.getAndIncrement() % everyNth == 0;
+        }
+    }
+}
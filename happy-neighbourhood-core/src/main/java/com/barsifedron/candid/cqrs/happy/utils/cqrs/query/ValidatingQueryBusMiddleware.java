@@ -1,6 +1,7 @@
 package com.barsifedron.candid.cqrs.happy.utils.cqrs.query;
 
 import com.barsifedron.candid.cqrs.query.Query;
+import com.barsifedron.candid.cqrs.query.QueryBatch;
 import com.barsifedron.candid.cqrs.query.QueryBus;
 import com.barsifedron.candid.cqrs.query.QueryBusMiddleware;
 
@@ -8,15 +9,26 @@ import javax.inject.Inject;
 import javax.validation.ConstraintViolation;
 import javax.validation.Validation;
 import javax.validation.Validator;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
  * A decorating command middleware that will validate all the queries that passes through it.
+ * Those of a QueryBatch too, one by one.
+ * <p>
+ * Types of queries without any constraint are found out once, then not validated at all (see ValidatingCommandBusMiddleware).
  */
 public class ValidatingQueryBusMiddleware implements QueryBusMiddleware {
 
     private final Validator validator;
+    private final ClassValue<Boolean> constrained = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> queryType) {
+            return validator.getConstraintsForClass(queryType).isBeanConstrained();
+        }
+    };
 
     @Inject
     public ValidatingQueryBusMiddleware() {
@@ -29,13 +41,25 @@ public class ValidatingQueryBusMiddleware implements QueryBusMiddleware {
 
     @Override
     public <T> T dispatch(Query<T> query, QueryBus bus) {
-        Set<ConstraintViolation<Query>> violations = validator.validate(query);
+        Set<ConstraintViolation<Query>> violations = validate(query);
+        if (query instanceof QueryBatch) {
+            violations = new HashSet<>(violations);
+            for (Object batchedQuery : ((QueryBatch<?, ?, ?>) query).queries.values()) {
+                violations.addAll(validate((Query<?>) batchedQuery));
+            }
+        }
         if (!violations.isEmpty()) {
             throw new IllegalCommandException(violations);
         }
         return bus.dispatch(query);
     }
 
+    private Set<ConstraintViolation<Query>> validate(Query<?> query) {
+        return constrained.get(query.getClass())
+                ? validator.validate((Query) query)
+                : Collections.emptySet();
+    }
+
     public static class IllegalCommandException extends RuntimeException {
         public IllegalCommandException(Set<ConstraintViolation<Query>> violations) {
             super(violations
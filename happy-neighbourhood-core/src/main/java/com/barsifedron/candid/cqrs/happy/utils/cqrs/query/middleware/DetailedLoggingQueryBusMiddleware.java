@@ -1,48 +1,69 @@
 package com.barsifedron.candid.cqrs.happy.utils.cqrs.query.middleware;
 
-import com.barsifedron.candid.cqrs.happy.utils.cqrs.command.middleware.DetailedLoggingCommandBusMiddleware;
+import com.barsifedron.candid.cqrs.happy.utils.cqrs.logging.AsyncLogWriter;
+import com.barsifedron.candid.cqrs.happy.utils.cqrs.logging.LogSampling;
+import com.barsifedron.candid.cqrs.happy.utils.cqrs.logging.MessageLogPolicies;
 import com.barsifedron.candid.cqrs.happy.utils.cqrs.query.QueryResultToLog;
 import com.barsifedron.candid.cqrs.happy.utils.cqrs.query.QueryToLog;
 import com.barsifedron.candid.cqrs.query.Query;
 import com.barsifedron.candid.cqrs.query.QueryBus;
 import com.barsifedron.candid.cqrs.query.QueryBusMiddleware;
 
+import java.util.function.Supplier;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
+/**
+ * Logs every query and its result. Same as DetailedLoggingCommandBusMiddleware: what to log of a type is worked out once,
+ * lines are built and written by the AsyncLogWriter.
+ */
 public class DetailedLoggingQueryBusMiddleware implements QueryBusMiddleware {
 
-    private final static Logger LOGGER = Logger.getLogger(DetailedLoggingCommandBusMiddleware.class.getName());
+    private final static Logger LOGGER = Logger.getLogger(DetailedLoggingQueryBusMiddleware.class.getName());
+    private final static String SOURCE = DetailedLoggingQueryBusMiddleware.class.getName();
+
+    private final AsyncLogWriter writer;
+    private final MessageLogPolicies policies;
+
+    public DetailedLoggingQueryBusMiddleware(AsyncLogWriter writer, LogSampling sampling) {
+        this.writer = writer;
+        this.policies = new MessageLogPolicies(QueryToLog.class, QueryResultToLog.class, sampling);
+    }
 
     @Override
     public <T> T dispatch(Query<T> query, QueryBus bus) {
-        logQuery(query);
+        if (!LOGGER.isLoggable(Level.INFO)) {
+            return bus.dispatch(query);
+        }
+        MessageLogPolicies.Policy policy = policies.of(query.getClass());
+        if (!policy.sampled()) {
+            return bus.dispatch(query);
+        }
+        logQuery(query, policy);
         T result = bus.dispatch(query);
-        logQueryResponse(query, result);
+        logQueryResponse(result, policy);
         return result;
     }
 
-    private <T> void logQuery(Query<T> query) {
-        boolean logQueryDetail = QueryToLog.class.isAssignableFrom(query.getClass());
-        if (logQueryDetail) {
-            LOGGER.info("\n\nProcessing query :\n" + query.toString());
-        }
-        if (!logQueryDetail) {
-            LOGGER.info("\n\nProcessing  query of type :\n" + query.getClass().getName());
+    private void logQuery(Query<?> query, MessageLogPolicies.Policy policy) {
+        if (policy.details) {
+            log(() -> "\n\nProcessing query :\n" + query);
+        } else {
+            String queryType = query.getClass().getName();
+            log(() -> "\n\nProcessing  query of type :\n" + queryType);
         }
     }
 
-    private <T> void logQueryResponse(Query<T> query, T result) {
-        if (result == null) {
-            LOGGER.info("Query response was : null");
-            return;
-        }
-        boolean logQueryResult = QueryResultToLog.class.isAssignableFrom(query.getClass());
-        if (logQueryResult) {
-            LOGGER.info("Query response was : " + result);
-        }
-        if (!logQueryResult) {
-            LOGGER.info("Query response was of type : " + result.getClass().getName());
+    private void logQueryResponse(Object result, MessageLogPolicies.Policy policy) {
+        if (policy.result || result == null) {
+            log(() -> "Query response was : " + result);
+        } else {
+            String resultType = result.getClass().getName();
+            log(() -> "Query response was of type : " + resultType);
         }
     }
 
+    private void log(Supplier<String> message) {
+        writer.log(LOGGER, Level.INFO, SOURCE, message);
+    }
 }
@@ -60,6 +60,7 @@ class RegisterNewItemCommandHandlerTest {
         CommandResponse<ItemId> commandResponse = assertDoesNotThrow(() -> handler.handle(command));
 
         assertEquals(new ItemId("hammer"), commandResponse.result);
+        assertEquals(1, commandResponse.domainEvents.size());
 
         Item hammer = items.get(new ItemId("hammer"));
 
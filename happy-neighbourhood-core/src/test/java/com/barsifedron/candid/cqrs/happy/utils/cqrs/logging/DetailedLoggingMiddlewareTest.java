@@ -0,0 +1,184 @@
+package com.barsifedron.candid.cqrs.happy.utils.cqrs.logging;
+
+import com.barsifedron.candid.cqrs.command.Command;
+import com.barsifedron.candid.cqrs.command.CommandBus;
+import com.barsifedron.candid.cqrs.command.CommandResponse;
+import com.barsifedron.candid.cqrs.domainevent.DomainEvent;
+import com.barsifedron.candid.cqrs.happy.utils.cqrs.command.CommandToLog;
+import com.barsifedron.candid.cqrs.happy.utils.cqrs.command.middleware.DetailedLoggingCommandBusMiddleware;
+import com.barsifedron.candid.cqrs.happy.utils.cqrs.domainevents.DomainEventToLog;
+import com.barsifedron.candid.cqrs.happy.utils.cqrs.query.middleware.DetailedLoggingQueryBusMiddleware;
+import com.barsifedron.candid.cqrs.query.Query;
+import com.barsifedron.candid.cqrs.query.QueryBus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DetailedLoggingMiddlewareTest {
+
+    private final Logger commandLogger = Logger.getLogger(DetailedLoggingCommandBusMiddleware.class.getName());
+    private final Logger queryLogger = Logger.getLogger(DetailedLoggingQueryBusMiddleware.class.getName());
+    private final List<LogRecord> records = new CopyOnWriteArrayList<>();
+    private final Handler capture = new Handler() {
+        @Override
+        public void publish(LogRecord record) {
+            records.add(record);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+    private final AsyncLogWriter writer = new AsyncLogWriter(100);
+
+    @BeforeEach
+    void setUp() {
+        commandLogger.addHandler(capture);
+        queryLogger.addHandler(capture);
+    }
+
+    @AfterEach
+    void tearDown() {
+        writer.close();
+        commandLogger.removeHandler(capture);
+        queryLogger.removeHandler(capture);
+    }
+
+    @Test
+    void linesAreWrittenOffTheCallingThread() {
+
+        CommandBus bus = new DetailedLoggingCommandBusMiddleware(writer, new LogSampling()).decorate(new CommandBus() {
+            @Override
+            public <T> CommandResponse<T> dispatch(Command<T> command) {
+                return (CommandResponse<T>) new CommandResponse<>("done", new Lent("saw"), new Secret());
+            }
+        });
+
+        bus.dispatch(new Lend("saw"));
+        writer.close();
+
+        assertEquals(3, records.size());
+        assertTrue(records.get(0).getMessage().contains("Lend{saw}"));
+        assertTrue(records.get(2).getMessage().contains("Lent{saw}"));
+        assertTrue(!records.get(2).getMessage().contains("s3cr3t"));
+        long callingThread = Thread.currentThread().getId();
+        records.forEach(record -> assertNotEquals(callingThread, (long) record.getThreadID()));
+    }
+
+    @Test
+    void onlyOneQueryInNIsLogged() {
+
+        QueryBus bus = new DetailedLoggingQueryBusMiddleware(writer, new LogSampling().everyNth(Read.class, 10))
+                .decorate(new QueryBus() {
+                    @Override
+                    public <T> T dispatch(Query<T> query) {
+                        return (T) "read";
+                    }
+                });
+
+        for (int i = 0; i < 25; i++) {
+            bus.dispatch(new Read());
+        }
+        writer.close();
+
+        // Query and response, for the 1st, 11th and 21st
+        assertEquals(6, records.size());
+        assertEquals(0, writer.dropped());
+    }
+
+    @Test
+    void onlyOneCommandInNOfABatchIsLogged() {
+
+        CommandBus bus = new DetailedLoggingCommandBusMiddleware(writer, new LogSampling().everyNth(Lend.class, 10))
+                .decorate(new CommandBus() {
+                    @Override
+                    public <T> CommandResponse<T> dispatch(Command<T> command) {
+                        return (CommandResponse<T>) new CommandResponse<>("done");
+                    }
+                });
+
+        bus.dispatchAll(IntStream.range(0, 25).mapToObj(i -> new Lend("saw " + i)).collect(Collectors.toList()));
+        writer.close();
+
+        // The batch, then command, response and events, for the 1st, 11th and 21st
+        assertEquals(10, records.size());
+        assertTrue(records.get(1).getMessage().contains("Lend{saw 0}"));
+        assertTrue(records.get(2).getMessage().contains("Lend{saw 10}"));
+        assertTrue(records.get(3).getMessage().contains("Lend{saw 20}"));
+    }
+
+    @Test
+    void nothingIsQueuedWhenInfoIsOff() {
+
+        Level level = queryLogger.getLevel();
+        queryLogger.setLevel(Level.WARNING);
+        try {
+            QueryBus bus = new DetailedLoggingQueryBusMiddleware(writer, new LogSampling()).decorate(new QueryBus() {
+                @Override
+                public <T> T dispatch(Query<T> query) {
+                    return (T) "read";
+                }
+            });
+            bus.dispatch(new Read());
+            assertEquals(0, writer.queued() + writer.written());
+        } finally {
+            queryLogger.setLevel(level);
+        }
+    }
+
+    static class Lend implements Command<String>, CommandToLog {
+
+        private final String item;
+
+        Lend(String item) {
+            this.item = item;
+        }
+
+        @Override
+        public String toString() {
+            return "Lend{" + item + "}";
+        }
+    }
+
+    static class Lent implements DomainEvent, DomainEventToLog {
+
+        private final String item;
+
+        Lent(String item) {
+            this.item = item;
+        }
+
+        @Override
+        public String toString() {
+            return "Lent{" + item + "}";
+        }
+    }
+
+    static class Secret implements DomainEvent {
+
+        @Override
+        public String toString() {
+            return "s3cr3t";
+        }
+    }
+
+    static class Read implements Query<String> {
+    }
+}
@@ -1,19 +1,42 @@
 package com.barsifedron.candid.cqrs.happy.shell;
 
+import com.barsifedron.candid.cqrs.command.BlockingCommandBus;
 import com.barsifedron.candid.cqrs.command.CommandBus;
+import com.barsifedron.candid.cqrs.command.IdempotentCommandBusMiddleware;
+import com.barsifedron.candid.cqrs.domainevent.DomainEventOutbox;
+import com.barsifedron.candid.cqrs.happy.command.BorrowItemCommand;
+import com.barsifedron.candid.cqrs.happy.command.RegisterNewItemCommand;
+import com.barsifedron.candid.cqrs.happy.command.RegisterNewMemberCommand;
 import com.barsifedron.candid.cqrs.happy.domain.EmailRepository;
 import com.barsifedron.candid.cqrs.happy.domain.ItemsRepository;
 import com.barsifedron.candid.cqrs.happy.domain.LoanRepository;
 import com.barsifedron.candid.cqrs.happy.domain.MembersRepository;
+import com.barsifedron.candid.cqrs.happy.domainevents.ItemBorrowedDomainEvent;
+import com.barsifedron.candid.cqrs.happy.domainevents.ItemReturnedDomainEvent;
+import com.barsifedron.candid.cqrs.happy.domainevents.NewItemRegisteredDomainEvent;
+import com.barsifedron.candid.cqrs.happy.domainevents.NewMemberRegisteredDomainEvent;
+import com.barsifedron.candid.cqrs.happy.infrastructure.HibernateDomainEventOutbox;
 import com.barsifedron.candid.cqrs.happy.infrastructure.HibernateEmailRepository;
+import com.barsifedron.candid.cqrs.happy.infrastructure.HibernateIdempotencyStore;
 import com.barsifedron.candid.cqrs.happy.infrastructure.HibernateItemRepository;
 import com.barsifedron.candid.cqrs.happy.infrastructure.HibernateLoanRepository;
 import com.barsifedron.candid.cqrs.happy.infrastructure.HibernateMemberRepository;
+import com.barsifedron.candid.cqrs.happy.query.GetItemsQuery;
+import com.barsifedron.candid.cqrs.happy.query.GetMemberQuery;
+import com.barsifedron.candid.cqrs.happy.query.GetPeriodReportQuery;
 import com.barsifedron.candid.cqrs.happy.shell.utils.cqrs.command.CommandBusFactory;
+import com.barsifedron.candid.cqrs.happy.utils.cqrs.logging.AsyncLogWriter;
+import com.barsifedron.candid.cqrs.happy.utils.cqrs.logging.LogSampling;
+import com.barsifedron.candid.cqrs.query.CachingQueryBusMiddleware;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import javax.persistence.EntityManager;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A module helping with dependency injection
@@ -41,9 +64,101 @@ public class DependencyInjection {
         return new HibernateEmailRepository(entityManager);
     }
 
+    @Bean
+    public DomainEventOutbox domainEventOutbox(
+            EntityManager entityManager,
+            ObjectMapper objectMapper,
+            @Value("${domainevents.outbox.maxAttempts:10}") int maxAttempts) {
+        return new HibernateDomainEventOutbox(entityManager, objectMapper, maxAttempts);
+    }
+
+    @Bean
+    public HibernateIdempotencyStore idempotencyStore(
+            EntityManager entityManager,
+            ObjectMapper objectMapper,
+            @Value("${commands.idempotency.store.timeToLiveHours:24}") long timeToLiveHours) {
+        return new HibernateIdempotencyStore(entityManager, objectMapper, Duration.ofHours(timeToLiveHours));
+    }
+
+    /**
+     * The clients generate the ids of what they create. A retry with the same id gets the result of the first try.
+     * Another command with the same id is rejected. The commands are told apart by their hashCode, except for loans:
+     * the hashCode of their notification enum changes with every start, and results are stored across restarts.
+     */
+    @Bean
+    public IdempotentCommandBusMiddleware idempotency(
+            HibernateIdempotencyStore idempotencyStore,
+            @Value("${commands.idempotency.store.enabled:true}") boolean storeEnabled,
+            @Value("${commands.idempotency.maximumSize:10000}") int maximumSize,
+            @Value("${commands.idempotency.timeToLiveMinutes:10}") long timeToLiveMinutes) {
+        return new IdempotentCommandBusMiddleware(
+                new IdempotentCommandBusMiddleware.Keys()
+                        .add(BorrowItemCommand.class, command -> command.loanId, command -> Objects.hash(
+                                command.loanId,
+                                command.memberId,
+                                command.itemId,
+                                command.borrowedOn,
+                                String.valueOf(command.notification)))
+                        .add(RegisterNewMemberCommand.class, command -> command.memberId)
+                        .add(RegisterNewItemCommand.class, command -> command.id),
+                storeEnabled ? idempotencyStore : null,
+                maximumSize,
+                timeToLiveMinutes,
+                TimeUnit.MINUTES);
+    }
+
+    /**
+     * Shared by both buses: the query bus caches, the command bus evicts with the events of every command.
+     * A query without an id (all items, all members) is evicted by any event about one of them.
+     */
+    @Bean
+    public CachingQueryBusMiddleware queryCache(
+            @Value("${queries.cache.maximumSize:10000}") int maximumSize,
+            @Value("${queries.cache.timeToLiveSeconds:60}") long timeToLiveSeconds) {
+        return new CachingQueryBusMiddleware(
+                new CachingQueryBusMiddleware.Rules()
+                        .cache(GetItemsQuery.class)
+                        .cache(GetMemberQuery.class)
+                        .cache(GetPeriodReportQuery.class)
+                        .evict(GetItemsQuery.class, ItemBorrowedDomainEvent.class, (query, event) -> query.itemId == null || Objects.equals(query.itemId, event.itemId))
+                        .evict(GetItemsQuery.class, ItemReturnedDomainEvent.class, (query, event) -> query.itemId == null || Objects.equals(query.itemId, event.itemId))
+                        .evict(GetItemsQuery.class, NewItemRegisteredDomainEvent.class, (query, event) -> query.itemId == null || Objects.equals(query.itemId, event.itemId))
+                        .evict(GetMemberQuery.class, ItemBorrowedDomainEvent.class, (query, event) -> query.memberId == null || Objects.equals(query.memberId, event.memberId))
+                        .evict(GetMemberQuery.class, ItemReturnedDomainEvent.class, (query, event) -> query.memberId == null || Objects.equals(query.memberId, event.memberId))
+                        .evict(GetMemberQuery.class, NewMemberRegisteredDomainEvent.class, (query, event) -> query.memberId == null || Objects.equals(query.memberId, event.memberId))
+                        .evictAll(GetPeriodReportQuery.class, ItemBorrowedDomainEvent.class)
+                        .evictAll(GetPeriodReportQuery.class, ItemReturnedDomainEvent.class),
+                maximumSize,
+                timeToLiveSeconds,
+                TimeUnit.SECONDS);
+    }
+
+    /**
+     * Writes the lines of the detailed logging middleware, off the request threads.
+     */
+    @Bean(destroyMethod = "close")
+    public AsyncLogWriter messageLogWriter(@Value("${logging.messages.queueCapacity:10000}") int queueCapacity) {
+        return new AsyncLogWriter(queueCapacity);
+    }
+
+    /**
+     * The single item and member reads are the ones sent by the thousand.
+     */
+    @Bean
+    public LogSampling messageLogSampling(
+            @Value("${logging.messages.sampling.getItems:1}") int getItemsEveryNth,
+            @Value("${logging.messages.sampling.getMember:1}") int getMemberEveryNth) {
+        return new LogSampling()
+                .everyNth(GetItemsQuery.class, getItemsEveryNth)
+                .everyNth(GetMemberQuery.class, getMemberEveryNth);
+    }
+
+    /**
+     * Commands go through the lanes. So do batches: split by lane, one transaction per lane.
+     */
     @Bean
     public CommandBus commandBus(CommandBusFactory factory) {
-        return factory.simpleBus();
+        return new BlockingCommandBus(factory.partitionedBus());
     }
 
 }
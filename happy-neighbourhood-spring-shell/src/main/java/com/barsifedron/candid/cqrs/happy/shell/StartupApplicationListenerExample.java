@@ -13,6 +13,7 @@ import org.springframework.stereotype.Component;
 import javax.inject.Inject;
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.Arrays;
 
 @Component
 public class StartupApplicationListenerExample implements
@@ -29,17 +30,14 @@ public class StartupApplicationListenerExample implements
     @Override
     public void onApplicationEvent(ContextRefreshedEvent event) {
 
-        commandBusFactory.simpleBus().dispatch(
+        commandBusFactory.simpleBus().dispatchAll(Arrays.asList(
                 RegisterNewMemberCommand
                         .builder()
                         .memberId("john")
                         .firstname("the")
                         .surname("first")
                         .email("the.first@email.com")
-                        .build()
-        );
-
-        commandBusFactory.simpleBus().dispatch(
+                        .build(),
                 RegisterNewItemCommand
                         .builder()
                         .id("hammerId")
@@ -48,7 +46,11 @@ public class StartupApplicationListenerExample implements
                         .dailyFineWhenLateReturn(new BigDecimal("2.00"))
                         .maximumLoanPeriod(14)
                         .build()
-        );
+        )).forEach(response -> {
+            if (!response.succeeded()) {
+                throw response.failure;
+            }
+        });
 
         commandBusFactory.simpleBus().dispatch(
                 BorrowItemCommand
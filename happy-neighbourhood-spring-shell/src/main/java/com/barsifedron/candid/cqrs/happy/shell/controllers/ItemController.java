@@ -2,28 +2,46 @@ package com.barsifedron.candid.cqrs.happy.shell.controllers;
 
 import com.barsifedron.candid.cqrs.command.CommandBus;
 import com.barsifedron.candid.cqrs.command.CommandResponse;
+import com.barsifedron.candid.cqrs.command.IdempotentCommandBusMiddleware;
 import com.barsifedron.candid.cqrs.command.NoResult;
+import com.barsifedron.candid.cqrs.command.PartitionedCommandBus;
+import com.barsifedron.candid.cqrs.deadline.Deadline;
 import com.barsifedron.candid.cqrs.happy.command.RegisterNewItemCommand;
 import com.barsifedron.candid.cqrs.happy.command.RegisterNewItemCommandHandler;
 import com.barsifedron.candid.cqrs.happy.command.ReturnItemCommand;
 import com.barsifedron.candid.cqrs.happy.domain.ItemId;
 import com.barsifedron.candid.cqrs.happy.query.GetItemsQuery;
 import com.barsifedron.candid.cqrs.happy.query.GetItemsQueryHandler;
+import com.barsifedron.candid.cqrs.happy.query.PageCursor;
+import com.barsifedron.candid.cqrs.happy.query.StreamItemsQuery;
 import com.barsifedron.candid.cqrs.happy.shell.utils.cqrs.query.QueryBusFactory;
+import com.barsifedron.candid.cqrs.happy.shell.utils.cqrs.query.StreamQueryResponses;
 import com.barsifedron.candid.cqrs.happy.utils.cqrs.command.middleware.ValidatingCommandBusMiddleware;
+import com.barsifedron.candid.cqrs.happy.utils.cqrs.query.ValidatingQueryBusMiddleware;
+import com.barsifedron.candid.cqrs.limit.AdaptiveConcurrencyLimit;
+import com.barsifedron.candid.cqrs.query.QueryBatcher;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.inject.Inject;
+import javax.persistence.QueryTimeoutException;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static java.util.stream.Collectors.toList;
 
 @RestController
 @RequestMapping("/items")
@@ -31,13 +49,16 @@ public class ItemController {
 
     private final CommandBus commandBus;
     private final QueryBusFactory queryBusFactory;
+    private final StreamQueryResponses streamQueryResponses;
 
     @Inject
     public ItemController(
             CommandBus commandBus,
-            QueryBusFactory queryBusFactory) {
+            QueryBusFactory queryBusFactory,
+            StreamQueryResponses streamQueryResponses) {
         this.commandBus = commandBus;
         this.queryBusFactory = queryBusFactory;
+        this.streamQueryResponses = streamQueryResponses;
     }
 
     @RequestMapping(method = RequestMethod.POST)
@@ -65,14 +86,54 @@ public class ItemController {
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
+    /**
+     * Every item, written as it is read. None is held in memory longer than it takes to write it.
+     */
     @RequestMapping(method = RequestMethod.GET)
-    public ResponseEntity<List<GetItemsQueryHandler.ItemDto>> getItems() {
+    public ResponseEntity<StreamingResponseBody> getItems() {
+        return ResponseEntity
+                .ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(streamQueryResponses.jsonArray(new StreamItemsQuery()));
+    }
 
-        List<GetItemsQueryHandler.ItemDto> dtos = queryBusFactory.simpleBus().dispatch(GetItemsQuery
+    /**
+     * One page of items, the latest first.
+     * When the page is full, the cursor of the next one comes in the X-Next-Page-Cursor header: pass it as "after".
+     */
+    @RequestMapping(method = RequestMethod.GET, params = "pageSize")
+    public ResponseEntity<List<GetItemsQueryHandler.ItemDto>> getItemsPage(
+            @RequestParam int pageSize,
+            @RequestParam(required = false) String after) {
+
+        List<GetItemsQueryHandler.ItemDto> page = queryBusFactory.simpleBus().dispatch(GetItemsQuery
                 .builder()
+                .pageSize(pageSize)
+                .after(after)
                 .build());
 
-        return new ResponseEntity(dtos, HttpStatus.OK);
+        HttpHeaders headers = new HttpHeaders();
+        if (page.size() == pageSize) {
+            headers.set("X-Next-Page-Cursor", GetItemsQueryHandler.cursorAfter(page.get(page.size() - 1)));
+        }
+        return new ResponseEntity<>(page, headers, HttpStatus.OK);
+    }
+
+    /**
+     * The items of these ids, in that order. Those not found are left out.
+     * Loaded through a QueryBatcher: one query for them all, not one per id.
+     */
+    @RequestMapping(method = RequestMethod.GET, params = "ids")
+    public ResponseEntity<List<GetItemsQueryHandler.ItemDto>> getItemsById(@RequestParam List<String> ids) {
+        QueryBatcher batcher = queryBusFactory.batcher();
+        List<CompletableFuture<List<GetItemsQueryHandler.ItemDto>>> items = ids
+                .stream()
+                .map(itemId -> batcher.load(GetItemsQuery.builder().itemId(itemId).build()))
+                .collect(toList());
+        batcher.dispatch();
+        return new ResponseEntity<>(
+                items.stream().flatMap(item -> resultOf(item).stream()).collect(toList()),
+                HttpStatus.OK);
     }
 
     @RequestMapping(method = RequestMethod.GET, path = "/{itemId}")
@@ -88,11 +149,26 @@ public class ItemController {
         return dtos.stream().findFirst().orElse(null);
     }
 
+    /**
+     * Failures come out as the handler threw them, for the exception handlers below
+     */
+    private static <T> T resultOf(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
     //
     // Spring handling of errors is pretty bad
     //
 
-    @ExceptionHandler(value = { ValidatingCommandBusMiddleware.IllegalCommandException.class })
+    @ExceptionHandler(value = {
+            ValidatingCommandBusMiddleware.IllegalCommandException.class,
+            ValidatingQueryBusMiddleware.IllegalCommandException.class,
+            PageCursor.InvalidPageCursorException.class,
+            IdempotentCommandBusMiddleware.IdempotencyKeyReusedException.class })
     public void onValidationExceptions(RuntimeException e, HttpServletResponse response) throws IOException {
         response.sendError(HttpStatus.BAD_REQUEST.value(), e.getMessage());
     }
@@ -101,4 +177,13 @@ public class ItemController {
     public void onRegisterItemExceptions(RuntimeException e, HttpServletResponse response) throws IOException {
         response.sendError(HttpStatus.BAD_REQUEST.value(), e.getMessage());
     }
+
+    @ExceptionHandler(value = {
+            PartitionedCommandBus.CommandRejectedException.class,
+            AdaptiveConcurrencyLimit.LimitExceededException.class,
+            Deadline.DeadlineExceededException.class,
+            QueryTimeoutException.class })
+    public void onRejectedMessages(RuntimeException e, HttpServletResponse response) throws IOException {
+        response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), e.getMessage());
+    }
 }
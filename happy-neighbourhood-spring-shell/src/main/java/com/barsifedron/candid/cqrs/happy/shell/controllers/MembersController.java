@@ -2,6 +2,9 @@ package com.barsifedron.candid.cqrs.happy.shell.controllers;
 
 import com.barsifedron.candid.cqrs.command.CommandBus;
 import com.barsifedron.candid.cqrs.command.CommandResponse;
+import com.barsifedron.candid.cqrs.command.IdempotentCommandBusMiddleware;
+import com.barsifedron.candid.cqrs.command.PartitionedCommandBus;
+import com.barsifedron.candid.cqrs.deadline.Deadline;
 import com.barsifedron.candid.cqrs.happy.command.BorrowItemCommand;
 import com.barsifedron.candid.cqrs.happy.command.BorrowItemCommandHandler;
 import com.barsifedron.candid.cqrs.happy.command.RegisterNewMemberCommand;
@@ -11,24 +14,40 @@ import com.barsifedron.candid.cqrs.happy.domain.LoanRepository;
 import com.barsifedron.candid.cqrs.happy.domain.MemberId;
 import com.barsifedron.candid.cqrs.happy.query.GetMemberQuery;
 import com.barsifedron.candid.cqrs.happy.query.GetMemberQueryHandler;
+import com.barsifedron.candid.cqrs.happy.query.PageCursor;
+import com.barsifedron.candid.cqrs.happy.query.StreamMembersQuery;
 import com.barsifedron.candid.cqrs.happy.shell.utils.cqrs.query.QueryBusFactory;
+import com.barsifedron.candid.cqrs.happy.shell.utils.cqrs.query.StreamQueryResponses;
 import com.barsifedron.candid.cqrs.happy.utils.cqrs.command.middleware.ValidatingCommandBusMiddleware;
+import com.barsifedron.candid.cqrs.happy.utils.cqrs.query.ValidatingQueryBusMiddleware;
+import com.barsifedron.candid.cqrs.limit.AdaptiveConcurrencyLimit;
+import com.barsifedron.candid.cqrs.query.QueryBatcher;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.inject.Inject;
+import javax.persistence.QueryTimeoutException;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static java.util.stream.Collectors.toList;
 
 @RestController
 @RequestMapping("/members")
@@ -37,14 +56,17 @@ public class MembersController {
     private final CommandBus commandBus;
     private final QueryBusFactory queryBusFactory;
     private final LoanRepository loanRepository;
+    private final StreamQueryResponses streamQueryResponses;
 
     @Inject
     public MembersController(CommandBus commandBus,
             QueryBusFactory queryBusFactory,
-            LoanRepository loanRepository) {
+            LoanRepository loanRepository,
+            StreamQueryResponses streamQueryResponses) {
         this.commandBus = commandBus;
         this.queryBusFactory = queryBusFactory;
         this.loanRepository = loanRepository;
+        this.streamQueryResponses = streamQueryResponses;
     }
 
     @RequestMapping(method = RequestMethod.POST)
@@ -76,13 +98,54 @@ public class MembersController {
         return new ResponseEntity<>(commandResponse.result.asString(), HttpStatus.CREATED);
     }
 
-    @ResponseBody
+    /**
+     * Every member, written as it is read. None is held in memory longer than it takes to write it.
+     */
     @RequestMapping(method = RequestMethod.GET)
-    public ResponseEntity<List<GetMemberQueryHandler.MemberDto>> getMembers() {
-        Collection<GetMemberQueryHandler.MemberDto> dtos = queryBusFactory
-                .simpleBus()
-                .dispatch(GetMemberQuery.builder().build());
-        return new ResponseEntity(dtos, HttpStatus.OK);
+    public ResponseEntity<StreamingResponseBody> getMembers() {
+        return ResponseEntity
+                .ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(streamQueryResponses.jsonArray(new StreamMembersQuery()));
+    }
+
+    /**
+     * One page of members, the latest registered first.
+     * When the page is full, the cursor of the next one comes in the X-Next-Page-Cursor header: pass it as "after".
+     */
+    @RequestMapping(method = RequestMethod.GET, params = "pageSize")
+    public ResponseEntity<List<GetMemberQueryHandler.MemberDto>> getMembersPage(
+            @RequestParam int pageSize,
+            @RequestParam(required = false) String after) {
+
+        List<GetMemberQueryHandler.MemberDto> page = new ArrayList<>(queryBusFactory.simpleBus().dispatch(GetMemberQuery
+                .builder()
+                .pageSize(pageSize)
+                .after(after)
+                .build()));
+
+        HttpHeaders headers = new HttpHeaders();
+        if (page.size() == pageSize) {
+            headers.set("X-Next-Page-Cursor", GetMemberQueryHandler.cursorAfter(page.get(page.size() - 1)));
+        }
+        return new ResponseEntity<>(page, headers, HttpStatus.OK);
+    }
+
+    /**
+     * The members of these ids, in that order. Those not found are left out.
+     * Loaded through a QueryBatcher: one query for them all, not one per id.
+     */
+    @RequestMapping(method = RequestMethod.GET, params = "ids")
+    public ResponseEntity<List<GetMemberQueryHandler.MemberDto>> getMembersById(@RequestParam List<String> ids) {
+        QueryBatcher batcher = queryBusFactory.batcher();
+        List<CompletableFuture<Collection<GetMemberQueryHandler.MemberDto>>> members = ids
+                .stream()
+                .map(memberId -> batcher.load(GetMemberQuery.builder().memberId(memberId).build()))
+                .collect(toList());
+        batcher.dispatch();
+        return new ResponseEntity<>(
+                members.stream().flatMap(member -> resultOf(member).stream()).collect(toList()),
+                HttpStatus.OK);
     }
 
     @ResponseBody
@@ -100,11 +163,26 @@ public class MembersController {
         return dtos.stream().findFirst().orElse(null);
     }
 
+    /**
+     * Failures come out as the handler threw them, for the exception handlers below
+     */
+    private static <T> T resultOf(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
     //
     // Spring handling of errors is pretty bad
     //
 
-    @ExceptionHandler(value = { ValidatingCommandBusMiddleware.IllegalCommandException.class })
+    @ExceptionHandler(value = {
+            ValidatingCommandBusMiddleware.IllegalCommandException.class,
+            ValidatingQueryBusMiddleware.IllegalCommandException.class,
+            PageCursor.InvalidPageCursorException.class,
+            IdempotentCommandBusMiddleware.IdempotencyKeyReusedException.class })
     public void onValidationExceptions(RuntimeException e, HttpServletResponse response) throws IOException {
         response.sendError(HttpStatus.BAD_REQUEST.value(), e.getMessage());
     }
@@ -125,4 +203,13 @@ public class MembersController {
     public void onBorrowItemException(RuntimeException e, HttpServletResponse response) throws IOException {
         response.sendError(HttpStatus.BAD_REQUEST.value(), e.getMessage());
     }
+
+    @ExceptionHandler(value = {
+            PartitionedCommandBus.CommandRejectedException.class,
+            AdaptiveConcurrencyLimit.LimitExceededException.class,
+            Deadline.DeadlineExceededException.class,
+            QueryTimeoutException.class })
+    public void onRejectedMessages(RuntimeException e, HttpServletResponse response) throws IOException {
+        response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), e.getMessage());
+    }
 }
@@ -0,0 +1,61 @@
+package com.barsifedron.candid.cqrs.happy.shell.controllers;
+
+import com.barsifedron.candid.cqrs.happy.shell.utils.cqrs.command.CommandBusFactory;
+import com.barsifedron.candid.cqrs.happy.shell.utils.cqrs.metrics.BusesMetrics;
+import com.barsifedron.candid.cqrs.happy.shell.utils.cqrs.query.QueryBusFactory;
+import com.barsifedron.candid.cqrs.metrics.MessageTypeStats;
+import com.barsifedron.candid.cqrs.metrics.PipelineProfile;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.inject.Inject;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/metrics")
+public class MetricsController {
+
+    private final BusesMetrics busesMetrics;
+    private final CommandBusFactory commandBusFactory;
+    private final QueryBusFactory queryBusFactory;
+
+    @Inject
+    public MetricsController(BusesMetrics busesMetrics, CommandBusFactory commandBusFactory, QueryBusFactory queryBusFactory) {
+        this.busesMetrics = busesMetrics;
+        this.commandBusFactory = commandBusFactory;
+        this.queryBusFactory = queryBusFactory;
+    }
+
+    /**
+     * Latencies (in nanoseconds) and outcomes of every type of message, by bus. The same as in the MBeans.
+     */
+    @RequestMapping(method = RequestMethod.GET)
+    public Map<String, List<MessageTypeStats>> getMetrics() {
+        Map<String, List<MessageTypeStats>> metrics = new LinkedHashMap<>();
+        metrics.put(busesMetrics.commands.getName(), busesMetrics.commands.getMessageTypes());
+        metrics.put(busesMetrics.queries.getName(), busesMetrics.queries.getMessageTypes());
+        metrics.put(busesMetrics.domainEvents.getName(), busesMetrics.domainEvents.getMessageTypes());
+        return metrics;
+    }
+
+    /**
+     * The time (in nanoseconds) each middleware of the command and query buses took, without the ones further down,
+     * by type of message. Empty unless pipelines.profiled is set.
+     */
+    @RequestMapping(value = "/pipelines", method = RequestMethod.GET)
+    public Map<String, List<PipelineProfile.MessageTypeProfile>> getPipelineProfiles() {
+        Map<String, List<PipelineProfile.MessageTypeProfile>> profiles = new LinkedHashMap<>();
+        PipelineProfile commands = commandBusFactory.pipelineProfile();
+        if (commands != null) {
+            profiles.put(busesMetrics.commands.getName(), commands.report());
+        }
+        PipelineProfile queries = queryBusFactory.pipelineProfile();
+        if (queries != null) {
+            profiles.put(busesMetrics.queries.getName(), queries.report());
+        }
+        return profiles;
+    }
+}
@@ -1,19 +1,25 @@
 package com.barsifedron.candid.cqrs.happy.shell.controllers;
 
-import com.barsifedron.candid.cqrs.happy.query.GetItemsQueryHandler;
+import com.barsifedron.candid.cqrs.deadline.Deadline;
 import com.barsifedron.candid.cqrs.happy.query.GetPeriodReportQuery;
 import com.barsifedron.candid.cqrs.happy.query.GetPeriodReportQueryHandler;
 import com.barsifedron.candid.cqrs.happy.shell.utils.cqrs.query.QueryBusFactory;
+import com.barsifedron.candid.cqrs.limit.AdaptiveConcurrencyLimit;
+import com.barsifedron.candid.cqrs.query.LanedQueryBus;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import javax.inject.Inject;
+import javax.persistence.QueryTimeoutException;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.time.LocalDate;
-import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/reports")
@@ -26,18 +32,32 @@ public class ReportsController {
         this.queryBusFactory = queryBusFactory;
     }
 
+    /**
+     * Reports can take a while. They run on the batch lane of the async bus, so the request thread does not wait for them,
+     * and the quick reads do not wait behind them.
+     */
     @RequestMapping(method = RequestMethod.GET)
-    public ResponseEntity<List<GetItemsQueryHandler.ItemDto>> getReports(
+    public CompletableFuture<ResponseEntity<GetPeriodReportQueryHandler.ReportDto>> getReports(
             @RequestParam String periodStartDate,
             @RequestParam String periodEndDate) {
 
-        GetPeriodReportQueryHandler.ReportDto reportDto = queryBusFactory.simpleBus().dispatch(GetPeriodReportQuery
-                .builder()
-                .periodStartDate(LocalDate.parse(periodStartDate))
-                .periodEndDate(LocalDate.parse(periodEndDate))
-                .build());
+        return queryBusFactory
+                .asyncBus()
+                .dispatch(GetPeriodReportQuery
+                        .builder()
+                        .periodStartDate(LocalDate.parse(periodStartDate))
+                        .periodEndDate(LocalDate.parse(periodEndDate))
+                        .build())
+                .thenApply(reportDto -> new ResponseEntity<>(reportDto, HttpStatus.OK));
+    }
 
-        return new ResponseEntity(reportDto, HttpStatus.OK);
+    @ExceptionHandler(value = {
+            AdaptiveConcurrencyLimit.LimitExceededException.class,
+            LanedQueryBus.QueryRejectedException.class,
+            Deadline.DeadlineExceededException.class,
+            QueryTimeoutException.class })
+    public void onRejectedQueries(RuntimeException e, HttpServletResponse response) throws IOException {
+        response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), e.getMessage());
     }
 
 }
@@ -1,24 +1,56 @@
 package com.barsifedron.candid.cqrs.happy.shell.utils.cqrs.command;
 
+import com.barsifedron.candid.cqrs.command.BatchedCommandResponse;
+import com.barsifedron.candid.cqrs.command.ClassValueCommandBus;
+import com.barsifedron.candid.cqrs.command.Command;
 import com.barsifedron.candid.cqrs.command.CommandBus;
 import com.barsifedron.candid.cqrs.command.CommandBusMiddleware;
-import com.barsifedron.candid.cqrs.command.MapCommandBus;
+import com.barsifedron.candid.cqrs.command.CommandBusPipeline;
+import com.barsifedron.candid.cqrs.command.CommandResponse;
+import com.barsifedron.candid.cqrs.command.DeadlineCommandBusMiddleware;
+import com.barsifedron.candid.cqrs.command.IdempotentCommandBusMiddleware;
+import com.barsifedron.candid.cqrs.command.MetricsCommandBusMiddleware;
+import com.barsifedron.candid.cqrs.command.PartitionedCommandBus;
 import com.barsifedron.candid.cqrs.command.middleware.DomainEventsDispatcher;
+import com.barsifedron.candid.cqrs.command.middleware.DomainEventsToOutbox;
+import com.barsifedron.candid.cqrs.domainevent.AfterCommitDomainEventBusMiddleware;
+import com.barsifedron.candid.cqrs.domainevent.DomainEvent;
 import com.barsifedron.candid.cqrs.domainevent.DomainEventBus;
-import com.barsifedron.candid.cqrs.domainevent.DomainEventBusMiddleware;
+import com.barsifedron.candid.cqrs.domainevent.DomainEventBusPipeline;
+import com.barsifedron.candid.cqrs.domainevent.DomainEventHandler;
+import com.barsifedron.candid.cqrs.domainevent.DomainEventOutbox;
+import com.barsifedron.candid.cqrs.domainevent.DomainEventPhase;
 import com.barsifedron.candid.cqrs.domainevent.MapDomainEventBus;
+import com.barsifedron.candid.cqrs.domainevent.MetricsDomainEventBusMiddleware;
+import com.barsifedron.candid.cqrs.domainevent.ParallelDomainEventBus;
+import com.barsifedron.candid.cqrs.happy.command.BorrowItemCommand;
+import com.barsifedron.candid.cqrs.happy.command.ReturnItemCommand;
 import com.barsifedron.candid.cqrs.happy.shell.utils.cqrs.command.middleware.WithErrorLogCommandBusMiddleware;
-import com.barsifedron.candid.cqrs.happy.shell.utils.cqrs.command.middleware.WithExecutionDurationLogging;
+import com.barsifedron.candid.cqrs.happy.shell.utils.cqrs.domainevents.TransactionSynchronizationAfterCommitQueue;
+import com.barsifedron.candid.cqrs.happy.shell.utils.cqrs.metrics.BusesMetrics;
 import com.barsifedron.candid.cqrs.happy.utils.cqrs.command.middleware.DetailedLoggingCommandBusMiddleware;
 import com.barsifedron.candid.cqrs.happy.utils.cqrs.command.middleware.ValidatingCommandBusMiddleware;
+import com.barsifedron.candid.cqrs.happy.utils.cqrs.logging.AsyncLogWriter;
+import com.barsifedron.candid.cqrs.happy.utils.cqrs.logging.LogSampling;
+import com.barsifedron.candid.cqrs.metrics.PipelineProfile;
+import com.barsifedron.candid.cqrs.query.CachingQueryBusMiddleware;
 import com.barsifedron.candid.cqrs.spring.CommandHandlersRegistry;
 import com.barsifedron.candid.cqrs.spring.DomainEventHandlersRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.beans.factory.config.ConfigurableBeanFactory;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Scope;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 @Component
 @Scope(value = ConfigurableBeanFactory.SCOPE_SINGLETON)
@@ -27,11 +59,37 @@ public class CommandBusFactory {
     private CommandHandlersRegistry commandHandlersRegistry;
     private DomainEventHandlersRegistry domainEventHandlersRegistry;
     private TransactionalCommandBusMiddleware transactionalCommandBusMiddleware;
+    private TaskExecutor taskExecutor;
+    private PlatformTransactionManager transactionManager;
+    private DomainEventOutbox domainEventOutbox;
+    private boolean outboxEnabled;
+    private CachingQueryBusMiddleware queryCache;
+    private BusesMetrics metrics;
+    private boolean profiled;
+    private DeadlineCommandBusMiddleware deadlines;
+    private IdempotentCommandBusMiddleware idempotency;
+    private AsyncLogWriter logWriter;
+    private LogSampling logSampling;
+    private DomainEventBus domainEventBus;
+    private CommandBusPipeline simpleBus;
+    private PartitionedCommandBus partitionedBus;
 
     @Inject
     public CommandBusFactory(
             ApplicationContext applicationContext,
-            TransactionalCommandBusMiddleware transactionalCommandBusMiddleware) {
+            TransactionalCommandBusMiddleware transactionalCommandBusMiddleware,
+            TaskExecutor taskExecutor,
+            PlatformTransactionManager transactionManager,
+            DomainEventOutbox domainEventOutbox,
+            @Value("${domainevents.outbox.enabled:false}") boolean outboxEnabled,
+            CachingQueryBusMiddleware queryCache,
+            BusesMetrics metrics,
+            @Value("${pipelines.profiled:false}") boolean profiled,
+            @Value("${commands.deadline.defaultTimeoutMillis:30000}") long defaultTimeoutMillis,
+            @Value("${commands.deadline.minimumBudgetMillis:10}") long minimumBudgetMillis,
+            IdempotentCommandBusMiddleware idempotency,
+            AsyncLogWriter logWriter,
+            LogSampling logSampling) {
 
         this.domainEventHandlersRegistry = new DomainEventHandlersRegistry(
                 applicationContext,
@@ -43,27 +101,137 @@ public class CommandBusFactory {
                 "com.barsifedron.candid.cqrs.happy",
                 "com.barsifedron.candid.cqrs.springboot.app");
         this.transactionalCommandBusMiddleware = transactionalCommandBusMiddleware;
+        this.taskExecutor = taskExecutor;
+        this.transactionManager = transactionManager;
+        this.domainEventOutbox = domainEventOutbox;
+        this.outboxEnabled = outboxEnabled;
+        this.queryCache = queryCache;
+        this.metrics = metrics;
+        this.profiled = profiled;
+        this.deadlines = new DeadlineCommandBusMiddleware(defaultTimeoutMillis, minimumBudgetMillis, TimeUnit.MILLISECONDS);
+        this.idempotency = idempotency;
+        this.logWriter = logWriter;
+        this.logSampling = logSampling;
     }
 
-    public CommandBus simpleBus() {
+    /**
+     * The bus is built on first use and then reused. No need to put the chain back together on every request.
+     */
+    public synchronized CommandBus simpleBus() {
+        if (simpleBus == null) {
+            simpleBus = buildSimpleBus();
+        }
+        return simpleBus;
+    }
+
+    /**
+     * Where the time of the simple bus goes, stage by stage. Null unless pipelines.profiled is set.
+     */
+    public PipelineProfile pipelineProfile() {
+        simpleBus();
+        return simpleBus.profile();
+    }
+
+    /**
+     * The simple bus, behind one lane per core. Commands touching the same item are handled one after the other,
+     * so two loans of the same item can not race. Everything else goes straight through.
+     */
+    public synchronized PartitionedCommandBus partitionedBus() {
+        if (partitionedBus == null) {
+            partitionedBus = new PartitionedCommandBus(
+                    simpleBus(),
+                    new PartitionedCommandBus.Keys()
+                            .add(BorrowItemCommand.class, command -> command.itemId)
+                            .add(ReturnItemCommand.class, command -> command.itemId),
+                    Runtime.getRuntime().availableProcessors(),
+                    1000,
+                    1,
+                    TimeUnit.SECONDS);
+        }
+        return partitionedBus;
+    }
+
+    /**
+     * Every handler, within the transaction of the caller: the one of the outbox relay.
+     * Handlers writing within the transaction of the caller are SequentialDomainEventHandler(s). The others run in parallel.
+     */
+    public synchronized DomainEventBus domainEventBus() {
+        if (domainEventBus == null) {
+            domainEventBus = DomainEventBusPipeline.compile(
+                    new ParallelDomainEventBus(taskExecutor, domainEventHandlersRegistry.handlers()),
+                    new MetricsDomainEventBusMiddleware(metrics.domainEvents));
+        }
+        return domainEventBus;
+    }
 
-        CommandBusMiddleware transactionalMiddleware = transactionalMiddleware();
+    @PreDestroy
+    public synchronized void shutdown() throws InterruptedException {
+        if (partitionedBus != null) {
+            partitionedBus.shutdown();
+            partitionedBus.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    private CommandBusPipeline buildSimpleBus() {
 
-        DomainEventBus domainEventBus = new MapDomainEventBus(domainEventHandlersRegistry.handlers());
+        CommandBusMiddleware transactionalMiddleware = new InTransaction();
 
-        return CommandBusMiddleware
-                .compositeOf(
-                        new WithErrorLogCommandBusMiddleware(),
-                        new WithExecutionDurationLogging(),
-                        new DetailedLoggingCommandBusMiddleware(),
-                        new ValidatingCommandBusMiddleware(),
-                        transactionalMiddleware,
-                        new DomainEventsDispatcher(domainEventBus))
-                .decorate(new MapCommandBus(commandHandlersRegistry.handlers()));
+        // With the outbox, the events are only stored by the command transaction. See DomainEventOutboxRelayScheduler.
+        CommandBusMiddleware domainEvents = outboxEnabled
+                ? new DomainEventsToOutbox(domainEventOutbox)
+                : new DomainEventsDispatcher(inTransactionThenAfterCommitBus());
+
+        List<CommandBusMiddleware> middlewares = Arrays.asList(
+                new WithErrorLogCommandBusMiddleware(),
+                new MetricsCommandBusMiddleware(metrics.commands),
+                deadlines,
+                // Retries are answered before validation and the database
+                idempotency,
+                new DetailedLoggingCommandBusMiddleware(logWriter, logSampling),
+                new ValidatingCommandBusMiddleware(),
+                // Outside of the transaction: cached queries are evicted once the changes are committed
+                queryCache.evictingCommandBusMiddleware(),
+                transactionalMiddleware,
+                // The result is stored along with what the command wrote
+                idempotency.recordingCommandBusMiddleware(),
+                domainEvents);
+        CommandBus handlers = new ClassValueCommandBus(commandHandlersRegistry.handlers());
+        return profiled
+                ? CommandBusPipeline.compileProfiled(handlers, middlewares)
+                : CommandBusPipeline.compile(handlers, middlewares);
     }
 
-    private CommandBusMiddleware transactionalMiddleware() {
-        return transactionalCommandBusMiddleware::runInTransaction;
+    /**
+     * Without the outbox, the events are handled within the command transaction.
+     * All but the AfterCommitDomainEventHandler(s), which wait for the commit before they run (and for nothing on rollback).
+     */
+    private DomainEventBus inTransactionThenAfterCommitBus() {
+        Map<Class<DomainEvent>, List<Supplier<DomainEventHandler>>> handlers = domainEventHandlersRegistry.handlers();
+        TransactionSynchronizationAfterCommitQueue afterCommitQueue = new TransactionSynchronizationAfterCommitQueue(
+                new MapDomainEventBus(DomainEventPhase.AFTER_COMMIT.select(handlers)),
+                taskExecutor,
+                transactionManager);
+        return DomainEventBusPipeline.compile(
+                new ParallelDomainEventBus(taskExecutor, DomainEventPhase.IN_TRANSACTION.select(handlers)),
+                // The in transaction handlers only. Those after commit run later, on their own
+                new AfterCommitDomainEventBusMiddleware(afterCommitQueue),
+                new MetricsDomainEventBusMiddleware(metrics.domainEvents));
+    }
+
+    /**
+     * Named, so that it shows as such in the pipeline profile.
+     */
+    private class InTransaction implements CommandBusMiddleware {
+
+        @Override
+        public <T> CommandResponse<T> dispatch(Command<T> command, CommandBus next) {
+            return transactionalCommandBusMiddleware.runInTransaction(command, next);
+        }
+
+        @Override
+        public List<BatchedCommandResponse<?>> dispatchAll(List<? extends Command<?>> commands, CommandBus next) {
+            return transactionalCommandBusMiddleware.runAllInTransaction(commands, next);
+        }
     }
 
 }
@@ -0,0 +1,41 @@
+package com.barsifedron.candid.cqrs.happy.shell.utils.cqrs.command;
+
+import com.barsifedron.candid.cqrs.happy.infrastructure.HibernateIdempotencyStore;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.inject.Inject;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Deletes the results of the commands kept for longer than their time to live. Every ten minutes or so.
+ */
+@Component
+@ConditionalOnProperty(name = "commands.idempotency.store.enabled", havingValue = "true", matchIfMissing = true)
+public class IdempotencyStorePurgeScheduler {
+
+    private final static Logger LOGGER = Logger.getLogger(IdempotencyStorePurgeScheduler.class.getName());
+
+    private final HibernateIdempotencyStore store;
+    private final TransactionTemplate transactionTemplate;
+
+    @Inject
+    public IdempotencyStorePurgeScheduler(HibernateIdempotencyStore store, PlatformTransactionManager transactionManager) {
+        this.store = store;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(fixedDelayString = "${commands.idempotency.store.purgeDelayMillis:600000}")
+    public void removeExpired() {
+        try {
+            Long removed = transactionTemplate.execute(status -> store.removeExpired());
+            LOGGER.fine(() -> "Removed " + removed + " expired idempotency records");
+        } catch (RuntimeException exception) {
+            LOGGER.log(Level.WARNING, "Failed to remove expired idempotency records. Will retry.", exception);
+        }
+    }
+}
@@ -1,12 +1,17 @@
 package com.barsifedron.candid.cqrs.happy.shell.utils.cqrs.command;
 
+import com.barsifedron.candid.cqrs.command.BatchedCommandResponse;
 import com.barsifedron.candid.cqrs.command.Command;
 import com.barsifedron.candid.cqrs.command.CommandBus;
 import com.barsifedron.candid.cqrs.command.CommandBusMiddleware;
 import com.barsifedron.candid.cqrs.command.CommandResponse;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
 
 import javax.transaction.Transactional;
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
 
 @Component
 public class TransactionalCommandBusMiddleware implements CommandBusMiddleware {
@@ -27,4 +32,34 @@ public class TransactionalCommandBusMiddleware implements CommandBusMiddleware {
         return next.dispatch(command);
     }
 
+    /**
+     * The whole batch runs in one single transaction, and commits once.
+     * <p>
+     * It is all or nothing: if one of the commands failed, the transaction is rolled back
+     * and the commands that had succeeded are reported as failed too, with a BatchRolledBackException.
+     * Invalid commands are usually filtered out before reaching this point (see the validating middleware),
+     * so they do not bring the others down with them.
+     */
+    @Transactional
+    public List<BatchedCommandResponse<?>> runAllInTransaction(List<? extends Command<?>> commands, CommandBus next) {
+        List<BatchedCommandResponse<?>> responses = next.dispatchAll(commands);
+        boolean allSucceeded = responses.stream().allMatch(BatchedCommandResponse::succeeded);
+        if (allSucceeded) {
+            return responses;
+        }
+        TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+        return responses
+                .stream()
+                .map(response -> response.succeeded()
+                        ? response.failedWith(new BatchRolledBackException())
+                        : response)
+                .collect(toList());
+    }
+
+    public static class BatchRolledBackException extends RuntimeException {
+        public BatchRolledBackException() {
+            super("Another command of the batch failed. The whole batch was rolled back.");
+        }
+    }
+
 }
@@ -1,10 +1,12 @@
 package com.barsifedron.candid.cqrs.happy.shell.utils.cqrs.command.middleware;
 
+import com.barsifedron.candid.cqrs.command.BatchedCommandResponse;
 import com.barsifedron.candid.cqrs.command.Command;
 import com.barsifedron.candid.cqrs.command.CommandBus;
 import com.barsifedron.candid.cqrs.command.CommandBusMiddleware;
 import com.barsifedron.candid.cqrs.command.CommandResponse;
 
+import java.util.List;
 import java.util.logging.Logger;
 
 public class WithErrorLogCommandBusMiddleware implements CommandBusMiddleware {
@@ -21,4 +23,21 @@ public class WithErrorLogCommandBusMiddleware implements CommandBusMiddleware {
             throw exception;
         }
     }
+
+    @Override
+    public List<BatchedCommandResponse<?>> dispatchAll(List<? extends Command<?>> commands, CommandBus bus) {
+        try {
+            List<BatchedCommandResponse<?>> responses = bus.dispatchAll(commands);
+            responses
+                    .stream()
+                    .filter(response -> !response.succeeded())
+                    .forEach(response -> LOGGER.info("Failed to process command of type "
+                            + response.command.getClass().getName()
+                            + " due to error : " + response.failure.getMessage()));
+            return responses;
+        } catch (Exception exception) {
+            LOGGER.info("Failed to process batch of commands due to error : " + exception.getMessage());
+            throw exception;
+        }
+    }
 }
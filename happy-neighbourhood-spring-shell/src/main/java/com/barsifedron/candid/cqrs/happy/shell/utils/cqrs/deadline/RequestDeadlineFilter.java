@@ -0,0 +1,45 @@
+package com.barsifedron.candid.cqrs.happy.shell.utils.cqrs.deadline;
+
+import com.barsifedron.candid.cqrs.deadline.Deadline;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A client telling how long it is ready to wait (X-Request-Timeout, in milliseconds) sets the deadline of the messages
+ * dispatched for its request. Past it, queries are stopped at the database rather than answered to nobody.
+ * Without the header, the default timeouts of the buses apply.
+ */
+@Component
+public class RequestDeadlineFilter extends OncePerRequestFilter {
+
+    public static final String TIMEOUT_HEADER = "X-Request-Timeout";
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+
+        String timeout = request.getHeader(TIMEOUT_HEADER);
+        if (timeout == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        long timeoutMillis;
+        try {
+            timeoutMillis = Long.parseLong(timeout.trim());
+        } catch (NumberFormatException e) {
+            response.sendError(HttpStatus.BAD_REQUEST.value(), TIMEOUT_HEADER + " is a number of milliseconds, not " + timeout);
+            return;
+        }
+        try (Deadline.Scope scope = Deadline.open(Deadline.after(timeoutMillis, TimeUnit.MILLISECONDS))) {
+            chain.doFilter(request, response);
+        }
+    }
+}
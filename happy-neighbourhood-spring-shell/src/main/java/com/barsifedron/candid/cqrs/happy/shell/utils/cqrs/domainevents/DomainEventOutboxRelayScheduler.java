@@ -0,0 +1,73 @@
+package com.barsifedron.candid.cqrs.happy.shell.utils.cqrs.domainevents;
+
+import com.barsifedron.candid.cqrs.domainevent.DomainEventOutbox;
+import com.barsifedron.candid.cqrs.domainevent.DomainEventOutboxRelay;
+import com.barsifedron.candid.cqrs.happy.shell.utils.cqrs.command.CommandBusFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.inject.Inject;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Empties the domain event outbox, every few hundred milliseconds. Only with domainevents.outbox.enabled=true.
+ * <p>
+ * Batch after batch, each in its own transaction, until the outbox is drained.
+ * A batch where nothing could be dispatched stops the loop: failing events wait for the next round.
+ * <p>
+ * Every event is dispatched in a new transaction (REQUIRES_NEW), committed before the batch is marked as dispatched.
+ * Only what the handlers running on the relay thread write (the SequentialDomainEventHandler(s)) is in it:
+ * the domain event bus is a ParallelDomainEventBus, and the handlers it runs on its executor commit on their own.
+ * A failing event rolls its own transaction back. The batch transaction still commits, and records the failure.
+ */
+@Component
+@ConditionalOnProperty(name = "domainevents.outbox.enabled", havingValue = "true")
+public class DomainEventOutboxRelayScheduler {
+
+    private final static Logger LOGGER = Logger.getLogger(DomainEventOutboxRelayScheduler.class.getName());
+
+    private final DomainEventOutboxRelay relay;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate eventTransactionTemplate;
+
+    @Inject
+    public DomainEventOutboxRelayScheduler(
+            DomainEventOutbox outbox,
+            CommandBusFactory commandBusFactory,
+            PlatformTransactionManager transactionManager,
+            @Value("${domainevents.outbox.batchSize:100}") int batchSize) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.relay = new DomainEventOutboxRelay(
+                outbox,
+                commandBusFactory.domainEventBus(),
+                batchSize,
+                dispatch -> eventTransactionTemplate.execute(status -> {
+                    dispatch.run();
+                    return null;
+                }));
+    }
+
+    @Scheduled(fixedDelayString = "${domainevents.outbox.pollingDelayMillis:200}")
+    public void relayPendingEvents() {
+        try {
+            DomainEventOutboxRelay.RelayedBatch batch;
+            do {
+                batch = transactionTemplate.execute(status -> relay.relayNextBatch());
+                batch.failures.forEach((id, exception) -> LOGGER.log(
+                        Level.WARNING,
+                        "Failed to dispatch domain event " + id + " from the outbox. Will retry.",
+                        exception));
+            } while (!batch.drained && batch.dispatched > 0);
+        } catch (RuntimeException exception) {
+            LOGGER.log(Level.SEVERE, "Failed to relay domain events from the outbox. Will retry.", exception);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.barsifedron.candid.cqrs.happy.shell.utils.cqrs.domainevents;
+
+import com.barsifedron.candid.cqrs.domainevent.AfterCommitDomainEventQueue;
+import com.barsifedron.candid.cqrs.domainevent.DomainEvent;
+import com.barsifedron.candid.cqrs.domainevent.DomainEventBus;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Queues the events of the current spring transaction (the one of the TransactionalCommandBusMiddleware, usually)
+ * and hands them to the AFTER_COMMIT handlers once it committed. On rollback, they are dropped.
+ * <p>
+ * Handlers run on the task executor, each event in a transaction of its own. Held in memory only:
+ * what was queued is lost if the application stops in between. Use the outbox when that matters.
+ */
+public class TransactionSynchronizationAfterCommitQueue implements AfterCommitDomainEventQueue {
+
+    private final static Logger LOGGER = Logger.getLogger(TransactionSynchronizationAfterCommitQueue.class.getName());
+
+    private final DomainEventBus afterCommitBus;
+    private final TaskExecutor taskExecutor;
+    private final TransactionTemplate transactionTemplate;
+
+    public TransactionSynchronizationAfterCommitQueue(
+            DomainEventBus afterCommitBus,
+            TaskExecutor taskExecutor,
+            PlatformTransactionManager transactionManager) {
+        this.afterCommitBus = afterCommitBus;
+        this.taskExecutor = taskExecutor;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @Override
+    public void enqueue(DomainEvent event) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            // No transaction to wait for
+            dispatchLater(event);
+            return;
+        }
+        List<DomainEvent> queued = (List<DomainEvent>) TransactionSynchronizationManager.getResource(this);
+        if (queued == null) {
+            queued = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(this, queued);
+            TransactionSynchronizationManager.registerSynchronization(new FlushOnCommit(queued));
+        }
+        queued.add(event);
+    }
+
+    private void dispatchLater(DomainEvent event) {
+        taskExecutor.execute(() -> {
+            try {
+                transactionTemplate.execute(status -> {
+                    afterCommitBus.dispatch(event);
+                    return null;
+                });
+            } catch (RuntimeException exception) {
+                LOGGER.log(Level.WARNING, "Failed to handle domain event " + event + " after commit", exception);
+            }
+        });
+    }
+
+    private class FlushOnCommit extends TransactionSynchronizationAdapter {
+
+        private final List<DomainEvent> queued;
+
+        private FlushOnCommit(List<DomainEvent> queued) {
+            this.queued = queued;
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(TransactionSynchronizationAfterCommitQueue.this);
+            if (status == TransactionSynchronization.STATUS_COMMITTED) {
+                queued.forEach(TransactionSynchronizationAfterCommitQueue.this::dispatchLater);
+            }
+        }
+    }
+}
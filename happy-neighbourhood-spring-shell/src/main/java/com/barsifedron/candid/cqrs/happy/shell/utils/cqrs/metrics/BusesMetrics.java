@@ -0,0 +1,31 @@
+package com.barsifedron.candid.cqrs.happy.shell.utils.cqrs.metrics;
+
+import com.barsifedron.candid.cqrs.metrics.BusMetrics;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+
+/**
+ * The metrics of the command, query and domain event buses. Each of them is also an MBean,
+ * under com.barsifedron.candid.cqrs:type=BusMetrics, for as long as the application runs.
+ */
+@Component
+public class BusesMetrics {
+
+    public final BusMetrics commands = new BusMetrics("commands");
+    public final BusMetrics queries = new BusMetrics("queries");
+    public final BusMetrics domainEvents = new BusMetrics("domainEvents");
+
+    public BusesMetrics() {
+        commands.registerMBean();
+        queries.registerMBean();
+        domainEvents.registerMBean();
+    }
+
+    @PreDestroy
+    public void unregister() {
+        commands.unregisterMBean();
+        queries.unregisterMBean();
+        domainEvents.unregisterMBean();
+    }
+}
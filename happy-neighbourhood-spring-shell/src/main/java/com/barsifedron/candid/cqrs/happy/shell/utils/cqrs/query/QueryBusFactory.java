@@ -1,38 +1,163 @@
 package com.barsifedron.candid.cqrs.happy.shell.utils.cqrs.query;
 
-import com.barsifedron.candid.cqrs.happy.shell.utils.cqrs.query.middleware.ExecutionDurationLoggingQueryBusMiddleware;
+import com.barsifedron.candid.cqrs.happy.shell.utils.cqrs.metrics.BusesMetrics;
+import com.barsifedron.candid.cqrs.happy.utils.cqrs.logging.AsyncLogWriter;
+import com.barsifedron.candid.cqrs.happy.utils.cqrs.logging.LogSampling;
 import com.barsifedron.candid.cqrs.happy.utils.cqrs.query.ValidatingQueryBusMiddleware;
 import com.barsifedron.candid.cqrs.happy.utils.cqrs.query.middleware.DetailedLoggingQueryBusMiddleware;
 import com.barsifedron.candid.cqrs.happy.utils.cqrs.query.middleware.ExceptionLoggingQueryBusMiddleware;
-import com.barsifedron.candid.cqrs.query.MapQueryBus;
+import com.barsifedron.candid.cqrs.limit.AdaptiveConcurrencyLimit;
+import com.barsifedron.candid.cqrs.metrics.PipelineProfile;
+import com.barsifedron.candid.cqrs.query.CachingQueryBusMiddleware;
+import com.barsifedron.candid.cqrs.query.ClassValueQueryBus;
+import com.barsifedron.candid.cqrs.query.ConcurrencyLimitingQueryBusMiddleware;
+import com.barsifedron.candid.cqrs.query.DeadlineQueryBusMiddleware;
+import com.barsifedron.candid.cqrs.query.LanedQueryBus;
+import com.barsifedron.candid.cqrs.query.MetricsQueryBusMiddleware;
+import com.barsifedron.candid.cqrs.query.QueryBatcher;
 import com.barsifedron.candid.cqrs.query.QueryBus;
 import com.barsifedron.candid.cqrs.query.QueryBusMiddleware;
+import com.barsifedron.candid.cqrs.query.QueryBusPipeline;
+import com.barsifedron.candid.cqrs.query.SingleFlightQueryBusMiddleware;
 import com.barsifedron.candid.cqrs.spring.QueryHandlersRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PreDestroy;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 @Component
 public class QueryBusFactory {
 
     private final QueryHandlersRegistry queryHandlersRegistry;
+    private final CachingQueryBusMiddleware queryCache;
+    private final BusesMetrics metrics;
+    private final boolean profiled;
+    private final AsyncLogWriter logWriter;
+    private final LogSampling logSampling;
+    private final SingleFlightQueryBusMiddleware singleFlight = new SingleFlightQueryBusMiddleware();
+    private final ConcurrencyLimitingQueryBusMiddleware concurrencyLimit;
+    private final DeadlineQueryBusMiddleware deadlines;
+    private final LanedQueryBus.Lanes lanes;
+    private QueryBusPipeline simpleBus;
+    private LanedQueryBus asyncBus;
 
     @Autowired
-    public QueryBusFactory(ApplicationContext applicationContext) {
+    public QueryBusFactory(
+            ApplicationContext applicationContext,
+            CachingQueryBusMiddleware queryCache,
+            BusesMetrics metrics,
+            @Value("${pipelines.profiled:false}") boolean profiled,
+            @Value("${queries.concurrency.initialLimit:20}") int initialLimit,
+            @Value("${queries.concurrency.minLimit:2}") int minLimit,
+            @Value("${queries.concurrency.maxLimit:200}") int maxLimit,
+            @Value("${queries.concurrency.maxWaitMillis:50}") long maxWaitMillis,
+            @Value("${queries.lanes.interactive.threads:8}") int interactiveThreads,
+            @Value("${queries.lanes.interactive.queueCapacity:200}") int interactiveQueueCapacity,
+            @Value("${queries.lanes.batch.threads:2}") int batchThreads,
+            @Value("${queries.lanes.batch.queueCapacity:20}") int batchQueueCapacity,
+            @Value("${queries.deadline.defaultTimeoutMillis:30000}") long defaultTimeoutMillis,
+            @Value("${queries.deadline.minimumBudgetMillis:10}") long minimumBudgetMillis,
+            AsyncLogWriter logWriter,
+            LogSampling logSampling) {
+        this.queryCache = queryCache;
+        this.metrics = metrics;
+        this.profiled = profiled;
+        this.logWriter = logWriter;
+        this.logSampling = logSampling;
+        this.concurrencyLimit = ConcurrencyLimitingQueryBusMiddleware.perType(
+                () -> new AdaptiveConcurrencyLimit(initialLimit, minLimit, maxLimit, maxWaitMillis, TimeUnit.MILLISECONDS));
+        this.deadlines = new DeadlineQueryBusMiddleware(defaultTimeoutMillis, minimumBudgetMillis, TimeUnit.MILLISECONDS);
+        // Queries annotated with @QueryLane("batch") run on the batch lane, all the others on the interactive one
+        this.lanes = new LanedQueryBus.Lanes("interactive")
+                .add("interactive", interactiveThreads, interactiveQueueCapacity)
+                .add("batch", batchThreads, batchQueueCapacity);
         this.queryHandlersRegistry = new QueryHandlersRegistry(
                 applicationContext,
                 "com.barsifedron.candid.cqrs.springboot.app",
                 "com.barsifedron.candid.cqrs.happy.query");
     }
 
-    public QueryBus simpleBus() {
+    /**
+     * The bus is built on first use and then reused. No need to put the chain back together on every request.
+     */
+    public synchronized QueryBus simpleBus() {
+        if (simpleBus == null) {
+            simpleBus = buildSimpleBus();
+        }
+        return simpleBus;
+    }
+
+    /**
+     * How many queries of each type may hit the database at the same time, adjusted from their latencies.
+     */
+    public ConcurrencyLimitingQueryBusMiddleware concurrencyLimit() {
+        return concurrencyLimit;
+    }
+
+    /**
+     * Where the time of the simple bus goes, stage by stage. Null unless pipelines.profiled is set.
+     */
+    public PipelineProfile pipelineProfile() {
+        simpleBus();
+        return simpleBus.profile();
+    }
+
+    /**
+     * The same bus, run on the lanes of its queries. The request thread is given back to the server while the query runs.
+     */
+    public synchronized LanedQueryBus asyncBus() {
+        if (asyncBus == null) {
+            asyncBus = new LanedQueryBus(simpleBus(), lanes);
+        }
+        return asyncBus;
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() throws InterruptedException {
+        if (asyncBus != null) {
+            asyncBus.shutdown();
+            asyncBus.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * For views made of many single item or member queries: load them all, dispatch once, one "in (...)" query per type.
+     * A new one for every request.
+     */
+    public QueryBatcher batcher() {
+        return new QueryBatcher(simpleBus());
+    }
+
+    /**
+     * Tells how many identical item queries were spared, while another one was running.
+     */
+    public SingleFlightQueryBusMiddleware singleFlight() {
+        return singleFlight;
+    }
+
+    private QueryBusPipeline buildSimpleBus() {
 
-        return QueryBusMiddleware
-                .compositeOf(
-                        new ExceptionLoggingQueryBusMiddleware(),
-                        new DetailedLoggingQueryBusMiddleware(),
-                        new ExecutionDurationLoggingQueryBusMiddleware(),
-                        new ValidatingQueryBusMiddleware())
-                .decorate(new MapQueryBus(queryHandlersRegistry.handlers()));
+        List<QueryBusMiddleware> middlewares = Arrays.asList(
+                new ExceptionLoggingQueryBusMiddleware(),
+                new DetailedLoggingQueryBusMiddleware(logWriter, logSampling),
+                // Cache hits included
+                new MetricsQueryBusMiddleware(metrics.queries),
+                // Past it, the queries are stopped at the database
+                deadlines,
+                new ValidatingQueryBusMiddleware(),
+                queryCache,
+                // Cache misses for the same query, at the same time, run it once
+                singleFlight,
+                // Only what reaches the database waits for a permit. Too many waiting: 503
+                concurrencyLimit);
+        QueryBus handlers = new ClassValueQueryBus(queryHandlersRegistry.handlers());
+        return profiled
+                ? QueryBusPipeline.compileProfiled(handlers, middlewares)
+                : QueryBusPipeline.compile(handlers, middlewares);
     }
 }
@@ -0,0 +1,71 @@
+package com.barsifedron.candid.cqrs.happy.shell.utils.cqrs.query;
+
+import com.barsifedron.candid.cqrs.query.StreamQuery;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.inject.Inject;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Writes the results of a StreamQuery to the http response as a json array, row by row, as they are read.
+ * <p>
+ * Spring writes a StreamingResponseBody on its task executor, once the request thread is given back.
+ * The query is dispatched there, in a read only transaction that lasts as long as the writing.
+ */
+@Component
+public class StreamQueryResponses {
+
+    private final QueryBusFactory queryBusFactory;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectWriter objectWriter;
+
+    @Inject
+    public StreamQueryResponses(
+            QueryBusFactory queryBusFactory,
+            PlatformTransactionManager transactionManager,
+            ObjectMapper objectMapper) {
+        this.queryBusFactory = queryBusFactory;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        // The servlet response has a buffer of its own. No need to flush after every row.
+        this.objectWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    public <T> StreamingResponseBody jsonArray(StreamQuery<T> query) {
+        return outputStream -> {
+            try {
+                transactionTemplate.execute(status -> {
+                    write(query, outputStream);
+                    return null;
+                });
+            } catch (UncheckedIOException exception) {
+                throw exception.getCause();
+            }
+        };
+    }
+
+    private <T> void write(StreamQuery<T> query, OutputStream outputStream) {
+        try (Stream<T> rows = queryBusFactory.simpleBus().dispatch(query);
+             JsonGenerator generator = objectWriter.getFactory().createGenerator(outputStream)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartArray();
+            for (Iterator<T> iterator = rows.iterator(); iterator.hasNext(); ) {
+                objectWriter.writeValue(generator, iterator.next());
+            }
+            generator.writeEndArray();
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.barsifedron.candid.cqrs.happy.shell;
+
+import com.barsifedron.candid.cqrs.command.CommandBus;
+import com.barsifedron.candid.cqrs.domainevent.DomainEvent;
+import com.barsifedron.candid.cqrs.happy.command.BorrowItemCommand;
+import com.barsifedron.candid.cqrs.happy.command.BorrowItemCommandHandler;
+import com.barsifedron.candid.cqrs.happy.command.RegisterNewItemCommand;
+import com.barsifedron.candid.cqrs.happy.command.RegisterNewMemberCommand;
+import com.barsifedron.candid.cqrs.happy.shell.utils.cqrs.domainevents.TransactionSynchronizationAfterCommitQueue;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "domainevents.outbox.enabled=false")
+public class AfterCommitDomainEventsIntegrationTest {
+
+    @Autowired
+    private CommandBus commandBus;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    public void notificationsAreStoredOnceTheCommandCommitted() throws Exception {
+
+        long emailsBefore = emails();
+
+        commandBus.dispatch(RegisterNewMemberCommand
+                .builder()
+                .memberId("afterCommitMember")
+                .firstname("after")
+                .surname("commit")
+                .email("after.commit@email.com")
+                .build());
+        commandBus.dispatch(RegisterNewItemCommand
+                .builder()
+                .id("afterCommitItem")
+                .name("drill")
+                .dailyRate(new BigDecimal("1.00"))
+                .dailyFineWhenLateReturn(new BigDecimal("2.00"))
+                .maximumLoanPeriod(14)
+                .build());
+        commandBus.dispatch(BorrowItemCommand
+                .builder()
+                .itemId("afterCommitItem")
+                .loanId("afterCommitLoan")
+                .memberId("afterCommitMember")
+                .borrowedOn(LocalDate.now())
+                .notification(BorrowItemCommandHandler.NOTIFICATION.EMAIL_CONFIRMATION_TO_MEMBER)
+                .build());
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (emails() == emailsBefore && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(emails()).isEqualTo(emailsBefore + 1);
+    }
+
+    @Test
+    public void queuedEventsAreDroppedOnRollback() {
+
+        List<DomainEvent> handled = new ArrayList<>();
+        TransactionSynchronizationAfterCommitQueue queue = new TransactionSynchronizationAfterCommitQueue(
+                handled::add,
+                new SyncTaskExecutor(),
+                transactionManager);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+        transactionTemplate.execute(status -> {
+            queue.enqueue(new SomethingHappened());
+            status.setRollbackOnly();
+            return null;
+        });
+        assertThat(handled).isEmpty();
+
+        transactionTemplate.execute(status -> {
+            queue.enqueue(new SomethingHappened());
+            assertThat(handled).isEmpty();
+            return null;
+        });
+        assertThat(handled).hasSize(1);
+    }
+
+    private long emails() {
+        return entityManager.createQuery("select count(email) from Email email", Long.class).getSingleResult();
+    }
+
+    static class SomethingHappened implements DomainEvent {
+    }
+}
@@ -0,0 +1,51 @@
+package com.barsifedron.candid.cqrs.happy.shell;
+
+import com.barsifedron.candid.cqrs.deadline.Deadline;
+import com.barsifedron.candid.cqrs.happy.domain.QMember;
+import com.barsifedron.candid.cqrs.happy.infrastructure.DeadlineJPAQueryFactory;
+import com.barsifedron.candid.cqrs.happy.query.GetMemberQuery;
+import com.barsifedron.candid.cqrs.happy.shell.utils.cqrs.query.QueryBusFactory;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class DeadlineIntegrationTest {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private QueryBusFactory queryBusFactory;
+
+    @Test
+    public void whatIsLeftOfTheDeadlineBecomesTheQueryTimeoutRoundedUpToTheSecond() {
+
+        Object timeout = Deadline.runWithin(Deadline.after(1500, TimeUnit.MILLISECONDS), () -> new DeadlineJPAQueryFactory(entityManager)
+                .selectFrom(QMember.member)
+                .createQuery()
+                .getHints()
+                .get("javax.persistence.query.timeout"));
+
+        assertThat(timeout).isEqualTo(2000);
+    }
+
+    @Test
+    public void queriesPastTheirDeadlineAreNotRun() {
+
+        assertThatThrownBy(() -> Deadline.runWithin(
+                Deadline.after(-1, TimeUnit.MILLISECONDS),
+                () -> queryBusFactory.simpleBus().dispatch(GetMemberQuery.builder().build())))
+                .isInstanceOf(Deadline.DeadlineExceededException.class);
+    }
+}
@@ -0,0 +1,86 @@
+package com.barsifedron.candid.cqrs.happy.shell;
+
+import com.barsifedron.candid.cqrs.command.CommandBus;
+import com.barsifedron.candid.cqrs.happy.command.BorrowItemCommand;
+import com.barsifedron.candid.cqrs.happy.command.BorrowItemCommandHandler;
+import com.barsifedron.candid.cqrs.happy.command.RegisterNewItemCommand;
+import com.barsifedron.candid.cqrs.happy.command.RegisterNewMemberCommand;
+import com.barsifedron.candid.cqrs.happy.domainevents.ItemBorrowedDomainEvent;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.persistence.EntityManager;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class DomainEventOutboxIntegrationTest {
+
+    @Autowired
+    private CommandBus commandBus;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    public void eventsAreStoredByTheCommandAndHandledByTheRelay() throws Exception {
+
+        awaitOutboxDrained();
+        long emailsBefore = count("select count(email) from Email email");
+
+        commandBus.dispatch(RegisterNewMemberCommand
+                .builder()
+                .memberId("outboxMember")
+                .firstname("out")
+                .surname("box")
+                .email("out.box@email.com")
+                .build());
+        commandBus.dispatch(RegisterNewItemCommand
+                .builder()
+                .id("outboxItem")
+                .name("saw")
+                .dailyRate(new BigDecimal("1.00"))
+                .dailyFineWhenLateReturn(new BigDecimal("2.00"))
+                .maximumLoanPeriod(14)
+                .build());
+        commandBus.dispatch(BorrowItemCommand
+                .builder()
+                .itemId("outboxItem")
+                .loanId("outboxLoan")
+                .memberId("outboxMember")
+                .borrowedOn(LocalDate.now())
+                .notification(BorrowItemCommandHandler.NOTIFICATION.EMAIL_CONFIRMATION_TO_MEMBER)
+                .build());
+
+        assertThat(count("select count(entry) from DomainEventOutboxEntry entry"
+                + " where entry.eventType = '" + ItemBorrowedDomainEvent.class.getName() + "'"
+                + " and entry.payload like '%outboxItem%'"))
+                .isEqualTo(1);
+
+        awaitOutboxDrained();
+
+        assertThat(count("select count(email) from Email email")).isEqualTo(emailsBefore + 1);
+    }
+
+    private void awaitOutboxDrained() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (pending() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(pending()).isEqualTo(0);
+    }
+
+    private long pending() {
+        return count("select count(entry) from DomainEventOutboxEntry entry where entry.dispatchedOn is null");
+    }
+
+    private long count(String jpql) {
+        return entityManager.createQuery(jpql, Long.class).getSingleResult();
+    }
+}
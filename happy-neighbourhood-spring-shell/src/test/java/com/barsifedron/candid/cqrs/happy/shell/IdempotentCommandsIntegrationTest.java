@@ -0,0 +1,112 @@
+package com.barsifedron.candid.cqrs.happy.shell;
+
+import com.barsifedron.candid.cqrs.command.CommandBus;
+import com.barsifedron.candid.cqrs.command.IdempotencyStore;
+import com.barsifedron.candid.cqrs.command.IdempotentCommandBusMiddleware;
+import com.barsifedron.candid.cqrs.happy.command.BorrowItemCommand;
+import com.barsifedron.candid.cqrs.happy.command.BorrowItemCommandHandler;
+import com.barsifedron.candid.cqrs.happy.command.RegisterNewItemCommand;
+import com.barsifedron.candid.cqrs.happy.command.RegisterNewMemberCommand;
+import com.barsifedron.candid.cqrs.happy.domain.LoanId;
+import com.barsifedron.candid.cqrs.happy.domain.MemberId;
+import com.barsifedron.candid.cqrs.happy.infrastructure.HibernateIdempotencyStore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.persistence.EntityManager;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class IdempotentCommandsIntegrationTest {
+
+    @Autowired
+    private CommandBus commandBus;
+
+    @Autowired
+    private IdempotentCommandBusMiddleware idempotency;
+
+    @Autowired
+    private HibernateIdempotencyStore idempotencyStore;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    public void aRetriedCommandRunsOnceAndGetsTheSameResult() {
+
+        RegisterNewMemberCommand registration = RegisterNewMemberCommand
+                .builder()
+                .memberId("retryingMember")
+                .firstname("re")
+                .surname("try")
+                .email("re.try@email.com")
+                .build();
+        MemberId registered = (MemberId) commandBus.dispatch(registration).result;
+        commandBus.dispatch(RegisterNewItemCommand
+                .builder()
+                .id("retriedItem")
+                .name("ladder")
+                .dailyRate(new BigDecimal("1.00"))
+                .dailyFineWhenLateReturn(new BigDecimal("2.00"))
+                .maximumLoanPeriod(14)
+                .build());
+        BorrowItemCommand loan = BorrowItemCommand
+                .builder()
+                .itemId("retriedItem")
+                .loanId("retriedLoan")
+                .memberId("retryingMember")
+                .borrowedOn(LocalDate.now())
+                .notification(BorrowItemCommandHandler.NOTIFICATION.NONE)
+                .build();
+        LoanId borrowed = (LoanId) commandBus.dispatch(loan).result;
+        long replayedBefore = idempotency.replayed();
+
+        assertThat(commandBus.dispatch(registration).result).isEqualTo(registered);
+        assertThat(commandBus.dispatch(loan).result).isEqualTo(borrowed);
+        assertThat(idempotency.replayed()).isEqualTo(replayedBefore + 2);
+        assertThat(entityManager
+                .createQuery("select count(loan) from Loan loan where loan.id.loanId = 'retriedLoan'", Long.class)
+                .getSingleResult())
+                .isEqualTo(1);
+    }
+
+    @Test
+    public void anotherCommandWithTheSameIdIsRejected() {
+
+        RegisterNewMemberCommand.RegisterNewMemberCommandBuilder registration = RegisterNewMemberCommand
+                .builder()
+                .memberId("reusedId")
+                .firstname("re")
+                .surname("used")
+                .email("re.used@email.com");
+        commandBus.dispatch(registration.build());
+
+        assertThatThrownBy(() -> commandBus.dispatch(registration.email("someone.else@email.com").build()))
+                .isInstanceOf(IdempotentCommandBusMiddleware.IdempotencyKeyReusedException.class);
+    }
+
+    @Test
+    public void resultsAreReadBackFromTheStore() {
+
+        commandBus.dispatch(RegisterNewMemberCommand
+                .builder()
+                .memberId("storedMember")
+                .firstname("sto")
+                .surname("red")
+                .email("sto.red@email.com")
+                .build());
+
+        IdempotencyStore.CompletedCommand completed = idempotencyStore.find(RegisterNewMemberCommand.class.getName() + ":storedMember");
+
+        assertThat(completed).isNotNull();
+        assertThat(completed.result).isEqualTo(new MemberId("storedMember"));
+    }
+}
@@ -0,0 +1,127 @@
+package com.barsifedron.candid.cqrs.happy.shell;
+
+import com.barsifedron.candid.cqrs.command.CommandBus;
+import com.barsifedron.candid.cqrs.happy.command.RegisterNewItemCommand;
+import com.barsifedron.candid.cqrs.happy.command.RegisterNewMemberCommand;
+import com.barsifedron.candid.cqrs.happy.query.GetItemsQuery;
+import com.barsifedron.candid.cqrs.happy.query.GetItemsQueryHandler;
+import com.barsifedron.candid.cqrs.happy.query.GetItemsQueryHandler.ItemDto;
+import com.barsifedron.candid.cqrs.happy.query.GetMemberQuery;
+import com.barsifedron.candid.cqrs.happy.query.GetMemberQueryHandler;
+import com.barsifedron.candid.cqrs.happy.query.GetMemberQueryHandler.MemberDto;
+import com.barsifedron.candid.cqrs.happy.query.PageCursor;
+import com.barsifedron.candid.cqrs.happy.shell.utils.cqrs.query.QueryBusFactory;
+import com.barsifedron.candid.cqrs.query.QueryBus;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class KeysetPagingIntegrationTest {
+
+    @Autowired
+    private CommandBus commandBus;
+
+    @Autowired
+    private QueryBusFactory queryBusFactory;
+
+    @Test
+    public void pagesOfMembersCoverThemAllOnceLatestRegisteredFirst() {
+
+        for (int i = 1; i <= 5; i++) {
+            commandBus.dispatch(RegisterNewMemberCommand
+                    .builder()
+                    .memberId("pagedMember" + i)
+                    .firstname("paged")
+                    .surname("member" + i)
+                    .email("paged.member" + i + "@email.com")
+                    .build());
+        }
+        QueryBus queryBus = queryBusFactory.simpleBus();
+
+        List<MemberDto> paged = new ArrayList<>();
+        String after = null;
+        do {
+            List<MemberDto> page = new ArrayList<>(queryBus.dispatch(GetMemberQuery.builder().pageSize(2).after(after).build()));
+            assertThat(page.size()).isLessThanOrEqualTo(2);
+            paged.addAll(page);
+            after = page.size() == 2 ? GetMemberQueryHandler.cursorAfter(page.get(1)) : null;
+        } while (after != null);
+
+        // In the same order as all of them at once
+        Collection<MemberDto> all = queryBus.dispatch(GetMemberQuery.builder().build());
+        List<String> allIds = all.stream().map(member -> member.id).collect(toList());
+        assertThat(allIds).isEqualTo(all
+                .stream()
+                .sorted(Comparator
+                        .comparing((MemberDto member) -> member.registeredOn)
+                        .thenComparing(member -> member.id)
+                        .reversed())
+                .map(member -> member.id)
+                .collect(toList()));
+        assertThat(paged.stream().map(member -> member.id).collect(toList()))
+                .containsExactlyElementsOf(allIds)
+                .contains("pagedMember1", "pagedMember2", "pagedMember3", "pagedMember4", "pagedMember5");
+    }
+
+    @Test
+    public void pagesOfItemsCoverThemAllOnceLatestFirst() {
+
+        for (int i = 1; i <= 5; i++) {
+            commandBus.dispatch(RegisterNewItemCommand
+                    .builder()
+                    .id("pagedItem" + i)
+                    .name("saw")
+                    .dailyRate(new BigDecimal("1.00"))
+                    .dailyFineWhenLateReturn(new BigDecimal("2.00"))
+                    .maximumLoanPeriod(14)
+                    .build());
+        }
+        QueryBus queryBus = queryBusFactory.simpleBus();
+
+        List<ItemDto> paged = new ArrayList<>();
+        String after = null;
+        do {
+            List<ItemDto> page = queryBus.dispatch(GetItemsQuery.builder().pageSize(3).after(after).build());
+            assertThat(page.size()).isLessThanOrEqualTo(3);
+            paged.addAll(page);
+            after = page.size() == 3 ? GetItemsQueryHandler.cursorAfter(page.get(2)) : null;
+        } while (after != null);
+
+        // In the same order as all of them at once
+        List<ItemDto> all = queryBus.dispatch(GetItemsQuery.builder().build());
+        List<String> allIds = all.stream().map(item -> item.id).collect(toList());
+        assertThat(allIds).isEqualTo(all
+                .stream()
+                .sorted(Comparator
+                        .comparing((ItemDto item) -> item.since)
+                        .thenComparing(item -> item.id)
+                        .reversed())
+                .map(item -> item.id)
+                .collect(toList()));
+        assertThat(paged.stream().map(item -> item.id).collect(toList()))
+                .containsExactlyElementsOf(allIds)
+                .contains("pagedItem1", "pagedItem2", "pagedItem3", "pagedItem4", "pagedItem5");
+    }
+
+    @Test
+    public void aCursorNotGivenByAPageIsRejected() {
+        assertThatThrownBy(() -> queryBusFactory.simpleBus().dispatch(GetMemberQuery.builder().pageSize(2).after("notACursor").build()))
+                .isInstanceOf(PageCursor.InvalidPageCursorException.class);
+        assertThatThrownBy(() -> queryBusFactory.simpleBus().dispatch(GetItemsQuery.builder().pageSize(2).after(PageCursor.encode("yesterday", "item")).build()))
+                .isInstanceOf(PageCursor.InvalidPageCursorException.class);
+    }
+}
@@ -0,0 +1,62 @@
+package com.barsifedron.candid.cqrs.happy.shell;
+
+import com.barsifedron.candid.cqrs.happy.command.RegisterNewMemberCommand;
+import com.barsifedron.candid.cqrs.happy.query.GetMemberQuery;
+import com.barsifedron.candid.cqrs.happy.shell.utils.cqrs.command.CommandBusFactory;
+import com.barsifedron.candid.cqrs.happy.shell.utils.cqrs.query.QueryBusFactory;
+import com.barsifedron.candid.cqrs.metrics.PipelineProfile;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "pipelines.profiled=true")
+public class PipelineProfileIntegrationTest {
+
+    @Autowired
+    private CommandBusFactory commandBusFactory;
+
+    @Autowired
+    private QueryBusFactory queryBusFactory;
+
+    @Test
+    public void everyStageOfTheBusesIsTimedByTypeOfMessage() {
+
+        commandBusFactory.simpleBus().dispatch(RegisterNewMemberCommand
+                .builder()
+                .memberId("profiledMember")
+                .firstname("profiled")
+                .surname("member")
+                .email("profiled.member@email.com")
+                .build());
+        queryBusFactory.simpleBus().dispatch(GetMemberQuery.builder().memberId("profiledMember").build());
+
+        PipelineProfile.MessageTypeProfile command = profileOf(commandBusFactory.pipelineProfile(), RegisterNewMemberCommand.class);
+        assertThat(command.getStages())
+                .extracting(PipelineProfile.StageStats::getStage)
+                .contains("ValidatingCommandBusMiddleware", "InTransaction", "ClassValueCommandBus");
+        // Every command went through every stage
+        long calls = command.getStages().get(0).getCalls();
+        assertThat(calls).isPositive();
+        assertThat(command.getStages()).allMatch(stage -> stage.getCalls() == calls);
+        assertThat(command.getTotalNanos()).isPositive();
+
+        PipelineProfile.MessageTypeProfile query = profileOf(queryBusFactory.pipelineProfile(), GetMemberQuery.class);
+        assertThat(query.getStages().get(0).getCalls()).isPositive();
+    }
+
+    private static PipelineProfile.MessageTypeProfile profileOf(PipelineProfile profile, Class<?> messageType) {
+        List<PipelineProfile.MessageTypeProfile> report = profile.report();
+        return report
+                .stream()
+                .filter(messageTypeProfile -> messageTypeProfile.getMessageType().equals(messageType.getName()))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError(messageType + " not profiled in " + report));
+    }
+}
@@ -0,0 +1,89 @@
+package com.barsifedron.candid.cqrs.happy.shell;
+
+import com.barsifedron.candid.cqrs.command.CommandBus;
+import com.barsifedron.candid.cqrs.happy.command.BorrowItemCommand;
+import com.barsifedron.candid.cqrs.happy.command.BorrowItemCommandHandler;
+import com.barsifedron.candid.cqrs.happy.command.RegisterNewItemCommand;
+import com.barsifedron.candid.cqrs.happy.command.RegisterNewMemberCommand;
+import com.barsifedron.candid.cqrs.happy.query.GetItemsQuery;
+import com.barsifedron.candid.cqrs.happy.query.GetItemsQueryHandler.ItemDto;
+import com.barsifedron.candid.cqrs.happy.query.GetMemberQuery;
+import com.barsifedron.candid.cqrs.happy.query.GetMemberQueryHandler.MemberDto;
+import com.barsifedron.candid.cqrs.happy.shell.utils.cqrs.query.QueryBusFactory;
+import com.barsifedron.candid.cqrs.query.QueryBatcher;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class QueryBatcherIntegrationTest {
+
+    @Autowired
+    private CommandBus commandBus;
+
+    @Autowired
+    private QueryBusFactory queryBusFactory;
+
+    @Test
+    public void itemsAndMembersAreFetchedByBatch() {
+
+        registerMember("batchedMember1");
+        registerMember("batchedMember2");
+        registerItem("batchedItem1");
+        registerItem("batchedItem2");
+        commandBus.dispatch(BorrowItemCommand
+                .builder()
+                .itemId("batchedItem1")
+                .loanId("batchedLoan")
+                .memberId("batchedMember1")
+                .borrowedOn(LocalDate.now())
+                .notification(BorrowItemCommandHandler.NOTIFICATION.NONE)
+                .build());
+
+        QueryBatcher batcher = queryBusFactory.batcher();
+        CompletableFuture<List<ItemDto>> item1 = batcher.load(GetItemsQuery.builder().itemId("batchedItem1").build());
+        CompletableFuture<List<ItemDto>> item2 = batcher.load(GetItemsQuery.builder().itemId("batchedItem2").build());
+        CompletableFuture<List<ItemDto>> unknownItem = batcher.load(GetItemsQuery.builder().itemId("noSuchItem").build());
+        CompletableFuture<Collection<MemberDto>> member1 = batcher.load(GetMemberQuery.builder().memberId("batchedMember1").build());
+        CompletableFuture<Collection<MemberDto>> member2 = batcher.load(GetMemberQuery.builder().memberId("batchedMember2").build());
+        batcher.dispatch();
+
+        assertThat(item1.join()).extracting(item -> item.loansHistory.size()).containsExactly(1);
+        assertThat(item2.join()).extracting(item -> item.id).containsExactly("batchedItem2");
+        assertThat(unknownItem.join()).isEmpty();
+        assertThat(member1.join()).extracting(member -> member.loansHistory.size()).containsExactly(1);
+        assertThat(member2.join()).extracting(member -> member.id).containsExactly("batchedMember2");
+    }
+
+    private void registerMember(String memberId) {
+        commandBus.dispatch(RegisterNewMemberCommand
+                .builder()
+                .memberId(memberId)
+                .firstname("batched")
+                .surname(memberId)
+                .email(memberId + "@email.com")
+                .build());
+    }
+
+    private void registerItem(String itemId) {
+        commandBus.dispatch(RegisterNewItemCommand
+                .builder()
+                .id(itemId)
+                .name("ladder")
+                .dailyRate(new BigDecimal("1.00"))
+                .dailyFineWhenLateReturn(new BigDecimal("2.00"))
+                .maximumLoanPeriod(14)
+                .build());
+    }
+}
@@ -116,6 +116,66 @@ public class LoanWorkflowIntegrationTest {
                         GetMemberQueryHandler.MemberDto.class);
 
         assertThat(returnItemResponse.getStatusCode().value()).isEqualTo(200);
+
+        ResponseEntity<String> reportResponse = restTemplate
+                .getForEntity(
+                        "http://localhost:" + port + "/reports?periodStartDate=2000-01-01&periodEndDate=2100-01-01",
+                        String.class);
+
+        assertThat(reportResponse.getStatusCode().value()).isEqualTo(200);
+        assertThat(reportResponse.getBody()).contains("numberOfLoans");
+
+        // Both lists are streamed, row by row
+        ResponseEntity<GetMemberQueryHandler.MemberDto[]> membersResponse = restTemplate
+                .getForEntity(
+                        "http://localhost:" + port + "/members",
+                        GetMemberQueryHandler.MemberDto[].class);
+
+        assertThat(membersResponse.getStatusCode().value()).isEqualTo(200);
+        assertThat(membersResponse.getBody())
+                .filteredOn(member -> member.id.equals(registerMemberResponse.getBody().id))
+                .extracting(member -> member.loansHistory.size())
+                .containsExactly(1);
+
+        ResponseEntity<GetItemsQueryHandler.ItemDto[]> itemsResponse = restTemplate
+                .getForEntity(
+                        "http://localhost:" + port + "/items",
+                        GetItemsQueryHandler.ItemDto[].class);
+
+        assertThat(itemsResponse.getStatusCode().value()).isEqualTo(200);
+        assertThat(itemsResponse.getBody())
+                .filteredOn(item -> item.id.equals(registerItemResponse.getBody().id))
+                .extracting(item -> item.loansHistory.size())
+                .containsExactly(1);
+
+        // Several at once, in one query per type
+        ResponseEntity<GetItemsQueryHandler.ItemDto[]> someItemsResponse = restTemplate
+                .getForEntity(
+                        "http://localhost:" + port + "/items?ids=noSuchItem," + registerItemResponse.getBody().id,
+                        GetItemsQueryHandler.ItemDto[].class);
+
+        assertThat(someItemsResponse.getStatusCode().value()).isEqualTo(200);
+        assertThat(someItemsResponse.getBody())
+                .extracting(item -> item.id)
+                .containsExactly(registerItemResponse.getBody().id);
+
+        ResponseEntity<GetMemberQueryHandler.MemberDto[]> someMembersResponse = restTemplate
+                .getForEntity(
+                        "http://localhost:" + port + "/members?ids=" + registerMemberResponse.getBody().id + ",noSuchMember",
+                        GetMemberQueryHandler.MemberDto[].class);
+
+        assertThat(someMembersResponse.getStatusCode().value()).isEqualTo(200);
+        assertThat(someMembersResponse.getBody())
+                .extracting(member -> member.loansHistory.size())
+                .containsExactly(1);
+
+        ResponseEntity<String> metricsResponse = restTemplate
+                .getForEntity(
+                        "http://localhost:" + port + "/metrics",
+                        String.class);
+
+        assertThat(metricsResponse.getStatusCode().value()).isEqualTo(200);
+        assertThat(metricsResponse.getBody()).contains("BorrowItemCommand", "GetMemberQuery", "p99Nanos");
     }
 
 }
\ No newline at end of file